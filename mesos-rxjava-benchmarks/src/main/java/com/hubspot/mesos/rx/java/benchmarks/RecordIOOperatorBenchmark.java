@@ -0,0 +1,174 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.hubspot.mesos.rx.java.recordio.RecordIOByteBufOperator;
+import com.hubspot.mesos.rx.java.recordio.RecordIOOperator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import rx.Subscriber;
+
+/**
+ * Measures the throughput of framing a RecordIO stream with {@link RecordIOOperator} (and, for comparison,
+ * {@link RecordIOByteBufOperator}) across the chunk sizes the stream may be delivered in, the sizes of the records
+ * in the stream and the type of buffer the chunks are delivered in.
+ * <p>
+ * Each operation frames a stream of roughly {@value #MIN_STREAM_SIZE} bytes (or a single record, if larger), so
+ * that scores are comparable across record sizes smaller than the stream.
+ * <p>
+ * The stream is held in a single buffer and each chunk is delivered by moving the buffer's reader and writer
+ * indices, so the benchmark itself does not allocate while feeding chunks to the operator. Run with
+ * {@code -prof gc} to report the allocation rate of the operator:
+ * <pre>{@code
+ * java -jar mesos-rxjava-benchmarks/target/benchmarks.jar RecordIOOperatorBenchmark -prof gc
+ * }</pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordIOOperatorBenchmark {
+
+    private static final int MIN_STREAM_SIZE = 1 << 20;
+
+    /**
+     * The size of each chunk the stream is delivered in, from a single byte up to 64 KiB.
+     */
+    @Param({"1", "64", "1024", "8192", "65536"})
+    public int chunkSize;
+
+    /**
+     * The size of each record: a heartbeat, a small update, a moderate offer and a multi-MB offer.
+     */
+    @Param({"20", "1024", "65536", "4194304"})
+    public int recordSize;
+
+    @Param({"HEAP", "DIRECT"})
+    public BufferType bufferType;
+
+    private ByteBuf stream;
+
+    public enum BufferType {
+        HEAP {
+            @Override
+            ByteBuf allocate(final int capacity) {
+                return Unpooled.buffer(capacity);
+            }
+        },
+        DIRECT {
+            @Override
+            ByteBuf allocate(final int capacity) {
+                return Unpooled.directBuffer(capacity);
+            }
+        };
+
+        abstract ByteBuf allocate(final int capacity);
+    }
+
+    @Setup
+    public void setup() {
+        final byte[] record = new byte[recordSize];
+        new Random(recordSize).nextBytes(record);
+        final byte[] header = String.format("%d\n", recordSize).getBytes(StandardCharsets.US_ASCII);
+        final int recordCount = Math.max(1, MIN_STREAM_SIZE / recordSize);
+
+        stream = bufferType.allocate(recordCount * (header.length + recordSize));
+        for (int i = 0; i < recordCount; i++) {
+            stream.writeBytes(header);
+            stream.writeBytes(record);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        stream.release();
+    }
+
+    @Benchmark
+    public void recordIOOperator(final Blackhole blackhole) {
+        final Subscriber<ByteBuf> subscriber = new RecordIOOperator().call(new Subscriber<byte[]>() {
+            @Override
+            public void onNext(final byte[] message) {
+                blackhole.consume(message);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(final Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        frameStream(subscriber);
+    }
+
+    @Benchmark
+    public void recordIOByteBufOperator(final Blackhole blackhole) {
+        final Subscriber<ByteBuf> subscriber = new RecordIOByteBufOperator().call(new Subscriber<ByteBuf>() {
+            @Override
+            public void onNext(final ByteBuf message) {
+                blackhole.consume(message.getByte(message.readerIndex()));
+                message.release();
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(final Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        frameStream(subscriber);
+    }
+
+    private void frameStream(@NotNull final Subscriber<ByteBuf> subscriber) {
+        subscriber.onStart();
+        final int length = stream.capacity();
+        for (int offset = 0; offset < length; offset += chunkSize) {
+            stream.setIndex(offset, Math.min(offset + chunkSize, length));
+            subscriber.onNext(stream);
+        }
+        subscriber.onCompleted();
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A concurrency limit that is adjusted using additive-increase/multiplicative-decrease (AIMD), the same scheme TCP
+ * uses to size its congestion window.
+ * <p>
+ * Every call that is accepted by Mesos within {@code latencyThreshold} grows the limit by {@code 1 / limit}, so that
+ * the limit grows by roughly one each time a full window of calls succeeds. Every call that is accepted but takes
+ * longer than {@code latencyThreshold}, and every call that is dropped because Mesos is overloaded (an HTTP 5xx
+ * response or a failure to reach Mesos at all), shrinks the limit by {@link #BACKOFF_RATIO}. As with TCP the limit is
+ * shrunk at most once per window: calls that were already in flight when the limit was last shrunk were sent under
+ * the old limit, so their outcome says nothing about the new one and doesn't shrink it again. The limit never leaves
+ * the range {@code [minLimit, maxLimit]}.
+ */
+final class AimdConcurrencyLimit {
+
+    static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+
+    /* guarded by this */
+    private double limit;
+    /* guarded by this */
+    private long lastSent = 0;
+    /* guarded by this */
+    private long lastSentBeforeBackOff = 0;
+
+    AimdConcurrencyLimit(
+        final int initialLimit,
+        final int minLimit,
+        final int maxLimit,
+        final long latencyThreshold,
+        @NotNull final TimeUnit unit
+    ) {
+        if (minLimit <= 0) {
+            throw new IllegalArgumentException("minLimit must be positive");
+        }
+        if (minLimit > maxLimit) {
+            throw new IllegalArgumentException("minLimit must not be greater than maxLimit");
+        }
+        if (initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("initialLimit must be between minLimit and maxLimit");
+        }
+        if (latencyThreshold <= 0) {
+            throw new IllegalArgumentException("latencyThreshold must be positive");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+        this.limit = initialLimit;
+    }
+
+    int getMaxLimit() {
+        return maxLimit;
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Records a call being sent.
+     *
+     * @return The sequence number of the call, to be passed when its outcome is recorded
+     */
+    synchronized long onSent() {
+        return ++lastSent;
+    }
+
+    /**
+     * Records a call that was accepted by Mesos.
+     *
+     * @param sequence        The sequence number returned by {@link #onSent()} when the call was sent
+     * @param latencyNanos    The time between the call being sent and the response being received
+     */
+    synchronized void onAccepted(final long sequence, final long latencyNanos) {
+        if (latencyNanos > latencyThresholdNanos) {
+            backOff(sequence);
+        } else {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Records a call that was dropped because Mesos was unable to process it.
+     *
+     * @param sequence    The sequence number returned by {@link #onSent()} when the call was sent
+     */
+    synchronized void onDropped(final long sequence) {
+        backOff(sequence);
+    }
+
+    private void backOff(final long sequence) {
+        if (sequence <= lastSentBeforeBackOff) {
+            // sent before the limit was last shrunk
+            return;
+        }
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        lastSentBeforeBackOff = lastSent;
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.Observable.Operator;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.exceptions.Exceptions;
+
+/**
+ * An {@link Operator} that collects the items of a stream into batches of at most {@code maxBatchSize} items,
+ * emitting each batch once it is full or {@code maxBatchDelay} after its first item was received, whichever is
+ * sooner.
+ * <p>
+ * Unlike {@link rx.Observable#buffer(long, TimeUnit, int, Scheduler)} the operator respects backpressure in both
+ * directions: batches are only emitted as they are requested, and at most {@code maxBatchSize} items are requested
+ * from upstream ahead of the batch being emitted. A batch that is due while there is no demand for it is emitted as
+ * soon as it is requested, continuing to collect items (up to {@code maxBatchSize}) until then.
+ *
+ * @param <T> The type of item in the stream
+ */
+final class BatchOperator<T> implements Operator<List<T>, T> {
+
+    private final int maxBatchSize;
+    private final long maxBatchDelay;
+    @NotNull
+    private final TimeUnit unit;
+    @NotNull
+    private final Scheduler scheduler;
+
+    BatchOperator(
+        final int maxBatchSize,
+        final long maxBatchDelay,
+        @NotNull final TimeUnit unit,
+        @NotNull final Scheduler scheduler
+    ) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        if (maxBatchDelay < 0) {
+            throw new IllegalArgumentException("maxBatchDelay must not be negative");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelay = maxBatchDelay;
+        this.unit = unit;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Subscriber<? super T> call(final Subscriber<? super List<T>> child) {
+        final BatchSubscriber<T> parent = new BatchSubscriber<>(child, maxBatchSize, maxBatchDelay, unit, scheduler.createWorker());
+        child.add(parent);
+        child.add(parent.worker);
+        child.setProducer(parent.producer);
+        return parent;
+    }
+
+    private static final class BatchSubscriber<T> extends Subscriber<T> {
+
+        @NotNull
+        private final Subscriber<? super List<T>> child;
+        private final int maxBatchSize;
+        private final long maxBatchDelay;
+        @NotNull
+        private final TimeUnit unit;
+        @NotNull
+        final Scheduler.Worker worker;
+        @NotNull
+        final Producer producer = this::requestBatches;
+
+        /* All of the following fields are guarded by this */
+        @NotNull
+        private List<T> batch;
+        private long requested;
+        private boolean due;
+        @Nullable
+        private Subscription timer;
+        private boolean done;
+        @Nullable
+        private Throwable error;
+        private boolean terminated;
+        private boolean emitting;
+        private boolean missed;
+
+        BatchSubscriber(
+            @NotNull final Subscriber<? super List<T>> child,
+            final int maxBatchSize,
+            final long maxBatchDelay,
+            @NotNull final TimeUnit unit,
+            @NotNull final Scheduler.Worker worker
+        ) {
+            this.child = child;
+            this.maxBatchSize = maxBatchSize;
+            this.maxBatchDelay = maxBatchDelay;
+            this.unit = unit;
+            this.worker = worker;
+            this.batch = new ArrayList<>(maxBatchSize);
+        }
+
+        @Override
+        public void onStart() {
+            request(maxBatchSize);
+        }
+
+        @Override
+        public void onNext(final T t) {
+            synchronized (this) {
+                batch.add(t);
+                if (batch.size() == 1 && batch.size() < maxBatchSize) {
+                    final List<T> current = batch;
+                    timer = worker.schedule(() -> batchDue(current), maxBatchDelay, unit);
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            synchronized (this) {
+                error = e;
+                done = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                done = true;
+            }
+            drain();
+        }
+
+        private void batchDue(@NotNull final List<T> dueBatch) {
+            synchronized (this) {
+                // the timer may fire after the batch it was started for has already been emitted
+                due = dueBatch == batch;
+            }
+            drain();
+        }
+
+        private void requestBatches(final long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            synchronized (this) {
+                requested += n;
+                if (requested < 0) {
+                    requested = Long.MAX_VALUE;
+                }
+            }
+            drain();
+        }
+
+        private void drain() {
+            synchronized (this) {
+                if (emitting) {
+                    missed = true;
+                    return;
+                }
+                emitting = true;
+            }
+            for (;;) {
+                List<T> toEmit = null;
+                Throwable terminalError = null;
+                boolean complete = false;
+                synchronized (this) {
+                    if (!terminated) {
+                        if (error != null) {
+                            terminated = true;
+                            terminalError = error;
+                            batch = new ArrayList<>(0);
+                        } else if (requested > 0 && !batch.isEmpty() && (batch.size() >= maxBatchSize || due || done)) {
+                            toEmit = batch;
+                            batch = new ArrayList<>(maxBatchSize);
+                            due = false;
+                            if (timer != null) {
+                                timer.unsubscribe();
+                                timer = null;
+                            }
+                            if (requested != Long.MAX_VALUE) {
+                                requested--;
+                            }
+                        } else if (done && batch.isEmpty()) {
+                            terminated = true;
+                            complete = true;
+                        }
+                    }
+                }
+                if (terminalError != null) {
+                    child.onError(terminalError);
+                    return;
+                } else if (complete) {
+                    child.onCompleted();
+                    return;
+                } else if (toEmit != null) {
+                    try {
+                        child.onNext(toEmit);
+                    } catch (Throwable e) {
+                        synchronized (this) {
+                            terminated = true;
+                        }
+                        Exceptions.throwOrReport(e, child, toEmit);
+                        return;
+                    }
+                    request(toEmit.size());
+                    continue;
+                }
+                synchronized (this) {
+                    if (!missed) {
+                        emitting = false;
+                        return;
+                    }
+                    missed = false;
+                }
+            }
+        }
+    }
+
+}
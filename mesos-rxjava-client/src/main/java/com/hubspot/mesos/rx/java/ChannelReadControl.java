@@ -0,0 +1,81 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.hubspot.mesos.rx.java.recordio.ReadControl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.reactivex.netty.pipeline.PipelineConfigurator;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+import io.reactivex.netty.protocol.http.client.HttpClientResponse;
+
+/**
+ * A {@link ReadControl} that pauses and resumes reading from the connection the Mesos event stream is received on,
+ * by toggling {@link io.netty.channel.ChannelConfig#setAutoRead(boolean) autoRead} on its {@link Channel}.
+ * <p>
+ * The channel is captured when the connection's pipeline is configured, so an instance must only be used with
+ * clients that open a single connection at a time (i.e. clients with connection pooling disabled that are used for one
+ * request). A connection opened after the previous one was lost, such as when the event stream is resubscribed to,
+ * takes over the paused or resumed state of the previous connection.
+ * While reading is paused the socket's receive buffer fills up and TCP flow control slows down the Mesos master,
+ * rather than events accumulating in memory in the client.
+ */
+final class ChannelReadControl
+    implements ReadControl, PipelineConfigurator<HttpClientResponse<ByteBuf>, HttpClientRequest<ByteBuf>> {
+
+    @Nullable
+    private volatile Channel channel = null;
+    private volatile boolean autoRead = true;
+
+    @Override
+    public void configureNewPipeline(final ChannelPipeline pipeline) {
+        final Channel newChannel = pipeline.channel();
+        channel = newChannel;
+        newChannel.config().setAutoRead(autoRead);
+    }
+
+    @Override
+    public void setAutoRead(final boolean autoRead) {
+        this.autoRead = autoRead;
+        final Channel current = channel;
+        if (current != null) {
+            current.config().setAutoRead(autoRead);
+        }
+    }
+
+    /**
+     * @return {@code false} while reading from the connection is paused
+     */
+    boolean isAutoRead() {
+        return autoRead;
+    }
+
+    /**
+     * Closes the current connection, if any.
+     */
+    void closeChannel() {
+        final Channel current = channel;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+}
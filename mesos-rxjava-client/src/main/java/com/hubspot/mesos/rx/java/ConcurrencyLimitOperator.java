@@ -0,0 +1,303 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.Observable.Operator;
+import rx.Producer;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * An {@link Operator} that limits the number of {@link SinkOperation}s in flight to Mesos to the current value of
+ * an {@link AimdConcurrencyLimit}.
+ * <p>
+ * Each operation is wrapped so that its outcome is fed back to the limit before its own callbacks are invoked: the
+ * time taken for a call to be accepted, or the fact that it was dropped by an overloaded Mesos, is used to adjust the
+ * limit and the slot taken by the call is freed for the next one.
+ * <p>
+ * Operations are only requested from upstream while a slot is free, so operations waiting for the limit are left
+ * with the stage upstream (for instance the lanes of a {@link PriorityOperator}, which can still reorder them) and a
+ * sustained excess of calls is pushed back into the stream producing them. Operations only have to be queued here
+ * when the limit is lowered after they were requested; those still queued when the stream fails are failed with the
+ * stream's error, and those still queued when it is unsubscribed with a {@link CancellationException}.
+ *
+ * @param <Send> The type of Objects to be sent to Mesos
+ */
+final class ConcurrencyLimitOperator<Send> implements Operator<SinkOperation<Send>, SinkOperation<Send>> {
+
+    @NotNull
+    private final AimdConcurrencyLimit limit;
+    @NotNull
+    private final AtomicInteger inFlight = new AtomicInteger();
+    @NotNull
+    private final AtomicInteger queued = new AtomicInteger();
+
+    ConcurrencyLimitOperator(@NotNull final AimdConcurrencyLimit limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public Subscriber<? super SinkOperation<Send>> call(final Subscriber<? super SinkOperation<Send>> child) {
+        final LimitSubscriber parent = new LimitSubscriber(child);
+        child.add(parent);
+        child.setProducer(parent.producer);
+        return parent;
+    }
+
+    /**
+     * @return A snapshot of the current limit along with the number of calls in flight and queued across all the
+     *         streams the operator has been applied to
+     */
+    @NotNull
+    ConcurrencyLimitStats snapshot() {
+        return new ConcurrencyLimitStats(limit.getLimit(), inFlight.get(), queued.get());
+    }
+
+    private final class LimitSubscriber extends Subscriber<SinkOperation<Send>> {
+
+        @NotNull
+        private final Subscriber<? super SinkOperation<Send>> child;
+        @NotNull
+        final Producer producer = this::requestOperations;
+
+        /* All of the following fields are guarded by this */
+        @NotNull
+        private final Queue<SinkOperation<Send>> queue = new ArrayDeque<>();
+        private long upstreamRequested;
+        private long requested;
+        private int sent;
+        private boolean done;
+        @Nullable
+        private Throwable error;
+        private boolean terminated;
+        private boolean emitting;
+        private boolean missed;
+
+        LimitSubscriber(@NotNull final Subscriber<? super SinkOperation<Send>> child) {
+            this.child = child;
+            // accounted for up front, as the child may request operations before this subscriber is started
+            this.upstreamRequested = limit.getLimit();
+            add(Subscriptions.create(this::cancel));
+        }
+
+        @Override
+        public void onStart() {
+            final long initial;
+            synchronized (this) {
+                initial = upstreamRequested;
+            }
+            request(initial);
+        }
+
+        @Override
+        public void onNext(final SinkOperation<Send> op) {
+            synchronized (this) {
+                upstreamRequested--;
+                queue.add(op);
+            }
+            queued.incrementAndGet();
+            drain();
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            synchronized (this) {
+                error = e;
+                done = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                done = true;
+            }
+            drain();
+        }
+
+        private void requestOperations(final long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            synchronized (this) {
+                requested += n;
+                if (requested < 0) {
+                    requested = Long.MAX_VALUE;
+                }
+            }
+            drain();
+        }
+
+        @NotNull
+        private SinkOperation<Send> track(@NotNull final SinkOperation<Send> op) {
+            final long sequence = limit.onSent();
+            final long start = System.nanoTime();
+            return op.withCallbacks(
+                () -> {
+                    limit.onAccepted(sequence, System.nanoTime() - start);
+                    release();
+                    op.onCompleted();
+                },
+                e -> {
+                    if (isDropped(e)) {
+                        limit.onDropped(sequence);
+                    }
+                    release();
+                    op.onError(e);
+                }
+            );
+        }
+
+        /**
+         * A call is considered dropped by an overloaded master when it is rejected with an HTTP 5xx response or can
+         * not be sent at all. Calls cancelled or timed out on this side ({@link CancellationException},
+         * {@link TimeoutException}) say nothing about the master, so they don't count.
+         */
+        private boolean isDropped(@NotNull final Throwable e) {
+            if (e instanceof CancellationException || e instanceof TimeoutException) {
+                return false;
+            }
+            return e instanceof Mesos5xxException || !(e instanceof MesosException);
+        }
+
+        /**
+         * Fails the operations still queued if the stream is unsubscribed before it has terminated.
+         */
+        private void cancel() {
+            final List<SinkOperation<Send>> dropped;
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                terminated = true;
+                dropped = takeQueued();
+            }
+            final CancellationException cancelled =
+                new CancellationException("Stream of calls unsubscribed before call could be sent");
+            for (final SinkOperation<Send> op : dropped) {
+                op.onError(cancelled);
+            }
+        }
+
+        /**
+         * Removes every operation that is queued, must be called while holding the lock.
+         */
+        @NotNull
+        private List<SinkOperation<Send>> takeQueued() {
+            final List<SinkOperation<Send>> taken = new ArrayList<>(queue);
+            queued.addAndGet(-queue.size());
+            queue.clear();
+            return taken;
+        }
+
+        private void release() {
+            synchronized (this) {
+                sent--;
+            }
+            inFlight.decrementAndGet();
+            drain();
+        }
+
+        private void drain() {
+            synchronized (this) {
+                if (emitting) {
+                    missed = true;
+                    return;
+                }
+                emitting = true;
+            }
+            for (;;) {
+                SinkOperation<Send> toEmit = null;
+                Throwable terminalError = null;
+                List<SinkOperation<Send>> dropped = Collections.emptyList();
+                boolean complete = false;
+                long moreFromUpstream = 0;
+                synchronized (this) {
+                    if (!terminated) {
+                        if (error != null) {
+                            terminated = true;
+                            terminalError = error;
+                            dropped = takeQueued();
+                        } else if (requested > 0 && !queue.isEmpty() && sent < limit.getLimit()) {
+                            toEmit = queue.poll();
+                            sent++;
+                            if (requested != Long.MAX_VALUE) {
+                                requested--;
+                            }
+                        } else if (done && queue.isEmpty()) {
+                            terminated = true;
+                            complete = true;
+                        }
+                        if (!terminated && !done) {
+                            // only as many operations as there are free slots are requested
+                            moreFromUpstream = Math.max(0, limit.getLimit() - sent - queue.size() - upstreamRequested);
+                            upstreamRequested += moreFromUpstream;
+                        }
+                    }
+                }
+                if (moreFromUpstream > 0) {
+                    request(moreFromUpstream);
+                }
+                if (terminalError != null) {
+                    child.onError(terminalError);
+                    for (final SinkOperation<Send> op : dropped) {
+                        op.onError(terminalError);
+                    }
+                    return;
+                } else if (complete) {
+                    child.onCompleted();
+                    return;
+                } else if (toEmit != null) {
+                    queued.decrementAndGet();
+                    inFlight.incrementAndGet();
+                    try {
+                        child.onNext(track(toEmit));
+                    } catch (Throwable e) {
+                        synchronized (this) {
+                            terminated = true;
+                        }
+                        Exceptions.throwOrReport(e, child, toEmit);
+                        return;
+                    }
+                    continue;
+                }
+                synchronized (this) {
+                    if (!missed) {
+                        emitting = false;
+                        return;
+                    }
+                    missed = false;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+/**
+ * A point in time snapshot of the adaptive limit on the number of calls in flight to Mesos.
+ *
+ * @see MesosClient#getConcurrencyLimitStats()
+ */
+public final class ConcurrencyLimitStats {
+
+    private final int limit;
+    private final int inFlight;
+    private final int queued;
+
+    ConcurrencyLimitStats(final int limit, final int inFlight, final int queued) {
+        this.limit = limit;
+        this.inFlight = inFlight;
+        this.queued = queued;
+    }
+
+    /**
+     * @return The number of calls currently allowed to be in flight at once
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return The number of calls that have been sent and have not yet been completed or failed
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return The number of calls waiting for the number of calls in flight to drop below the limit
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimitStats{" +
+            "limit=" + limit +
+            ", inFlight=" + inFlight +
+            ", queued=" + queued +
+            '}';
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The configuration of the pool of connections used to send calls to Mesos.
+ *
+ * @see MesosClientBuilder#sendConnectionPool(int, int, long, TimeUnit)
+ */
+final class ConnectionPoolConfig {
+
+    private final int minConnections;
+    private final int maxConnections;
+    private final long idleTimeoutMillis;
+
+    ConnectionPoolConfig(
+        final int minConnections,
+        final int maxConnections,
+        final long idleTimeout,
+        @NotNull final TimeUnit unit
+    ) {
+        if (minConnections < 0) {
+            throw new IllegalArgumentException("minConnections must not be negative");
+        }
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("maxConnections must be positive");
+        }
+        if (minConnections > maxConnections) {
+            throw new IllegalArgumentException("minConnections must not be greater than maxConnections");
+        }
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException("idleTimeout must be positive");
+        }
+        this.minConnections = minConnections;
+        this.maxConnections = maxConnections;
+        this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+    }
+
+    int getMinConnections() {
+        return minConnections;
+    }
+
+    int getMaxConnections() {
+        return maxConnections;
+    }
+
+    long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+
+import io.reactivex.netty.client.ClientMetricsEvent;
+import io.reactivex.netty.metrics.MetricEventsListener;
+
+/**
+ * Keeps count of the connection pool events published by the HTTP clients it is subscribed to, so that a
+ * {@link ConnectionPoolStats} snapshot can be taken at any time.
+ */
+final class ConnectionPoolMetrics implements MetricEventsListener<ClientMetricsEvent<?>> {
+
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong connectionsReused = new AtomicLong();
+    private final AtomicLong connectionsEvicted = new AtomicLong();
+    private final AtomicLong acquireFailures = new AtomicLong();
+    private final AtomicLong connectionsInUse = new AtomicLong();
+
+    @Override
+    public void onEvent(
+        final ClientMetricsEvent<?> event,
+        final long duration,
+        final TimeUnit timeUnit,
+        final Throwable throwable,
+        final Object value
+    ) {
+        if (!(event.getType() instanceof ClientMetricsEvent.EventType)) {
+            return;
+        }
+        switch ((ClientMetricsEvent.EventType) event.getType()) {
+            case ConnectSuccess:
+                connectionsCreated.incrementAndGet();
+                break;
+            case ConnectFailed:
+                connectFailures.incrementAndGet();
+                break;
+            case PooledConnectionReuse:
+                connectionsReused.incrementAndGet();
+                break;
+            case PooledConnectionEviction:
+                connectionsEvicted.incrementAndGet();
+                break;
+            case PoolAcquireSuccess:
+                connectionsInUse.incrementAndGet();
+                break;
+            case PoolAcquireFailed:
+                acquireFailures.incrementAndGet();
+                break;
+            case PoolReleaseSuccess:
+            case PoolReleaseFailed:
+                connectionsInUse.decrementAndGet();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onCompleted() {
+    }
+
+    @Override
+    public void onSubscribe() {
+    }
+
+    @NotNull
+    ConnectionPoolStats snapshot() {
+        return new ConnectionPoolStats(
+            connectionsCreated.get(),
+            connectFailures.get(),
+            connectionsReused.get(),
+            connectionsEvicted.get(),
+            acquireFailures.get(),
+            connectionsInUse.get()
+        );
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+/**
+ * A point in time snapshot of the activity of the pool of connections used to send calls to Mesos.
+ * <p>
+ * All counts other than {@link #getConnectionsInUse()} are cumulative across all the streams opened by a
+ * {@link MesosClient}.
+ *
+ * @see MesosClient#getSendConnectionPoolStats()
+ */
+public final class ConnectionPoolStats {
+
+    private final long connectionsCreated;
+    private final long connectFailures;
+    private final long connectionsReused;
+    private final long connectionsEvicted;
+    private final long acquireFailures;
+    private final long connectionsInUse;
+
+    ConnectionPoolStats(
+        final long connectionsCreated,
+        final long connectFailures,
+        final long connectionsReused,
+        final long connectionsEvicted,
+        final long acquireFailures,
+        final long connectionsInUse
+    ) {
+        this.connectionsCreated = connectionsCreated;
+        this.connectFailures = connectFailures;
+        this.connectionsReused = connectionsReused;
+        this.connectionsEvicted = connectionsEvicted;
+        this.acquireFailures = acquireFailures;
+        this.connectionsInUse = connectionsInUse;
+    }
+
+    /**
+     * @return The number of connections that have been established, including those opened to pre-warm the pool
+     */
+    public long getConnectionsCreated() {
+        return connectionsCreated;
+    }
+
+    /**
+     * @return The number of attempts to establish a connection that have failed
+     */
+    public long getConnectFailures() {
+        return connectFailures;
+    }
+
+    /**
+     * @return The number of times an idle connection has been taken from the pool rather than a new one established
+     */
+    public long getConnectionsReused() {
+        return connectionsReused;
+    }
+
+    /**
+     * @return The number of idle connections that have been closed and removed from the pool
+     */
+    public long getConnectionsEvicted() {
+        return connectionsEvicted;
+    }
+
+    /**
+     * @return The number of times a connection could not be acquired, for instance because the pool was exhausted
+     */
+    public long getAcquireFailures() {
+        return acquireFailures;
+    }
+
+    /**
+     * @return The number of connections currently acquired from the pool
+     */
+    public long getConnectionsInUse() {
+        return connectionsInUse;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats{" +
+            "connectionsCreated=" + connectionsCreated +
+            ", connectFailures=" + connectFailures +
+            ", connectionsReused=" + connectionsReused +
+            ", connectionsEvicted=" + connectionsEvicted +
+            ", acquireFailures=" + acquireFailures +
+            ", connectionsInUse=" + connectionsInUse +
+            '}';
+    }
+}
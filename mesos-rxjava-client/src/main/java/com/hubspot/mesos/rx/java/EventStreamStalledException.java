@@ -0,0 +1,54 @@
+/*
+ *    Copyright (C) 2016 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.io.IOException;
+
+/**
+ * Signals that nothing was received on the connection the event stream is received on for several heartbeat
+ * intervals, so the connection was closed rather than left to be timed out by the operating system.
+ *
+ * @see MesosClientBuilder#detectStalls(java.util.function.Function, java.util.function.Predicate, int)
+ */
+public final class EventStreamStalledException extends IOException {
+
+    private final int missedHeartbeats;
+    private final long heartbeatIntervalMillis;
+
+    public EventStreamStalledException(final int missedHeartbeats, final long heartbeatIntervalMillis) {
+        super(String.format(
+            "Nothing received from Mesos for %d heartbeat intervals of %dms", missedHeartbeats, heartbeatIntervalMillis
+        ));
+        this.missedHeartbeats = missedHeartbeats;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+    }
+
+    /**
+     * @return The number of consecutive heartbeat intervals in which nothing was received
+     */
+    public int getMissedHeartbeats() {
+        return missedHeartbeats;
+    }
+
+    /**
+     * @return The heartbeat interval announced by Mesos, in milliseconds
+     */
+    public long getHeartbeatIntervalMillis() {
+        return heartbeatIntervalMillis;
+    }
+
+}
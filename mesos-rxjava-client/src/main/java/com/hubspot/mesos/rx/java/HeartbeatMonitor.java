@@ -0,0 +1,194 @@
+/*
+ *    Copyright (C) 2016 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import io.netty.buffer.ByteBuf;
+import rx.Observable.Operator;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.observers.SerializedSubscriber;
+import rx.subscriptions.SerialSubscription;
+
+/**
+ * Watches the connection the event stream is received on for missed heartbeats, so that a connection that silently
+ * stopped delivering anything, such as a half-open TCP connection, is detected within a few heartbeat intervals
+ * rather than once the operating system times it out.
+ * <p>
+ * The heartbeat interval is learned from the events that announce it (e.g. {@code SUBSCRIBED}). Rather than a timer
+ * being rescheduled for every event, a single timer ticks once per interval and counts the ticks since anything was
+ * last received, so receiving data costs no more than a volatile read. Intervals during which reading from the
+ * connection was paused, because events were not being requested, are not counted. Once
+ * {@code maxMissedHeartbeats} intervals pass without anything being received, the connection is closed and the
+ * stream fails with an {@link EventStreamStalledException}.
+ * <p>
+ * Heartbeats are only a sign of life, so {@link #isNotHeartbeat(Object)} is used to drop them from the events
+ * delivered to the stream processor.
+ * <p>
+ * An instance watches a single stream, across each of its subscriptions.
+ *
+ * @param <Receive> The type of Objects to expect from Mesos
+ */
+final class HeartbeatMonitor<Receive> {
+
+    @NotNull
+    private final Function<Receive, OptionalLong> heartbeatIntervalMillis;
+    @NotNull
+    private final Predicate<Receive> isHeartbeat;
+    private final int maxMissedHeartbeats;
+    @NotNull
+    private final ChannelReadControl readControl;
+    @NotNull
+    private final Scheduler scheduler;
+
+    /** The last heartbeat interval announced, or {@code 0} if none has been announced yet */
+    private volatile long intervalMillis = 0;
+    /** The subscriber watching the current subscription to the event stream */
+    @Nullable
+    private volatile WatchSubscriber current = null;
+
+    HeartbeatMonitor(
+        @NotNull final Function<Receive, OptionalLong> heartbeatIntervalMillis,
+        @NotNull final Predicate<Receive> isHeartbeat,
+        final int maxMissedHeartbeats,
+        @NotNull final ChannelReadControl readControl,
+        @NotNull final Scheduler scheduler
+    ) {
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.isHeartbeat = isHeartbeat;
+        this.maxMissedHeartbeats = maxMissedHeartbeats;
+        this.readControl = readControl;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Learns the heartbeat interval from {@code event}, if it announces one.
+     *
+     * @return {@code false} if {@code event} is a heartbeat, and should not be delivered to the stream processor
+     */
+    boolean isNotHeartbeat(@NotNull final Receive event) {
+        if (isHeartbeat.test(event)) {
+            return false;
+        }
+        final OptionalLong interval = heartbeatIntervalMillis.apply(event);
+        if (interval.isPresent() && interval.getAsLong() > 0 && interval.getAsLong() != intervalMillis) {
+            intervalMillis = interval.getAsLong();
+            MesosClient.LOGGER.debug("Watching the event stream for heartbeats every {}ms", intervalMillis);
+            final WatchSubscriber subscriber = current;
+            if (subscriber != null) {
+                subscriber.watch(intervalMillis);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return An operator to be applied to the content of each subscription to the event stream, that fails the
+     *         subscription once it stalls
+     */
+    @NotNull
+    Operator<ByteBuf, ByteBuf> watch() {
+        return child -> {
+            final WatchSubscriber parent = new WatchSubscriber(new SerializedSubscriber<>(child));
+            child.add(parent);
+            child.setProducer(parent::requestContent);
+            current = parent;
+            final long interval = intervalMillis;
+            if (interval > 0) {
+                // the previous subscription announced the interval, so watch until this one announces it again
+                parent.watch(interval);
+            }
+            return parent;
+        };
+    }
+
+    private final class WatchSubscriber extends Subscriber<ByteBuf> {
+
+        @NotNull
+        private final Subscriber<? super ByteBuf> child;
+        @NotNull
+        private final Scheduler.Worker worker;
+        @NotNull
+        private final SerialSubscription ticks = new SerialSubscription();
+
+        /** Set whenever anything is received, and cleared by each tick */
+        private volatile boolean received = false;
+        /** Only accessed by the ticks, which the worker runs one at a time */
+        private int missed = 0;
+
+        WatchSubscriber(@NotNull final Subscriber<? super ByteBuf> child) {
+            this.child = child;
+            this.worker = scheduler.createWorker();
+            add(worker);
+            add(ticks);
+        }
+
+        @Override
+        public void onStart() {
+            // nothing is requested until the child asks for content
+            request(0);
+        }
+
+        private void requestContent(final long n) {
+            request(n);
+        }
+
+        void watch(final long intervalMillis) {
+            ticks.set(worker.schedulePeriodically(() -> tick(intervalMillis), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS));
+        }
+
+        private void tick(final long intervalMillis) {
+            if (received || !readControl.isAutoRead()) {
+                received = false;
+                missed = 0;
+                return;
+            }
+            if (++missed >= maxMissedHeartbeats) {
+                MesosClient.LOGGER.warn("Nothing received from Mesos for {} heartbeat intervals, closing the connection", missed);
+                unsubscribe();
+                readControl.closeChannel();
+                child.onError(new EventStreamStalledException(missed, intervalMillis));
+            }
+        }
+
+        @Override
+        public void onNext(final ByteBuf buf) {
+            if (!received) {
+                received = true;
+            }
+            child.onNext(buf);
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            child.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            child.onCompleted();
+        }
+    }
+
+}
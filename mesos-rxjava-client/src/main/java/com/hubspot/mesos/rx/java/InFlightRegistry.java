@@ -0,0 +1,332 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.Observable;
+import rx.Observable.Operator;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Keeps track of every {@link SinkOperation} sent to Mesos until it has been completed or failed, optionally
+ * enforcing a deadline on each operation and hedging slow operations.
+ * <p>
+ * The registry is lock-free: operations are registered in a {@link ConcurrentMap} under a unique id, and whichever
+ * of the response to the operation, its deadline or the response to a hedged attempt removes it from the map first
+ * decides the outcome of the operation. This guarantees that exactly one of the operation's callbacks is invoked,
+ * exactly once.
+ * <p>
+ * When a deadline is set, an operation that has not been completed or failed within the deadline is failed with a
+ * {@link TimeoutException}, and the requests still sending it are unsubscribed so that they release the connections
+ * they hold.
+ * <p>
+ * When hedging is enabled, an operation for which {@code hedgeable} returns {@code true} that has not been completed
+ * or failed after the {@code hedgePercentile} latency of recently accepted operations is sent a second time. The
+ * operation completes as soon as either attempt is accepted, and only fails once both attempts have failed. Hedged
+ * attempts are only sent once {@link #HEDGE_RECALCULATION_INTERVAL} latencies have been observed, and are sent
+ * through the same rate and concurrency limits as the operations they hedge, see {@link Hedges}.
+ *
+ * @param <Send> The type of Objects to be sent to Mesos
+ */
+final class InFlightRegistry<Send> {
+
+    static final int LATENCY_WINDOW = 256;
+    static final int HEDGE_RECALCULATION_INTERVAL = 64;
+
+    private final long deadlineMillis;
+    @Nullable
+    private final Predicate<Send> hedgeable;
+    private final double hedgePercentile;
+    @NotNull
+    private final Scheduler scheduler;
+
+    @NotNull
+    private final AtomicLong ids = new AtomicLong();
+    @NotNull
+    private final ConcurrentMap<Long, Call> calls = new ConcurrentHashMap<>();
+    @NotNull
+    private final AtomicLong hedgedAttempts = new AtomicLong();
+
+    @NotNull
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_WINDOW);
+    @NotNull
+    private final AtomicLong latencySamples = new AtomicLong();
+    private volatile long hedgeDelayNanos = -1;
+
+    /**
+     * @param deadlineMillis     The time an operation is given to complete, or {@code 0} for no deadline
+     * @param hedgeable          The operations that may be hedged, or {@code null} if no operations should be hedged
+     * @param hedgePercentile    The percentile of recent latencies after which a hedgeable operation is hedged
+     * @param scheduler          The scheduler deadlines and hedged attempts are scheduled on
+     */
+    InFlightRegistry(
+        final long deadlineMillis,
+        @Nullable final Predicate<Send> hedgeable,
+        final double hedgePercentile,
+        @NotNull final Scheduler scheduler
+    ) {
+        this.deadlineMillis = deadlineMillis;
+        this.hedgeable = hedgeable;
+        this.hedgePercentile = hedgePercentile;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return The number of operations sent to Mesos that have not yet been completed or failed
+     */
+    int size() {
+        return calls.size();
+    }
+
+    /**
+     * @return The number of hedged attempts that have been sent
+     */
+    long getHedgedAttempts() {
+        return hedgedAttempts.get();
+    }
+
+    /**
+     * Registers each of {@code operations} as it is sent. Hedged attempts of the operations are emitted by
+     * {@code hedges}, which is expected to merge them back into {@code operations} ahead of the stages that limit the
+     * rate and concurrency of sends, so that they are subject to the same limits; they pass through unregistered.
+     */
+    @NotNull
+    Observable<SinkOperation<Send>> track(
+        @NotNull final Observable<SinkOperation<Send>> operations,
+        @NotNull final Hedges<Send> hedges
+    ) {
+        return Observable.defer(() -> {
+            final Scheduler.Worker worker = scheduler.createWorker();
+            return operations
+                .map(op -> op.isTracked() ? op : register(op, worker, hedges))
+                .doOnUnsubscribe(worker::unsubscribe);
+        });
+    }
+
+    @NotNull
+    private SinkOperation<Send> register(
+        @NotNull final SinkOperation<Send> op,
+        @NotNull final Scheduler.Worker worker,
+        @NotNull final Hedges<Send> hedges
+    ) {
+        final long id = ids.incrementAndGet();
+        final Call call = new Call(op);
+        calls.put(id, call);
+        if (deadlineMillis > 0) {
+            call.timers.add(worker.schedule(() -> expire(id), deadlineMillis, TimeUnit.MILLISECONDS));
+        }
+        final long hedgeDelay = hedgeDelayNanos;
+        if (hedgeDelay >= 0 && hedgeable != null && hedgeable.test(op.getThingToSink())) {
+            call.timers.add(worker.schedule(() -> hedge(id, call, hedges), hedgeDelay, TimeUnit.NANOSECONDS));
+        }
+        return attempt(id, call);
+    }
+
+    @NotNull
+    private SinkOperation<Send> attempt(final long id, @NotNull final Call call) {
+        return new SinkOperation<>(
+            call.op.getThingToSink(),
+            () -> {
+                if (calls.remove(id, call)) {
+                    call.timers.unsubscribe();
+                    recordLatency(System.nanoTime() - call.startNanos);
+                    call.op.onCompleted();
+                }
+            },
+            e -> {
+                if (call.attempts.decrementAndGet() == 0 && calls.remove(id, call)) {
+                    call.timers.unsubscribe();
+                    call.op.onError(e);
+                }
+            },
+            call.op.getPriority(),
+            call.requests
+        );
+    }
+
+    private void expire(final long id) {
+        final Call call = calls.remove(id);
+        if (call != null) {
+            call.timers.unsubscribe();
+            call.op.onError(new TimeoutException("Call not completed within " + deadlineMillis + "ms"));
+            // the requests still outstanding would otherwise keep holding their connections
+            call.requests.unsubscribe();
+        }
+    }
+
+    private void hedge(final long id, @NotNull final Call call, @NotNull final Hedges<Send> hedges) {
+        // only hedge while the first attempt is still outstanding
+        if (calls.get(id) == call && call.attempts.getAndUpdate(n -> n > 0 ? n + 1 : n) > 0) {
+            final SinkOperation<Send> hedged = attempt(id, call);
+            if (hedges.offer(hedged)) {
+                hedgedAttempts.incrementAndGet();
+            } else {
+                hedged.onError(new CancellationException("Stream of calls terminated before call could be hedged"));
+            }
+        }
+    }
+
+    private void recordLatency(final long latencyNanos) {
+        final long sample = latencySamples.getAndIncrement();
+        latencies.set((int) (sample % LATENCY_WINDOW), latencyNanos);
+        if (hedgeable != null && (sample + 1) % HEDGE_RECALCULATION_INTERVAL == 0) {
+            final int count = (int) Math.min(sample + 1, LATENCY_WINDOW);
+            final long[] window = new long[count];
+            for (int i = 0; i < count; i++) {
+                window[i] = latencies.get(i);
+            }
+            Arrays.sort(window);
+            hedgeDelayNanos = window[(int) Math.min(count - 1, Math.ceil(count * hedgePercentile / 100) - 1)];
+        }
+    }
+
+    private final class Call {
+        @NotNull
+        final SinkOperation<Send> op;
+        final long startNanos = System.nanoTime();
+        /** The number of attempts that have neither been completed nor failed */
+        @NotNull
+        final AtomicInteger attempts = new AtomicInteger(1);
+        @NotNull
+        final CompositeSubscription timers = new CompositeSubscription();
+        /** The requests sending the attempts of the call */
+        @NotNull
+        final CompositeSubscription requests = new CompositeSubscription();
+
+        Call(@NotNull final SinkOperation<Send> op) {
+            this.op = op;
+        }
+    }
+
+    /**
+     * The hedged attempts of the operations of one stream, which it emits along with the operations of the stream it
+     * is {@link #mergeInto merged into}.
+     * <p>
+     * Only one operation of the stream is requested ahead of it being emitted, so that the operations waiting to be
+     * sent stay queued in the stages upstream, where urgent operations can overtake them. A hedged attempt is
+     * emitted ahead of the operation waiting, if any.
+     *
+     * @param <Send> The type of Objects to be sent to Mesos
+     */
+    static final class Hedges<Send> implements Operator<SinkOperation<Send>, SinkOperation<Send>> {
+
+        // guarded by this
+        @Nullable
+        private HedgesSubscriber<Send> subscriber;
+
+        /**
+         * Merges the hedged attempts into {@code operations}. No more attempts are accepted once {@code operations}
+         * has terminated and the operations still queued have been emitted.
+         */
+        @NotNull
+        Observable<SinkOperation<Send>> mergeInto(@NotNull final Observable<SinkOperation<Send>> operations) {
+            return operations.lift(this);
+        }
+
+        @Override
+        public Subscriber<? super SinkOperation<Send>> call(final Subscriber<? super SinkOperation<Send>> child) {
+            final HedgesSubscriber<Send> parent = new HedgesSubscriber<>(child);
+            synchronized (this) {
+                subscriber = parent;
+            }
+            child.add(parent);
+            child.setProducer(parent.producer);
+            return parent;
+        }
+
+        /**
+         * @return Whether the attempt was accepted, which it isn't once the stream of operations has terminated
+         */
+        boolean offer(@NotNull final SinkOperation<Send> attempt) {
+            final HedgesSubscriber<Send> parent;
+            synchronized (this) {
+                parent = subscriber;
+            }
+            return parent != null && parent.offer(attempt);
+        }
+    }
+
+    private static final class HedgesSubscriber<Send> extends QueueingSubscriber<Send> {
+
+        /* All of the following fields are guarded by this */
+        @NotNull
+        private final Deque<SinkOperation<Send>> attempts = new ArrayDeque<>();
+        @Nullable
+        private SinkOperation<Send> waiting;
+
+        HedgesSubscriber(@NotNull final Subscriber<? super SinkOperation<Send>> child) {
+            super(child, 1);
+        }
+
+        boolean offer(@NotNull final SinkOperation<Send> attempt) {
+            synchronized (this) {
+                if (terminated) {
+                    return false;
+                }
+                attempts.addLast(attempt);
+                queued++;
+            }
+            drain();
+            return true;
+        }
+
+        @Override
+        synchronized void enqueue(@NotNull final SinkOperation<Send> op) {
+            waiting = op;
+        }
+
+        @Nullable
+        @Override
+        synchronized SinkOperation<Send> poll() {
+            if (!attempts.isEmpty()) {
+                return attempts.pollFirst();
+            }
+            final SinkOperation<Send> next = waiting;
+            waiting = null;
+            return next;
+        }
+
+        @Override
+        synchronized void removeQueued(@NotNull final List<SinkOperation<Send>> into) {
+            into.addAll(attempts);
+            attempts.clear();
+            if (waiting != null) {
+                into.add(waiting);
+                waiting = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.Observable.Operator;
+import rx.Subscriber;
+
+/**
+ * An {@link Operator} that sends {@link SinkOperation}s with the same ordering key strictly one after another, while
+ * sending operations with different ordering keys concurrently.
+ * <p>
+ * An operation is only emitted once the previous operation with the same key has been completed or failed, so Mesos
+ * always receives calls for the same key in the order they were sent. Operations whose key is {@code null} are not
+ * ordered with respect to any other operation. Of the operations that can be sent, those of a higher
+ * {@link SendPriority} are sent first.
+ * <p>
+ * At most {@link QueueingSubscriber#MAX_QUEUED} operations are requested from upstream ahead of them being sent, so
+ * that operations waiting behind another operation with the same key are pushed back into the stream producing them.
+ * <p>
+ * Operations still queued when the stream fails are failed with the stream's error, and those still queued when the
+ * stream is unsubscribed are failed with a {@link CancellationException}, so that their callbacks are always invoked.
+ *
+ * @param <Send> The type of Objects to be sent to Mesos
+ */
+final class KeyedOrderingOperator<Send> implements Operator<SinkOperation<Send>, SinkOperation<Send>> {
+
+    @NotNull
+    private final Function<Send, ?> orderingKey;
+
+    KeyedOrderingOperator(@NotNull final Function<Send, ?> orderingKey) {
+        this.orderingKey = orderingKey;
+    }
+
+    @Override
+    public Subscriber<? super SinkOperation<Send>> call(final Subscriber<? super SinkOperation<Send>> child) {
+        final OrderingSubscriber parent = new OrderingSubscriber(child);
+        child.add(parent);
+        child.setProducer(parent.producer);
+        return parent;
+    }
+
+    private final class OrderingSubscriber extends QueueingSubscriber<Send> {
+
+        /* All of the following fields are guarded by this */
+        /** The operations waiting for the operation in flight for their key, if any, to complete */
+        @NotNull
+        private final Map<Object, Deque<SinkOperation<Send>>> lanes = new HashMap<>();
+        /** The operations that can be sent as soon as they are requested, by rank in the order they became ready */
+        @NotNull
+        private final Deque<SinkOperation<Send>>[] ready;
+
+        @SuppressWarnings("unchecked")
+        OrderingSubscriber(@NotNull final Subscriber<? super SinkOperation<Send>> child) {
+            super(child, MAX_QUEUED);
+            this.ready = new Deque[SendPriority.values().length];
+            for (int i = 0; i < ready.length; i++) {
+                ready[i] = new ArrayDeque<>();
+            }
+        }
+
+        @Override
+        synchronized void enqueue(@NotNull final SinkOperation<Send> op) {
+            final Object key = orderingKey.apply(op.getThingToSink());
+            if (key == null) {
+                ready(op);
+            } else {
+                final Deque<SinkOperation<Send>> lane = lanes.get(key);
+                if (lane == null) {
+                    // nothing is in flight for this key, the presence of the lane marks the operation as in flight
+                    lanes.put(key, new ArrayDeque<>());
+                    ready(track(key, op));
+                } else {
+                    lane.addLast(op);
+                }
+            }
+        }
+
+        @Nullable
+        @Override
+        synchronized SinkOperation<Send> poll() {
+            for (final Deque<SinkOperation<Send>> rank : ready) {
+                if (!rank.isEmpty()) {
+                    return rank.pollFirst();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        synchronized void removeQueued(@NotNull final List<SinkOperation<Send>> into) {
+            for (final Deque<SinkOperation<Send>> rank : ready) {
+                into.addAll(rank);
+                rank.clear();
+            }
+            lanes.values().forEach(into::addAll);
+            lanes.clear();
+        }
+
+        /**
+         * Marks {@code op} as ready to be sent, must be called while holding the lock.
+         */
+        private void ready(@NotNull final SinkOperation<Send> op) {
+            ready[rank(op)].addLast(op);
+        }
+
+        @NotNull
+        private SinkOperation<Send> track(@NotNull final Object key, @NotNull final SinkOperation<Send> op) {
+            return op.withCallbacks(
+                () -> {
+                    release(key);
+                    op.onCompleted();
+                },
+                e -> {
+                    release(key);
+                    op.onError(e);
+                }
+            );
+        }
+
+        /**
+         * Makes the next operation waiting for {@code key}, if any, ready to be sent.
+         */
+        private void release(@NotNull final Object key) {
+            synchronized (this) {
+                final Deque<SinkOperation<Send>> lane = lanes.get(key);
+                if (lane == null) {
+                    // the stream has been terminated with an error or unsubscribed
+                    return;
+                }
+                final SinkOperation<Send> next = lane.pollFirst();
+                if (next == null) {
+                    lanes.remove(key);
+                } else {
+                    ready(track(key, next));
+                }
+            }
+            drain();
+        }
+    }
+
+}
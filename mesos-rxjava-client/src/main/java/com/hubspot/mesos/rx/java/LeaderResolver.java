@@ -0,0 +1,165 @@
+/*
+ *    Copyright (C) 2016 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import rx.Observable;
+import rx.functions.Func1;
+
+/**
+ * Finds the leading master among the masters a client has been configured with.
+ * <p>
+ * Every master is probed concurrently, and the leader announced by the first master to respond with a redirect is
+ * used without waiting for the others. If no master responds with a redirect, the first master (in the order the
+ * masters were configured) that could be reached is used as-is. The leader is cached until an error indicating that
+ * leadership has moved is observed for the event stream or a call: the connection to the leader failing, or the
+ * leader responding with a redirect (HTTP 307) itself.
+ */
+final class LeaderResolver {
+
+    @NotNull
+    private final List<URI> mesosUris;
+    @NotNull
+    private final Func1<URI, Observable<Optional<URI>>> probe;
+
+    @Nullable
+    private volatile URI leader = null;
+
+    /**
+     * @param mesosUris    The masters to probe
+     * @param probe        Probes a master, emitting the leader it redirects to, or {@link Optional#empty()} if it
+     *                     responds with anything but a redirect, or failing if it can't be reached
+     */
+    LeaderResolver(
+        @NotNull final List<URI> mesosUris,
+        @NotNull final Func1<URI, Observable<Optional<URI>>> probe
+    ) {
+        this.mesosUris = mesosUris;
+        this.probe = probe;
+    }
+
+    /**
+     * @return An Observable emitting the cached leader, or the leader found by probing every master once subscribed
+     *         to if none is cached
+     */
+    @NotNull
+    Observable<URI> resolve() {
+        return Observable.defer(() -> {
+            final URI cached = leader;
+            if (cached != null) {
+                return Observable.just(cached);
+            }
+            return Observable.from(mesosUris)
+                .flatMap(uri ->
+                    probe.call(uri)
+                        .take(1)
+                        .map(announced -> new Probe(uri, announced.orElse(null), null))
+                        .onErrorReturn(e -> new Probe(uri, null, e))
+                )
+                .takeUntil(p -> p.announced != null)
+                .toList()
+                .flatMap(this::choose);
+        });
+    }
+
+    @NotNull
+    private Observable<URI> choose(@NotNull final List<Probe> probes) {
+        final URI resolved = probes.stream()
+            .filter(p -> p.announced != null)
+            .map(p -> p.announced)
+            .findFirst()
+            .orElseGet(() ->
+                probes.stream()
+                    .filter(p -> p.error == null)
+                    .min(Comparator.comparingInt(p -> mesosUris.indexOf(p.uri)))
+                    .map(p -> p.uri)
+                    .orElse(null)
+            );
+        if (resolved == null) {
+            return Observable.error(probes.get(0).error);
+        }
+        leader = resolved;
+        MesosClient.LOGGER.info("Using Mesos leader {}", resolved);
+        return Observable.just(resolved);
+    }
+
+    /**
+     * Forgets the cached leader if {@code e} indicates that leadership has moved.
+     */
+    void onError(@NotNull final Throwable e) {
+        if (leader != null && indicatesLeaderChange(e)) {
+            MesosClient.LOGGER.info("Leading Mesos master {} may have changed, it will be probed for again", leader);
+            leader = null;
+        }
+    }
+
+    /**
+     * Forgets the cached leader if {@code op} fails with an error that indicates that leadership has moved.
+     */
+    @NotNull
+    <Send> SinkOperation<Send> track(@NotNull final SinkOperation<Send> op) {
+        return op.withCallbacks(
+            op::onCompleted,
+            e -> {
+                onError(e);
+                op.onError(e);
+            }
+        );
+    }
+
+    /**
+     * @return The leader that is currently cached, if any
+     */
+    @Nullable
+    URI getLeader() {
+        return leader;
+    }
+
+    // @VisibleForTesting
+    static boolean indicatesLeaderChange(@NotNull final Throwable e) {
+        return MesosClient.getCausalChain(e).stream().anyMatch(t ->
+            t instanceof IOException
+                || (t instanceof MesosException
+                    && ((MesosException) t).getContext().getStatusCode() == HttpResponseStatus.TEMPORARY_REDIRECT.code())
+        );
+    }
+
+    private static final class Probe {
+        @NotNull
+        private final URI uri;
+        @Nullable
+        private final URI announced;
+        @Nullable
+        private final Throwable error;
+
+        Probe(@NotNull final URI uri, @Nullable final URI announced, @Nullable final Throwable error) {
+            this.uri = uri;
+            this.announced = announced;
+            this.error = error;
+        }
+    }
+
+}
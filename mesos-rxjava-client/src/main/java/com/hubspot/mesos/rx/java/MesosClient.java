@@ -20,48 +20,78 @@ import static com.hubspot.mesos.rx.java.util.UserAgentEntries.userAgentEntryForG
 import static com.hubspot.mesos.rx.java.util.UserAgentEntries.userAgentEntryForMavenArtifact;
 import static rx.Observable.just;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.hubspot.mesos.rx.java.recordio.OversizedMessagePolicy;
+import com.hubspot.mesos.rx.java.recordio.ReadControl;
+import com.hubspot.mesos.rx.java.recordio.RecordIOByteBufOperator;
+import com.hubspot.mesos.rx.java.recordio.RecordIOMessageOperator;
 import com.hubspot.mesos.rx.java.recordio.RecordIOOperator;
+import com.hubspot.mesos.rx.java.util.ByteBufMessageCodec;
 import com.hubspot.mesos.rx.java.util.MessageCodec;
 import com.hubspot.mesos.rx.java.util.UserAgent;
 import com.hubspot.mesos.rx.java.util.UserAgentEntry;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.reactivex.netty.RxNetty;
+import io.reactivex.netty.channel.ObservableConnection;
+import io.reactivex.netty.client.MaxConnectionsBasedStrategy;
 import io.reactivex.netty.protocol.http.client.HttpClient;
+import io.reactivex.netty.protocol.http.client.HttpClientBuilder;
 import io.reactivex.netty.protocol.http.client.HttpClientPipelineConfigurator;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
 import io.reactivex.netty.protocol.http.client.HttpResponseHeaders;
 import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
 import rx.Subscriber;
 import rx.Subscription;
 import rx.exceptions.Exceptions;
 import rx.functions.Func1;
+import rx.schedulers.Schedulers;
 
 /**
  * This class performs the necessary work to create an {@link Observable} of {@code Receive} from Mesos'
@@ -84,6 +114,10 @@ public final class MesosClient<Send, Receive> {
     @NotNull
     private final URI mesosUri;
     @NotNull
+    private final LeaderResolver leaderResolver;
+    @NotNull
+    private final MessageCodec<Send> sendCodec;
+    @NotNull
     private final MessageCodec<Receive> receiveCodec;
     @NotNull
     private final Send subscribe;
@@ -99,8 +133,12 @@ public final class MesosClient<Send, Receive> {
     @NotNull
     private final AtomicReference<String> mesosStreamId = new AtomicReference<>(null);
 
+    /**
+     * The transformers configured by {@link MesosClientBuilder} only apply backpressure operators, so are agnostic
+     * to the type of message in the stream.
+     */
     @NotNull
-    private final Observable.Transformer<byte[], byte[]> backpressureTransformer;
+    private final Observable.Transformer<Object, Object> backpressureTransformer;
 
     @NotNull
     private final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> sendBackpressureTransformer;
@@ -108,24 +146,154 @@ public final class MesosClient<Send, Receive> {
     @NotNull
     private final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> onSendErrorTransformer;
 
+    @NotNull
+    private final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> coalesceTransformer;
+
+    @NotNull
+    private final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> orderingTransformer;
+
+    @NotNull
+    private final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> rateLimitTransformer;
+
+    @NotNull
+    private final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> retryTransformer;
+
+    private final boolean zeroCopyReceive;
+
+    private final boolean pipelineRecordIODecoding;
+
+    @NotNull
+    private final Scheduler receiveScheduler;
+
+    private final long maxReceiveMessageSize;
+
+    @NotNull
+    private final OversizedMessagePolicy oversizedMessagePolicy;
+
+    @Nullable
+    private final ConnectionPoolConfig sendConnectionPool;
+
+    @NotNull
+    private final ConnectionPoolMetrics sendConnectionPoolMetrics = new ConnectionPoolMetrics();
+
+    private final int maxPipelineDepth;
+
+    @Nullable
+    private final ConcurrencyLimitOperator<Send> concurrencyLimit;
+
+    @NotNull
+    private final InFlightRegistry<Send> inFlightRegistry;
+
+    /** Creates the lanes the calls of a stream are queued in, if sends are prioritized */
+    @Nullable
+    private final Supplier<PriorityOperator<Send>> priorities;
+
+    /** The lanes of the stream opened last, if sends are prioritized */
+    @NotNull
+    private final AtomicReference<PriorityOperator<Send>> sendPriority;
+
+    private final int sendHighWatermark;
+
+    private final int sendLowWatermark;
+
+    private final long reconnectInitialBackoffMillis;
+
+    private final long reconnectMaxBackoffMillis;
+
+    @Nullable
+    private final BiFunction<Send, Receive, Send> resubscribe;
+
+    @NotNull
+    private final AtomicLong resubscriptions = new AtomicLong();
+
+    @Nullable
+    private final Function<Receive, OptionalLong> heartbeatIntervalMillis;
+
+    @Nullable
+    private final Predicate<Receive> isHeartbeat;
+
+    private final int maxMissedHeartbeats;
+
+    @NotNull
+    private final TransportConfig transport;
+
+    @NotNull
+    private final Scheduler sendScheduler;
+
+    @NotNull
+    private final Scheduler callbackScheduler;
+
     MesosClient(
-        @NotNull final URI mesosUri,
+        @NotNull final List<URI> mesosUris,
         @NotNull final Function<Class<?>, UserAgentEntry> applicationUserAgentEntry,
         @NotNull final MessageCodec<Send> sendCodec,
         @NotNull final MessageCodec<Receive> receiveCodec,
         @NotNull final Send subscribe,
         @NotNull final Function<Observable<Receive>, Observable<Optional<SinkOperation<Send>>>> streamProcessor,
-        @NotNull final Observable.Transformer<byte[], byte[]> backpressureTransformer,
+        @NotNull final Observable.Transformer<Object, Object> backpressureTransformer,
         @NotNull final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> sendBackpressureTransformer,
-        @NotNull final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> onSendErrorTransformer
+        @NotNull final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> onSendErrorTransformer,
+        @NotNull final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> coalesceTransformer,
+        @NotNull final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> orderingTransformer,
+        @NotNull final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> rateLimitTransformer,
+        @NotNull final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> retryTransformer,
+        final boolean zeroCopyReceive,
+        final boolean pipelineRecordIODecoding,
+        @NotNull final Scheduler receiveScheduler,
+        final long maxReceiveMessageSize,
+        @NotNull final OversizedMessagePolicy oversizedMessagePolicy,
+        @Nullable final ConnectionPoolConfig sendConnectionPool,
+        final int maxPipelineDepth,
+        @Nullable final AimdConcurrencyLimit concurrencyLimit,
+        @NotNull final InFlightRegistry<Send> inFlightRegistry,
+        @Nullable final Supplier<PriorityOperator<Send>> priorities,
+        final int sendHighWatermark,
+        final int sendLowWatermark,
+        final long reconnectInitialBackoffMillis,
+        final long reconnectMaxBackoffMillis,
+        @Nullable final BiFunction<Send, Receive, Send> resubscribe,
+        @Nullable final Function<Receive, OptionalLong> heartbeatIntervalMillis,
+        @Nullable final Predicate<Receive> isHeartbeat,
+        final int maxMissedHeartbeats,
+        @NotNull final TransportConfig transport,
+        @NotNull final Scheduler sendScheduler,
+        @NotNull final Scheduler callbackScheduler
     ) {
-        this.mesosUri = mesosUri;
+        this.mesosUri = mesosUris.get(0);
+        this.leaderResolver = new LeaderResolver(mesosUris, MesosClient::probeLeader);
+        this.sendCodec = sendCodec;
         this.receiveCodec = receiveCodec;
         this.subscribe = subscribe;
         this.streamProcessor = streamProcessor;
         this.backpressureTransformer = backpressureTransformer;
         this.sendBackpressureTransformer = sendBackpressureTransformer;
         this.onSendErrorTransformer = onSendErrorTransformer;
+        this.coalesceTransformer = coalesceTransformer;
+        this.orderingTransformer = orderingTransformer;
+        this.rateLimitTransformer = rateLimitTransformer;
+        this.retryTransformer = retryTransformer;
+        this.zeroCopyReceive = zeroCopyReceive;
+        this.pipelineRecordIODecoding = pipelineRecordIODecoding;
+        this.receiveScheduler = receiveScheduler;
+        this.maxReceiveMessageSize = maxReceiveMessageSize;
+        this.oversizedMessagePolicy = oversizedMessagePolicy;
+        this.sendConnectionPool = sendConnectionPool;
+        this.maxPipelineDepth = maxPipelineDepth;
+        this.concurrencyLimit = concurrencyLimit != null ? new ConcurrencyLimitOperator<>(concurrencyLimit) : null;
+        this.inFlightRegistry = inFlightRegistry;
+        this.priorities = priorities;
+        this.sendPriority = new AtomicReference<>(priorities != null ? priorities.get() : null);
+        this.sendHighWatermark = sendHighWatermark;
+        this.sendLowWatermark = sendLowWatermark;
+        this.reconnectInitialBackoffMillis = reconnectInitialBackoffMillis;
+        this.reconnectMaxBackoffMillis = reconnectMaxBackoffMillis;
+        this.resubscribe = resubscribe;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.isHeartbeat = isHeartbeat;
+        this.maxMissedHeartbeats = maxMissedHeartbeats;
+        this.transport = transport;
+        this.sendScheduler = sendScheduler;
+        this.callbackScheduler = callbackScheduler;
 
         userAgent = new UserAgent(
             applicationUserAgentEntry,
@@ -133,7 +301,9 @@ public final class MesosClient<Send, Receive> {
             userAgentEntryForGradleArtifact("rxnetty")
         );
 
-        createPost = curryCreatePost(mesosUri, sendCodec, receiveCodec, userAgent, mesosStreamId);
+        createPost = curryCreatePost(
+            this.mesosUri, sendCodec, receiveCodec, userAgent, mesosStreamId, transport.getAllocator()
+        );
     }
 
     /**
@@ -149,54 +319,410 @@ public final class MesosClient<Send, Receive> {
     @NotNull
     public AwaitableSubscription openStream() {
 
-        final URI uri = resolveMesosUri(mesosUri);
+        // the clients calls are sent with are created once the leader has been found, before any event is received
+        final AtomicReference<SendHttpClient<ByteBuf, ByteBuf>> httpClient = new AtomicReference<>(null);
+        final Subscriber<SinkOperation<Send>> subscriber;
+        final PipelinedSinkSubscriber<Send> pipelinedSubscriber;
+        if (maxPipelineDepth > 0) {
+            pipelinedSubscriber = new PipelinedSinkSubscriber<>(
+                mesosUri.getHost(),
+                getPort(mesosUri),
+                transport,
+                curryCreatePipelinedPost(
+                    mesosUri, sendCodec, receiveCodec, userAgent, mesosStreamId, transport.getAllocator()
+                ),
+                maxPipelineDepth,
+                callbackScheduler
+            );
+            subscriber = pipelinedSubscriber;
+        } else {
+            pipelinedSubscriber = null;
+            final int maxInFlight = sendConnectionPool != null
+                ? sendConnectionPool.getMaxConnections()
+                : MaxConnectionsBasedStrategy.DEFAULT_MAX_CONNECTIONS;
+            subscriber = new SinkSubscriber<>(httpClient::get, createPost, maxInFlight, callbackScheduler);
+        }
 
-        final HttpClient<ByteBuf, ByteBuf> httpClient = RxNetty.<ByteBuf, ByteBuf>newHttpClientBuilder(uri.getHost(), getPort(uri))
-            .withName(userAgent.getEntries().get(0).getName())
-            .pipelineConfigurator(new HttpClientPipelineConfigurator<>())
-            .build();
-
-        final Observable<Receive> receives = createPost.call(subscribe)
-            .flatMap(httpClient::submit)
-            .subscribeOn(Rx.io())
-            .flatMap(verifyResponseOk(subscribe, mesosStreamId, receiveCodec.mediaType()))
-            .lift(new RecordIOOperator())
-            .compose(backpressureTransformer)
-            .observeOn(Rx.compute())
-            /* Begin temporary back-pressure */
-            .buffer(250, TimeUnit.MILLISECONDS)
-            .flatMap(Observable::from)
-            /* end temporary back-pressure */
-            .map(receiveCodec::decode)
-            ;
-
-        final Observable<SinkOperation<Send>> sends = streamProcessor.apply(receives)
-            .filter(Optional::isPresent)
-            .map(Optional::get);
-
-        final Subscriber<SinkOperation<Send>> subscriber = new SinkSubscriber<>(httpClient, createPost);
+        final ChannelReadControl readControl = new ChannelReadControl();
+        final HeartbeatMonitor<Receive> heartbeatMonitor = heartbeatIntervalMillis != null && isHeartbeat != null
+            ? new HeartbeatMonitor<>(
+                heartbeatIntervalMillis, isHeartbeat, maxMissedHeartbeats, readControl, Rx.asynchronous(receiveScheduler)
+            )
+            : null;
+        final int prewarmConnections = sendConnectionPool != null ? sendConnectionPool.getMinConnections() : 0;
+        final AtomicReference<URI> leader = new AtomicReference<>(null);
+        // the subscribe call sent by the next subscription, which the events of this one may update
+        final AtomicReference<Send> subscribeCall = new AtomicReference<>(subscribe);
+        final Func1<URI, Observable<ByteBuf>> subscribeTo = leaderUri -> {
+            if (!leaderUri.equals(leader.getAndSet(leaderUri))) {
+                // calls are sent to the new leader from now on
+                final SendHttpClient<ByteBuf, ByteBuf> previous = httpClient.getAndSet(createSendClient(leaderUri));
+                if (previous != null) {
+                    previous.shutdown();
+                }
+                if (pipelinedSubscriber != null) {
+                    pipelinedSubscriber.redirect(
+                        leaderUri.getHost(),
+                        getPort(leaderUri),
+                        curryCreatePipelinedPost(
+                            leaderUri, sendCodec, receiveCodec, userAgent, mesosStreamId, transport.getAllocator()
+                        )
+                    );
+                }
+            }
+            final HttpClient<ByteBuf, ByteBuf> streamClient = createStreamClient(leaderUri, readControl);
+            final Send call = subscribeCall.get();
+            return createPost.call(call)
+                .flatMap(streamClient::submit)
+                .doOnNext(resp -> {
+                    if (prewarmConnections > 0 && resp.getStatus().code() == 200) {
+                        prewarm(httpClient.get(), prewarmConnections);
+                    }
+                })
+                // requests must reach the connection as soon as it is established rather than be scheduled on the
+                // receive scheduler, otherwise the response can arrive before anything has been requested
+                .subscribeOn(Rx.asynchronous(receiveScheduler), false)
+                .flatMap(verifyResponseOk(call, mesosStreamId, receiveCodec.mediaType()))
+                .compose(content -> heartbeatMonitor != null ? content.lift(heartbeatMonitor.watch()) : content);
+        };
+
+        final Observable<Receive> receives;
+        if (pipelineRecordIODecoding) {
+            receives = deliver(
+                events(subscribeTo, content ->
+                    content
+                        .lift(new RecordIOMessageOperator(readControl))
+                        .map(decodeAndRelease(receiveCodec))
+                )
+                    .compose(MesosClient.<Receive>backpressure(backpressureTransformer))
+            );
+        } else if (zeroCopyReceive) {
+            receives = deliver(
+                events(subscribeTo, content ->
+                    content
+                        .lift(createRecordIOByteBufOperator(readControl))
+                        .map(decodeAndRelease(receiveCodec))
+                )
+                    .compose(MesosClient.<Receive>backpressure(backpressureTransformer))
+            );
+        } else {
+            receives = deliver(
+                events(subscribeTo, content -> content.lift(createRecordIOOperator(readControl)))
+                    .compose(MesosClient.<byte[]>backpressure(backpressureTransformer))
+            )
+                .map(receiveCodec::decode);
+        }
+
+        // heartbeats are only a sign of life, so they are not delivered to the stream processor
+        final Observable<Receive> delivered = heartbeatMonitor != null
+            ? receives.filter(heartbeatMonitor::isNotHeartbeat)
+            : receives;
+        final Observable<Receive> events = resubscribe != null
+            ? delivered.doOnNext(event -> subscribeCall.set(resubscribe.apply(subscribeCall.get(), event)))
+            : delivered;
+
+        final SendFlowControl flowControl =
+            sendHighWatermark > 0 ? new SendFlowControl(sendHighWatermark, sendLowWatermark) : null;
+        final Observable<SinkOperation<Send>> sends;
+        if (flowControl != null) {
+            sends = streamProcessor.apply(events.lift(flowControl.valve()))
+                .filter(Optional::isPresent)
+                .map(op -> flowControl.track(op.get()));
+        } else {
+            sends = streamProcessor.apply(events)
+                .filter(Optional::isPresent)
+                .map(Optional::get);
+        }
+
+        final PriorityOperator<Send> priority = priorities != null ? priorities.get() : null;
+        sendPriority.set(priority);
         final SubscriberDecorator<SinkOperation<Send>> decorator = new SubscriberDecorator<>(subscriber);
+        final InFlightRegistry.Hedges<Send> hedges = new InFlightRegistry.Hedges<>();
         final Subscription subscription = sends
-            .subscribeOn(Rx.compute())
-            .observeOn(Rx.compute())
-            .compose(sendBackpressureTransformer)
+            .compose(this::handOver)
+            .compose(coalesceTransformer)
+            // calls are classified before they wait anywhere, so that urgent calls can overtake at every stage
+            .compose(operations -> priority != null ? operations.map(priority::classify) : operations)
+            .compose(operations -> buffer(operations, priority != null))
+            .compose(orderingTransformer)
+            .compose(retryTransformer)
+            // hedged attempts are subject to the same limits as the calls they hedge
+            .compose(hedges::mergeInto)
+            .compose(rateLimitTransformer)
+            .compose(operations -> priority != null ? operations.lift(priority) : operations)
+            .compose(this::limitConcurrency)
+            .compose(operations -> inFlightRegistry.track(operations, hedges))
+            .map(leaderResolver::track)
             .compose(onSendErrorTransformer)
+            .compose(operations -> releaseOnTermination(operations, flowControl))
             .subscribe(decorator);
 
         return new ObservableAwaitableSubscription(Observable.from(exec.submit(decorator)), subscription);
     }
 
     /**
-     * The Mesos HTTP Scheduler API will send a redirect to a client if it is not the leader. The client that is
-     * constructed during {@link #openStream} is bound to a specific host and port, due to this behavior
-     * we "probe" Mesos to try and find out where it's "master" is before we configure the client.
+     * @return The number of times the event stream has been subscribed to again after it was lost, as configured by
+     *         {@link MesosClientBuilder#reconnect(long, long, TimeUnit)}
+     */
+    public long getResubscribeCount() {
+        return resubscriptions.get();
+    }
+
+    /**
+     * Returns a snapshot of the activity of the pool of connections used to send calls to Mesos, as configured by
+     * {@link MesosClientBuilder#sendConnectionPool(int, int, long, java.util.concurrent.TimeUnit)}.
+     *
+     * @return The current statistics of the send connection pool
+     */
+    @NotNull
+    public ConnectionPoolStats getSendConnectionPoolStats() {
+        return sendConnectionPoolMetrics.snapshot();
+    }
+
+    /**
+     * Returns a snapshot of the adaptive limit on the number of calls in flight to Mesos, as configured by
+     * {@link MesosClientBuilder#adaptiveConcurrencyLimit(int, int, int, long, java.util.concurrent.TimeUnit)}.
+     *
+     * @return The current state of the concurrency limit, or {@link Optional#empty()} if no limit was configured
+     */
+    @NotNull
+    public Optional<ConcurrencyLimitStats> getConcurrencyLimitStats() {
+        return Optional.ofNullable(concurrencyLimit).map(ConcurrencyLimitOperator::snapshot);
+    }
+
+    /**
+     * Returns the number of calls waiting to be sent in each priority class, as configured by
+     * {@link MesosClientBuilder#prioritizeSends(Function, int, int, int)}.
+     *
+     * @return The backlog of each priority class of the stream opened last, or {@link Optional#empty()} if sends are
+     *         not prioritized
+     */
+    @NotNull
+    public Optional<Map<SendPriority, Integer>> getSendBacklog() {
+        return Optional.ofNullable(sendPriority.get()).map(PriorityOperator::snapshot);
+    }
+
+    /**
+     * @return The number of calls that have been sent to Mesos and have not yet been completed or failed
+     */
+    public int getInFlightCallCount() {
+        return inFlightRegistry.size();
+    }
+
+    /**
+     * @return The number of hedged attempts sent for calls, as configured by
+     *         {@link MesosClientBuilder#hedgeCalls(java.util.function.Predicate, double)}
+     */
+    public long getHedgedAttemptCount() {
+        return inFlightRegistry.getHedgedAttempts();
+    }
+
+    /**
+     * Creates the client used to send calls to the master at {@code uri}.
+     */
+    @NotNull
+    private SendHttpClient<ByteBuf, ByteBuf> createSendClient(@NotNull final URI uri) {
+        final SendHttpClient.Builder<ByteBuf, ByteBuf> httpClientBuilder =
+            new SendHttpClient.Builder<>(uri.getHost(), getPort(uri));
+        transport.applyTo(httpClientBuilder)
+            .withName(userAgent.getEntries().get(0).getName())
+            .pipelineConfigurator(new HttpClientPipelineConfigurator<>());
+        if (sendConnectionPool != null) {
+            httpClientBuilder
+                .withMaxConnections(sendConnectionPool.getMaxConnections())
+                .withIdleConnectionsTimeoutMillis(sendConnectionPool.getIdleTimeoutMillis());
+        }
+        final SendHttpClient<ByteBuf, ByteBuf> httpClient = httpClientBuilder.build();
+        httpClient.subscribe(sendConnectionPoolMetrics);
+        return httpClient;
+    }
+
+    /**
+     * Creates the client the event stream is received from the master at {@code uri} with.
+     * <p>
+     * The event stream gets a connection of its own so that reading from it can be paused while there is no demand
+     * for events, without affecting the connections used to send calls to Mesos.
+     */
+    @NotNull
+    private HttpClient<ByteBuf, ByteBuf> createStreamClient(
+        @NotNull final URI uri,
+        @NotNull final ChannelReadControl readControl
+    ) {
+        final HttpClientBuilder<ByteBuf, ByteBuf> streamClientBuilder = transport.applyTo(RxNetty.<ByteBuf, ByteBuf>newHttpClientBuilder(uri.getHost(), getPort(uri)))
+            .withName(userAgent.getEntries().get(0).getName())
+            .withNoConnectionPooling()
+            .pipelineConfigurator(new HttpClientPipelineConfigurator<>())
+            .appendPipelineConfigurator(readControl);
+        if (pipelineRecordIODecoding) {
+            streamClientBuilder.appendPipelineConfigurator(
+                new RecordIOPipelineConfigurator(maxReceiveMessageSize, oversizedMessagePolicy)
+            );
+        }
+        return streamClientBuilder.build();
+    }
+
+    /**
+     * Subscribes to the event stream of the leading master using {@code subscribeTo}, and decodes its content using
+     * {@code decode}.
+     * <p>
+     * If the client has been configured to reconnect, a stream that fails or is closed by Mesos is subscribed to again
+     * after a jittered exponential backoff, at whichever master is leading by then and with the stream ID cleared, so
+     * that the events of each subscription are delivered into the same stream. The backoff starts over once content is
+     * received from a new subscription.
+     */
+    @NotNull
+    private <T> Observable<T> events(
+        @NotNull final Func1<URI, Observable<ByteBuf>> subscribeTo,
+        @NotNull final Func1<Observable<ByteBuf>, Observable<T>> decode
+    ) {
+        if (reconnectInitialBackoffMillis <= 0) {
+            return decode.call(leaderResolver.resolve().flatMap(subscribeTo))
+                .doOnError(leaderResolver::onError);
+        }
+        final AtomicBoolean subscribed = new AtomicBoolean(false);
+        final AtomicInteger failures = new AtomicInteger(0);
+        return Observable
+            .defer(() -> {
+                if (subscribed.getAndSet(true)) {
+                    resubscriptions.incrementAndGet();
+                    // the stream ID belongs to the lost subscription, Mesos assigns a new one to the next
+                    mesosStreamId.set(null);
+                }
+                return decode.call(leaderResolver.resolve().flatMap(subscribeTo).doOnNext(buf -> failures.set(0)))
+                    .concatWith(Observable.error(new IOException("Event stream closed by Mesos")))
+                    .doOnError(leaderResolver::onError);
+            })
+            .retryWhen(errors -> errors.flatMap(e -> {
+                if (!isReconnectable(e)) {
+                    return Observable.error(e);
+                }
+                final long backoffMillis = RetryPolicy.jitteredBackoffMillis(
+                    reconnectInitialBackoffMillis, reconnectMaxBackoffMillis, failures.incrementAndGet()
+                );
+                LOGGER.warn("Lost the event stream from Mesos, resubscribing in {}ms", backoffMillis, e);
+                return Observable.timer(backoffMillis, TimeUnit.MILLISECONDS, Rx.asynchronous(receiveScheduler));
+            }));
+    }
+
+    /**
+     * An error of the event stream is worth resubscribing after if the connection to Mesos was lost or could not be
+     * established, or Mesos responded with anything but a client error (HTTP 4xx), which it would respond with again.
+     */
+    // @VisibleForTesting
+    static boolean isReconnectable(@NotNull final Throwable e) {
+        return getCausalChain(e).stream().anyMatch(t ->
+            t instanceof IOException
+                || t instanceof TimeoutException
+                || (t instanceof MesosException && !(t instanceof Mesos4xxException))
+        );
+    }
+
+    /**
+     * Establishes {@code count} connections and returns them to the pool of {@code httpClient}, so that the first
+     * calls sent once the subscription has been accepted do not have to wait for a connection to be established.
+     * The connections are all acquired before any of them is returned, otherwise the pool would simply hand the
+     * same connection out again.
+     */
+    // @VisibleForTesting
+    static void prewarm(@NotNull final HttpClient<ByteBuf, ByteBuf> httpClient, final int count) {
+        Observable.range(0, count)
+            .flatMap(i -> httpClient.connect())
+            .toList()
+            .subscribe(
+                connections -> connections.forEach(ObservableConnection::close),
+                e -> LOGGER.warn("Unable to pre-warm connections to Mesos", e)
+            );
+    }
+
+    /**
+     * Applies the {@link #sendBackpressureTransformer} to the stream of calls to be sent. When sends are prioritized
+     * each priority class is buffered separately and the classes are merged by {@link PriorityMerge}, so that urgent
+     * calls don't wait behind a backlog of bulk calls.
+     */
+    @NotNull
+    private Observable<SinkOperation<Send>> buffer(
+        @NotNull final Observable<SinkOperation<Send>> operations,
+        final boolean prioritized
+    ) {
+        if (!prioritized) {
+            return operations.compose(sendBackpressureTransformer);
+        }
+        return operations.publish(classified -> {
+            final List<Observable<SinkOperation<Send>>> classes = new ArrayList<>();
+            for (final SendPriority priority : SendPriority.values()) {
+                classes.add(classified.filter(op -> op.getPriority() == priority).compose(sendBackpressureTransformer));
+            }
+            return Observable.unsafeCreate(new PriorityMerge<>(classes));
+        });
+    }
+
+    /**
+     * Releases the calls still tracked by {@code flowControl}, if flow control is enabled, once the stream of calls to
+     * be sent has terminated or been unsubscribed, as the calls it dropped would otherwise keep the event stream paused.
+     */
+    @NotNull
+    private static <Send> Observable<SinkOperation<Send>> releaseOnTermination(
+        @NotNull final Observable<SinkOperation<Send>> operations,
+        @Nullable final SendFlowControl flowControl
+    ) {
+        return flowControl != null
+            ? operations.doOnTerminate(flowControl::releaseAll).doOnUnsubscribe(flowControl::releaseAll)
+            : operations;
+    }
+
+    /**
+     * Applies the {@link #concurrencyLimit}, if one was configured, to the stream of calls to be sent.
+     */
+    @NotNull
+    private Observable<SinkOperation<Send>> limitConcurrency(@NotNull final Observable<SinkOperation<Send>> operations) {
+        return concurrencyLimit != null ? operations.lift(concurrencyLimit) : operations;
+    }
+
+    /**
+     * Hands the event stream over to the {@link #receiveScheduler}, unless it is {@link Schedulers#immediate()} in
+     * which case events are delivered on the thread that received them. Either way events are only delivered as they
+     * are requested.
+     */
+    @NotNull
+    private <T> Observable<T> deliver(@NotNull final Observable<T> events) {
+        return events.compose(Rx.observeOn(receiveScheduler));
+    }
+
+    /**
+     * Subscribes to the calls output by the stream processor, and hands them over to be sent, on the
+     * {@link #sendScheduler}, unless it is {@link Schedulers#immediate()} in which case the stream is subscribed to on
+     * the thread opening it and calls are sent on the thread the stream processor output them on.
+     */
+    @NotNull
+    private Observable<SinkOperation<Send>> handOver(@NotNull final Observable<SinkOperation<Send>> sends) {
+        return Rx.isImmediate(sendScheduler) ? sends : sends.subscribeOn(sendScheduler).observeOn(sendScheduler);
+    }
+
+    @NotNull
+    private RecordIOOperator createRecordIOOperator(@NotNull final ReadControl readControl) {
+        return maxReceiveMessageSize < 0
+            ? new RecordIOOperator(readControl)
+            : new RecordIOOperator(maxReceiveMessageSize, oversizedMessagePolicy, readControl);
+    }
+
+    @NotNull
+    private RecordIOByteBufOperator createRecordIOByteBufOperator(@NotNull final ReadControl readControl) {
+        return maxReceiveMessageSize < 0
+            ? new RecordIOByteBufOperator(readControl)
+            : new RecordIOByteBufOperator(maxReceiveMessageSize, oversizedMessagePolicy, readControl);
+    }
+
+    /**
+     * The Mesos HTTP Scheduler API will send a redirect to a client if it is not the leader. The clients that are
+     * constructed during {@link #openStream} are bound to a specific host and port, due to this behavior
+     * we "probe" Mesos to try and find out where it's "master" is before we configure the clients.
      *
-     * This method will attempt to send a simple GET to {@code mesosUri}, however instead of going to the path
-     * specified, it will go to {@code /redirect} and construct a uri relative to mesosUri using the host and port
-     * returned in the Location header of the response.
+     * This method will send a simple GET to {@code mesosUri}, however instead of going to the path
+     * specified, it will go to {@code /redirect} and emit a uri relative to mesosUri using the host and port
+     * returned in the Location header of the response, or {@link Optional#empty()} if the response isn't a redirect.
      */
     @NotNull
-    private static URI resolveMesosUri(final @NotNull URI mesosUri) {
+    private static Observable<Optional<URI>> probeLeader(final @NotNull URI mesosUri) {
         final String redirectUri = createRedirectUri(mesosUri);
         LOGGER.info("Probing Mesos server at {}", redirectUri);
 
@@ -206,12 +732,13 @@ public final class MesosClient<Send, Receive> {
             HttpClient.HttpClientConfig.Builder.fromDefaultConfig()
                 .setFollowRedirect(false)
                 .build();
-        final HttpClientResponse<ByteBuf> redirectResponse =
-            RxNetty.createHttpRequest(HttpClientRequest.createGet(redirectUri), config)
-                .toBlocking()
-                .first();
-
-        return getUriFromRedirectResponse(mesosUri, redirectResponse);
+        return RxNetty.createHttpRequest(HttpClientRequest.createGet(redirectUri), config)
+            .map(redirectResponse -> {
+                final URI uri = getUriFromRedirectResponse(mesosUri, redirectResponse);
+                return redirectResponse.getStatus().equals(HttpResponseStatus.TEMPORARY_REDIRECT)
+                    ? Optional.of(uri)
+                    : Optional.<URI>empty();
+            });
     }
 
     @NotNull
@@ -290,6 +817,9 @@ public final class MesosClient<Send, Receive> {
                                 )
                             )
                         );
+                    } else if (300 <= code && code < 400) {
+                        // the master isn't leading (anymore), the leader is probed for again before resubscribing
+                        throw new MesosException(subscription, context);
                     } else if (400 <= code && code < 500) {
                         throw new Mesos4xxException(subscription, context);
                     } else if (500 <= code && code < 600) {
@@ -306,6 +836,44 @@ public final class MesosClient<Send, Receive> {
         };
     }
 
+    /**
+     * Creates a function that decodes a message framed by {@link RecordIOByteBufOperator} and then releases it,
+     * whether or not decoding was successful.
+     * <p>
+     * If {@code receiveCodec} is a {@link ByteBufMessageCodec} the message is decoded directly from the buffer,
+     * otherwise it is read through an {@link java.io.InputStream}.
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    // @VisibleForTesting
+    static <Receive> Func1<ByteBuf, Receive> decodeAndRelease(@NotNull final MessageCodec<Receive> receiveCodec) {
+        if (receiveCodec instanceof ByteBufMessageCodec) {
+            final ByteBufMessageCodec<Receive> codec = (ByteBufMessageCodec<Receive>) receiveCodec;
+            return buf -> {
+                try {
+                    return codec.decode(buf);
+                } finally {
+                    buf.release();
+                }
+            };
+        }
+        return buf -> {
+            try (ByteBufInputStream in = new ByteBufInputStream(buf, true)) {
+                return receiveCodec.decode(in);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    @NotNull
+    private static <T> Observable.Transformer<T, T> backpressure(
+        @NotNull final Observable.Transformer<Object, Object> backpressureTransformer
+    ) {
+        return (Observable.Transformer<T, T>) (Observable.Transformer<?, ?>) backpressureTransformer;
+    }
+
     // @VisibleForTesting
     static int getPort(@NotNull final URI uri) {
         final int uriPort = uri.getPort();
@@ -364,6 +932,9 @@ public final class MesosClient<Send, Receive> {
      * Decorator for {@link Subscriber} that will keep track of "complete"ness and when complete will put an
      * item onto a blocking queue. {@link Callable#call()} will then block until there is an item on the queue.
      * If the item in the queue contains an exception, that exception will be throw back up to the user.
+     * <p>
+     * The producer of the stream is handed to {@code delegate}, so that {@code delegate} determines how many items
+     * are requested.
      */
     // @VisibleForTesting
     @SuppressFBWarnings
@@ -391,6 +962,16 @@ public final class MesosClient<Send, Receive> {
             return queue.take();
         }
 
+        @Override
+        public void onStart() {
+            delegate.onStart();
+        }
+
+        @Override
+        public void setProducer(final Producer p) {
+            delegate.setProducer(p);
+        }
+
         @Override
         public void onNext(final T t) {
             try {
@@ -422,6 +1003,7 @@ public final class MesosClient<Send, Receive> {
         }
     }
 
+    @SuppressWarnings("unchecked")
     @NotNull
     // @VisibleForTesting
     static <Send, Receive> Func1<Send, Observable<HttpClientRequest<ByteBuf>>> curryCreatePost(
@@ -429,34 +1011,90 @@ public final class MesosClient<Send, Receive> {
         @NotNull final MessageCodec<Send> sendCodec,
         @NotNull final MessageCodec<Receive> receiveCodec,
         @NotNull final UserAgent userAgent,
-        @NotNull final AtomicReference<String> mesosStreamId
+        @NotNull final AtomicReference<String> mesosStreamId,
+        @NotNull final ByteBufAllocator allocator
     ) {
         return (Send s) -> {
-            final byte[] bytes = sendCodec.encode(s);
-            HttpClientRequest<ByteBuf> request = HttpClientRequest.createPost(mesosUri.getPath())
-                .withHeader("User-Agent", userAgent.toString())
-                .withHeader("Content-Type", sendCodec.mediaType())
-                .withHeader("Accept", receiveCodec.mediaType());
-
-            final String streamId = mesosStreamId.get();
-            if (streamId != null) {
-                request = request.withHeader(MESOS_STREAM_ID, streamId);
+            HttpClientRequest<ByteBuf> request = HttpClientRequest.createPost(mesosUri.getPath());
+            for (Map.Entry<String, String> header : callHeaders(mesosUri, sendCodec, receiveCodec, userAgent, mesosStreamId).entrySet()) {
+                request = request.withHeader(header.getKey(), header.getValue());
             }
-
-            final String userInfo = mesosUri.getUserInfo();
-            if (userInfo != null) {
-                request = request.withHeader(
-                    HttpHeaderNames.AUTHORIZATION.toString(),
-                    String.format("Basic %s", Base64.getEncoder().encodeToString(userInfo.getBytes()))
+            if (sendCodec instanceof ByteBufMessageCodec) {
+                // The buffer is released by Netty once it has been written to the connection
+                final ByteBuf content = ((ByteBufMessageCodec<Send>) sendCodec).encode(s, allocator);
+                return just(
+                    request
+                        .withHeader(HttpHeaderNames.CONTENT_LENGTH.toString(), String.valueOf(content.readableBytes()))
+                        .withContent(content)
                 );
             }
             return just(
                 request
-                    .withContent(bytes)
+                    .withContent(sendCodec.encode(s))
             );
         };
     }
 
+    /**
+     * Creates a function that encodes a call as a complete request for {@link PipelinedSinkSubscriber}, with the
+     * same headers as the requests created by {@link #curryCreatePost}. Since the request is written to a plain
+     * Netty channel, the {@code Host} and {@code Content-Length} headers are set here rather than by RxNetty.
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    // @VisibleForTesting
+    static <Send, Receive> Func1<Send, FullHttpRequest> curryCreatePipelinedPost(
+        @NotNull final URI mesosUri,
+        @NotNull final MessageCodec<Send> sendCodec,
+        @NotNull final MessageCodec<Receive> receiveCodec,
+        @NotNull final UserAgent userAgent,
+        @NotNull final AtomicReference<String> mesosStreamId,
+        @NotNull final ByteBufAllocator allocator
+    ) {
+        final String host = mesosUri.getHost() + ":" + getPort(mesosUri);
+        return (Send s) -> {
+            final ByteBuf content = sendCodec instanceof ByteBufMessageCodec
+                ? ((ByteBufMessageCodec<Send>) sendCodec).encode(s, allocator)
+                : Unpooled.wrappedBuffer(sendCodec.encode(s));
+            final FullHttpRequest request = new DefaultFullHttpRequest(
+                HttpVersion.HTTP_1_1, HttpMethod.POST, mesosUri.getPath(), content
+            );
+            callHeaders(mesosUri, sendCodec, receiveCodec, userAgent, mesosStreamId).forEach(request.headers()::set);
+            request.headers()
+                .set(HttpHeaderNames.HOST, host)
+                .setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+            return request;
+        };
+    }
+
+    @NotNull
+    private static <Send, Receive> Map<String, String> callHeaders(
+        @NotNull final URI mesosUri,
+        @NotNull final MessageCodec<Send> sendCodec,
+        @NotNull final MessageCodec<Receive> receiveCodec,
+        @NotNull final UserAgent userAgent,
+        @NotNull final AtomicReference<String> mesosStreamId
+    ) {
+        final Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("User-Agent", userAgent.toString());
+        headers.put("Content-Type", sendCodec.mediaType());
+        headers.put("Accept", receiveCodec.mediaType());
+
+        final String streamId = mesosStreamId.get();
+        if (streamId != null) {
+            headers.put(MESOS_STREAM_ID, streamId);
+        }
+
+        final String userInfo = mesosUri.getUserInfo();
+        if (userInfo != null) {
+            headers.put(
+                HttpHeaderNames.AUTHORIZATION.toString(),
+                String.format("Basic %s", Base64.getEncoder().encodeToString(userInfo.getBytes(StandardCharsets.UTF_8)))
+            );
+        }
+        return headers;
+    }
+
     static List<Throwable> getCausalChain(Throwable throwable) {
        if (throwable == null) {
            return Collections.emptyList();
@@ -20,18 +20,34 @@ import static com.hubspot.mesos.rx.java.util.Validations.checkNotNull;
 
 import java.net.ConnectException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import com.hubspot.mesos.rx.java.recordio.OversizedMessagePolicy;
+import com.hubspot.mesos.rx.java.recordio.RecordIOByteBufOperator;
+import com.hubspot.mesos.rx.java.recordio.RecordIODecoder;
+import com.hubspot.mesos.rx.java.recordio.RecordIOOperator;
+import com.hubspot.mesos.rx.java.util.ByteBufMessageCodec;
 import com.hubspot.mesos.rx.java.util.MessageCodec;
 import com.hubspot.mesos.rx.java.util.UserAgentEntry;
 
+import io.netty.buffer.ByteBufAllocator;
 import rx.BackpressureOverflow;
 import rx.Observable;
+import rx.Scheduler;
 import rx.functions.Action0;
+import rx.schedulers.Schedulers;
 
 /**
  * Builder used to create a {@link MesosClient}.
@@ -42,15 +58,49 @@ import rx.functions.Action0;
  */
 public final class MesosClientBuilder<Send, Receive> {
 
-    private URI mesosUri;
+    private List<URI> mesosUris;
     private Function<Class<?>, UserAgentEntry> applicationUserAgentEntry;
     private MessageCodec<Send> sendCodec;
     private MessageCodec<Receive> receiveCodec;
     private Send subscribe;
-    private Function<Observable<Receive>, Observable<Optional<SinkOperation<Send>>>> streamProcessor;
-    private Observable.Transformer<byte[], byte[]> backpressureTransformer;
+    /* the stream processor, coalescing and rate limiting are created by build(), once their scheduler is known */
+    private Function<Scheduler, Function<Observable<Receive>, Observable<Optional<SinkOperation<Send>>>>>
+        streamProcessor;
+    private Observable.Transformer<Object, Object> backpressureTransformer;
     private Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> sendEventBackpressureTransformer;
     private Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> onSendErrorTransformer = observable -> observable;
+    private Function<Scheduler, Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>>> coalesceTransformer =
+        scheduler -> observable -> observable;
+    private Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> orderingTransformer = observable -> observable;
+    private Function<Scheduler, Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>>> rateLimitTransformer =
+        scheduler -> observable -> observable;
+    private boolean zeroCopyReceive = false;
+    private boolean pipelineRecordIODecoding = false;
+    private Scheduler receiveScheduler = Rx.compute();
+    private long maxReceiveMessageSize = -1;
+    private OversizedMessagePolicy oversizedMessagePolicy = OversizedMessagePolicy.FAIL;
+    private ConnectionPoolConfig sendConnectionPool;
+    private int maxPipelineDepth = 0;
+    private AimdConcurrencyLimit concurrencyLimit;
+    private long callDeadlineMillis = 0;
+    private Predicate<Send> hedgeable;
+    private double hedgePercentile;
+    private Function<Send, ?> orderingKey;
+    private RetryPolicy<Send> retryPolicy;
+    private Function<Send, SendPriority> priorityClassifier;
+    private int[] priorityWeights;
+    private int priorityCapacity;
+    private int sendHighWatermark = 0;
+    private int sendLowWatermark = 0;
+    private long reconnectInitialBackoffMillis = 0;
+    private long reconnectMaxBackoffMillis = 0;
+    private BiFunction<Send, Receive, Send> resubscribe;
+    private Function<Receive, OptionalLong> heartbeatIntervalMillis;
+    private Predicate<Receive> isHeartbeat;
+    private int maxMissedHeartbeats;
+    private TransportConfig transport = TransportConfig.DEFAULT;
+    private Scheduler sendScheduler = Rx.compute();
+    private Scheduler callbackScheduler = Rx.compute();
 
     private MesosClientBuilder() {
         backpressureTransformer = observable -> observable;
@@ -84,7 +134,30 @@ public final class MesosClientBuilder<Send, Receive> {
     public MesosClientBuilder<Send, Receive> mesosUri(
         @NotNull final URI mesosUri
     ) {
-        this.mesosUri = mesosUri;
+        this.mesosUris = Collections.singletonList(mesosUri);
+        return this;
+    }
+
+    /**
+     * The {@link URI}s of each of the masters of the Mesos cluster, any of which may be the leader. When the stream is
+     * opened every master is probed concurrently, and the leader announced by the first one to respond is used, so
+     * that masters that are down do not delay finding the leader. The leader is remembered until the connection to it
+     * fails or it redirects a call to another master.
+     * <p>
+     * Each URI must have the same path and user info, since those of the first URI are used for every call, in the
+     * same way as for {@link #mesosUri(URI)}.
+     *
+     * @param mesosUris    Fully qualified URIs of each of the masters
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> mesosUris(
+        @NotNull final List<URI> mesosUris
+    ) {
+        if (mesosUris.isEmpty()) {
+            throw new IllegalArgumentException("At least one URI is required");
+        }
+        this.mesosUris = new ArrayList<>(mesosUris);
         return this;
     }
 
@@ -170,7 +243,52 @@ public final class MesosClientBuilder<Send, Receive> {
     public MesosClientBuilder<Send, Receive> processStream(
         @NotNull final Function<Observable<Receive>, Observable<Optional<SinkOperation<Send>>>> streamProcessing
     ) {
-        this.streamProcessor = streamProcessing;
+        this.streamProcessor = scheduler -> streamProcessing;
+        return this;
+    }
+
+    /**
+     * A variant of {@link #processStream(Function)} where the stream is processed in batches, allowing the cost of
+     * processing each event (for example looking up framework state while evaluating offers) to be amortised across
+     * a whole batch.
+     * <p>
+     * Events are collected into batches of at most {@code maxBatchSize} events, and each batch is handed to the
+     * user once it is full or {@code maxBatchDelay} after its first event was received, whichever is sooner. Batches
+     * are only collected as the user requests them, so a slow consumer still applies backpressure to the event
+     * stream.
+     * <p>
+     * Batching only applies to the processing of events, not to sending calls: the Mesos HTTP APIs accept a single
+     * call per request, so there is no way to submit a list of {@link SinkOperation}s to Mesos as one unit. Each list
+     * output by the function is flattened as soon as it is received, and its operations are then sent one request per
+     * operation, exactly as if they had been output one at a time by {@link #processStream(Function)}, each going
+     * through any coalescing, ordering, retries, rate limiting and concurrency limit configured and completing or
+     * failing on its own. To save on the cost of a request per call, combine calls before returning them (for example
+     * a single {@code DECLINE} or {@code ACKNOWLEDGE} for several offers or updates), configure
+     * {@link #coalesceSends(int, long, TimeUnit, Function)}, or send calls over a single connection with
+     * {@link #pipelinedSends(int)}.
+     *
+     * @param maxBatchSize       The maximum number of events in a batch
+     * @param maxBatchDelay      The maximum time to wait for a batch to fill once its first event has been received
+     * @param unit               The unit of {@code maxBatchDelay}
+     * @param streamProcessing   The function that will be woven between the event spout and the call sink
+     * @return this builder (allowing for further chained calls)
+     * @see #processStream(Function)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> processStreamBatched(
+        final int maxBatchSize,
+        final long maxBatchDelay,
+        @NotNull final TimeUnit unit,
+        @NotNull final Function<Observable<List<Receive>>, Observable<List<SinkOperation<Send>>>> streamProcessing
+    ) {
+        this.streamProcessor = scheduler -> {
+            final BatchOperator<Receive> batchOperator =
+                new BatchOperator<>(maxBatchSize, maxBatchDelay, unit, scheduler);
+            return events ->
+                streamProcessing.apply(events.lift(batchOperator))
+                    .flatMapIterable(operations -> operations)
+                    .map(Optional::of);
+        };
         return this;
     }
 
@@ -182,6 +300,10 @@ public final class MesosClientBuilder<Send, Receive> {
      * As an example, this may be necessary for Mesos schedulers that launch large numbers
      * of tasks at a time and then request reconciliation.
      *
+     * By default the client stops reading from its connection to Mesos while events are not being
+     * requested, so a buffer is not required to avoid a MissingBackpressureException. Configuring one
+     * allows the connection to continue to be read at the expense of holding the buffered events in memory.
+     *
      * @return this builder (allowing for further chained calls)
      * @see <a href="http://reactivex.io/documentation/operators/backpressure.html">ReactiveX operators documentation: backpressure operators</a>
      */
@@ -233,7 +355,7 @@ public final class MesosClientBuilder<Send, Receive> {
      * Instructs the SinkOperation<Send> stream to be composed with reactive pull backpressure such that
      * a burst of outgoing Mesos messages is handled by a bounded buffer rather than a
      * MissingBackpressureException. If the buffer is overflown, a {@link java.nio.BufferOverflowException}
-     * is thrown.
+     * is thrown, and the calls still buffered are failed with it.
      *
      * @param capacity number of slots available in the buffer.
      * @return this builder (allowing for further chained calls)
@@ -243,7 +365,7 @@ public final class MesosClientBuilder<Send, Receive> {
     public MesosClientBuilder<Send, Receive> onSendEventBackpressureBuffer(
         final long capacity
     ) {
-        this.sendEventBackpressureTransformer = observable -> observable.onBackpressureBuffer(capacity);
+        this.sendEventBackpressureTransformer = SendBuffer.create(capacity, null, BackpressureOverflow.ON_OVERFLOW_ERROR);
         return this;
     }
 
@@ -302,6 +424,10 @@ public final class MesosClientBuilder<Send, Receive> {
      *     {@code onOverflow} to signal the overflow to the producer.</li>
      * </ul>
      *
+     * A call dropped from the buffer is failed with a {@link java.util.concurrent.CancellationException}, and the calls
+     * still buffered when the buffer overflows with {@link BackpressureOverflow#ON_OVERFLOW_ERROR} are failed with its
+     * error.
+     *
      * @param capacity number of slots available in the buffer.
      * @param onOverflow action to execute if an item needs to be buffered, but there are no available slots.  Null is allowed.
      * @param strategy how should the {@code Observable} react to buffer overflows.
@@ -314,7 +440,677 @@ public final class MesosClientBuilder<Send, Receive> {
         @Nullable final Action0 onOverflow,
         @NotNull final BackpressureOverflow.Strategy strategy
     ) {
-        this.backpressureTransformer = observable -> observable.onBackpressureBuffer(capacity, onOverflow, strategy);
+        this.sendEventBackpressureTransformer = SendBuffer.create(capacity, onOverflow, strategy);
+        return this;
+    }
+
+    /**
+     * Instructs the client to frame the RecordIO event stream using {@link RecordIOByteBufOperator} rather than
+     * {@link RecordIOOperator}.
+     * <p>
+     * Each message is then a retained slice of the received chunk(s) rather than a copy in a newly allocated
+     * {@code byte[]}, and is decoded (using {@link ByteBufMessageCodec#decode(io.netty.buffer.ByteBuf)} if the
+     * receive codec implements it, otherwise {@link MessageCodec#decode(java.io.InputStream)}) and released on the
+     * thread that received it. Any backpressure buffer configured for the event stream will hold decoded
+     * {@code Receive} messages rather than {@code byte[]}.
+     *
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> zeroCopyReceive() {
+        this.zeroCopyReceive = true;
+        return this;
+    }
+
+    /**
+     * Instructs the client to frame the RecordIO event stream using a {@link RecordIODecoder} installed in the
+     * Netty pipeline of the connection the stream is received on, rather than an operator applied after RxNetty
+     * has delivered the content of the response.
+     * <p>
+     * Framing then runs on the event loop, accumulating partial messages in a pooled buffer, and messages are
+     * decoded and released on the thread that received them as with {@link #zeroCopyReceive()}.
+     *
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> pipelineRecordIODecoding() {
+        this.pipelineRecordIODecoding = true;
+        return this;
+    }
+
+    /**
+     * Instructs the client to deliver each event to the stream processor on the thread that received it, rather
+     * than handing events over to the {@link Rx#compute() computation scheduler} first.
+     * <p>
+     * Events are still only delivered as they are requested, so each event is forwarded as soon as it has been
+     * decoded and requested by the stream processor. Since the processor then runs on the Netty event loop, it
+     * must not block; any blocking or long running work should be moved to another scheduler by the processor.
+     * <p>
+     * This is the same as configuring {@link Schedulers#immediate()} as the {@link #receiveScheduler(Scheduler)}.
+     *
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> lowLatencyReceive() {
+        this.receiveScheduler = Schedulers.immediate();
+        return this;
+    }
+
+    /**
+     * The {@link Scheduler} events are handed over to once they have been received, and that the stream processor
+     * runs on. When not configured the {@link Rx#compute() computation scheduler} is used, which is shared with
+     * everything else in the JVM using RxJava's schedulers; a client can be isolated from other work by giving it a
+     * scheduler of its own, for instance one created with {@link Schedulers#from(java.util.concurrent.Executor)}.
+     * <p>
+     * With {@link Schedulers#immediate()} events are delivered on the Netty event loop that received them, as with
+     * {@link #lowLatencyReceive()}. Events that are framed and decoded in the pipeline of the connection (see
+     * {@link #pipelineRecordIODecoding()} and {@link #zeroCopyReceive()}) are always decoded on the event loop,
+     * otherwise they are decoded on this scheduler.
+     * <p>
+     * The timers of the receive side also run on this scheduler: the batches of
+     * {@link #processStreamBatched(int, long, TimeUnit, Function)}, the heartbeat deadline of
+     * {@link #detectStalls(Function, Predicate, int)} and the backoff of {@link #reconnect(long, long, TimeUnit)},
+     * as does subscribing to the event stream. With {@link Schedulers#immediate()}, which would block the event loop
+     * while waiting, they run on the {@link Rx#compute() computation scheduler} instead.
+     *
+     * @param receiveScheduler    The scheduler events are delivered to the stream processor on
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> receiveScheduler(@NotNull final Scheduler receiveScheduler) {
+        this.receiveScheduler = receiveScheduler;
+        return this;
+    }
+
+    /**
+     * The {@link Scheduler} the calls output by the stream processor are handed over to before being coalesced,
+     * ordered, rate limited and sent. When not configured the {@link Rx#compute() computation scheduler} is used.
+     * <p>
+     * With {@link Schedulers#immediate()} calls are not handed over at all, but are sent on the thread the stream
+     * processor output them on, saving a thread hop per call. Since every step of sending a call is asynchronous,
+     * this is only worth avoiding if the stream processor outputs calls on a thread that must not be held up, such
+     * as the Netty event loop.
+     * <p>
+     * The timers of the send side also run on this scheduler: the batches of
+     * {@link #coalesceSends(int, long, TimeUnit, Function)}, the tokens of
+     * {@link #rateLimitSends(Function, double, int)}, the backoff of {@link #retryPolicy(RetryPolicy)} and the
+     * deadlines and hedges of
+     * {@link #callDeadline(long, TimeUnit)} and {@link #hedgeCalls}. With {@link Schedulers#immediate()} they run on
+     * the {@link Rx#compute() computation scheduler} instead.
+     *
+     * @param sendScheduler    The scheduler calls are sent on
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> sendScheduler(@NotNull final Scheduler sendScheduler) {
+        this.sendScheduler = sendScheduler;
+        return this;
+    }
+
+    /**
+     * The {@link Scheduler} the callbacks of each {@link SinkOperation} are invoked on once Mesos has responded to
+     * its call. When not configured the {@link Rx#compute() computation scheduler} is used.
+     * <p>
+     * With {@link Schedulers#immediate()} callbacks are invoked on the Netty event loop that received the response,
+     * in which case they must not block.
+     *
+     * @param callbackScheduler    The scheduler the callbacks of each {@link SinkOperation} are invoked on
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> callbackScheduler(@NotNull final Scheduler callbackScheduler) {
+        this.callbackScheduler = callbackScheduler;
+        return this;
+    }
+
+    /**
+     * Configures the size of the largest message that will be accepted from the event stream, and what should
+     * happen when a larger message is encountered. When not configured the largest message that can be
+     * represented by the RecordIO operator in use is accepted, and larger messages fail the stream.
+     *
+     * @param maxReceiveMessageSize     The size in bytes of the largest message that should be decoded. Must not be
+     *                                  larger than the largest message supported by the RecordIO operator in use.
+     * @param oversizedMessagePolicy    Whether a larger message should fail the stream or be skipped.
+     * @return this builder (allowing for further chained calls)
+     * @see OversizedMessagePolicy
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> maxReceiveMessageSize(
+        final long maxReceiveMessageSize,
+        @NotNull final OversizedMessagePolicy oversizedMessagePolicy
+    ) {
+        this.maxReceiveMessageSize = maxReceiveMessageSize;
+        this.oversizedMessagePolicy = oversizedMessagePolicy;
+        return this;
+    }
+
+    /**
+     * Configures the pool of keep-alive connections that calls are sent to Mesos on. When not configured the
+     * defaults of RxNetty are used, and connections are only established as calls are sent.
+     * <p>
+     * Once Mesos has accepted the subscribe call {@code minConnections} connections are established up front, so
+     * that a burst of calls sent in response to the first events (for instance launching tasks on the initial
+     * offers) does not have to wait for each connection to be established. At most {@code maxConnections} calls are
+     * in flight at any time, further calls are only requested from the stream of {@link SinkOperation}s as earlier
+     * calls are answered, so any backpressure buffer configured with {@link #onSendEventBackpressureBuffer()} will
+     * hold the calls waiting for a connection. A connection that has been idle for {@code idleTimeout} is closed.
+     * <p>
+     * The activity of the pool is available from {@link MesosClient#getSendConnectionPoolStats()}.
+     *
+     * @param minConnections    The number of connections to establish once the subscription has been accepted
+     * @param maxConnections    The maximum number of connections to Mesos used to send calls
+     * @param idleTimeout       How long a connection may be idle before it is closed
+     * @param unit              The unit of {@code idleTimeout}
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> sendConnectionPool(
+        final int minConnections,
+        final int maxConnections,
+        final long idleTimeout,
+        @NotNull final TimeUnit unit
+    ) {
+        this.sendConnectionPool = new ConnectionPoolConfig(minConnections, maxConnections, idleTimeout, unit);
+        return this;
+    }
+
+    /**
+     * Instructs the client to use Netty's native epoll transport for its connections to Mesos when it is available,
+     * which saves a system call per read and write compared to the default NIO transport. Every client using the
+     * native transport shares a single event loop.
+     * <p>
+     * The native library is only available on Linux, and only if the {@code netty-transport-native-epoll} artifact
+     * with the classifier of the platform (for instance {@code linux-x86_64}) is on the classpath. When it isn't
+     * available the NIO transport is used.
+     *
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> nativeTransport() {
+        this.transport = transport.withNativeTransport();
+        return this;
+    }
+
+    /**
+     * The allocator used for the buffers of every connection to Mesos, and for the content of calls encoded by a
+     * {@link ByteBufMessageCodec}. Defaults to
+     * {@link io.netty.buffer.PooledByteBufAllocator#DEFAULT}.
+     * <p>
+     * A pooled allocator preferring direct buffers ({@code new PooledByteBufAllocator(true)}) saves copying the
+     * content of each buffer when it is read from or written to the socket, while one preferring heap buffers
+     * ({@code new PooledByteBufAllocator(false)}) avoids reserving memory outside of the heap, which may be preferable
+     * when received messages are copied onto the heap to be decoded anyway.
+     *
+     * @param allocator    The allocator to use
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> byteBufAllocator(@NotNull final ByteBufAllocator allocator) {
+        this.transport = transport.withAllocator(allocator);
+        return this;
+    }
+
+    /**
+     * Sizes the buffers each read from a connection to Mesos is made into, adapting the size between
+     * {@code minimum} and {@code maximum} to the amount of data available at each read. When not configured Netty's
+     * default of 64 to 65536 bytes starting at 1024 bytes is used.
+     * <p>
+     * Raising {@code initial} to the size of the largest messages commonly received (for instance offers on a large
+     * cluster) means fewer reads are made per message.
+     *
+     * @param minimum    The smallest buffer to read into, in bytes
+     * @param initial    The size of the buffer read into before any data has been received, in bytes
+     * @param maximum    The largest buffer to read into, in bytes
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> receiveBufferSize(final int minimum, final int initial, final int maximum) {
+        this.transport = transport.withReceiveBufferSize(minimum, initial, maximum);
+        return this;
+    }
+
+    /**
+     * Sets {@code TCP_NODELAY} and {@code SO_KEEPALIVE} on every connection to Mesos. When not configured the
+     * defaults of the operating system are used.
+     * <p>
+     * Disabling Nagle's algorithm with {@code tcpNoDelay} sends each call as soon as it has been written rather than
+     * waiting to coalesce it with the next. Enabling {@code keepAlive} allows a subscription whose master has
+     * disappeared without closing the connection to eventually be detected by the operating system.
+     *
+     * @param tcpNoDelay    Whether {@code TCP_NODELAY} is set
+     * @param keepAlive     Whether {@code SO_KEEPALIVE} is set
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> socketOptions(final boolean tcpNoDelay, final boolean keepAlive) {
+        this.transport = transport.withSocketOptions(tcpNoDelay, keepAlive);
+        return this;
+    }
+
+    /**
+     * Instructs the client to coalesce the {@link SinkOperation}s output by the stream processor before they are sent
+     * to Mesos, so that compatible calls can be merged and sent as a single request.
+     * <p>
+     * Operations are collected into batches of at most {@code maxBatchSize} operations, each batch being handed to
+     * {@code coalescer} once it is full or {@code maxBatchDelay} after its first operation was received, whichever is
+     * sooner. The operations returned by {@code coalescer} are then sent in the order they are returned. A
+     * coalescer that merges operations is expected to return an operation that invokes the callbacks of each of the
+     * operations it replaces.
+     *
+     * @param maxBatchSize      The maximum number of operations handed to {@code coalescer} at once
+     * @param maxBatchDelay     The maximum time an operation will be held waiting for a batch to fill
+     * @param unit              The unit of {@code maxBatchDelay}
+     * @param coalescer         The function used to merge the operations of a batch
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> coalesceSends(
+        final int maxBatchSize,
+        final long maxBatchDelay,
+        @NotNull final TimeUnit unit,
+        @NotNull final Function<List<SinkOperation<Send>>, List<SinkOperation<Send>>> coalescer
+    ) {
+        this.coalesceTransformer = scheduler -> {
+            final BatchOperator<SinkOperation<Send>> batchOperator =
+                new BatchOperator<>(maxBatchSize, maxBatchDelay, unit, scheduler);
+            return observable ->
+                observable
+                    .lift(batchOperator)
+                    .concatMapIterable(coalescer::apply);
+        };
+        return this;
+    }
+
+    /**
+     * Instructs the client to send calls to Mesos using HTTP/1.1 pipelining: calls are written back to back on a
+     * single keep-alive connection without waiting for the response to each call, and the responses are matched to
+     * the {@link SinkOperation}s in the order they were sent. Since Mesos responds to a call as soon as it has been
+     * accepted, this allows many more calls per second to be sent to a remote master than a connection per call in
+     * flight.
+     * <p>
+     * At most {@code maxPipelineDepth} calls are in flight at any time, further calls are only requested from the
+     * stream of {@link SinkOperation}s as responses are received, so any backpressure buffer configured with
+     * {@link #onSendEventBackpressureBuffer()} will hold the calls waiting to be sent. If the connection is closed
+     * while calls are in flight, each of those calls fails with an {@link java.io.IOException}.
+     * <p>
+     * When enabled the connection pool configured by {@link #sendConnectionPool(int, int, long, TimeUnit)} is not
+     * used.
+     *
+     * @param maxPipelineDepth    The maximum number of calls in flight on the connection
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> pipelinedSends(final int maxPipelineDepth) {
+        if (maxPipelineDepth <= 0) {
+            throw new IllegalArgumentException("maxPipelineDepth must be positive");
+        }
+        this.maxPipelineDepth = maxPipelineDepth;
+        return this;
+    }
+
+    /**
+     * Instructs the client to send calls with the same ordering key strictly one after another, while sending calls
+     * with different ordering keys concurrently. For instance, keying calls by task ID guarantees that the call
+     * launching a task is accepted by Mesos before the call killing it is sent, without holding up calls for any
+     * other task.
+     * <p>
+     * A call is only sent once the previous call with the same key has been completed or failed, including any
+     * retries made according to the {@link #retryPolicy(RetryPolicy) retry policy}. Calls for which
+     * {@code orderingKey} returns {@code null} are sent as soon as possible, without regard to any other call.
+     * <p>
+     * Without an ordering key, calls are sent in the order they are output by the stream processor, but may be
+     * received by Mesos in any order as each is sent as soon as possible.
+     *
+     * @param orderingKey    The function used to determine the ordering key of a call, or {@code null} if the call
+     *                       doesn't need to be ordered
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> orderSendsBy(@NotNull final Function<Send, ?> orderingKey) {
+        this.orderingKey = orderingKey;
+        final KeyedOrderingOperator<Send> orderingOperator = new KeyedOrderingOperator<>(orderingKey);
+        this.orderingTransformer = observable -> observable.lift(orderingOperator);
+        return this;
+    }
+
+    /**
+     * Instructs the client to queue the calls waiting to be sent in a lane per {@link SendPriority}, so that urgent
+     * calls, such as acknowledging status updates or killing tasks, are not held up behind a backlog of bulk calls,
+     * such as declining offers.
+     * <p>
+     * The priority of a call is the one set by
+     * {@link SinkOperations#sink(Object, SendPriority, rx.functions.Action0, rx.functions.Action1)}, otherwise the one
+     * returned by {@code classifier} ({@link SendPriority#NORMAL} if it returns {@code null}). Calls are taken from the
+     * lanes by weighted round robin: while several lanes have calls waiting, each is given a share of the calls sent
+     * proportional to its weight, so lower priority lanes are slowed down but never starved.
+     * <p>
+     * The lanes are the last place calls wait before being sent: calls held back by {@link #orderSendsBy(Function)},
+     * {@link #retryPolicy(RetryPolicy)} or {@link #rateLimitSends(Function, double, int)} only reach the lanes once they can
+     * be sent, and the {@link #adaptiveConcurrencyLimit(int, int, int, long, TimeUnit) concurrency limit}, if any, only
+     * takes calls from the lanes as it has room for them. The lanes hold at most
+     * {@value PriorityOperator#DEFAULT_CAPACITY} calls, further calls wait in the stages ahead of them. Calls are
+     * classified as soon as they are produced, once {@link #coalesceSends(int, long, TimeUnit, Function) coalesced}
+     * if they are, so that urgent calls overtake bulk calls at those stages too: the buffer configured by
+     * {@link #onSendEventBackpressureBuffer()} is kept per priority class, each with the configured capacity, and the
+     * stages above send the calls that are ready in order of priority. When an ordering key is configured, a call
+     * that has the same key as a call that has not been completed or failed yet is given the same priority, so
+     * priorities never reorder calls with the same key. The backlog of each lane of the stream opened last is
+     * available from {@link MesosClient#getSendBacklog()}.
+     *
+     * @param classifier      The function used to determine the priority of a call
+     * @param highWeight      The weight of the {@link SendPriority#HIGH HIGH} priority lane
+     * @param normalWeight    The weight of the {@link SendPriority#NORMAL NORMAL} priority lane
+     * @param lowWeight       The weight of the {@link SendPriority#LOW LOW} priority lane
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> prioritizeSends(
+        @NotNull final Function<Send, SendPriority> classifier,
+        final int highWeight,
+        final int normalWeight,
+        final int lowWeight
+    ) {
+        return prioritizeSends(classifier, highWeight, normalWeight, lowWeight, PriorityOperator.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instructs the client to queue the calls waiting to be sent in a lane per {@link SendPriority}, as
+     * {@link #prioritizeSends(Function, int, int, int)} does, holding at most {@code capacity} calls in the lanes.
+     * <p>
+     * A larger capacity lets urgent calls overtake a larger backlog of bulk calls, at the cost of holding more calls
+     * in memory; calls beyond the capacity wait in the buffer configured by {@link #onSendEventBackpressureBuffer()}.
+     *
+     * @param classifier      The function used to determine the priority of a call
+     * @param highWeight      The weight of the {@link SendPriority#HIGH HIGH} priority lane
+     * @param normalWeight    The weight of the {@link SendPriority#NORMAL NORMAL} priority lane
+     * @param lowWeight       The weight of the {@link SendPriority#LOW LOW} priority lane
+     * @param capacity        The maximum number of calls waiting in the lanes
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> prioritizeSends(
+        @NotNull final Function<Send, SendPriority> classifier,
+        final int highWeight,
+        final int normalWeight,
+        final int lowWeight,
+        final int capacity
+    ) {
+        if (highWeight <= 0 || normalWeight <= 0 || lowWeight <= 0) {
+            throw new IllegalArgumentException("weights must be positive");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.priorityClassifier = classifier;
+        this.priorityWeights = new int[] {highWeight, normalWeight, lowWeight};
+        this.priorityCapacity = capacity;
+        return this;
+    }
+
+    /**
+     * Instructs the client to stop consuming events while too many of the calls produced by the stream processor are
+     * waiting to be accepted by Mesos, so that memory stays bounded when Mesos accepts calls more slowly than the
+     * stream processor produces them.
+     * <p>
+     * Once {@code highWatermark} calls have been produced that have not yet been completed or failed, no further events
+     * are requested from the event stream until that number has dropped to {@code lowWatermark}. While events are not
+     * requested the events already received are buffered up to the capacity of the event stream's buffers, after
+     * which reading from the connection to Mesos is paused.
+     * <p>
+     * Events are requested at most {@value SendFlowControl#PREFETCH} at a time while flow control is enabled, so the
+     * number of calls waiting can exceed {@code highWatermark} by as many calls as the stream processor produces for
+     * that many events.
+     * <p>
+     * A call that the send buffer drops when it overflows (see
+     * {@link #onSendEventBackpressureBuffer(long, Action0, BackpressureOverflow.Strategy)}) is failed with a
+     * {@link java.util.concurrent.CancellationException}, which stops it counting towards the calls waiting.
+     *
+     * @param highWatermark    The number of calls waiting at which the event stream is paused
+     * @param lowWatermark     The number of calls waiting at which the event stream is resumed
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> sendFlowControl(final int highWatermark, final int lowWatermark) {
+        if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+            throw new IllegalArgumentException("0 <= lowWatermark < highWatermark required");
+        }
+        this.sendHighWatermark = highWatermark;
+        this.sendLowWatermark = lowWatermark;
+        return this;
+    }
+
+    /**
+     * Instructs the client to limit the rate at which calls are sent to Mesos, and to transparently retry calls that
+     * Mesos rejects because the framework has exceeded its rate limit.
+     * <p>
+     * Each call is assigned a token bucket according to {@code bucketKey}, for instance the type of the call, and is
+     * only sent once its bucket has a token. Each bucket allows bursts of up to {@code burst} calls and is refilled at
+     * {@code permitsPerSecond}. Calls that share a bucket are sent in the order they were output by the stream
+     * processor.
+     * <p>
+     * When Mesos responds to a call with HTTP 429 (Too Many Requests), the call is not failed. Instead, no further
+     * calls are sent until the time given by the {@code Retry-After} header of the response has passed (one second if
+     * the header is absent) and the call is then sent again ahead of the other calls in its bucket. A call that has
+     * been throttled five times is failed with the {@link Mesos4xxException} of its last attempt.
+     * <p>
+     * Calls still waiting for a token when the stream of calls fails are failed with the stream's error, and those
+     * still waiting when it is unsubscribed are failed with a {@link java.util.concurrent.CancellationException}.
+     *
+     * @param bucketKey           The function used to determine which bucket a call belongs to
+     * @param permitsPerSecond    The sustained rate at which the calls of each bucket may be sent
+     * @param burst               The number of calls of each bucket that may be sent at once after a quiet period
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> rateLimitSends(
+        @NotNull final Function<Send, ?> bucketKey,
+        final double permitsPerSecond,
+        final int burst
+    ) {
+        this.rateLimitTransformer = scheduler -> {
+            final RateLimitOperator<Send> rateLimitOperator =
+                new RateLimitOperator<>(bucketKey, permitsPerSecond, burst, scheduler);
+            return observable -> observable.lift(rateLimitOperator);
+        };
+        return this;
+    }
+
+    /**
+     * Instructs the client to limit the number of calls in flight to Mesos, adapting the limit to how quickly Mesos
+     * is accepting calls so that a slow or overloaded master isn't sent more calls than it can handle.
+     * <p>
+     * The limit grows by one for each window of calls accepted within {@code latencyThreshold}, and is cut by 10% when
+     * a call takes longer than {@code latencyThreshold} to be accepted, is rejected with an HTTP 5xx response
+     * ({@link Mesos5xxException}) or can not be sent at all. As with TCP it is cut at most once per window, so a burst of
+     * failures among calls sent under the same limit only cuts it once; calls cancelled or timed out by the client
+     * itself don't cut it at all. Calls are only requested from the stream processor while
+     * the limit has not been reached, so while it has the calls wait in the buffer configured by
+     * {@link #onSendEventBackpressureBuffer()} or the lanes configured by
+     * {@link #prioritizeSends(Function, int, int, int)}, if any, and otherwise are pushed back into the stream.
+     * <p>
+     * The current limit, along with the number of calls in flight and queued, is available from
+     * {@link MesosClient#getConcurrencyLimitStats()}.
+     *
+     * @param initialLimit        The number of calls allowed in flight when the client is created
+     * @param minLimit            The lowest the limit will be reduced to
+     * @param maxLimit            The highest the limit will be raised to
+     * @param latencyThreshold    The time a call may take to be accepted before it is considered a sign of overload
+     * @param unit                The unit of {@code latencyThreshold}
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> adaptiveConcurrencyLimit(
+        final int initialLimit,
+        final int minLimit,
+        final int maxLimit,
+        final long latencyThreshold,
+        @NotNull final TimeUnit unit
+    ) {
+        this.concurrencyLimit = new AimdConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyThreshold, unit);
+        return this;
+    }
+
+    /**
+     * Instructs the client to send each {@link SinkOperation} that fails again, as decided by {@code retryPolicy},
+     * before its {@code onError} callback is invoked.
+     * <p>
+     * Unlike {@link #onSendErrorRetry()}, which resubscribes to the whole stream of operations when the stream itself
+     * fails, the policy applies to each operation individually and can retry any kind of failure, for instance the
+     * HTTP 503 responses returned while the master fails over. When an {@link #orderSendsBy(Function) ordering key}
+     * is configured, a call waiting to be retried holds up the calls with the same key that are output after it.
+     *
+     * @param retryPolicy    The policy deciding which operations are retried and when
+     * @return this builder (allowing for further chained calls)
+     * @see RetryPolicyBuilder
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> retryPolicy(@NotNull final RetryPolicy<Send> retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * Instructs the client to fail any {@link SinkOperation} that has not been completed or failed within
+     * {@code timeout} of being sent to Mesos with a {@link java.util.concurrent.TimeoutException}, so that a call whose
+     * HTTP request stalls does not leave its callbacks waiting forever.
+     * <p>
+     * The request still sending the call is abandoned once the deadline has passed, closing the connection it was sent
+     * on so that the connection isn't held waiting for a response that is then ignored. Since a
+     * {@code TimeoutException} is classified as transient, a {@link #retryPolicy(RetryPolicy) retry policy} using the
+     * default classification will send the call again.
+     *
+     * @param timeout    The time a call is given to be accepted or rejected by Mesos
+     * @param unit       The unit of {@code timeout}
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> callDeadline(final long timeout, @NotNull final TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        this.callDeadlineMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Instructs the client to send a second, hedged, attempt of each {@link SinkOperation} for which
+     * {@code hedgeable} returns {@code true} that has not been completed or failed by the time the
+     * {@code latencyPercentile} latency of recently accepted calls has elapsed. This bounds the tail latency of the
+     * calls at the cost of sending roughly {@code 100 - latencyPercentile} percent more of them.
+     * <p>
+     * The operation is completed as soon as either attempt is accepted, and only fails once both attempts have failed.
+     * Since both attempts may be processed by Mesos, only calls that are idempotent should be hedged.
+     *
+     * @param hedgeable            The predicate deciding which calls are safe to send twice
+     * @param latencyPercentile    The percentile of recent latencies after which a second attempt is sent, e.g.
+     *                             {@code 95}
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> hedgeCalls(
+        @NotNull final Predicate<Send> hedgeable,
+        final double latencyPercentile
+    ) {
+        if (!(latencyPercentile > 0 && latencyPercentile < 100)) {
+            throw new IllegalArgumentException("latencyPercentile must be between 0 and 100");
+        }
+        this.hedgeable = hedgeable;
+        this.hedgePercentile = latencyPercentile;
+        return this;
+    }
+
+    /**
+     * Instructs the client to keep the event stream alive when the connection it is received on is lost, rather than
+     * failing the subscription returned by {@link MesosClient#openStream()}, so that the framework doesn't have to
+     * open a new stream itself when the leading master fails over.
+     * <p>
+     * When the event stream fails, or is closed by Mesos, the client waits for a random time of between half and all
+     * of an exponentially growing backoff, probes for the leading master again and sends the
+     * {@link #subscribe(Object) subscribe call} to it, without the stream ID of the lost subscription. The events of
+     * the new subscription are then delivered into the same stream processor, and calls are sent to the new leader.
+     * The backoff starts over once the new subscription delivers content. The stream is only failed if Mesos rejects
+     * the subscribe call with a client error (HTTP 4xx).
+     * <p>
+     * The subscribe call must identify the framework (e.g. carry its framework ID) for Mesos to recognise the new
+     * subscription as the same framework. A framework that subscribes without an ID is assigned one by Mesos, which
+     * the subscribe call can be updated with by {@link #resubscribeWith(BiFunction)}; otherwise the same subscribe call
+     * is sent each time, and the framework registers as a new one. Calls that were in flight when the stream was lost
+     * may fail, and the stream processor receives the events that start a subscription again.
+     *
+     * @param initialBackoff    The backoff before the first attempt to resubscribe
+     * @param maxBackoff        The most the backoff is allowed to grow to
+     * @param unit              The unit of {@code initialBackoff} and {@code maxBackoff}
+     * @return this builder (allowing for further chained calls)
+     * @see MesosClient#getResubscribeCount()
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> reconnect(
+        final long initialBackoff,
+        final long maxBackoff,
+        @NotNull final TimeUnit unit
+    ) {
+        if (initialBackoff <= 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("0 < initialBackoff <= maxBackoff required");
+        }
+        this.reconnectInitialBackoffMillis = unit.toMillis(initialBackoff);
+        this.reconnectMaxBackoffMillis = unit.toMillis(maxBackoff);
+        return this;
+    }
+
+    /**
+     * Instructs the client to update the {@link #subscribe(Object) subscribe call} from the events it receives, so
+     * that the call sent when it resubscribes after the event stream was lost (see
+     * {@link #reconnect(long, long, TimeUnit)}) carries what Mesos told the framework, such as the framework ID it
+     * was assigned by its first subscription.
+     * <p>
+     * {@code resubscribe} is applied to every event of a stream other than heartbeats, in the order they are received
+     * and before they are delivered to the stream processor, along with the subscribe call the next subscription
+     * would send, and returns the subscribe call to send instead (usually the same call). A stream opened by
+     * {@link MesosClient#openStream()} always starts out with the configured subscribe call.
+     *
+     * @param resubscribe    The function returning the subscribe call to send on resubscribing, given the call that
+     *                       would be sent and an event received
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> resubscribeWith(@NotNull final BiFunction<Send, Receive, Send> resubscribe) {
+        this.resubscribe = resubscribe;
+        return this;
+    }
+
+    /**
+     * Instructs the client to watch the event stream for the heartbeats sent by Mesos, so that a connection that has
+     * silently stopped delivering events, such as a half-open TCP connection, is torn down within a few heartbeat
+     * intervals rather than once the operating system times it out.
+     * <p>
+     * The heartbeat interval is learned from the events for which {@code heartbeatIntervalMillis} returns a value,
+     * such as the event sent when the subscription is accepted. Once nothing at all has been received for
+     * {@code maxMissedHeartbeats} intervals, the connection is closed and the event stream fails with an
+     * {@link EventStreamStalledException}, which causes the stream to be subscribed to again if the client has been
+     * configured to {@link #reconnect(long, long, TimeUnit) reconnect}. Intervals during which events were not being
+     * requested from the connection are not counted as missed.
+     * <p>
+     * Events for which {@code isHeartbeat} returns {@code true} are not delivered to the stream processor.
+     *
+     * @param heartbeatIntervalMillis    The function returning the heartbeat interval, in milliseconds, announced by
+     *                                   an event, or {@link OptionalLong#empty()} if it doesn't announce one
+     * @param isHeartbeat                The predicate deciding which events are heartbeats
+     * @param maxMissedHeartbeats        The number of intervals without anything being received after which the
+     *                                   stream is considered stalled
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public MesosClientBuilder<Send, Receive> detectStalls(
+        @NotNull final Function<Receive, OptionalLong> heartbeatIntervalMillis,
+        @NotNull final Predicate<Receive> isHeartbeat,
+        final int maxMissedHeartbeats
+    ) {
+        if (maxMissedHeartbeats < 1) {
+            throw new IllegalArgumentException("maxMissedHeartbeats must be at least 1");
+        }
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.isHeartbeat = isHeartbeat;
+        this.maxMissedHeartbeats = maxMissedHeartbeats;
         return this;
     }
 
@@ -351,16 +1147,63 @@ public final class MesosClientBuilder<Send, Receive> {
      */
     @NotNull
     public final MesosClient<Send, Receive> build() {
+        // the timers of the receive and send sides run on their schedulers, unless those run work immediately
+        final Scheduler receiveTimers = Rx.asynchronous(checkNotNull(receiveScheduler));
+        final Scheduler sendTimers = Rx.asynchronous(checkNotNull(sendScheduler));
+        final Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> retryTransformer;
+        if (retryPolicy != null) {
+            // created here so that retries keep to the ordering key whether or not orderSendsBy was called first
+            final RetryOperator<Send> retryOperator = new RetryOperator<>(retryPolicy, orderingKey, sendTimers);
+            retryTransformer = observable -> observable.lift(retryOperator);
+        } else {
+            retryTransformer = observable -> observable;
+        }
+        final Supplier<PriorityOperator<Send>> priorities;
+        if (priorityClassifier != null) {
+            final Function<Send, SendPriority> classifier = priorityClassifier;
+            final int[] weights = priorityWeights;
+            final Function<Send, ?> key = orderingKey;
+            final int capacity = priorityCapacity;
+            // each stream has lanes of its own
+            priorities = () -> new PriorityOperator<>(classifier, weights, key, capacity);
+        } else {
+            priorities = null;
+        }
         return new MesosClient<>(
-            checkNotNull(mesosUri),
+            checkNotNull(mesosUris),
             checkNotNull(applicationUserAgentEntry),
             checkNotNull(sendCodec),
             checkNotNull(receiveCodec),
             checkNotNull(subscribe),
-            checkNotNull(streamProcessor),
+            checkNotNull(streamProcessor).apply(receiveTimers),
             checkNotNull(backpressureTransformer),
             checkNotNull(sendEventBackpressureTransformer),
-            checkNotNull(onSendErrorTransformer)
+            checkNotNull(onSendErrorTransformer),
+            coalesceTransformer.apply(sendTimers),
+            checkNotNull(orderingTransformer),
+            rateLimitTransformer.apply(sendTimers),
+            retryTransformer,
+            zeroCopyReceive,
+            pipelineRecordIODecoding,
+            checkNotNull(receiveScheduler),
+            maxReceiveMessageSize,
+            checkNotNull(oversizedMessagePolicy),
+            sendConnectionPool,
+            maxPipelineDepth,
+            concurrencyLimit,
+            new InFlightRegistry<>(callDeadlineMillis, hedgeable, hedgePercentile, sendTimers),
+            priorities,
+            sendHighWatermark,
+            sendLowWatermark,
+            reconnectInitialBackoffMillis,
+            reconnectMaxBackoffMillis,
+            resubscribe,
+            heartbeatIntervalMillis,
+            isHeartbeat,
+            maxMissedHeartbeats,
+            transport,
+            checkNotNull(sendScheduler),
+            checkNotNull(callbackScheduler)
         );
     }
 
@@ -0,0 +1,292 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.util.ReferenceCountUtil;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.functions.Func1;
+
+/**
+ * A {@link Subscriber} that sends each {@link SinkOperation} to Mesos using HTTP/1.1 pipelining: calls are written
+ * back to back on a single keep-alive connection without waiting for the response to the previous call, and the
+ * responses are matched to their {@code SinkOperation} in the order the calls were written.
+ * <p>
+ * At most {@code maxPipelineDepth} calls are in flight at any time. Rather than queueing further calls itself, the
+ * subscriber only requests another {@code SinkOperation} once a response has been received (or a call has failed),
+ * so that the depth of the pipeline is enforced through backpressure on the stream of calls.
+ * <p>
+ * If the connection is closed while calls are in flight, each of those calls is failed with an {@link IOException},
+ * since there is no way to know whether Mesos received it. A new connection is established for the next call.
+ * <p>
+ * As with {@link SinkSubscriber} the callbacks of each {@code SinkOperation} are invoked on the
+ * {@code callbackScheduler}, by default the {@link Rx#compute() computation scheduler}.
+ *
+ * @param <Send> The type of Objects to be sent to Mesos
+ */
+final class PipelinedSinkSubscriber<Send> extends Subscriber<SinkOperation<Send>> {
+
+    /** The largest response that will be aggregated, any larger response closes the connection */
+    private static final int MAX_RESPONSE_SIZE = 1024 * 1024;
+
+    @NotNull
+    private final Bootstrap bootstrap;
+    @NotNull
+    private volatile InetSocketAddress remoteAddress;
+    @NotNull
+    private volatile Func1<Send, FullHttpRequest> createPost;
+    private final int maxPipelineDepth;
+    @NotNull
+    private final Scheduler.Worker callbacks;
+
+    /** Only replaced by the thread delivering {@code SinkOperation}s */
+    @Nullable
+    private volatile ChannelFuture connection;
+
+    /** The number of calls that have been received but not yet completed or failed */
+    @NotNull
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean done;
+
+    PipelinedSinkSubscriber(
+        @NotNull final String host,
+        final int port,
+        @NotNull final TransportConfig transport,
+        @NotNull final Func1<Send, FullHttpRequest> createPost,
+        final int maxPipelineDepth,
+        @NotNull final Scheduler callbackScheduler
+    ) {
+        this.remoteAddress = InetSocketAddress.createUnresolved(host, port);
+        this.createPost = createPost;
+        this.maxPipelineDepth = maxPipelineDepth;
+        this.callbacks = callbackScheduler.createWorker();
+        this.bootstrap = transport.applyTo(new Bootstrap())
+            .handler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(final Channel ch) throws Exception {
+                    ch.pipeline().addLast(
+                        new HttpClientCodec(),
+                        new HttpObjectAggregator(MAX_RESPONSE_SIZE),
+                        new PipelineHandler()
+                    );
+                }
+            });
+        add(callbacks);
+    }
+
+    @Override
+    public void onStart() {
+        request(maxPipelineDepth);
+    }
+
+    @Override
+    public void onNext(final SinkOperation<Send> op) {
+        pending.incrementAndGet();
+        final FullHttpRequest request;
+        try {
+            request = createPost.call(op.getThingToSink());
+        } catch (Throwable e) {
+            Exceptions.throwIfFatal(e);
+            fail(op, e);
+            return;
+        }
+        connection().addListener((ChannelFuture future) -> {
+            if (future.isSuccess()) {
+                handler(future.channel()).write(op, request);
+            } else {
+                request.release();
+                fail(op, future.cause());
+            }
+        });
+    }
+
+    @Override
+    public void onError(final Throwable e) {
+        Exceptions.throwIfFatal(e);
+        closeWhenIdle();
+    }
+
+    @Override
+    public void onCompleted() {
+        closeWhenIdle();
+    }
+
+    /**
+     * Sends the calls received from now on to {@code host} and {@code port}, for instance because another master has
+     * been elected leader. The current connection is closed, failing the calls in flight on it.
+     */
+    void redirect(
+        @NotNull final String host,
+        final int port,
+        @NotNull final Func1<Send, FullHttpRequest> createPost
+    ) {
+        this.remoteAddress = InetSocketAddress.createUnresolved(host, port);
+        this.createPost = createPost;
+        close();
+    }
+
+    /**
+     * Returns the connection the next call should be written to, establishing a new connection if the previous one
+     * could not be established or has since been closed.
+     */
+    @NotNull
+    private ChannelFuture connection() {
+        final ChannelFuture current = connection;
+        if (current == null || (current.isDone() && !current.channel().isActive())) {
+            final ChannelFuture next = bootstrap.connect(remoteAddress);
+            connection = next;
+            return next;
+        }
+        return current;
+    }
+
+    /**
+     * Closes the connection once the stream of calls has ended and every call has been completed or failed.
+     */
+    private void closeWhenIdle() {
+        done = true;
+        if (pending.get() == 0) {
+            close();
+        }
+    }
+
+    private void close() {
+        final ChannelFuture current = connection;
+        if (current != null) {
+            current.channel().close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private PipelineHandler handler(@NotNull final Channel channel) {
+        return (PipelineHandler) channel.pipeline().get(PipelineHandler.class);
+    }
+
+    private void complete(@NotNull final SinkOperation<Send> op) {
+        callbacks.schedule(op::onCompleted);
+        onCallDone();
+    }
+
+    private void fail(@NotNull final SinkOperation<Send> op, @NotNull final Throwable e) {
+        callbacks.schedule(() -> op.onError(e));
+        onCallDone();
+    }
+
+    private void onCallDone() {
+        if (pending.decrementAndGet() == 0 && done) {
+            close();
+        }
+        request(1);
+    }
+
+    /**
+     * Tracks the calls in flight on a connection, in the order they were written. All methods are invoked on the
+     * event loop of the connection.
+     */
+    private final class PipelineHandler extends ChannelInboundHandlerAdapter {
+
+        @NotNull
+        private final Queue<SinkOperation<Send>> inFlight = new ArrayDeque<>(maxPipelineDepth);
+        @Nullable
+        private ChannelHandlerContext ctx;
+
+        @Override
+        public void handlerAdded(final ChannelHandlerContext ctx) throws Exception {
+            this.ctx = ctx;
+        }
+
+        void write(@NotNull final SinkOperation<Send> op, @NotNull final FullHttpRequest request) {
+            final ChannelHandlerContext context = ctx;
+            if (context == null || !context.channel().isActive()) {
+                request.release();
+                fail(op, new IOException("Connection to Mesos closed before call could be sent"));
+                return;
+            }
+            inFlight.add(op);
+            context.writeAndFlush(request).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+            try {
+                if (msg instanceof FullHttpResponse) {
+                    final SinkOperation<Send> op = inFlight.poll();
+                    if (op == null) {
+                        MesosClient.LOGGER.warn("Received a response from Mesos with no call in flight, closing connection");
+                        ctx.close();
+                        return;
+                    }
+                    onResponse(op, (FullHttpResponse) msg);
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        private void onResponse(@NotNull final SinkOperation<Send> op, @NotNull final FullHttpResponse resp) {
+            final int code = resp.status().code();
+            if (code == 202) {
+                /* This is success */
+                complete(op);
+            } else {
+                final String msg = ResponseUtils.attemptToReadErrorResponse(resp);
+                final List<Map.Entry<String, String>> entries = resp.headers().entries();
+                final MesosClientErrorContext context = new MesosClientErrorContext(code, msg, entries);
+                fail(op, SinkSubscriber.createException(op.getThingToSink(), context));
+            }
+        }
+
+        @Override
+        public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+            SinkOperation<Send> op;
+            while ((op = inFlight.poll()) != null) {
+                fail(op, new IOException("Connection to Mesos closed while call was in flight"));
+            }
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
+            MesosClient.LOGGER.warn("Error on pipelined connection to Mesos, closing connection", cause);
+            ctx.close();
+        }
+    }
+
+}
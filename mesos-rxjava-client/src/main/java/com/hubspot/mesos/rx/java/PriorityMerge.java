@@ -0,0 +1,280 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Merges streams of {@link SinkOperation}s, one per priority class, emitting the operation of the highest priority
+ * class available whenever an operation is requested.
+ * <p>
+ * Unlike {@link Observable#merge(Iterable)}, which keeps emitting from the same stream for as long as it has
+ * operations, an operation is only requested from a stream once the previous operation it emitted has been emitted
+ * in turn, so the operations waiting are left in the streams, for instance in their backpressure buffers, and an
+ * urgent operation only ever waits for the operations already requested.
+ * <p>
+ * Operations held when a stream fails are failed with the stream's error, and those held when the merged stream is
+ * unsubscribed are failed with a {@link CancellationException}, so that their callbacks are always invoked.
+ *
+ * @param <Send> The type of Objects to be sent to Mesos
+ */
+final class PriorityMerge<Send> implements Observable.OnSubscribe<SinkOperation<Send>> {
+
+    @NotNull
+    private final List<Observable<SinkOperation<Send>>> classes;
+
+    /**
+     * @param classes    The stream of each priority class, highest priority first
+     */
+    PriorityMerge(@NotNull final List<Observable<SinkOperation<Send>>> classes) {
+        this.classes = new ArrayList<>(classes);
+    }
+
+    @Override
+    public void call(final Subscriber<? super SinkOperation<Send>> child) {
+        final Merger merger = new Merger(child);
+        child.add(Subscriptions.create(merger::cancel));
+        child.setProducer(merger::requestOperations);
+        for (int i = 0; i < classes.size(); i++) {
+            classes.get(i).unsafeSubscribe(merger.sources.get(i));
+        }
+    }
+
+    private final class Source extends Subscriber<SinkOperation<Send>> {
+        @NotNull
+        private final Merger merger;
+        private final int index;
+
+        Source(@NotNull final Merger merger, final int index) {
+            this.merger = merger;
+            this.index = index;
+        }
+
+        @Override
+        public void onStart() {
+            request(1);
+        }
+
+        @Override
+        public void onNext(final SinkOperation<Send> op) {
+            merger.hold(index, op);
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            merger.fail(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            merger.complete();
+        }
+
+        void requestNext() {
+            request(1);
+        }
+    }
+
+    /**
+     * Every field is guarded by {@code this}.
+     */
+    private final class Merger {
+        @NotNull
+        private final Subscriber<? super SinkOperation<Send>> child;
+        @NotNull
+        private final List<Source> sources;
+
+        /** The operation held from each stream, if any */
+        @NotNull
+        private final List<SinkOperation<Send>> held;
+        private int completed;
+        private long requested;
+        @Nullable
+        private Throwable error;
+        private boolean terminated;
+        private boolean emitting;
+        private boolean missed;
+
+        Merger(@NotNull final Subscriber<? super SinkOperation<Send>> child) {
+            this.child = child;
+            this.sources = new ArrayList<>(classes.size());
+            this.held = new ArrayList<>(classes.size());
+            for (int i = 0; i < classes.size(); i++) {
+                final Source source = new Source(this, i);
+                child.add(source);
+                sources.add(source);
+                held.add(null);
+            }
+        }
+
+        void requestOperations(final long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            synchronized (this) {
+                requested += n;
+                if (requested < 0) {
+                    requested = Long.MAX_VALUE;
+                }
+            }
+            drain();
+        }
+
+        void hold(final int index, @NotNull final SinkOperation<Send> op) {
+            synchronized (this) {
+                held.set(index, op);
+            }
+            drain();
+        }
+
+        void fail(@NotNull final Throwable e) {
+            synchronized (this) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+            drain();
+        }
+
+        void complete() {
+            synchronized (this) {
+                completed++;
+            }
+            drain();
+        }
+
+        /**
+         * Fails the operations still held if the merged stream is unsubscribed before it has terminated.
+         */
+        void cancel() {
+            final List<SinkOperation<Send>> dropped;
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                terminated = true;
+                dropped = takeHeld();
+            }
+            final CancellationException cancelled =
+                new CancellationException("Stream of calls unsubscribed before call could be sent");
+            for (final SinkOperation<Send> op : dropped) {
+                op.onError(cancelled);
+            }
+        }
+
+        /**
+         * Removes every operation that is held, must be called while holding the lock.
+         */
+        @NotNull
+        private List<SinkOperation<Send>> takeHeld() {
+            final List<SinkOperation<Send>> taken = new ArrayList<>();
+            for (int i = 0; i < held.size(); i++) {
+                if (held.get(i) != null) {
+                    taken.add(held.get(i));
+                    held.set(i, null);
+                }
+            }
+            return taken;
+        }
+
+        /**
+         * Emits the held operations of the highest priority for as long as they are requested, or terminates the
+         * child.
+         */
+        private void drain() {
+            synchronized (this) {
+                if (emitting) {
+                    missed = true;
+                    return;
+                }
+                emitting = true;
+            }
+            for (;;) {
+                SinkOperation<Send> toEmit = null;
+                int from = -1;
+                Throwable terminalError = null;
+                List<SinkOperation<Send>> dropped = null;
+                boolean complete = false;
+                synchronized (this) {
+                    if (!terminated) {
+                        if (error != null) {
+                            terminated = true;
+                            terminalError = error;
+                            dropped = takeHeld();
+                        } else if (requested > 0) {
+                            for (int i = 0; i < held.size() && from < 0; i++) {
+                                if (held.get(i) != null) {
+                                    from = i;
+                                    toEmit = held.get(i);
+                                    held.set(i, null);
+                                    if (requested != Long.MAX_VALUE) {
+                                        requested--;
+                                    }
+                                }
+                            }
+                        }
+                        if (toEmit == null && terminalError == null && completed == sources.size()
+                            && held.stream().allMatch(op -> op == null)) {
+                            terminated = true;
+                            complete = true;
+                        }
+                    }
+                }
+                if (terminalError != null) {
+                    child.onError(terminalError);
+                    for (final SinkOperation<Send> op : dropped) {
+                        op.onError(terminalError);
+                    }
+                    return;
+                } else if (complete) {
+                    child.onCompleted();
+                    return;
+                } else if (toEmit != null) {
+                    try {
+                        child.onNext(toEmit);
+                    } catch (Throwable e) {
+                        synchronized (this) {
+                            terminated = true;
+                        }
+                        Exceptions.throwOrReport(e, child, toEmit);
+                        return;
+                    }
+                    sources.get(from).requestNext();
+                    continue;
+                }
+                synchronized (this) {
+                    if (!missed) {
+                        emitting = false;
+                        return;
+                    }
+                    missed = false;
+                }
+            }
+        }
+    }
+
+}
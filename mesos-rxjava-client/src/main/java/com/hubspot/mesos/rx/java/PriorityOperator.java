@@ -0,0 +1,251 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.Observable.Operator;
+import rx.Subscriber;
+import rx.functions.Action0;
+
+/**
+ * An {@link Operator} that queues {@link SinkOperation}s in a lane per {@link SendPriority} and emits them by smooth
+ * weighted round robin across the lanes that have operations waiting.
+ * <p>
+ * Each lane is given a share of the operations emitted proportional to its weight, so operations in a higher priority
+ * lane overtake those waiting in lower priority lanes, but no lane with a non-zero weight is ever starved.
+ * <p>
+ * An operation is queued in the lane of the priority set on it. Operations should be {@link #classify classified}
+ * where they enter the stream of calls, before they wait anywhere else, so that the stages they pass through before
+ * reaching the lanes can let higher priority operations overtake too. An operation that has not been classified is
+ * queued in the lane determined by {@code classifier}.
+ * <p>
+ * At most {@code capacity} operations are requested from upstream ahead of them being emitted, so that the lanes
+ * hold the backlog only as far as is useful for reordering it and a sustained excess of operations is pushed back
+ * into the stream producing them. For the lanes to be effective the operator should be the last stage that queues
+ * operations before they are sent, with the stages downstream only requesting operations they can send at once.
+ * <p>
+ * An operator is applied to a single stream of calls, its {@link #snapshot() backlog} is that of the stream.
+ * Operations still waiting in the lanes when the stream fails are failed with the stream's error, and those still
+ * waiting when the stream is unsubscribed are failed with a {@link CancellationException}.
+ *
+ * @param <Send> The type of Objects to be sent to Mesos
+ */
+final class PriorityOperator<Send> implements Operator<SinkOperation<Send>, SinkOperation<Send>> {
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private static final SendPriority[] PRIORITIES = SendPriority.values();
+
+    @NotNull
+    private final Function<Send, SendPriority> classifier;
+    @NotNull
+    private final int[] weights;
+    @Nullable
+    private final Function<Send, ?> orderingKey;
+    private final int capacity;
+    @NotNull
+    private final AtomicIntegerArray backlog = new AtomicIntegerArray(PRIORITIES.length);
+    /** The priority and number of unfinished operations of each ordering key, guarded by itself */
+    @NotNull
+    private final Map<Object, Unfinished> unfinished = new HashMap<>();
+
+    /**
+     * @param classifier     The function determining the priority of an operation that doesn't have one set
+     * @param weights        The weight of each lane, indexed by the ordinal of its {@link SendPriority}
+     * @param orderingKey    The ordering key of operations that must not be reordered, if any
+     * @param capacity       The maximum number of operations waiting in the lanes
+     */
+    PriorityOperator(
+        @NotNull final Function<Send, SendPriority> classifier,
+        @NotNull final int[] weights,
+        @Nullable final Function<Send, ?> orderingKey,
+        final int capacity
+    ) {
+        if (weights.length != PRIORITIES.length) {
+            throw new IllegalArgumentException("A weight is required for each priority");
+        }
+        for (final int weight : weights) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("weights must be positive");
+            }
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.classifier = classifier;
+        this.weights = weights.clone();
+        this.orderingKey = orderingKey;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public Subscriber<? super SinkOperation<Send>> call(final Subscriber<? super SinkOperation<Send>> child) {
+        final PrioritySubscriber parent = new PrioritySubscriber(child);
+        child.add(parent);
+        child.setProducer(parent.producer);
+        return parent;
+    }
+
+    /**
+     * Sets the priority of {@code op} to the one it is queued with: the one set on the operation, otherwise the one
+     * determined by {@code classifier}. When an ordering key is given, an operation is given the same priority as any
+     * operation with the same key that has not been completed or failed yet, so that priorities never reorder
+     * operations with the same key at any of the stages they pass through.
+     */
+    @NotNull
+    SinkOperation<Send> classify(@NotNull final SinkOperation<Send> op) {
+        final SendPriority priority = priorityOf(op);
+        final Object key = orderingKey != null ? orderingKey.apply(op.getThingToSink()) : null;
+        if (key == null) {
+            return priority == op.getPriority() ? op : op.withPriority(priority);
+        }
+        final SendPriority assigned;
+        synchronized (unfinished) {
+            final Unfinished u = unfinished.computeIfAbsent(key, k -> new Unfinished(priority));
+            assigned = u.priority;
+            u.count++;
+        }
+        final Action0 finished = () -> {
+            synchronized (unfinished) {
+                final Unfinished u = unfinished.get(key);
+                if (--u.count == 0) {
+                    unfinished.remove(key);
+                }
+            }
+        };
+        return op.withPriority(assigned).withCallbacks(
+            () -> {
+                finished.call();
+                op.onCompleted();
+            },
+            e -> {
+                finished.call();
+                op.onError(e);
+            }
+        );
+    }
+
+    /**
+     * @return The number of operations waiting in each lane
+     */
+    @NotNull
+    Map<SendPriority, Integer> snapshot() {
+        final Map<SendPriority, Integer> snapshot = new EnumMap<>(SendPriority.class);
+        for (final SendPriority priority : PRIORITIES) {
+            snapshot.put(priority, backlog.get(priority.ordinal()));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    @NotNull
+    private SendPriority priorityOf(@NotNull final SinkOperation<Send> op) {
+        final SendPriority explicit = op.getPriority();
+        if (explicit != null) {
+            return explicit;
+        }
+        final SendPriority classified = classifier.apply(op.getThingToSink());
+        return classified != null ? classified : SendPriority.NORMAL;
+    }
+
+    private static final class Unfinished {
+        @NotNull
+        final SendPriority priority;
+        int count;
+
+        Unfinished(@NotNull final SendPriority priority) {
+            this.priority = priority;
+        }
+    }
+
+    private final class PrioritySubscriber extends QueueingSubscriber<Send> {
+
+        /* All of the following fields are guarded by this */
+        @NotNull
+        private final Deque<SinkOperation<Send>>[] lanes;
+        /** The current value of each lane used by the smooth weighted round robin */
+        @NotNull
+        private final int[] current = new int[PRIORITIES.length];
+
+        @SuppressWarnings("unchecked")
+        PrioritySubscriber(@NotNull final Subscriber<? super SinkOperation<Send>> child) {
+            super(child, capacity);
+            this.lanes = new Deque[PRIORITIES.length];
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new ArrayDeque<>();
+            }
+        }
+
+        @Override
+        synchronized void enqueue(@NotNull final SinkOperation<Send> op) {
+            final int lane = priorityOf(op).ordinal();
+            lanes[lane].addLast(op);
+            backlog.incrementAndGet(lane);
+        }
+
+        @Override
+        synchronized void removeQueued(@NotNull final List<SinkOperation<Send>> into) {
+            for (int i = 0; i < lanes.length; i++) {
+                backlog.addAndGet(i, -lanes[i].size());
+                into.addAll(lanes[i]);
+                lanes[i].clear();
+            }
+        }
+
+        /**
+         * Takes the next operation according to the smooth weighted round robin: each lane with operations waiting
+         * has its current value raised by its weight, the lane with the highest current value is chosen, and its
+         * current value is lowered by the total weight of the lanes that took part.
+         */
+        @NotNull
+        @Override
+        synchronized SinkOperation<Send> poll() {
+            int chosen = -1;
+            int total = 0;
+            for (int i = 0; i < lanes.length; i++) {
+                if (!lanes[i].isEmpty()) {
+                    current[i] += weights[i];
+                    total += weights[i];
+                    if (chosen < 0 || current[i] > current[chosen]) {
+                        chosen = i;
+                    }
+                }
+            }
+            current[chosen] -= total;
+            final SinkOperation<Send> next = lanes[chosen].pollFirst();
+            if (lanes[chosen].isEmpty()) {
+                // a lane does not accumulate credit while it has nothing to send
+                current[chosen] = 0;
+            }
+            backlog.decrementAndGet(chosen);
+            return next;
+        }
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.Producer;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * The parent {@link Subscriber} of the operators that queue {@link SinkOperation}s until they can be sent, such as
+ * {@link KeyedOrderingOperator}, {@link PriorityOperator}, {@link RateLimitOperator} and {@link RetryOperator}.
+ * <p>
+ * It takes care of the backpressure and serialization shared by those operators: at most {@code capacity} operations
+ * are requested from upstream ahead of them being emitted, so that a sustained excess of operations is pushed back into
+ * the stream producing them, and operations are only emitted as the child requests them. Subclasses only decide how
+ * operations are queued and which one, if any, can be emitted next.
+ * <p>
+ * Operations still queued when the stream fails are failed with the stream's error, and those still queued when the
+ * stream is unsubscribed are failed with a {@link CancellationException}, so that their callbacks are always invoked.
+ * <p>
+ * Every field, along with the state of subclasses, is guarded by {@code this}. The methods to be implemented are
+ * always invoked while holding the lock, implementations are declared {@code synchronized} all the same so that this
+ * is apparent to static analysis.
+ *
+ * @param <Send> The type of Objects to be sent to Mesos
+ */
+abstract class QueueingSubscriber<Send> extends Subscriber<SinkOperation<Send>> {
+
+    static final int MAX_QUEUED = 128;
+
+    @NotNull
+    final Subscriber<? super SinkOperation<Send>> child;
+    @NotNull
+    final Producer producer = this::requestOperations;
+
+    private final int capacity;
+
+    /* All of the following fields are guarded by this */
+    /** The number of operations queued, subclasses count the operations they put back in their queues */
+    int queued;
+    boolean terminated;
+    private long upstreamRequested;
+    private long requested;
+    private boolean done;
+    @Nullable
+    private Throwable error;
+    private boolean emitting;
+    private boolean missed;
+
+    /**
+     * @param child       The subscriber operations are emitted to
+     * @param capacity    The maximum number of operations requested from upstream ahead of them being emitted
+     */
+    QueueingSubscriber(@NotNull final Subscriber<? super SinkOperation<Send>> child, final int capacity) {
+        this.child = child;
+        this.capacity = capacity;
+        // the child may request operations before onStart has been invoked
+        this.upstreamRequested = capacity;
+        add(Subscriptions.create(this::cancel));
+    }
+
+    /**
+     * Ranks {@code op} by its priority class, an operation without one ranking as {@link SendPriority#NORMAL}.
+     * Subclasses that hold several operations ready to be emitted at once emit those with the lowest rank first, so
+     * that urgent calls overtake bulk calls waiting in the same stage.
+     */
+    static int rank(@NotNull final SinkOperation<?> op) {
+        final SendPriority priority = op.getPriority();
+        return (priority != null ? priority : SendPriority.NORMAL).ordinal();
+    }
+
+    /**
+     * Queues an operation received from upstream.
+     */
+    abstract void enqueue(@NotNull SinkOperation<Send> op);
+
+    /**
+     * Takes the next operation to emit, only invoked while at least one operation is queued.
+     *
+     * @return The operation, or {@code null} if none of the queued operations can be emitted yet
+     */
+    @Nullable
+    abstract SinkOperation<Send> poll();
+
+    /**
+     * Removes every queued operation, adding it to {@code into}.
+     */
+    abstract void removeQueued(@NotNull List<SinkOperation<Send>> into);
+
+    /**
+     * @return Whether an operation is still in flight that may be queued again, in which case the child is not
+     * completed yet
+     */
+    boolean hasInFlight() {
+        return false;
+    }
+
+    /**
+     * Invoked when operations are queued and requested, but none can be emitted yet.
+     */
+    void nothingReady() {
+    }
+
+    @Override
+    public void onStart() {
+        request(capacity);
+    }
+
+    @Override
+    public void onNext(final SinkOperation<Send> op) {
+        synchronized (this) {
+            upstreamRequested--;
+            enqueue(op);
+            queued++;
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(final Throwable e) {
+        synchronized (this) {
+            error = e;
+            done = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onCompleted() {
+        synchronized (this) {
+            done = true;
+        }
+        drain();
+    }
+
+    private void requestOperations(final long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n >= 0 required but it was " + n);
+        }
+        synchronized (this) {
+            requested += n;
+            if (requested < 0) {
+                requested = Long.MAX_VALUE;
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Fails the operations still queued if the stream is unsubscribed before it has terminated.
+     */
+    private void cancel() {
+        final List<SinkOperation<Send>> dropped;
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            dropped = takeQueued();
+        }
+        final CancellationException cancelled =
+            new CancellationException("Stream of calls unsubscribed before call could be sent");
+        for (final SinkOperation<Send> op : dropped) {
+            op.onError(cancelled);
+        }
+    }
+
+    /**
+     * Removes every operation that is queued, must be called while holding the lock.
+     */
+    @NotNull
+    private List<SinkOperation<Send>> takeQueued() {
+        if (queued == 0) {
+            return Collections.emptyList();
+        }
+        final List<SinkOperation<Send>> taken = new ArrayList<>(queued);
+        removeQueued(taken);
+        queued = 0;
+        return taken;
+    }
+
+    /**
+     * Emits as many operations as have been requested and can be emitted, or terminates the child. Invoked whenever
+     * an operation is queued or requested, and by subclasses whenever an operation they hold back may have become
+     * ready to be emitted.
+     */
+    final void drain() {
+        synchronized (this) {
+            if (emitting) {
+                missed = true;
+                return;
+            }
+            emitting = true;
+        }
+        for (;;) {
+            SinkOperation<Send> toEmit = null;
+            Throwable terminalError = null;
+            List<SinkOperation<Send>> dropped = Collections.emptyList();
+            boolean complete = false;
+            long moreFromUpstream = 0;
+            synchronized (this) {
+                if (!terminated) {
+                    if (error != null) {
+                        terminated = true;
+                        terminalError = error;
+                        dropped = takeQueued();
+                    } else if (done && queued == 0 && !hasInFlight()) {
+                        terminated = true;
+                        complete = true;
+                    } else if (requested > 0 && queued > 0) {
+                        toEmit = poll();
+                        if (toEmit == null) {
+                            nothingReady();
+                        } else {
+                            queued--;
+                            if (requested != Long.MAX_VALUE) {
+                                requested--;
+                            }
+                            moreFromUpstream = done ? 0 : capacity - queued - upstreamRequested;
+                            upstreamRequested += moreFromUpstream;
+                        }
+                    }
+                }
+            }
+            if (terminalError != null) {
+                child.onError(terminalError);
+                for (final SinkOperation<Send> op : dropped) {
+                    op.onError(terminalError);
+                }
+                return;
+            } else if (complete) {
+                child.onCompleted();
+                return;
+            } else if (toEmit != null) {
+                try {
+                    child.onNext(toEmit);
+                } catch (Throwable e) {
+                    synchronized (this) {
+                        terminated = true;
+                    }
+                    Exceptions.throwOrReport(e, child, toEmit);
+                    return;
+                }
+                if (moreFromUpstream > 0) {
+                    request(moreFromUpstream);
+                }
+                continue;
+            }
+            synchronized (this) {
+                if (!missed) {
+                    emitting = false;
+                    return;
+                }
+                missed = false;
+            }
+        }
+    }
+
+}
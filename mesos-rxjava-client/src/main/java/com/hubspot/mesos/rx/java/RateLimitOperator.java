@@ -0,0 +1,365 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.Observable.Operator;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+
+/**
+ * An {@link Operator} that limits the rate at which {@link SinkOperation}s are sent to Mesos, using a token bucket
+ * per key as determined by {@code bucketKey} (for example the type of each call).
+ * <p>
+ * Each bucket holds at most {@code burst} tokens and is refilled at {@code permitsPerSecond}; an operation is only
+ * sent once a token is available in its bucket. Operations waiting for a token are queued per bucket, so operations
+ * with the same key and {@link SendPriority} are always sent in the order they were received while operations with
+ * another key are free to overtake them. Operations of a higher priority are sent first, both within a bucket and
+ * across the buckets that have a token available.
+ * <p>
+ * When Mesos rejects an operation with HTTP 429 (Too Many Requests) the operation's callbacks are not invoked,
+ * instead it is put back in its queue ahead of every operation received after it (so that several throttled
+ * operations are still sent in the order they were received) and nothing further is sent until the time given by the
+ * {@code Retry-After} header of the response has elapsed ({@link #DEFAULT_RETRY_AFTER_MILLIS} if the header is
+ * absent). Rather than polling, a timer is scheduled for the time the next operation can be sent. An operation is sent
+ * at most {@link #MAX_THROTTLED_ATTEMPTS} times, after which its {@code onError} callback is invoked with the
+ * {@link Mesos4xxException} of the last attempt.
+ * <p>
+ * A bucket is dropped once its queue is empty and it has been refilled, so keys that are no longer used do not
+ * accumulate; a bucket created again for the same key starts out full, just as the dropped one was.
+ * <p>
+ * At most {@link QueueingSubscriber#MAX_QUEUED} operations are requested from upstream ahead of them being sent, so
+ * that a sustained excess of operations is pushed back into the stream producing them.
+ * <p>
+ * Operations still queued when the stream fails are failed with the stream's error, and those still queued when the
+ * stream is unsubscribed are failed with a {@link CancellationException}, so that their callbacks are always invoked.
+ *
+ * @param <Send> The type of Objects to be sent to Mesos
+ */
+final class RateLimitOperator<Send> implements Operator<SinkOperation<Send>, SinkOperation<Send>> {
+
+    static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+    static final int MAX_THROTTLED_ATTEMPTS = 5;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @NotNull
+    private final Function<Send, ?> bucketKey;
+    private final double permitsPerSecond;
+    private final int burst;
+    @NotNull
+    private final Scheduler scheduler;
+
+    RateLimitOperator(
+        @NotNull final Function<Send, ?> bucketKey,
+        final double permitsPerSecond,
+        final int burst,
+        @NotNull final Scheduler scheduler
+    ) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be positive");
+        }
+        this.bucketKey = bucketKey;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Subscriber<? super SinkOperation<Send>> call(final Subscriber<? super SinkOperation<Send>> child) {
+        final RateLimitSubscriber parent = new RateLimitSubscriber(child, scheduler.createWorker());
+        child.add(parent);
+        child.add(parent.worker);
+        child.setProducer(parent.producer);
+        return parent;
+    }
+
+    /**
+     * Determines how long to wait before sending anything further to Mesos, if {@code e} indicates that the operation
+     * was throttled.
+     *
+     * @return The number of milliseconds to wait, or a negative number if the operation was not throttled
+     */
+    // @VisibleForTesting
+    static long throttledForMillis(@NotNull final Throwable e, final long nowMillis) {
+        if (!(e instanceof Mesos4xxException)) {
+            return -1;
+        }
+        final MesosClientErrorContext context = ((Mesos4xxException) e).getContext();
+        if (context.getStatusCode() != TOO_MANY_REQUESTS) {
+            return -1;
+        }
+        final List<Map.Entry<String, String>> headers = context.getHeaders();
+        if (headers != null) {
+            for (final Map.Entry<String, String> header : headers) {
+                if ("Retry-After".equalsIgnoreCase(header.getKey())) {
+                    return parseRetryAfterMillis(header.getValue().trim(), nowMillis);
+                }
+            }
+        }
+        return DEFAULT_RETRY_AFTER_MILLIS;
+    }
+
+    /**
+     * Parses the value of a {@code Retry-After} header, which is either a number of seconds or an HTTP-date.
+     */
+    private static long parseRetryAfterMillis(@NotNull final String value, final long nowMillis) {
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException ignored) {
+            // not a number of seconds, so should be a date
+        }
+        try {
+            final long retryAt = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, retryAt - nowMillis);
+        } catch (DateTimeParseException e) {
+            MesosClient.LOGGER.warn("Unable to parse Retry-After header '{}', using the default", value);
+            return DEFAULT_RETRY_AFTER_MILLIS;
+        }
+    }
+
+    /**
+     * An operation waiting for a token, along with the sequence number it was received with and the number of times
+     * it has been sent.
+     */
+    private final class Queued {
+        final long sequence;
+        @NotNull
+        final SinkOperation<Send> op;
+        final int attempts;
+
+        Queued(final long sequence, @NotNull final SinkOperation<Send> op, final int attempts) {
+            this.sequence = sequence;
+            this.op = op;
+            this.attempts = attempts;
+        }
+    }
+
+    private final class Bucket {
+        /* Ordered by priority then sequence number, so that an operation put back after being throttled is sent
+           before every operation of the same priority received after it */
+        @NotNull
+        final Queue<Queued> queue = new PriorityQueue<>(
+            Comparator.<Queued>comparingInt(queued -> QueueingSubscriber.rank(queued.op))
+                .thenComparingLong(queued -> queued.sequence)
+        );
+        double tokens;
+        long refilledAt;
+
+        Bucket(final long now) {
+            this.tokens = burst;
+            this.refilledAt = now;
+        }
+
+        void refill(final long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * permitsPerSecond / 1000);
+            refilledAt = now;
+        }
+
+        boolean isFull() {
+            return tokens >= burst;
+        }
+
+        /**
+         * @return The number of milliseconds until a token will be available
+         */
+        long millisUntilToken() {
+            return (long) Math.ceil((1 - tokens) * 1000 / permitsPerSecond);
+        }
+    }
+
+    private final class RateLimitSubscriber extends QueueingSubscriber<Send> {
+
+        @NotNull
+        final Scheduler.Worker worker;
+
+        /* All of the following fields are guarded by this */
+        @NotNull
+        private final Map<Object, Bucket> buckets = new LinkedHashMap<>();
+        private long sequence;
+        private int inFlight;
+        private long pausedUntil;
+        @Nullable
+        private Subscription timer;
+        private long timerDue;
+
+        RateLimitSubscriber(
+            @NotNull final Subscriber<? super SinkOperation<Send>> child,
+            @NotNull final Scheduler.Worker worker
+        ) {
+            super(child, MAX_QUEUED);
+            this.worker = worker;
+        }
+
+        @Override
+        synchronized void enqueue(@NotNull final SinkOperation<Send> op) {
+            bucket(bucketKey.apply(op.getThingToSink())).queue.add(new Queued(sequence++, op, 0));
+        }
+
+        @Override
+        synchronized void removeQueued(@NotNull final List<SinkOperation<Send>> into) {
+            for (final Bucket bucket : buckets.values()) {
+                bucket.queue.forEach(queuedOp -> into.add(queuedOp.op));
+            }
+            buckets.clear();
+        }
+
+        @Override
+        synchronized boolean hasInFlight() {
+            // a throttled call may still need to be sent again
+            return inFlight > 0;
+        }
+
+        @Override
+        synchronized void nothingReady() {
+            scheduleWakeUp();
+        }
+
+        @NotNull
+        private Bucket bucket(@NotNull final Object key) {
+            return buckets.computeIfAbsent(key, k -> new Bucket(worker.now()));
+        }
+
+        @NotNull
+        private SinkOperation<Send> track(@NotNull final Object key, @NotNull final Queued queuedOp) {
+            final SinkOperation<Send> op = queuedOp.op;
+            return op.withCallbacks(
+                () -> {
+                    synchronized (this) {
+                        inFlight--;
+                    }
+                    drain();
+                    op.onCompleted();
+                },
+                e -> {
+                    final int attempts = queuedOp.attempts + 1;
+                    final long throttledFor = throttledForMillis(e, System.currentTimeMillis());
+                    boolean retry = false;
+                    synchronized (this) {
+                        inFlight--;
+                        if (throttledFor >= 0) {
+                            pausedUntil = Math.max(pausedUntil, worker.now() + throttledFor);
+                            // the call can't be sent again once the stream has terminated
+                            retry = attempts < MAX_THROTTLED_ATTEMPTS && !terminated;
+                            if (retry) {
+                                bucket(key).queue.add(new Queued(queuedOp.sequence, op, attempts));
+                                queued++;
+                            }
+                        }
+                    }
+                    drain();
+                    if (retry) {
+                        MesosClient.LOGGER.debug("Call throttled by Mesos, will retry in {}ms", throttledFor);
+                    } else {
+                        op.onError(e);
+                    }
+                }
+            );
+        }
+
+        /**
+         * Takes the operation of the highest priority, and of those the first, that can be sent now, if any, tracking
+         * it as in flight. Buckets with nothing queued that have been refilled are dropped along the way.
+         */
+        @Nullable
+        @Override
+        synchronized SinkOperation<Send> poll() {
+            final long now = worker.now();
+            if (now < pausedUntil) {
+                return null;
+            }
+            Map.Entry<Object, Bucket> chosen = null;
+            int chosenRank = Integer.MAX_VALUE;
+            for (final Iterator<Map.Entry<Object, Bucket>> it = buckets.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<Object, Bucket> entry = it.next();
+                final Bucket bucket = entry.getValue();
+                bucket.refill(now);
+                if (bucket.queue.isEmpty()) {
+                    if (bucket.isFull()) {
+                        it.remove();
+                    }
+                    continue;
+                }
+                if (bucket.tokens >= 1) {
+                    final int rank = rank(bucket.queue.peek().op);
+                    if (rank < chosenRank) {
+                        chosen = entry;
+                        chosenRank = rank;
+                    }
+                }
+            }
+            if (chosen == null) {
+                return null;
+            }
+            final Bucket bucket = chosen.getValue();
+            bucket.tokens--;
+            inFlight++;
+            return track(chosen.getKey(), bucket.queue.poll());
+        }
+
+        /**
+         * Schedules {@link #drain()} for when the next queued operation can be sent, unless a wake up has already been
+         * scheduled for then. Must be called while holding the lock.
+         */
+        private void scheduleWakeUp() {
+            final long now = worker.now();
+            long wait = Long.MAX_VALUE;
+            for (final Bucket bucket : buckets.values()) {
+                if (!bucket.queue.isEmpty()) {
+                    wait = Math.min(wait, bucket.millisUntilToken());
+                }
+            }
+            final long due = Math.max(now + wait, pausedUntil);
+            if (timer != null && timerDue <= due) {
+                return;
+            }
+            if (timer != null) {
+                timer.unsubscribe();
+            }
+            timerDue = due;
+            timer = worker.schedule(this::wakeUp, due - now, TimeUnit.MILLISECONDS);
+        }
+
+        private void wakeUp() {
+            synchronized (this) {
+                timer = null;
+            }
+            drain();
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.hubspot.mesos.rx.java.recordio.OversizedMessagePolicy;
+import com.hubspot.mesos.rx.java.recordio.RecordIODecoder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.reactivex.netty.pipeline.PipelineConfigurator;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+import io.reactivex.netty.protocol.http.client.HttpClientResponse;
+
+/**
+ * Installs a {@link RecordIODecoder} into the pipeline of the connection the Mesos event stream is received on, so
+ * that the content of the response is framed into messages on the event loop before it is handed to RxNetty.
+ * <p>
+ * The body of a successful ({@code 200 OK}) response is unwrapped from its {@link HttpContent} chunks and passed to
+ * the decoder; each message the decoder frames then becomes an item in the content of the
+ * {@link HttpClientResponse}. The body of any other response is left untouched so that it can be read as an error
+ * message.
+ */
+final class RecordIOPipelineConfigurator
+    implements PipelineConfigurator<HttpClientResponse<ByteBuf>, HttpClientRequest<ByteBuf>> {
+
+    private static final String REQUEST_RESPONSE_CONVERTER = "request-response-converter";
+    private static final String CONTENT_HANDLER = "recordio-content-handler";
+    private static final String DECODER = "recordio-decoder";
+
+    private final long maxMessageSize;
+    @NotNull
+    private final OversizedMessagePolicy oversizedMessagePolicy;
+
+    RecordIOPipelineConfigurator(final long maxMessageSize, @NotNull final OversizedMessagePolicy oversizedMessagePolicy) {
+        this.maxMessageSize = maxMessageSize;
+        this.oversizedMessagePolicy = oversizedMessagePolicy;
+    }
+
+    @Override
+    public void configureNewPipeline(final ChannelPipeline pipeline) {
+        final RecordIODecoder decoder = maxMessageSize < 0
+            ? new RecordIODecoder()
+            : new RecordIODecoder(maxMessageSize, oversizedMessagePolicy);
+        if (pipeline.get(REQUEST_RESPONSE_CONVERTER) != null) {
+            pipeline.addBefore(REQUEST_RESPONSE_CONVERTER, CONTENT_HANDLER, new HttpContentHandler());
+            pipeline.addBefore(REQUEST_RESPONSE_CONVERTER, DECODER, decoder);
+        } else {
+            pipeline.addLast(CONTENT_HANDLER, new HttpContentHandler());
+            pipeline.addLast(DECODER, decoder);
+        }
+    }
+
+    /**
+     * Passes the content of each {@link HttpContent} of a successful response along the pipeline as a plain
+     * {@link ByteBuf}, followed by an empty {@link LastHttpContent} once the response is complete.
+     */
+    // @VisibleForTesting
+    static final class HttpContentHandler extends ChannelInboundHandlerAdapter {
+
+        private boolean unwrapContent = false;
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+            if (msg instanceof HttpResponse) {
+                unwrapContent = HttpResponseStatus.OK.equals(((HttpResponse) msg).status());
+            }
+            if (unwrapContent && msg instanceof HttpContent && !(msg instanceof HttpResponse)) {
+                final ByteBuf content = ((HttpContent) msg).content();
+                if (content.isReadable()) {
+                    ctx.fireChannelRead(content);
+                } else {
+                    content.release();
+                }
+                if (msg instanceof LastHttpContent) {
+                    unwrapContent = false;
+                    ctx.fireChannelRead(LastHttpContent.EMPTY_LAST_CONTENT);
+                }
+            } else {
+                ctx.fireChannelRead(msg);
+            }
+        }
+    }
+
+}
@@ -17,6 +17,7 @@
 package com.hubspot.mesos.rx.java;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
 import io.reactivex.netty.protocol.http.client.HttpResponseHeaders;
@@ -60,6 +61,27 @@ final class ResponseUtils {
         }
     }
 
+    /**
+     * Attempts to read the content of an aggregated error response as {@code text/plain;charset=utf-8}, in the same
+     * way as {@link #attemptToReadErrorResponse(HttpClientResponse)}.
+     * @param resp  The response to attempt to read from
+     * @return The {@code text/plain;charset=utf-8} response content if it existed or an error message indicating the
+     *         content-type that was not attempted to read.
+     */
+    @NotNull
+    static String attemptToReadErrorResponse(@NotNull final FullHttpResponse resp) {
+        final String contentType = resp.headers().get(HttpHeaderNames.CONTENT_TYPE);
+        if (resp.content().isReadable()) {
+            if (contentType != null && contentType.startsWith("text/plain")) {
+                return resp.content().toString(StandardCharsets.UTF_8);
+            } else {
+                return getErrMsg(contentType);
+            }
+        } else {
+            return "";
+        }
+    }
+
     private static String getErrMsg(final String contentType) {
         if (contentType == null) {
             return "Not attempting to decode error response with unspecified Content-Type";
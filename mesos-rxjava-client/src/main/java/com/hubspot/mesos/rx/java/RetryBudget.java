@@ -0,0 +1,53 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+/**
+ * Limits the number of retries relative to the number of operations sent, so that a failing Mesos master isn't sent
+ * a multiple of the calls it would otherwise receive.
+ * <p>
+ * Every operation sent for the first time deposits {@code ratio} of a retry into the budget, and every retry
+ * withdraws a whole one. The budget holds at most {@code reserve} retries, which it starts with, so that a client
+ * that has only sent a few operations is still able to retry them.
+ */
+final class RetryBudget {
+
+    private final double ratio;
+    private final int reserve;
+
+    /* guarded by this */
+    private double balance;
+
+    RetryBudget(final double ratio, final int reserve) {
+        this.ratio = ratio;
+        this.reserve = reserve;
+        this.balance = reserve;
+    }
+
+    synchronized void deposit() {
+        balance = Math.min(reserve, balance + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+        if (balance >= 1) {
+            balance--;
+            return true;
+        }
+        return false;
+    }
+
+}
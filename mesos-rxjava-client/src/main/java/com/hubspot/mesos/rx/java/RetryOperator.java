@@ -0,0 +1,269 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.Observable.Operator;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+
+/**
+ * An {@link Operator} that sends {@link SinkOperation}s to Mesos again when they fail, according to a
+ * {@link RetryPolicy}.
+ * <p>
+ * An operation's {@code onError} callback is only invoked once the policy decides the operation should not be
+ * retried. Operations are queued in a lane per ordering key, and only one operation of a lane is in flight at a time:
+ * the next operation is only sent once the outcome of the one in flight is final, so when an operation is retried
+ * it is put back at the head of its lane and nothing further is sent from that lane until the backoff for the
+ * operation has elapsed. Operations with no ordering key each have a lane of their own, so are never held up by
+ * another operation being retried. Of the lanes that can send an operation, those whose next operation has a higher
+ * {@link SendPriority} are served first.
+ * <p>
+ * At most {@link QueueingSubscriber#MAX_QUEUED} operations are requested from upstream ahead of them being sent, so
+ * that operations held up behind a retry are pushed back into the stream producing them.
+ * <p>
+ * Operations still queued, including those waiting for a backoff to elapse, are failed with the stream's error when
+ * the stream fails and with a {@link CancellationException} when it is unsubscribed. An operation that fails once
+ * the stream has terminated is not retried, its {@code onError} callback is invoked straight away.
+ *
+ * @param <Send> The type of Objects to be sent to Mesos
+ */
+final class RetryOperator<Send> implements Operator<SinkOperation<Send>, SinkOperation<Send>> {
+
+    @NotNull
+    private final RetryPolicy<Send> policy;
+    @Nullable
+    private final Function<Send, ?> orderingKey;
+    @NotNull
+    private final Scheduler scheduler;
+
+    /**
+     * @param policy         The policy deciding which operations are retried and when
+     * @param orderingKey    The ordering key of operations that must be kept in order, if any
+     * @param scheduler      The scheduler the backoff between attempts is timed on
+     */
+    RetryOperator(
+        @NotNull final RetryPolicy<Send> policy,
+        @Nullable final Function<Send, ?> orderingKey,
+        @NotNull final Scheduler scheduler
+    ) {
+        this.policy = policy;
+        this.orderingKey = orderingKey;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Subscriber<? super SinkOperation<Send>> call(final Subscriber<? super SinkOperation<Send>> child) {
+        final RetrySubscriber parent = new RetrySubscriber(child, scheduler.createWorker());
+        child.add(parent);
+        child.add(parent.worker);
+        child.setProducer(parent.producer);
+        return parent;
+    }
+
+    private final class Attempt {
+        @NotNull
+        final SinkOperation<Send> op;
+        final int attempt;
+
+        Attempt(@NotNull final SinkOperation<Send> op, final int attempt) {
+            this.op = op;
+            this.attempt = attempt;
+        }
+    }
+
+    private final class Lane {
+        @NotNull
+        final Deque<Attempt> queue = new ArrayDeque<>();
+        long retryAt;
+        /** Whether an operation of this lane has been sent and its outcome is not yet final */
+        boolean busy;
+    }
+
+    private final class RetrySubscriber extends QueueingSubscriber<Send> {
+
+        @NotNull
+        final Scheduler.Worker worker;
+
+        /* All of the following fields are guarded by this */
+        @NotNull
+        private final Map<Object, Lane> lanes = new LinkedHashMap<>();
+        private int inFlight;
+        @Nullable
+        private Subscription timer;
+        private long timerDue;
+
+        RetrySubscriber(
+            @NotNull final Subscriber<? super SinkOperation<Send>> child,
+            @NotNull final Scheduler.Worker worker
+        ) {
+            super(child, MAX_QUEUED);
+            this.worker = worker;
+        }
+
+        @Override
+        synchronized void enqueue(@NotNull final SinkOperation<Send> op) {
+            final Object key = orderingKey != null ? orderingKey.apply(op.getThingToSink()) : null;
+            // an operation with no ordering key has a lane of its own
+            final Object laneKey = key != null ? key : new Object();
+            lanes.computeIfAbsent(laneKey, k -> new Lane()).queue.addLast(new Attempt(op, 1));
+        }
+
+        @Override
+        synchronized void removeQueued(@NotNull final List<SinkOperation<Send>> into) {
+            for (final Lane lane : lanes.values()) {
+                lane.queue.forEach(attempt -> into.add(attempt.op));
+            }
+            lanes.clear();
+        }
+
+        @Override
+        synchronized boolean hasInFlight() {
+            // an operation in flight may still need to be sent again
+            return inFlight > 0;
+        }
+
+        @Override
+        synchronized void nothingReady() {
+            scheduleWakeUp();
+        }
+
+        @NotNull
+        private SinkOperation<Send> track(@NotNull final Lane lane, @NotNull final Attempt attempt) {
+            if (attempt.attempt == 1) {
+                policy.getBudget().deposit();
+            }
+            final SinkOperation<Send> op = attempt.op;
+            return op.withCallbacks(
+                () -> {
+                    synchronized (this) {
+                        inFlight--;
+                        lane.busy = false;
+                    }
+                    drain();
+                    op.onCompleted();
+                },
+                e -> {
+                    final boolean retry;
+                    synchronized (this) {
+                        // the operation can't be sent again once the stream has terminated
+                        retry = !terminated && policy.shouldRetry(e, attempt.attempt);
+                        if (retry) {
+                            final long backoff = policy.backoffMillis(attempt.attempt);
+                            MesosClient.LOGGER.debug(
+                                "Call failed on attempt {}, will retry in {}ms: {}",
+                                attempt.attempt, backoff, e.getMessage()
+                            );
+                            lane.queue.addFirst(new Attempt(op, attempt.attempt + 1));
+                            lane.retryAt = worker.now() + backoff;
+                            queued++;
+                        }
+                        inFlight--;
+                        lane.busy = false;
+                    }
+                    drain();
+                    if (!retry) {
+                        op.onError(e);
+                    }
+                }
+            );
+        }
+
+        /**
+         * Takes the operation of the highest priority, and of those the first, whose lane has nothing in flight and
+         * isn't waiting for a backoff to elapse, if any, tracking it as in flight. A lane is kept while an operation
+         * of it is in flight, so that the operations with the same key wait for its outcome.
+         */
+        @Nullable
+        @Override
+        synchronized SinkOperation<Send> poll() {
+            final long now = worker.now();
+            Lane chosen = null;
+            int chosenRank = Integer.MAX_VALUE;
+            final Iterator<Lane> it = lanes.values().iterator();
+            while (it.hasNext()) {
+                final Lane lane = it.next();
+                if (lane.busy) {
+                    continue;
+                }
+                if (lane.queue.isEmpty()) {
+                    it.remove();
+                } else if (now >= lane.retryAt) {
+                    final int rank = rank(lane.queue.peekFirst().op);
+                    if (rank < chosenRank) {
+                        chosen = lane;
+                        chosenRank = rank;
+                    }
+                }
+            }
+            if (chosen == null) {
+                return null;
+            }
+            final Attempt attempt = chosen.queue.pollFirst();
+            chosen.busy = true;
+            inFlight++;
+            return track(chosen, attempt);
+        }
+
+        /**
+         * Schedules {@link #drain()} for when the next lane's backoff elapses, unless a wake up has already been
+         * scheduled for then. Must be called while holding the lock.
+         */
+        private void scheduleWakeUp() {
+            final long now = worker.now();
+            long due = Long.MAX_VALUE;
+            for (final Lane lane : lanes.values()) {
+                if (!lane.busy && !lane.queue.isEmpty()) {
+                    due = Math.min(due, lane.retryAt);
+                }
+            }
+            if (due == Long.MAX_VALUE) {
+                // every lane with operations queued has one in flight, drain() is called again once it finishes
+                return;
+            }
+            if (timer != null && timerDue <= due) {
+                return;
+            }
+            if (timer != null) {
+                timer.unsubscribe();
+            }
+            timerDue = due;
+            timer = worker.schedule(this::wakeUp, Math.max(0, due - now), TimeUnit.MILLISECONDS);
+        }
+
+        private void wakeUp() {
+            synchronized (this) {
+                timer = null;
+            }
+            drain();
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Describes if, when and how many times a {@link SinkOperation} that fails should be sent to Mesos again.
+ * <p>
+ * An operation is retried when the error it failed with is classified as retryable, it has been attempted fewer than
+ * {@code maxAttempts} times and the {@link RetryBudget retry budget} shared by every operation sent under the policy
+ * has not been exhausted. Each retry waits for a random time of between half and all of an exponentially growing
+ * backoff, so that clients that failed at the same time don't all retry at the same time.
+ * <p>
+ * Instances are created using {@link RetryPolicyBuilder}.
+ *
+ * @param <Send> The type of Objects to be sent to Mesos
+ * @see MesosClientBuilder#retryPolicy(RetryPolicy)
+ */
+public final class RetryPolicy<Send> {
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    @NotNull
+    private final Predicate<Throwable> retryable;
+    @NotNull
+    private final RetryBudget budget;
+
+    RetryPolicy(
+        final int maxAttempts,
+        final long initialBackoffMillis,
+        final long maxBackoffMillis,
+        @NotNull final Predicate<Throwable> retryable,
+        @NotNull final RetryBudget budget
+    ) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.retryable = retryable;
+        this.budget = budget;
+    }
+
+    /**
+     * The default classification of errors, under which an error is retryable if it, or any of its causes, is:
+     * <ul>
+     *     <li>a {@link Mesos5xxException} with status code 502, 503 or 504, as returned while the master fails over</li>
+     *     <li>an {@link IOException}, such as a refused or reset connection</li>
+     *     <li>a {@link TimeoutException}</li>
+     * </ul>
+     *
+     * @param e    The error a {@link SinkOperation} failed with
+     * @return {@code true} if the operation may succeed if sent again
+     */
+    public static boolean isTransient(@NotNull final Throwable e) {
+        return MesosClient.getCausalChain(e).stream().anyMatch(t -> {
+            if (t instanceof Mesos5xxException) {
+                final int code = ((Mesos5xxException) t).getContext().getStatusCode();
+                return code == 502 || code == 503 || code == 504;
+            }
+            return t instanceof IOException || t instanceof TimeoutException;
+        });
+    }
+
+    @NotNull
+    RetryBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * @param e          The error the operation failed with
+     * @param attempt    The number of times the operation has been sent, including the one that failed
+     * @return {@code true} if the operation should be sent again, in which case a retry has been withdrawn from the
+     *         budget
+     */
+    boolean shouldRetry(@NotNull final Throwable e, final int attempt) {
+        return attempt < maxAttempts && retryable.test(e) && budget.tryWithdraw();
+    }
+
+    /**
+     * @param attempt    The number of times the operation has been sent
+     * @return The number of milliseconds to wait before sending the operation again
+     */
+    long backoffMillis(final int attempt) {
+        return jitteredBackoffMillis(initialBackoffMillis, maxBackoffMillis, attempt);
+    }
+
+    /**
+     * @param initialBackoffMillis    The backoff before the second attempt
+     * @param maxBackoffMillis        The most the backoff is allowed to grow to
+     * @param attempt                 The number of attempts made so far
+     * @return A random number of milliseconds of between half and all of {@code initialBackoffMillis} doubled for
+     *         each attempt after the first, capped at {@code maxBackoffMillis}
+     */
+    static long jitteredBackoffMillis(final long initialBackoffMillis, final long maxBackoffMillis, final int attempt) {
+        final int doublings = Math.min(attempt - 1, Long.numberOfLeadingZeros(initialBackoffMillis) - 1);
+        final long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << doublings);
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff - backoff / 2 + 1);
+    }
+
+}
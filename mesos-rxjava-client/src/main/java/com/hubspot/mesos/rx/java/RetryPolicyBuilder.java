@@ -0,0 +1,142 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static com.hubspot.mesos.rx.java.util.Validations.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Builder used to create a {@link RetryPolicy}.
+ * <p>
+ * Unless otherwise configured a policy makes at most 3 attempts, backs off from 100 milliseconds up to 10 seconds,
+ * retries the errors classified as transient by {@link RetryPolicy#isTransient(Throwable)} and allows retries of up to
+ * 20% of the operations sent, with a reserve of 10 retries.
+ * <p>
+ * PLEASE NOTE: All methods in this class function as "set" rather than "copy with new value"
+ * @param <Send>    The type of objects that will be sent to Mesos
+ */
+public final class RetryPolicyBuilder<Send> {
+
+    private int maxAttempts = 3;
+    private long initialBackoffMillis = 100;
+    private long maxBackoffMillis = TimeUnit.SECONDS.toMillis(10);
+    private Predicate<Throwable> retryable = RetryPolicy::isTransient;
+    private double budgetRatio = 0.2;
+    private int budgetReserve = 10;
+
+    private RetryPolicyBuilder() {}
+
+    /**
+     * Create a new instance of RetryPolicyBuilder
+     * @param <Send>    The type of objects that will be sent to Mesos
+     * @return A new RetryPolicyBuilder
+     */
+    @NotNull
+    public static <Send> RetryPolicyBuilder<Send> newBuilder() {
+        return new RetryPolicyBuilder<>();
+    }
+
+    /**
+     * @param maxAttempts    The maximum number of times an operation will be sent, including the first attempt
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public RetryPolicyBuilder<Send> maxAttempts(final int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Sets the range of the backoff between attempts. The backoff before the second attempt is
+     * {@code initialBackoff}, doubling for each subsequent attempt up to {@code maxBackoff}; the time actually waited
+     * is chosen at random between half the backoff and the backoff.
+     *
+     * @param initialBackoff    The backoff before the first retry
+     * @param maxBackoff        The largest backoff before any retry
+     * @param unit              The unit of {@code initialBackoff} and {@code maxBackoff}
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public RetryPolicyBuilder<Send> backoff(final long initialBackoff, final long maxBackoff, @NotNull final TimeUnit unit) {
+        if (initialBackoff < 0) {
+            throw new IllegalArgumentException("initialBackoff must not be negative");
+        }
+        if (maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("maxBackoff must not be less than initialBackoff");
+        }
+        this.initialBackoffMillis = unit.toMillis(initialBackoff);
+        this.maxBackoffMillis = unit.toMillis(maxBackoff);
+        return this;
+    }
+
+    /**
+     * @param retryable    The predicate deciding whether the error an operation failed with should be retried,
+     *                     {@link RetryPolicy#isTransient(Throwable)} by default
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public RetryPolicyBuilder<Send> retryOn(@NotNull final Predicate<Throwable> retryable) {
+        this.retryable = retryable;
+        return this;
+    }
+
+    /**
+     * Sets the budget limiting the retries made across all operations sent under the policy, so that retries don't
+     * amplify the load on an already struggling master.
+     *
+     * @param ratio      The number of retries allowed per operation sent, e.g. {@code 0.2} for one retry per five
+     *                   operations
+     * @param reserve    The number of retries available before any operations have been sent, which is also the
+     *                   most retries that may be made in quick succession
+     * @return this builder (allowing for further chained calls)
+     */
+    @NotNull
+    public RetryPolicyBuilder<Send> retryBudget(final double ratio, final int reserve) {
+        if (ratio < 0) {
+            throw new IllegalArgumentException("ratio must not be negative");
+        }
+        if (reserve < 0) {
+            throw new IllegalArgumentException("reserve must not be negative");
+        }
+        this.budgetRatio = ratio;
+        this.budgetReserve = reserve;
+        return this;
+    }
+
+    /**
+     * Builds the instance of {@link RetryPolicy} that has been configured by this builder.
+     * @return The configured {@link RetryPolicy}
+     */
+    @NotNull
+    public RetryPolicy<Send> build() {
+        return new RetryPolicy<>(
+            maxAttempts,
+            initialBackoffMillis,
+            maxBackoffMillis,
+            checkNotNull(retryable),
+            new RetryBudget(budgetRatio, budgetReserve)
+        );
+    }
+
+}
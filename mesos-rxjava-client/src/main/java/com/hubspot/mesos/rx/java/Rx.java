@@ -17,6 +17,7 @@
 package com.hubspot.mesos.rx.java;
 
 import org.jetbrains.annotations.NotNull;
+import rx.Observable;
 import rx.Scheduler;
 import rx.schedulers.Schedulers;
 
@@ -48,4 +49,30 @@ public final class Rx {
     public static Scheduler io() {
         return Schedulers.io();
     }
+
+    /**
+     * @return {@code true} if {@code scheduler} is {@link Schedulers#immediate()}, meaning that work handed over to it
+     *         should instead be run on the current thread
+     */
+    static boolean isImmediate(@NotNull final Scheduler scheduler) {
+        return scheduler == Schedulers.immediate();
+    }
+
+    /**
+     * @return {@code scheduler}, unless it is {@link Schedulers#immediate()}, which would block the current thread
+     *         while waiting for a timer, in which case {@link #compute()}
+     */
+    @NotNull
+    static Scheduler asynchronous(@NotNull final Scheduler scheduler) {
+        return isImmediate(scheduler) ? compute() : scheduler;
+    }
+
+    /**
+     * Hands the items of an Observable over to {@code scheduler}, unless it is {@link Schedulers#immediate()} in
+     * which case items are left on the thread they are emitted on, without any queueing.
+     */
+    @NotNull
+    static <T> Observable.Transformer<T, T> observeOn(@NotNull final Scheduler scheduler) {
+        return observable -> isImmediate(scheduler) ? observable : observable.observeOn(scheduler);
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.BackpressureOverflow;
+import rx.Observable;
+import rx.functions.Action0;
+
+/**
+ * A bounded backpressure buffer for the calls to be sent that fails the calls it drops, so that their callbacks are
+ * invoked and they no longer count towards the backlog of {@link SendFlowControl} or hold their ordering key in a
+ * priority class of {@link PriorityOperator}.
+ * <p>
+ * The calls are buffered by {@link Observable#onBackpressureBuffer(long, Action0, BackpressureOverflow.Strategy)},
+ * which drops them silently, so the calls in the buffer are mirrored here:
+ * <ul>
+ *     <li>with {@link BackpressureOverflow#ON_OVERFLOW_DROP_LATEST} the call received on overflow is dropped, and is
+ *     failed with a {@link CancellationException} straight away</li>
+ *     <li>otherwise, the buffer keeps the calls it doesn't drop in order, so the calls received ahead of a call it
+ *     emits that it hasn't emitted were dropped, and are failed with a {@link CancellationException} then</li>
+ *     <li>the calls still buffered when the buffer fails on overflow, or the stream fails, are failed with the
+ *     stream's error, and those still buffered when the stream is unsubscribed with a
+ *     {@link CancellationException}</li>
+ * </ul>
+ */
+final class SendBuffer {
+
+    private SendBuffer() {}
+
+    /**
+     * @param capacity      The number of calls the buffer holds
+     * @param onOverflow    The action invoked whenever the buffer overflows, if any
+     * @param strategy      How the buffer reacts to overflowing
+     * @return A transformer buffering the calls of each stream it is applied to
+     */
+    @NotNull
+    static <Send> Observable.Transformer<SinkOperation<Send>, SinkOperation<Send>> create(
+        final long capacity,
+        @Nullable final Action0 onOverflow,
+        @NotNull final BackpressureOverflow.Strategy strategy
+    ) {
+        return operations -> Observable.defer(() -> {
+            final Buffered<Send> buffered = new Buffered<>();
+            return operations
+                .doOnNext(buffered::add)
+                .onBackpressureBuffer(
+                    capacity,
+                    () -> {
+                        if (strategy == BackpressureOverflow.ON_OVERFLOW_DROP_LATEST) {
+                            fail(buffered.takeLatest(), SendBuffer::dropped);
+                        }
+                        if (onOverflow != null) {
+                            onOverflow.call();
+                        }
+                    },
+                    strategy
+                )
+                .doOnNext(op -> fail(buffered.takeUpTo(op), SendBuffer::dropped))
+                .doOnError(e -> fail(buffered.takeAll(), () -> e))
+                .doOnUnsubscribe(() -> fail(
+                    buffered.takeAll(),
+                    () -> new CancellationException("Stream of calls unsubscribed before call could be sent")
+                ));
+        });
+    }
+
+    @NotNull
+    private static Throwable dropped() {
+        return new CancellationException("Call dropped by the send buffer before it could be sent");
+    }
+
+    private static <Send> void fail(
+        @NotNull final List<SinkOperation<Send>> dropped,
+        @NotNull final Supplier<Throwable> error
+    ) {
+        if (!dropped.isEmpty()) {
+            final Throwable e = error.get();
+            dropped.forEach(op -> op.onError(e));
+        }
+    }
+
+    /**
+     * The calls in a buffer, in the order they were received. Every method is synchronized, as calls are added on the
+     * thread producing them and taken on the thread sending them.
+     */
+    private static final class Buffered<Send> {
+        @NotNull
+        private final Deque<SinkOperation<Send>> calls = new ArrayDeque<>();
+
+        synchronized void add(@NotNull final SinkOperation<Send> op) {
+            calls.addLast(op);
+        }
+
+        /**
+         * @return The call received last, which has just been dropped
+         */
+        @NotNull
+        synchronized List<SinkOperation<Send>> takeLatest() {
+            final SinkOperation<Send> latest = calls.pollLast();
+            return latest != null ? Collections.singletonList(latest) : Collections.emptyList();
+        }
+
+        /**
+         * Takes the calls up to and including {@code emitted}.
+         *
+         * @return The calls received ahead of {@code emitted}, which have been dropped
+         */
+        @NotNull
+        synchronized List<SinkOperation<Send>> takeUpTo(@NotNull final SinkOperation<Send> emitted) {
+            if (!calls.contains(emitted)) {
+                return Collections.emptyList();
+            }
+            final List<SinkOperation<Send>> dropped = new ArrayList<>();
+            for (SinkOperation<Send> op = calls.pollFirst(); op != emitted; op = calls.pollFirst()) {
+                dropped.add(op);
+            }
+            return dropped;
+        }
+
+        @NotNull
+        synchronized List<SinkOperation<Send>> takeAll() {
+            final List<SinkOperation<Send>> all = new ArrayList<>(calls);
+            calls.clear();
+            return all;
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.Observable.Operator;
+import rx.Subscriber;
+
+/**
+ * Couples the consumption of the event stream to the backlog of calls waiting to be accepted by Mesos, so that a
+ * stream processor that produces calls faster than Mesos accepts them cannot exhaust the heap.
+ * <p>
+ * Every {@link SinkOperation} produced by the stream processor is {@link #track(SinkOperation) tracked} until it has
+ * been completed or failed. Once the number of tracked operations reaches {@code highWatermark}, the
+ * {@link #valve() valve} applied to the event stream stops requesting events; it resumes once the number of tracked
+ * operations has dropped to {@code lowWatermark}. While no events are requested the buffers ahead of the stream
+ * processor fill up and reading from the connection is paused.
+ * <p>
+ * An operation that is dropped without its callbacks being invoked would hold its place in the backlog forever. The
+ * operations dropped by the stages of a live stream are failed, and once the stream of operations has terminated
+ * every operation still tracked is {@link #releaseAll() released}.
+ * <p>
+ * An instance tracks a single stream, and the valve must only be applied once.
+ */
+final class SendFlowControl {
+
+    /** The most events requested ahead of being delivered, which bounds how far the high watermark can be overshot */
+    static final int PREFETCH = 16;
+
+    private final int highWatermark;
+    private final int lowWatermark;
+
+    @NotNull
+    private final AtomicInteger backlog = new AtomicInteger();
+    /** The release flag of each operation that is part of the backlog */
+    @NotNull
+    private final Set<AtomicBoolean> tracked = ConcurrentHashMap.newKeySet();
+    private volatile boolean paused = false;
+    @Nullable
+    private volatile ValveSubscriber<?> valveSubscriber = null;
+
+    SendFlowControl(final int highWatermark, final int lowWatermark) {
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+    }
+
+    /**
+     * @return The number of operations produced by the stream processor that have not yet been completed or failed
+     */
+    int getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * @return {@code true} while events are not being requested because the backlog crossed the high watermark
+     */
+    boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Counts {@code op} as part of the backlog until it has been completed or failed.
+     */
+    @NotNull
+    <Send> SinkOperation<Send> track(@NotNull final SinkOperation<Send> op) {
+        if (backlog.incrementAndGet() >= highWatermark && !paused) {
+            paused = true;
+            MesosClient.LOGGER.debug("Backlog of calls reached {}, pausing the event stream", highWatermark);
+        }
+        final AtomicBoolean released = new AtomicBoolean();
+        tracked.add(released);
+        return op.withCallbacks(
+            () -> {
+                release(released);
+                op.onCompleted();
+            },
+            e -> {
+                release(released);
+                op.onError(e);
+            }
+        );
+    }
+
+    /**
+     * Removes every operation still tracked from the backlog, for use once the stream of operations has terminated
+     * and the callbacks of the operations it dropped will never be invoked. Operations that are completed or failed
+     * afterwards are not counted again.
+     */
+    void releaseAll() {
+        for (final AtomicBoolean released : tracked) {
+            release(released);
+        }
+    }
+
+    private void release(@NotNull final AtomicBoolean released) {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        tracked.remove(released);
+        if (backlog.decrementAndGet() <= lowWatermark && paused) {
+            paused = false;
+            MesosClient.LOGGER.debug("Backlog of calls drained to {}, resuming the event stream", lowWatermark);
+            final ValveSubscriber<?> subscriber = valveSubscriber;
+            if (subscriber != null) {
+                subscriber.requestMore();
+            }
+        }
+    }
+
+    /**
+     * @return An operator that only requests events from upstream, at most {@link #PREFETCH} at a time, while the
+     *         backlog isn't paused
+     */
+    @NotNull
+    <T> Operator<T, T> valve() {
+        return child -> {
+            final ValveSubscriber<T> parent = new ValveSubscriber<>(child);
+            valveSubscriber = parent;
+            child.add(parent);
+            child.setProducer(parent::requestEvents);
+            return parent;
+        };
+    }
+
+    private final class ValveSubscriber<T> extends Subscriber<T> {
+
+        @NotNull
+        private final Subscriber<? super T> child;
+
+        /* All of the following fields are guarded by this */
+        private long requested;
+        private int outstanding;
+
+        ValveSubscriber(@NotNull final Subscriber<? super T> child) {
+            this.child = child;
+        }
+
+        @Override
+        public void onStart() {
+            // nothing is requested until the child asks for events
+            request(0);
+        }
+
+        @Override
+        public void onNext(final T t) {
+            synchronized (this) {
+                outstanding--;
+                if (requested != Long.MAX_VALUE) {
+                    requested--;
+                }
+            }
+            child.onNext(t);
+            requestMore();
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            child.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            child.onCompleted();
+        }
+
+        private void requestEvents(final long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            synchronized (this) {
+                requested += n;
+                if (requested < 0) {
+                    requested = Long.MAX_VALUE;
+                }
+            }
+            requestMore();
+        }
+
+        void requestMore() {
+            final long n;
+            synchronized (this) {
+                if (paused) {
+                    return;
+                }
+                n = Math.min(requested, PREFETCH) - outstanding;
+                if (n <= 0) {
+                    return;
+                }
+                outstanding += n;
+            }
+            request(n);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.reactivex.netty.client.ClientMetricsEvent;
+import io.reactivex.netty.client.ConnectionPoolBuilder;
+import io.reactivex.netty.client.MaxConnectionsBasedStrategy;
+import io.reactivex.netty.client.RxClient;
+import io.reactivex.netty.metrics.MetricEventsSubject;
+import io.reactivex.netty.pipeline.PipelineConfigurator;
+import io.reactivex.netty.protocol.http.client.HttpClient;
+import io.reactivex.netty.protocol.http.client.HttpClientBuilder;
+import io.reactivex.netty.protocol.http.client.HttpClientImpl;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+import io.reactivex.netty.protocol.http.client.HttpClientResponse;
+import org.jetbrains.annotations.NotNull;
+import rx.Observable;
+import rx.functions.Action1;
+
+/**
+ * The {@link HttpClient} calls are sent to Mesos with, which reports the connection each request is sent on.
+ * <p>
+ * RxNetty keeps a pooled connection in use until the response to the request sent on it has been read, even once the
+ * response is no longer subscribed to. A request that is no longer waited for, for instance because its deadline has
+ * passed, is abandoned by closing its connection instead, which the pool then discards.
+ */
+final class SendHttpClient<I, O> extends HttpClientImpl<I, O> {
+
+    private SendHttpClient(
+        @NotNull final String name,
+        @NotNull final RxClient.ServerInfo serverInfo,
+        @NotNull final Bootstrap bootstrap,
+        @NotNull final PipelineConfigurator<HttpClientResponse<O>, HttpClientRequest<I>> pipelineConfigurator,
+        @NotNull final RxClient.ClientConfig clientConfig,
+        @NotNull final ConnectionPoolBuilder<HttpClientResponse<O>, HttpClientRequest<I>> poolBuilder,
+        @NotNull final MetricEventsSubject<ClientMetricsEvent<?>> eventsSubject
+    ) {
+        super(name, serverInfo, bootstrap, pipelineConfigurator, clientConfig, poolBuilder, eventsSubject);
+    }
+
+    /**
+     * Submits {@code request} like {@link #submit(HttpClientRequest)} does, invoking {@code onConnection} with the
+     * channel of the connection the request is sent on once it has been acquired.
+     */
+    @NotNull
+    Observable<HttpClientResponse<O>> submit(
+        @NotNull final HttpClientRequest<I> request,
+        @NotNull final Action1<Channel> onConnection
+    ) {
+        return submit(request, connect().doOnNext(connection -> onConnection.call(connection.getChannel())));
+    }
+
+    /**
+     * Builds a {@link SendHttpClient} with a connection pool, which is initially limited to the same number of
+     * connections as the clients built by {@link io.reactivex.netty.RxNetty#newHttpClientBuilder(String, int)}.
+     */
+    static final class Builder<I, O> extends HttpClientBuilder<I, O> {
+
+        Builder(@NotNull final String host, final int port) {
+            super(host, port);
+            withMaxConnections(MaxConnectionsBasedStrategy.DEFAULT_MAX_CONNECTIONS);
+        }
+
+        @Override
+        public SendHttpClient<I, O> build() {
+            return (SendHttpClient<I, O>) super.build();
+        }
+
+        @Override
+        protected HttpClient<I, O> createClient() {
+            return new SendHttpClient<>(
+                getOrCreateName(), serverInfo, bootstrap, pipelineConfigurator, clientConfig, poolBuilder, eventsSubject
+            );
+        }
+    }
+
+}
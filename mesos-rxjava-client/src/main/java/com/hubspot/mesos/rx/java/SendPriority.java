@@ -0,0 +1,38 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+/**
+ * The priority classes calls waiting to be sent to Mesos are queued in.
+ *
+ * @see MesosClientBuilder#prioritizeSends(java.util.function.Function, int, int, int)
+ * @see SinkOperations#sink(Object, SendPriority, rx.functions.Action0, rx.functions.Action1)
+ */
+public enum SendPriority {
+    /**
+     * For calls whose latency matters most, such as acknowledging status updates or killing tasks.
+     */
+    HIGH,
+    /**
+     * For calls that have no particular priority.
+     */
+    NORMAL,
+    /**
+     * For bulk calls that can wait, such as declining offers.
+     */
+    LOW
+}
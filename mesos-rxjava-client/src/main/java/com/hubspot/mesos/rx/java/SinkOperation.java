@@ -17,8 +17,11 @@
 package com.hubspot.mesos.rx.java;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import rx.Subscription;
 import rx.functions.Action0;
 import rx.functions.Action1;
+import rx.subscriptions.CompositeSubscription;
 
 import static com.hubspot.mesos.rx.java.util.Validations.checkNotNull;
 
@@ -53,6 +56,11 @@ public final class SinkOperation<T> {
     private final Action1<Throwable> onError;
     @NotNull
     private final Action0 onCompleted;
+    @Nullable
+    private final SendPriority priority;
+    /** The requests sending the operation, set for the operations tracked by {@link InFlightRegistry} */
+    @Nullable
+    private final CompositeSubscription requests;
 
     /**
      * This constructor is considered an internal API and should not be used directly, instead use one of the
@@ -65,10 +73,69 @@ public final class SinkOperation<T> {
         @NotNull final T thingToSink,
         @NotNull final Action0 onCompleted,
         @NotNull final Action1<Throwable> onError
+    ) {
+        this(thingToSink, onCompleted, onError, null);
+    }
+
+    /**
+     * This constructor is considered an internal API and should not be used directly, instead use one of the
+     * factory methods defined in {@link SinkOperations}.
+     * @param thingToSink    The {@link T} to send to Mesos
+     * @param onCompleted    The callback invoked when HTTP 202 is returned by Mesos
+     * @param onError        The callback invoked for an HTTP 400 or 500 status code returned by Mesos
+     * @param priority       The priority class the operation is queued in, or {@code null} for the priority to be
+     *                       determined from {@code thingToSink}
+     */
+    SinkOperation(
+        @NotNull final T thingToSink,
+        @NotNull final Action0 onCompleted,
+        @NotNull final Action1<Throwable> onError,
+        @Nullable final SendPriority priority
+    ) {
+        this(thingToSink, onCompleted, onError, priority, null);
+    }
+
+    /**
+     * @param thingToSink    The {@link T} to send to Mesos
+     * @param onCompleted    The callback invoked when HTTP 202 is returned by Mesos
+     * @param onError        The callback invoked for an HTTP 400 or 500 status code returned by Mesos
+     * @param priority       The priority class the operation is queued in, or {@code null} for the priority to be
+     *                       determined from {@code thingToSink}
+     * @param requests       The subscriptions the requests sending the operation are added to, so that they can be
+     *                       cancelled once the operation is no longer waited for, or {@code null} if they aren't
+     *                       tracked
+     */
+    SinkOperation(
+        @NotNull final T thingToSink,
+        @NotNull final Action0 onCompleted,
+        @NotNull final Action1<Throwable> onError,
+        @Nullable final SendPriority priority,
+        @Nullable final CompositeSubscription requests
     ) {
         this.thingToSink = checkNotNull(thingToSink, "argument thingToSink can not be null");
         this.onCompleted = checkNotNull(onCompleted, "argument onCompleted can not be null");
         this.onError = checkNotNull(onError, "argument onError can not be null");
+        this.priority = priority;
+        this.requests = requests;
+    }
+
+    /**
+     * Creates an operation sending the same {@link T} as this one that invokes {@code onCompleted} and
+     * {@code onError} instead, which is how the stages a call passes through before it is sent keep track of its
+     * outcome.
+     */
+    @NotNull
+    SinkOperation<T> withCallbacks(@NotNull final Action0 onCompleted, @NotNull final Action1<Throwable> onError) {
+        return new SinkOperation<>(thingToSink, onCompleted, onError, priority, requests);
+    }
+
+    /**
+     * Creates an operation sending the same {@link T} as this one that is queued in the priority class
+     * {@code priority}.
+     */
+    @NotNull
+    SinkOperation<T> withPriority(@NotNull final SendPriority priority) {
+        return new SinkOperation<>(thingToSink, onCompleted, onError, priority, requests);
     }
 
     public void onCompleted() {
@@ -83,4 +150,30 @@ public final class SinkOperation<T> {
     public T getThingToSink() {
         return thingToSink;
     }
+
+    /**
+     * @return The priority class explicitly set for this operation, or {@code null} if none was set
+     * @see MesosClientBuilder#prioritizeSends(java.util.function.Function, int, int, int)
+     */
+    @Nullable
+    public SendPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return Whether the operation is tracked by {@link InFlightRegistry}
+     */
+    boolean isTracked() {
+        return requests != null;
+    }
+
+    /**
+     * Registers the request sending the operation, which is unsubscribed if the operation stops being waited for
+     * before it is answered, for instance because its deadline has passed.
+     */
+    void sending(@NotNull final Subscription request) {
+        if (requests != null) {
+            requests.add(request);
+        }
+    }
 }
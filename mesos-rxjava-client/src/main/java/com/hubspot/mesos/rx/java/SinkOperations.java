@@ -153,5 +153,42 @@ public final class SinkOperations {
         return create(thing);
     }
 
+    /**
+     * Creates a new {@link SinkOperation} that is queued in the priority class {@code priority}, regardless of the
+     * priority determined for {@code thing} by the client.
+     * @param thing          The message to be sent to Mesos.
+     * @param priority       The priority class the message is queued in until it is sent.
+     * @param onCompleted    The callback to be invoked upon a 202 response from Mesos.
+     * @param onError        The callback to be invoked upon a 4xx or 5xx response from Mesos.
+     * @param <T>            The type of the message to be sent to Mesos.
+     * @return  A new {@link SinkOperation} that can be sent to Mesos.
+     * @see MesosClientBuilder#prioritizeSends(java.util.function.Function, int, int, int)
+     */
+    @NotNull
+    public static <T> SinkOperation<T> sink(
+        @NotNull final T thing,
+        @NotNull final SendPriority priority,
+        @NotNull final Action0 onCompleted,
+        @NotNull final Action1<Throwable> onError
+    ) {
+        return new SinkOperation<>(thing, onCompleted, onError, priority);
+    }
+
+    /**
+     * Creates a new {@link SinkOperation} that is queued in the priority class {@code priority}, regardless of the
+     * priority determined for {@code thing} by the client.
+     * @param thing          The message to be sent to Mesos.
+     * @param priority       The priority class the message is queued in until it is sent.
+     * @param <T>            The type of the message to be sent to Mesos.
+     * @return  A new {@link SinkOperation} that can be sent to Mesos.
+     * @see #sink(Object, SendPriority, Action0, Action1)
+     */
+    @NotNull
+    public static <T> SinkOperation<T> sink(
+        @NotNull final T thing,
+        @NotNull final SendPriority priority
+    ) {
+        return sink(thing, priority, COMPLETED_NO_OP, ERROR_NO_OP);
+    }
 
 }
@@ -17,83 +17,353 @@
 package com.hubspot.mesos.rx.java;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
 import io.netty.handler.codec.http.HttpResponseStatus;
-import io.reactivex.netty.protocol.http.client.HttpClient;
+import io.reactivex.netty.client.ClientMetricsEvent;
+import io.reactivex.netty.client.MaxConnectionsBasedStrategy;
+import io.reactivex.netty.client.PoolExhaustedException;
+import io.reactivex.netty.metrics.MetricEventsListener;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpResponseHeaders;
 import org.jetbrains.annotations.NotNull;
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscriber;
+import rx.Subscription;
 import rx.exceptions.Exceptions;
+import rx.functions.Action0;
 import rx.functions.Func1;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
+/**
+ * Sends each call as its own request on one of the pooled connections of the client it is supplied with.
+ * <p>
+ * A connection is returned to its pool around the time the response sent on it has been read, possibly just after, so
+ * the next call is only requested once a call has been answered and the pool has also reported a connection as
+ * released. Should a call still find every connection in use, nothing has been written yet and it is submitted again
+ * when the next connection is released.
+ * <p>
+ * The request sending a call is registered with its {@link SinkOperation}, so that it can be cancelled once the call
+ * is no longer waited for. The connection of a request cancelled before it was answered is closed, so that the pool
+ * discards it rather than keeping it in use until a response arrives. A cancelled call is failed with a
+ * {@link CancellationException}, so that the stages it passed through no longer count it as in flight, and the next
+ * call is requested in its place.
+ */
 final class SinkSubscriber<Send> extends Subscriber<SinkOperation<Send>> {
 
     @NotNull
-    private final HttpClient<ByteBuf, ByteBuf> httpClient;
+    private final Supplier<SendHttpClient<ByteBuf, ByteBuf>> httpClient;
     @NotNull
     private final Func1<Send, Observable<HttpClientRequest<ByteBuf>>> createPost;
+    @NotNull
+    private final Scheduler callbackScheduler;
+    private final int maxInFlight;
+
+    @NotNull
+    private final AtomicReference<SendHttpClient<ByteBuf, ByteBuf>> listenedTo = new AtomicReference<>(null);
+
+    // guarded by this
+    /** The number of connections released to the pools of the clients listened to */
+    private long releases = 0;
+    /** The number of calls submitted whose response has not yet been read */
+    private int unanswered = 0;
+    /** The number of answered calls whose connection has not yet been seen being released */
+    private int awaitingRelease = 0;
+    /** The number of connections seen being released before the call sent on them was seen to be answered */
+    private int unclaimedReleases = 0;
+    /** Calls that found every connection in use, to be submitted again once one is released */
+    @NotNull
+    private final Deque<SinkOperation<Send>> parked = new ArrayDeque<>();
 
     SinkSubscriber(
-        @NotNull final HttpClient<ByteBuf, ByteBuf> httpClient,
+        @NotNull final SendHttpClient<ByteBuf, ByteBuf> httpClient,
         @NotNull final Func1<Send, Observable<HttpClientRequest<ByteBuf>>> createPost
     ) {
+        this(() -> httpClient, createPost, MaxConnectionsBasedStrategy.DEFAULT_MAX_CONNECTIONS, Rx.compute());
+    }
+
+    /**
+     * @param httpClient           Supplies the client each call is sent with, which changes when the leading master
+     *                             does
+     * @param createPost           Creates the request for each call
+     * @param maxInFlight          The maximum number of calls sent and not yet answered. Each call holds one of the
+     *                             client's pooled connections until it is answered, so this must not be more than
+     *                             the size of the pool; further calls are only requested as the connections of
+     *                             earlier ones are released.
+     * @param callbackScheduler    The scheduler the callbacks of each {@link SinkOperation} are invoked on
+     */
+    SinkSubscriber(
+        @NotNull final Supplier<SendHttpClient<ByteBuf, ByteBuf>> httpClient,
+        @NotNull final Func1<Send, Observable<HttpClientRequest<ByteBuf>>> createPost,
+        final int maxInFlight,
+        @NotNull final Scheduler callbackScheduler
+    ) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
         this.httpClient = httpClient;
         this.createPost = createPost;
+        this.maxInFlight = maxInFlight;
+        this.callbackScheduler = callbackScheduler;
+    }
+
+    @Override
+    public void onStart() {
+        request(maxInFlight);
     }
 
     @Override
     public void onNext(final SinkOperation<Send> op) {
+        send(op, releasesSeen());
+    }
+
+    /**
+     * @param releasesSeen    The number of connection releases seen before the call was submitted, so that a release
+     *                        happening while the call fails to acquire a connection isn't missed
+     */
+    private void send(final SinkOperation<Send> op, final long releasesSeen) {
         try {
             final Send toSink = op.getThingToSink();
-            createPost.call(toSink)
-                .flatMap(httpClient::submit)
+            final SendHttpClient<ByteBuf, ByteBuf> client = httpClient.get();
+            listenTo(client);
+            final AtomicBoolean submitted = new AtomicBoolean(false);
+            final AtomicBoolean answered = new AtomicBoolean(false);
+            final AtomicBoolean exhausted = new AtomicBoolean(false);
+            final AtomicBoolean settled = new AtomicBoolean(false);
+            final AtomicReference<Channel> connection = new AtomicReference<>(null);
+            final Subscription request = createPost.call(toSink)
+                .flatMap(post -> {
+                    submitted.set(true);
+                    submitted();
+                    return client.submit(post, connection::set)
+                        .doOnNext(resp -> answered.set(true));
+                })
                 .flatMap(resp -> {
                     final HttpResponseStatus status = resp.getStatus();
                     final int code = status.code();
 
                     if (code == 202) {
-                        /* This is success */
-                        return Observable.just(Optional.<MesosException>empty());
+                        /* This is success, the (empty) content is read so the connection is released */
+                        return resp.getContent()
+                            .ignoreElements()
+                            .map(ignored -> Optional.<MesosException>empty())
+                            .concatWith(Observable.just(Optional.empty()));
                     } else {
                         final HttpResponseHeaders headers = resp.getHeaders();
                         return ResponseUtils.attemptToReadErrorResponse(resp)
                             .map(msg -> {
                                 final List<Map.Entry<String, String>> entries = headers.entries();
                                 final MesosClientErrorContext context = new MesosClientErrorContext(code, msg, entries);
-                                MesosException error;
-                                if (400 <= code && code < 500) {
-                                    // client error
-                                    error = new Mesos4xxException(toSink, context);
-                                } else if (500 <= code && code < 600) {
-                                    // client error
-                                    error = new Mesos5xxException(toSink, context);
-                                } else {
-                                    // something else that isn't success but not an error as far as http is concerned
-                                    error = new MesosException(toSink, context);
-                                }
-                                return Optional.of(error);
+                                return Optional.of(createException(toSink, context));
                             });
                     }
                 })
-                .observeOn(Rx.compute())
-                .subscribe(exception -> {
-                    if (!exception.isPresent()) {
-                        op.onCompleted();
+                // once the response has been read the connection may already be in use by another call
+                .doOnTerminate(() -> connection.set(null))
+                .doOnUnsubscribe(() -> {
+                    final Channel unanswered = connection.getAndSet(null);
+                    if (unanswered != null) {
+                        // the response will never be read, so the connection can't be used for another call
+                        unanswered.close();
+                    }
+                })
+                .onErrorResumeNext(e -> {
+                    if (e instanceof PoolExhaustedException) {
+                        // nothing has been written, the call is sent once a connection has been released
+                        exhausted.set(true);
+                        return Observable.empty();
+                    }
+                    return Observable.error(e);
+                })
+                .compose(afterwards(() -> {
+                    // the call is only seen as answered once its response has been read, which is what releases the
+                    // connection, so that a release seen before then is claimed by the call
+                    if (submitted.get()) {
+                        unsubmitted();
+                    }
+                    if (exhausted.get()) {
+                        park(op, releasesSeen);
+                    } else if (answered.get()) {
+                        // the next call is requested once the connection this call was sent on has been released
+                        answered();
                     } else {
-                        op.onError(exception.get());
+                        // the call could not be sent, or was cancelled before it was answered
+                        request(1);
                     }
-                });
+                }))
+                .compose(Rx.observeOn(callbackScheduler))
+                .doOnUnsubscribe(() -> {
+                    if (!exhausted.get() && settled.compareAndSet(false, true)) {
+                        // the stages the call passed through still learn it is no longer in flight
+                        op.onError(new CancellationException("Call cancelled before it was answered"));
+                    }
+                })
+                .subscribe(
+                    exception -> {
+                        if (settled.compareAndSet(false, true)) {
+                            if (!exception.isPresent()) {
+                                op.onCompleted();
+                            } else {
+                                op.onError(exception.get());
+                            }
+                        }
+                    },
+                    // the call could not be sent at all, for instance because Mesos could not be reached
+                    e -> {
+                        if (settled.compareAndSet(false, true)) {
+                            op.onError(e);
+                        }
+                    }
+                );
+            op.sending(request);
         } catch (Throwable e) {
             Exceptions.throwIfFatal(e);
+            request(1);
             op.onError(e);
         }
     }
 
+    /**
+     * Invokes {@code action} once the observable it is applied to has terminated, or once it has been unsubscribed
+     * from before then, whichever happens first.
+     */
+    @NotNull
+    private static <T> Observable.Transformer<T, T> afterwards(@NotNull final Action0 action) {
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final Action0 once = () -> {
+            if (done.compareAndSet(false, true)) {
+                action.call();
+            }
+        };
+        return observable -> observable.doAfterTerminate(once).doOnUnsubscribe(once);
+    }
+
+    /**
+     * Starts counting the connections released to the pool of {@code client}, unless it is the client the previous
+     * call was sent with. The clients replaced when the leading master changes keep being listened to, since the
+     * calls sent with them still release their connections.
+     */
+    private void listenTo(@NotNull final SendHttpClient<ByteBuf, ByteBuf> client) {
+        if (listenedTo.getAndSet(client) != client) {
+            add(client.subscribe(new ConnectionReleases()));
+        }
+    }
+
+    private synchronized long releasesSeen() {
+        return releases;
+    }
+
+    private synchronized void submitted() {
+        unanswered++;
+    }
+
+    private synchronized void unsubmitted() {
+        unanswered--;
+    }
+
+    private void answered() {
+        synchronized (this) {
+            if (unclaimedReleases == 0) {
+                awaitingRelease++;
+                return;
+            }
+            unclaimedReleases--;
+        }
+        request(1);
+    }
+
+    private void park(@NotNull final SinkOperation<Send> op, final long releasesSeen) {
+        final long releasesNow;
+        synchronized (this) {
+            releasesNow = releases;
+            if (releasesNow == releasesSeen) {
+                parked.add(op);
+                return;
+            }
+        }
+        // a connection was released while the call was being submitted
+        send(op, releasesNow);
+    }
+
+    private void released() {
+        final boolean slotFreed;
+        final SinkOperation<Send> unparked;
+        final long releasesNow;
+        synchronized (this) {
+            releasesNow = ++releases;
+            if (awaitingRelease > 0) {
+                awaitingRelease--;
+                slotFreed = true;
+            } else {
+                // the call sent on the connection may have yet to be seen as answered, unless no call is waiting for
+                // an answer, in which case the connection was one of those established to fill the pool
+                unclaimedReleases = Math.min(unclaimedReleases + 1, unanswered);
+                slotFreed = false;
+            }
+            unparked = parked.poll();
+        }
+        if (unparked != null) {
+            send(unparked, releasesNow);
+        }
+        if (slotFreed) {
+            request(1);
+        }
+    }
+
+    private final class ConnectionReleases implements MetricEventsListener<ClientMetricsEvent<?>> {
+
+        @Override
+        public void onEvent(
+            final ClientMetricsEvent<?> event,
+            final long duration,
+            final TimeUnit timeUnit,
+            final Throwable throwable,
+            final Object value
+        ) {
+            if (event.getType() == ClientMetricsEvent.EventType.PoolReleaseSuccess
+                || event.getType() == ClientMetricsEvent.EventType.PoolReleaseFailed) {
+                released();
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+
+        @Override
+        public void onSubscribe() {
+        }
+
+    }
+
+    /**
+     * Creates the exception for a call that was not accepted by Mesos, based on the status code of the response.
+     */
+    @NotNull
+    static MesosException createException(@NotNull final Object toSink, @NotNull final MesosClientErrorContext context) {
+        final int code = context.getStatusCode();
+        if (400 <= code && code < 500) {
+            // client error
+            return new Mesos4xxException(toSink, context);
+        } else if (500 <= code && code < 600) {
+            // server error
+            return new Mesos5xxException(toSink, context);
+        } else {
+            // something else that isn't success but not an error as far as http is concerned
+            return new MesosException(toSink, context);
+        }
+    }
+
     @Override
     public void onError(final Throwable e) {
         Exceptions.throwIfFatal(e);
@@ -0,0 +1,195 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.reactivex.netty.RxNetty;
+import io.reactivex.netty.protocol.http.client.HttpClientBuilder;
+
+/**
+ * The configuration of the transport used for every connection to Mesos: the event loop and channel type, the
+ * allocators used for buffers and socket options.
+ * <p>
+ * Instances are immutable, each {@code with} method returns a copy with the one setting changed. The
+ * {@link #DEFAULT default} configuration matches what RxNetty configures for a client: the NIO transport on
+ * RxNetty's client event loop and the pooled allocator, leaving every other option at Netty's default.
+ *
+ * @see MesosClientBuilder#nativeTransport()
+ * @see MesosClientBuilder#byteBufAllocator(ByteBufAllocator)
+ * @see MesosClientBuilder#receiveBufferSize(int, int, int)
+ * @see MesosClientBuilder#socketOptions(boolean, boolean)
+ */
+final class TransportConfig {
+
+    static final TransportConfig DEFAULT = new TransportConfig(false, PooledByteBufAllocator.DEFAULT, null, null, null);
+
+    private final boolean nativeTransport;
+    @NotNull
+    private final ByteBufAllocator allocator;
+    @Nullable
+    private final RecvByteBufAllocator recvAllocator;
+    @Nullable
+    private final Boolean tcpNoDelay;
+    @Nullable
+    private final Boolean keepAlive;
+
+    private TransportConfig(
+        final boolean nativeTransport,
+        @NotNull final ByteBufAllocator allocator,
+        @Nullable final RecvByteBufAllocator recvAllocator,
+        @Nullable final Boolean tcpNoDelay,
+        @Nullable final Boolean keepAlive
+    ) {
+        this.nativeTransport = nativeTransport;
+        this.allocator = allocator;
+        this.recvAllocator = recvAllocator;
+        this.tcpNoDelay = tcpNoDelay;
+        this.keepAlive = keepAlive;
+    }
+
+    @NotNull
+    TransportConfig withNativeTransport() {
+        return new TransportConfig(true, allocator, recvAllocator, tcpNoDelay, keepAlive);
+    }
+
+    @NotNull
+    TransportConfig withAllocator(@NotNull final ByteBufAllocator allocator) {
+        return new TransportConfig(nativeTransport, allocator, recvAllocator, tcpNoDelay, keepAlive);
+    }
+
+    @NotNull
+    TransportConfig withReceiveBufferSize(final int minimum, final int initial, final int maximum) {
+        if (minimum <= 0) {
+            throw new IllegalArgumentException("minimum must be positive");
+        }
+        if (initial < minimum) {
+            throw new IllegalArgumentException("initial must not be less than minimum");
+        }
+        if (maximum < initial) {
+            throw new IllegalArgumentException("maximum must not be less than initial");
+        }
+        final RecvByteBufAllocator recvAllocator = new AdaptiveRecvByteBufAllocator(minimum, initial, maximum);
+        return new TransportConfig(nativeTransport, allocator, recvAllocator, tcpNoDelay, keepAlive);
+    }
+
+    @NotNull
+    TransportConfig withSocketOptions(final boolean tcpNoDelay, final boolean keepAlive) {
+        return new TransportConfig(nativeTransport, allocator, recvAllocator, tcpNoDelay, keepAlive);
+    }
+
+    /**
+     * @return {@code true} if the native epoll transport has been asked for and can be loaded on this platform
+     */
+    boolean isNativeTransport() {
+        return nativeTransport && Epoll.isAvailable();
+    }
+
+    /**
+     * @return The allocator used for the buffers of every connection, and for the content of calls
+     */
+    @NotNull
+    ByteBufAllocator getAllocator() {
+        return allocator;
+    }
+
+    /**
+     * @return The event loop that connections are handled on
+     */
+    @NotNull
+    EventLoopGroup eventLoopGroup() {
+        return isNativeTransport()
+            ? NativeEventLoop.GROUP
+            : RxNetty.getRxEventLoopProvider().globalClientEventLoop();
+    }
+
+    /**
+     * @return The type of the channel used for connections
+     */
+    @NotNull
+    Class<? extends Channel> channelClass() {
+        return isNativeTransport() ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * Applies this configuration to the RxNetty client being built by {@code builder}. Unless the native transport is
+     * used, the event loop and channel type are left for RxNetty to choose.
+     */
+    @NotNull
+    <I, O> HttpClientBuilder<I, O> applyTo(@NotNull final HttpClientBuilder<I, O> builder) {
+        if (isNativeTransport()) {
+            builder
+                .eventloop(NativeEventLoop.GROUP)
+                .channel(EpollSocketChannel.class);
+        }
+        builder.channelOption(ChannelOption.ALLOCATOR, allocator);
+        if (recvAllocator != null) {
+            builder.channelOption(ChannelOption.RCVBUF_ALLOCATOR, recvAllocator);
+        }
+        if (tcpNoDelay != null) {
+            builder.channelOption(ChannelOption.TCP_NODELAY, tcpNoDelay);
+        }
+        if (keepAlive != null) {
+            builder.channelOption(ChannelOption.SO_KEEPALIVE, keepAlive);
+        }
+        return builder;
+    }
+
+    /**
+     * Applies this configuration to {@code bootstrap}.
+     */
+    @NotNull
+    Bootstrap applyTo(@NotNull final Bootstrap bootstrap) {
+        bootstrap
+            .group(eventLoopGroup())
+            .channel(channelClass())
+            .option(ChannelOption.ALLOCATOR, allocator);
+        if (recvAllocator != null) {
+            bootstrap.option(ChannelOption.RCVBUF_ALLOCATOR, recvAllocator);
+        }
+        if (tcpNoDelay != null) {
+            bootstrap.option(ChannelOption.TCP_NODELAY, tcpNoDelay);
+        }
+        if (keepAlive != null) {
+            bootstrap.option(ChannelOption.SO_KEEPALIVE, keepAlive);
+        }
+        return bootstrap;
+    }
+
+    /**
+     * The epoll event loop shared by every client using the native transport, only created once it is first used.
+     */
+    private static final class NativeEventLoop {
+        private static final EventLoopGroup GROUP =
+            new EpollEventLoopGroup(0, new DefaultThreadFactory("mesos-rxjava-epoll", true));
+    }
+
+}
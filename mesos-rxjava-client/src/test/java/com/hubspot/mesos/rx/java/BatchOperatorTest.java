@@ -0,0 +1,131 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+public final class BatchOperatorTest {
+
+    @Test
+    public void batchesEmittedWhenFull() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final TestSubscriber<List<Integer>> subscriber = new TestSubscriber<>();
+        Observable.range(1, 7)
+            .lift(new BatchOperator<>(3, 1, TimeUnit.SECONDS, scheduler))
+            .subscribe(subscriber);
+
+        subscriber.assertReceivedOnNext(Arrays.asList(newArrayList(1, 2, 3), newArrayList(4, 5, 6), newArrayList(7)));
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void partialBatchEmittedAfterDelay() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final PublishSubject<Integer> subject = PublishSubject.create();
+        final TestSubscriber<List<Integer>> subscriber = new TestSubscriber<>();
+        subject.lift(new BatchOperator<>(3, 100, TimeUnit.MILLISECONDS, scheduler)).subscribe(subscriber);
+
+        subject.onNext(1);
+        scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+        subject.onNext(2);
+        subscriber.assertNoValues();
+
+        scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+        subscriber.assertReceivedOnNext(Arrays.asList(newArrayList(1, 2)));
+
+        // the delay for the next batch starts with its first item
+        subject.onNext(3);
+        scheduler.advanceTimeBy(99, TimeUnit.MILLISECONDS);
+        subscriber.assertValueCount(1);
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        subscriber.assertReceivedOnNext(Arrays.asList(newArrayList(1, 2), newArrayList(3)));
+    }
+
+    @Test
+    public void batchesOnlyEmittedAsRequested() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final AtomicLong requestedUpstream = new AtomicLong();
+        final TestSubscriber<List<Integer>> subscriber = new TestSubscriber<>(0);
+        Observable.range(1, 100)
+            .doOnRequest(requestedUpstream::addAndGet)
+            .lift(new BatchOperator<>(2, 1, TimeUnit.SECONDS, scheduler))
+            .subscribe(subscriber);
+
+        subscriber.assertNoValues();
+        assertThat(requestedUpstream.get()).isEqualTo(2);
+
+        subscriber.requestMore(1);
+        subscriber.assertReceivedOnNext(Arrays.asList(newArrayList(1, 2)));
+        assertThat(requestedUpstream.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void dueBatchKeepsFillingUntilRequested() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final PublishSubject<Integer> subject = PublishSubject.create();
+        final TestSubscriber<List<Integer>> subscriber = new TestSubscriber<>(0);
+        subject.lift(new BatchOperator<>(3, 100, TimeUnit.MILLISECONDS, scheduler)).subscribe(subscriber);
+
+        subject.onNext(1);
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        subject.onNext(2);
+        subscriber.assertNoValues();
+
+        subscriber.requestMore(1);
+        subscriber.assertReceivedOnNext(Arrays.asList(newArrayList(1, 2)));
+    }
+
+    @Test
+    public void remainingItemsEmittedOnCompletion() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final TestSubscriber<List<Integer>> subscriber = new TestSubscriber<>();
+        Observable.just(1, 2)
+            .lift(new BatchOperator<>(5, 1, TimeUnit.SECONDS, scheduler))
+            .subscribe(subscriber);
+
+        subscriber.assertReceivedOnNext(Arrays.asList(newArrayList(1, 2)));
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void errorDeliveredWithoutWaitingForBatch() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final PublishSubject<Integer> subject = PublishSubject.create();
+        final TestSubscriber<List<Integer>> subscriber = new TestSubscriber<>();
+        subject.lift(new BatchOperator<>(5, 1, TimeUnit.SECONDS, scheduler)).subscribe(subscriber);
+
+        subject.onNext(1);
+        subject.onError(new IllegalStateException());
+
+        subscriber.assertNoValues();
+        subscriber.assertError(IllegalStateException.class);
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public final class ConcurrencyLimitOperatorTest {
+
+    @Test
+    public void callsBeyondLimitWaitForAFreeSlot() throws Exception {
+        final ConcurrencyLimitOperator<String> operator = new ConcurrencyLimitOperator<>(
+            new AimdConcurrencyLimit(2, 1, 10, 1, TimeUnit.SECONDS)
+        );
+        final List<String> completed = new ArrayList<>();
+        final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        subject.onBackpressureBuffer().lift(operator).subscribe(subscriber);
+
+        subject.onNext(SinkOperations.create("1", () -> completed.add("1")));
+        subject.onNext(SinkOperations.create("2", () -> completed.add("2")));
+        subject.onNext(SinkOperations.create("3", () -> completed.add("3")));
+        assertThat(sent(subscriber)).containsExactly("1", "2");
+        assertStats(operator.snapshot(), 2, 2, 0);
+
+        subscriber.getOnNextEvents().get(0).onCompleted();
+        assertThat(completed).containsExactly("1");
+        assertThat(sent(subscriber)).containsExactly("1", "2", "3");
+        assertStats(operator.snapshot(), 2, 2, 0);
+    }
+
+    @Test
+    public void onlyFreeSlotsAreRequestedFromUpstream() throws Exception {
+        final ConcurrencyLimitOperator<Integer> operator = new ConcurrencyLimitOperator<>(
+            new AimdConcurrencyLimit(2, 1, 4, 1, TimeUnit.SECONDS)
+        );
+        final AtomicLong requestedUpstream = new AtomicLong();
+        final TestSubscriber<SinkOperation<Integer>> subscriber = new TestSubscriber<>();
+        Observable.range(1, 100)
+            .map(SinkOperations::create)
+            .doOnRequest(requestedUpstream::addAndGet)
+            .lift(operator)
+            .subscribe(subscriber);
+
+        subscriber.assertValueCount(2);
+        assertStats(operator.snapshot(), 2, 2, 0);
+        assertThat(requestedUpstream.get()).isEqualTo(2);
+
+        subscriber.getOnNextEvents().get(0).onCompleted();
+        subscriber.assertValueCount(3);
+        assertStats(operator.snapshot(), 2, 2, 0);
+        assertThat(requestedUpstream.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void onlyRequestedCallsAreSent() throws Exception {
+        final ConcurrencyLimitOperator<Integer> operator = new ConcurrencyLimitOperator<>(
+            new AimdConcurrencyLimit(5, 1, 10, 1, TimeUnit.SECONDS)
+        );
+        final TestSubscriber<SinkOperation<Integer>> subscriber = new TestSubscriber<>(1);
+        Observable.range(1, 3)
+            .map(SinkOperations::create)
+            .lift(operator)
+            .subscribe(subscriber);
+
+        subscriber.assertValueCount(1);
+        subscriber.requestMore(2);
+        subscriber.assertValueCount(3);
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void serverErrorsReduceLimit() throws Exception {
+        final ConcurrencyLimitOperator<String> operator = new ConcurrencyLimitOperator<>(
+            new AimdConcurrencyLimit(10, 1, 10, 1, TimeUnit.SECONDS)
+        );
+        final List<Throwable> errors = new ArrayList<>();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        Observable.just("4xx", "5xx")
+            .map(call -> SinkOperations.create(call, () -> {}, errors::add))
+            .lift(operator)
+            .subscribe(subscriber);
+
+        final Mesos4xxException clientError = new Mesos4xxException("4xx", new MesosClientErrorContext(400, Collections.emptyList()));
+        subscriber.getOnNextEvents().get(0).onError(clientError);
+        assertStats(operator.snapshot(), 10, 1, 0);
+
+        final Mesos5xxException serverError = new Mesos5xxException("5xx", new MesosClientErrorContext(503, Collections.emptyList()));
+        subscriber.getOnNextEvents().get(1).onError(serverError);
+        assertStats(operator.snapshot(), 9, 0, 0);
+        assertThat(errors).containsExactly(clientError, serverError);
+    }
+
+    @Test
+    public void limitGrowsAdditivelyAndShrinksMultiplicatively() throws Exception {
+        final AimdConcurrencyLimit limit = new AimdConcurrencyLimit(2, 1, 3, 100, TimeUnit.MILLISECONDS);
+
+        // 2 -> 2.5 -> 2.9 -> 3.24, capped at 3
+        limit.onAccepted(limit.onSent(), TimeUnit.MILLISECONDS.toNanos(10));
+        limit.onAccepted(limit.onSent(), TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(limit.getLimit()).isEqualTo(2);
+        limit.onAccepted(limit.onSent(), TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(limit.getLimit()).isEqualTo(3);
+
+        // calls slower than the threshold are a sign of overload
+        limit.onAccepted(limit.onSent(), TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(limit.getLimit()).isEqualTo(2);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onDropped(limit.onSent());
+        }
+        assertThat(limit.getLimit()).isEqualTo(1);
+    }
+
+    @Test
+    public void limitShrinksOncePerWindow() throws Exception {
+        final AimdConcurrencyLimit limit = new AimdConcurrencyLimit(10, 1, 10, 100, TimeUnit.MILLISECONDS);
+        final long[] window = new long[10];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = limit.onSent();
+        }
+
+        // every call sent under the same limit is dropped, which only shrinks it once
+        for (final long sequence : window) {
+            limit.onDropped(sequence);
+        }
+        assertThat(limit.getLimit()).isEqualTo(9);
+
+        // a call sent after the limit was shrunk can shrink it again
+        limit.onDropped(limit.onSent());
+        assertThat(limit.getLimit()).isEqualTo(8);
+    }
+
+    @Test
+    public void cancelledAndTimedOutCallsDoNotReduceLimit() throws Exception {
+        final ConcurrencyLimitOperator<String> operator = new ConcurrencyLimitOperator<>(
+            new AimdConcurrencyLimit(10, 1, 10, 1, TimeUnit.SECONDS)
+        );
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        Observable.just("cancelled", "timed out")
+            .map(call -> SinkOperations.create(call, () -> {}, e -> {}))
+            .lift(operator)
+            .subscribe(subscriber);
+
+        subscriber.getOnNextEvents().get(0).onError(new CancellationException());
+        subscriber.getOnNextEvents().get(1).onError(new TimeoutException());
+        assertStats(operator.snapshot(), 10, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void initialLimitMustBeWithinRange() throws Exception {
+        new AimdConcurrencyLimit(11, 1, 10, 1, TimeUnit.SECONDS);
+    }
+
+    private static <T> List<T> sent(final TestSubscriber<SinkOperation<T>> subscriber) {
+        final List<T> sent = new ArrayList<>();
+        subscriber.getOnNextEvents().forEach(op -> sent.add(op.getThingToSink()));
+        return sent;
+    }
+
+    private static void assertStats(final ConcurrencyLimitStats stats, final int limit, final int inFlight, final int queued) {
+        assertThat(stats.getLimit()).isEqualTo(limit);
+        assertThat(stats.getInFlight()).isEqualTo(inFlight);
+        assertThat(stats.getQueued()).isEqualTo(queued);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+public final class HeartbeatMonitorTest {
+
+    private static final int MAX_MISSED_HEARTBEATS = 3;
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final ChannelReadControl readControl = new ChannelReadControl();
+    private final HeartbeatMonitor<String> monitor = new HeartbeatMonitor<>(
+        e -> e.startsWith("subscribed-") ? OptionalLong.of(Long.parseLong(e.substring(11))) : OptionalLong.empty(),
+        "heartbeat"::equals,
+        MAX_MISSED_HEARTBEATS,
+        readControl,
+        scheduler
+    );
+    private final PublishSubject<ByteBuf> content = PublishSubject.create();
+    private final TestSubscriber<ByteBuf> subscriber = new TestSubscriber<>();
+
+    @Test
+    public void heartbeatsAreNotDelivered() throws Exception {
+        assertThat(monitor.isNotHeartbeat("heartbeat")).isFalse();
+        assertThat(monitor.isNotHeartbeat("offer")).isTrue();
+        assertThat(monitor.isNotHeartbeat("subscribed-1000")).isTrue();
+    }
+
+    @Test
+    public void streamStallsOnceHeartbeatsAreMissed() throws Exception {
+        content.lift(monitor.watch()).subscribe(subscriber);
+        monitor.isNotHeartbeat("subscribed-1000");
+
+        scheduler.advanceTimeBy(2999, TimeUnit.MILLISECONDS);
+        subscriber.assertNoErrors();
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        subscriber.assertError(EventStreamStalledException.class);
+        final EventStreamStalledException e = (EventStreamStalledException) subscriber.getOnErrorEvents().get(0);
+        assertThat(e.getMissedHeartbeats()).isEqualTo(MAX_MISSED_HEARTBEATS);
+        assertThat(e.getHeartbeatIntervalMillis()).isEqualTo(1000);
+        assertThat(content.hasObservers()).isFalse();
+    }
+
+    @Test
+    public void receivingAnythingResetsMissedHeartbeats() throws Exception {
+        content.lift(monitor.watch()).subscribe(subscriber);
+        monitor.isNotHeartbeat("subscribed-1000");
+
+        scheduler.advanceTimeBy(2500, TimeUnit.MILLISECONDS);
+        content.onNext(Unpooled.EMPTY_BUFFER);
+        scheduler.advanceTimeBy(2500, TimeUnit.MILLISECONDS);
+        subscriber.assertNoErrors();
+
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+        subscriber.assertError(EventStreamStalledException.class);
+    }
+
+    @Test
+    public void nothingIsMissedWhileReadingIsPaused() throws Exception {
+        content.lift(monitor.watch()).subscribe(subscriber);
+        monitor.isNotHeartbeat("subscribed-1000");
+
+        readControl.setAutoRead(false);
+        scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+        subscriber.assertNoErrors();
+    }
+
+    @Test
+    public void nothingIsMissedUntilIntervalIsAnnounced() throws Exception {
+        content.lift(monitor.watch()).subscribe(subscriber);
+
+        scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+        subscriber.assertNoErrors();
+    }
+
+    @Test
+    public void newSubscriptionIsWatchedUsingPreviousInterval() throws Exception {
+        content.lift(monitor.watch()).subscribe(subscriber);
+        monitor.isNotHeartbeat("subscribed-1000");
+        scheduler.advanceTimeBy(3, TimeUnit.SECONDS);
+        subscriber.assertError(EventStreamStalledException.class);
+
+        final TestSubscriber<ByteBuf> resubscribed = new TestSubscriber<>();
+        content.lift(monitor.watch()).subscribe(resubscribed);
+        scheduler.advanceTimeBy(3, TimeUnit.SECONDS);
+        resubscribed.assertError(EventStreamStalledException.class);
+    }
+
+}
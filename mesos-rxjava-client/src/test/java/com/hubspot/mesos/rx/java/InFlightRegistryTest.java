@@ -0,0 +1,205 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+import rx.subscriptions.BooleanSubscription;
+import rx.subjects.PublishSubject;
+
+public final class InFlightRegistryTest {
+
+    private static final Mesos5xxException SERVICE_UNAVAILABLE =
+        new Mesos5xxException("call", new MesosClientErrorContext(503, Collections.emptyList()));
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+    private final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+    private final List<String> completed = new ArrayList<>();
+    private final List<Throwable> errors = new ArrayList<>();
+    /** The calls passing through the stages between where hedged attempts are merged in and the registry */
+    private final List<String> limited = new ArrayList<>();
+
+    @Test
+    public void callsTrackedUntilCompletedOrFailed() throws Exception {
+        final InFlightRegistry<String> registry = subscribe(0, null);
+
+        send("a");
+        send("b");
+        assertThat(registry.size()).isEqualTo(2);
+
+        attempt(0).onCompleted();
+        attempt(1).onError(SERVICE_UNAVAILABLE);
+        assertThat(registry.size()).isEqualTo(0);
+        assertThat(completed).containsExactly("a");
+        assertThat(errors).containsExactly(SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void callsFailedOnceDeadlinePasses() throws Exception {
+        final InFlightRegistry<String> registry = subscribe(100, null);
+
+        send("a");
+        scheduler.advanceTimeBy(99, TimeUnit.MILLISECONDS);
+        assertThat(errors).isEmpty();
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertThat(errors).hasSize(1);
+        assertThat(errors.get(0)).isInstanceOf(TimeoutException.class);
+        assertThat(registry.size()).isEqualTo(0);
+
+        // a response arriving after the deadline is ignored
+        attempt(0).onCompleted();
+        assertThat(completed).isEmpty();
+    }
+
+    @Test
+    public void requestsCancelledOnceDeadlinePasses() throws Exception {
+        subscribe(100, null);
+
+        send("a");
+        final BooleanSubscription request = new BooleanSubscription();
+        attempt(0).sending(request);
+        scheduler.advanceTimeBy(99, TimeUnit.MILLISECONDS);
+        assertThat(request.isUnsubscribed()).isFalse();
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertThat(request.isUnsubscribed()).isTrue();
+
+        // the cancelled request failing doesn't fail the call again
+        attempt(0).onError(new CancellationException());
+        assertThat(errors).hasSize(1);
+    }
+
+    @Test
+    public void slowHedgeableCallsAreHedged() throws Exception {
+        final InFlightRegistry<String> registry = subscribe(0, call -> call.startsWith("hedge"));
+        warmUp(registry);
+
+        send("hedge-1");
+        send("other-1");
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(sent()).containsExactly("hedge-1", "other-1", "hedge-1");
+        assertThat(registry.getHedgedAttempts()).isEqualTo(1);
+        // the hedged attempt passed through the same stages as the call
+        assertThat(limited).containsExactly("hedge-1", "other-1", "hedge-1");
+
+        // the first attempt failing doesn't fail the call while the hedged attempt is outstanding
+        attempt(0).onError(SERVICE_UNAVAILABLE);
+        assertThat(errors).isEmpty();
+        attempt(2).onCompleted();
+        assertThat(completed).containsExactly("hedge-1");
+    }
+
+    @Test
+    public void hedgedCallFailsOnceEveryAttemptHasFailed() throws Exception {
+        final InFlightRegistry<String> registry = subscribe(0, call -> true);
+        warmUp(registry);
+
+        send("hedge-1");
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        attempt(1).onError(SERVICE_UNAVAILABLE);
+        assertThat(errors).isEmpty();
+        attempt(0).onError(SERVICE_UNAVAILABLE);
+        assertThat(errors).containsExactly(SERVICE_UNAVAILABLE);
+        assertThat(registry.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void callNotHedgedOnceStreamHasCompleted() throws Exception {
+        final InFlightRegistry<String> registry = subscribe(0, call -> true);
+        warmUp(registry);
+
+        send("hedge-1");
+        subject.onCompleted();
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(sent()).containsExactly("hedge-1");
+
+        // the call fails once its only attempt has failed
+        attempt(0).onError(SERVICE_UNAVAILABLE);
+        assertThat(errors).containsExactly(SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void callsNotHedgedUntilLatenciesObserved() throws Exception {
+        final InFlightRegistry<String> registry = subscribe(0, call -> true);
+
+        send("hedge-1");
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(sent()).containsExactly("hedge-1");
+        assertThat(registry.getHedgedAttempts()).isEqualTo(0);
+    }
+
+    private InFlightRegistry<String> subscribe(final long deadlineMillis, final Predicate<String> hedgeable) {
+        final InFlightRegistry<String> registry = new InFlightRegistry<>(deadlineMillis, hedgeable, 50, scheduler);
+        final InFlightRegistry.Hedges<String> hedges = new InFlightRegistry.Hedges<>();
+        subject
+            .compose(hedges::mergeInto)
+            .doOnNext(op -> {
+                if (!op.getThingToSink().equals("warm-up")) {
+                    limited.add(op.getThingToSink());
+                }
+            })
+            .compose(operations -> registry.track(operations, hedges))
+            .subscribe(subscriber);
+        return registry;
+    }
+
+    /**
+     * Sends and completes enough calls for the registry to start hedging.
+     */
+    private void warmUp(final InFlightRegistry<String> registry) {
+        for (int i = 0; i < InFlightRegistry.HEDGE_RECALCULATION_INTERVAL; i++) {
+            subject.onNext(SinkOperations.create("warm-up"));
+        }
+        subscriber.getOnNextEvents().forEach(SinkOperation::onCompleted);
+        assertThat(registry.size()).isEqualTo(0);
+    }
+
+    /**
+     * @return The {@code index}th attempt sent, ignoring those sent by {@link #warmUp(InFlightRegistry)}
+     */
+    private SinkOperation<String> attempt(final int index) {
+        return subscriber.getOnNextEvents().stream()
+            .filter(op -> !op.getThingToSink().equals("warm-up"))
+            .collect(Collectors.toList())
+            .get(index);
+    }
+
+    private void send(final String call) {
+        subject.onNext(SinkOperations.create(call, () -> completed.add(call), errors::add));
+    }
+
+    private List<String> sent() {
+        return subscriber.getOnNextEvents().stream()
+            .map(SinkOperation::getThingToSink)
+            .filter(call -> !call.equals("warm-up"))
+            .collect(Collectors.toList());
+    }
+
+}
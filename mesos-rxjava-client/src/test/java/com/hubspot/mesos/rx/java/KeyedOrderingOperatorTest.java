@@ -0,0 +1,174 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public final class KeyedOrderingOperatorTest {
+
+    private static final Mesos4xxException BAD_REQUEST =
+        new Mesos4xxException("call", new MesosClientErrorContext(400, Collections.emptyList()));
+
+    private final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+    private final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+    private final List<String> completed = new ArrayList<>();
+    private final List<Throwable> errors = new ArrayList<>();
+
+    @Test
+    public void operationsWithDifferentKeysAreSentConcurrently() throws Exception {
+        subscribe();
+
+        send("a-1");
+        send("b-1");
+        send("c-1");
+        assertThat(sent()).containsExactly("a-1", "b-1", "c-1");
+    }
+
+    @Test
+    public void operationsWithSameKeyWaitForPreviousOperation() throws Exception {
+        subscribe();
+
+        send("a-1");
+        send("a-2");
+        send("b-1");
+        send("a-3");
+        assertThat(sent()).containsExactly("a-1", "b-1");
+
+        complete(0);
+        assertThat(sent()).containsExactly("a-1", "b-1", "a-2");
+        assertThat(completed).containsExactly("a-1");
+
+        fail(2, BAD_REQUEST);
+        assertThat(sent()).containsExactly("a-1", "b-1", "a-2", "a-3");
+        assertThat(errors).containsExactly(BAD_REQUEST);
+    }
+
+    @Test
+    public void operationsWithoutKeyAreNotOrdered() throws Exception {
+        subscribe();
+
+        send("a-1");
+        send("a-2");
+        send("unordered");
+        assertThat(sent()).containsExactly("a-1", "unordered");
+    }
+
+    @Test
+    public void operationsAreOnlySentWhenRequested() throws Exception {
+        final TestSubscriber<SinkOperation<String>> slow = new TestSubscriber<>(1);
+        subject.lift(new KeyedOrderingOperator<>(KeyedOrderingOperatorTest::key)).subscribe(slow);
+
+        send("a-1");
+        send("b-1");
+        assertThat(slow.getOnNextEvents()).hasSize(1);
+        slow.requestMore(1);
+        assertThat(slow.getOnNextEvents()).hasSize(2);
+    }
+
+    @Test
+    public void higherPriorityOperationsReadyAreSentFirst() throws Exception {
+        final TestSubscriber<SinkOperation<String>> slow = new TestSubscriber<>(0);
+        subject.lift(new KeyedOrderingOperator<>(KeyedOrderingOperatorTest::key)).subscribe(slow);
+
+        send("a-1");
+        send("b-1");
+        subject.onNext(SinkOperations.sink("c-1", SendPriority.HIGH));
+        subject.onNext(SinkOperations.sink("d-1", SendPriority.LOW));
+        slow.requestMore(4);
+        assertThat(slow.getOnNextEvents()).extracting(SinkOperation::getThingToSink)
+            .containsExactly("c-1", "a-1", "b-1", "d-1");
+    }
+
+    @Test
+    public void completionWaitsForQueuedOperations() throws Exception {
+        subscribe();
+
+        send("a-1");
+        send("a-2");
+        subject.onCompleted();
+        subscriber.assertNotCompleted();
+        complete(0);
+        assertThat(sent()).containsExactly("a-1", "a-2");
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void queuedOperationsFailWithTheStreamError() throws Exception {
+        subscribe();
+
+        send("a-1");
+        send("a-2");
+        send("a-3");
+        final IllegalStateException streamError = new IllegalStateException("stream failed");
+        subject.onError(streamError);
+        subscriber.assertError(streamError);
+        assertThat(errors).containsExactly(streamError, streamError);
+
+        // the outcome of the operation in flight is still delivered
+        complete(0);
+        assertThat(completed).containsExactly("a-1");
+    }
+
+    @Test
+    public void queuedOperationsAreCancelledWhenUnsubscribed() throws Exception {
+        subscribe();
+
+        send("a-1");
+        send("a-2");
+        subscriber.unsubscribe();
+        assertThat(errors).hasSize(1).allMatch(e -> e instanceof CancellationException);
+        assertThat(subject.hasObservers()).isFalse();
+    }
+
+    private static Object key(final String call) {
+        final int separator = call.indexOf('-');
+        return separator < 0 ? null : call.substring(0, separator);
+    }
+
+    private void subscribe() {
+        subject.lift(new KeyedOrderingOperator<>(KeyedOrderingOperatorTest::key)).subscribe(subscriber);
+    }
+
+    private void send(final String call) {
+        subject.onNext(SinkOperations.create(call, () -> completed.add(call), errors::add));
+    }
+
+    private void complete(final int index) {
+        subscriber.getOnNextEvents().get(index).onCompleted();
+    }
+
+    private void fail(final int index, final Throwable e) {
+        subscriber.getOnNextEvents().get(index).onError(e);
+    }
+
+    private List<String> sent() {
+        final List<String> sent = new ArrayList<>();
+        subscriber.getOnNextEvents().forEach(op -> sent.add(op.getThingToSink()));
+        return sent;
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ *    Copyright (C) 2016 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public final class LeaderResolverTest {
+
+    private static final URI MASTER_1 = URI.create("http://master-1:5050/api/v1/scheduler");
+    private static final URI MASTER_2 = URI.create("http://master-2:5050/api/v1/scheduler");
+    private static final URI MASTER_3 = URI.create("http://master-3:5050/api/v1/scheduler");
+    private static final List<URI> MASTERS = Arrays.asList(MASTER_1, MASTER_2, MASTER_3);
+
+    private final Map<URI, PublishSubject<Optional<URI>>> probes = new HashMap<>();
+    private final List<URI> probed = new ArrayList<>();
+    private final LeaderResolver resolver = new LeaderResolver(MASTERS, uri -> {
+        probed.add(uri);
+        return probes.computeIfAbsent(uri, u -> PublishSubject.create());
+    });
+
+    @Test
+    public void everyMasterIsProbedConcurrently() throws Exception {
+        resolver.resolve().subscribe(new TestSubscriber<>());
+        assertThat(probed).containsExactly(MASTER_1, MASTER_2, MASTER_3);
+    }
+
+    @Test
+    public void firstAnnouncedLeaderIsUsedWithoutWaitingForOtherMasters() throws Exception {
+        final TestSubscriber<URI> subscriber = resolve();
+
+        probes.get(MASTER_2).onNext(Optional.of(MASTER_3));
+        subscriber.assertValue(MASTER_3);
+        subscriber.assertCompleted();
+        assertThat(resolver.getLeader()).isEqualTo(MASTER_3);
+        assertThat(probes.get(MASTER_1).hasObservers()).isFalse();
+    }
+
+    @Test
+    public void firstReachableMasterIsUsedIfNoneAnnouncesLeader() throws Exception {
+        final TestSubscriber<URI> subscriber = resolve();
+
+        probes.get(MASTER_3).onNext(Optional.empty());
+        probes.get(MASTER_1).onError(new ConnectException("Connection refused"));
+        probes.get(MASTER_2).onNext(Optional.empty());
+        subscriber.assertValue(MASTER_2);
+    }
+
+    @Test
+    public void failsIfNoMasterCanBeReached() throws Exception {
+        final TestSubscriber<URI> subscriber = resolve();
+
+        final ConnectException refused = new ConnectException("Connection refused");
+        probes.get(MASTER_2).onError(refused);
+        probes.get(MASTER_1).onError(new ConnectException("Connection refused"));
+        probes.get(MASTER_3).onError(new ConnectException("Connection refused"));
+        subscriber.assertError(refused);
+        assertThat(resolver.getLeader()).isNull();
+    }
+
+    @Test
+    public void leaderIsCachedUntilLeadershipMoves() throws Exception {
+        resolve();
+        probes.get(MASTER_1).onNext(Optional.of(MASTER_2));
+
+        probed.clear();
+        resolve().assertValue(MASTER_2);
+        assertThat(probed).isEmpty();
+
+        resolver.onError(new Mesos4xxException("call", new MesosClientErrorContext(400, Collections.emptyList())));
+        assertThat(resolver.getLeader()).isEqualTo(MASTER_2);
+
+        resolver.onError(new ConnectException("Connection refused"));
+        assertThat(resolver.getLeader()).isNull();
+        resolve();
+        assertThat(probed).containsExactly(MASTER_1, MASTER_2, MASTER_3);
+    }
+
+    @Test
+    public void redirectedCallsInvalidateTheLeader() throws Exception {
+        resolve();
+        probes.get(MASTER_1).onNext(Optional.of(MASTER_2));
+
+        final List<Throwable> errors = new ArrayList<>();
+        final SinkOperation<String> op = resolver.track(SinkOperations.create("call", () -> {}, errors::add));
+        final MesosException redirected =
+            new MesosException("call", new MesosClientErrorContext(307, Collections.emptyList()));
+        op.onError(redirected);
+        assertThat(errors).containsExactly(redirected);
+        assertThat(resolver.getLeader()).isNull();
+    }
+
+    @Test
+    public void indicatesLeaderChange() throws Exception {
+        final MesosClientErrorContext redirect = new MesosClientErrorContext(307, Collections.emptyList());
+        final MesosClientErrorContext unavailable = new MesosClientErrorContext(503, Collections.emptyList());
+        assertThat(LeaderResolver.indicatesLeaderChange(new MesosException("call", redirect))).isTrue();
+        assertThat(LeaderResolver.indicatesLeaderChange(new RuntimeException(new ConnectException()))).isTrue();
+        assertThat(LeaderResolver.indicatesLeaderChange(new Mesos5xxException("call", unavailable))).isFalse();
+        assertThat(LeaderResolver.indicatesLeaderChange(new IllegalStateException())).isFalse();
+    }
+
+    private TestSubscriber<URI> resolve() {
+        final TestSubscriber<URI> subscriber = new TestSubscriber<>();
+        resolver.resolve().subscribe(subscriber);
+        return subscriber;
+    }
+
+}
@@ -16,16 +16,13 @@
 
 package com.hubspot.mesos.rx.java;
 
-import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.fail;
 
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
-import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
@@ -41,7 +38,6 @@ import io.reactivex.netty.RxNetty;
 import io.reactivex.netty.protocol.http.server.HttpServer;
 import io.reactivex.netty.protocol.http.server.HttpServerResponse;
 import io.reactivex.netty.protocol.http.server.RequestHandler;
-import rx.exceptions.MissingBackpressureException;
 
 public final class MesosClientBackpressureIntegrationTest {
 
@@ -53,8 +49,9 @@ public final class MesosClientBackpressureIntegrationTest {
     public Timeout timeoutRule = new Timeout(10000, TimeUnit.MILLISECONDS);
 
     @Test
-    @Ignore
-    public void testBurstyObservable_missingBackpressureException() throws Throwable {
+    public void testBurstyObservable_demandDrivenWithoutBufferSucceeds() throws Throwable {
+        msgNo = 0;
+        final int numMessages = 20000;
         final String subscribedMessage = "{\"type\": \"SUBSCRIBED\",\"subscribed\": {\"framework_id\": {\"value\":\"12220-3440-12532-2345\"},\"heartbeat_interval_seconds\":15.0}";
         final String heartbeatMessage = "{\"type\":\"HEARTBEAT\"}";
         final byte[] hmsg = heartbeatMessage.getBytes(StandardCharsets.UTF_8);
@@ -64,11 +61,11 @@ public final class MesosClientBackpressureIntegrationTest {
             response.setStatus(HttpResponseStatus.OK);
             response.getHeaders().setHeader("Content-Type", "text/plain;charset=utf-8");
             writeRecordIOMessage(response, subscribedMessage);
-            for (int i = 0; i < 20000; i++) {
+            for (int i = 0; i < numMessages; i++) {
                 response.writeBytes(hbytes);
                 response.writeBytes(hmsg);
             }
-            return response.flush();
+            return response.close();
         };
         final HttpServer<ByteBuf, ByteBuf> server = RxNetty.createHttpServer(0, handler);
         server.start();
@@ -77,12 +74,9 @@ public final class MesosClientBackpressureIntegrationTest {
 
         try {
             client.openStream().await();
-            fail("Expect an exception to be propagated up due to backpressure");
-        } catch (MissingBackpressureException e) {
-            // expected
-            e.printStackTrace();
-            assertThat(e.getMessage()).isNullOrEmpty();
         } finally {
+            // 20000 heartbeats PLUS 1 subscribe
+            assertEquals("All heartbeats received (plus the subscribed)", 1 + numMessages, msgNo);
             server.shutdown();
         }
     }
@@ -118,6 +112,37 @@ public final class MesosClientBackpressureIntegrationTest {
         }
     }
 
+    @Test
+    public void testBurstyObservable_zeroCopyReceiveSucceeds() throws Throwable {
+        msgNo = 0;
+        final int numMessages = 20000;
+        final String subscribedMessage = "{\"type\": \"SUBSCRIBED\",\"subscribed\": {\"framework_id\": {\"value\":\"12220-3440-12532-2345\"},\"heartbeat_interval_seconds\":15.0}";
+        final String heartbeatMessage = "{\"type\":\"HEARTBEAT\"}";
+        final RequestHandler<ByteBuf, ByteBuf> handler = (request, response) -> {
+            response.setStatus(HttpResponseStatus.OK);
+            response.getHeaders().setHeader("Content-Type", "text/plain;charset=utf-8");
+            writeRecordIOMessage(response, subscribedMessage);
+            for (int i = 0; i < numMessages; i++) {
+                writeRecordIOMessage(response, heartbeatMessage);
+            }
+            return response.close();
+        };
+        final HttpServer<ByteBuf, ByteBuf> server = RxNetty.createHttpServer(0, handler);
+        server.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", server.getServerPort()));
+        final MesosClient<String, String> client = createClientForStreaming(uri)
+                .zeroCopyReceive()
+                .build();
+
+        try {
+            client.openStream().await();
+        } finally {
+            // 20000 heartbeats PLUS 1 subscribe
+            assertEquals("All heartbeats received (plus the subscribed)", 1 + numMessages, msgNo);
+            server.shutdown();
+        }
+    }
+
     private void writeRecordIOMessage(HttpServerResponse<ByteBuf> response, String msg) {
         response.writeBytesAndFlush(String.format("%d\n", msg.getBytes().length).getBytes(StandardCharsets.UTF_8));
         response.writeBytesAndFlush(msg.getBytes(StandardCharsets.UTF_8));
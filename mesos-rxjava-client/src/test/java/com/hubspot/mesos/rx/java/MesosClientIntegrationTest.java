@@ -16,20 +16,39 @@
 
 package com.hubspot.mesos.rx.java;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.jetbrains.annotations.NotNull;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 
+import com.hubspot.mesos.rx.java.recordio.RecordIOEncoder;
+import com.hubspot.mesos.rx.java.test.RecordIOUtils;
 import com.hubspot.mesos.rx.java.test.StringMessageCodec;
+import com.hubspot.mesos.rx.java.test.simulation.MesosServerSimulation;
 import com.hubspot.mesos.rx.java.util.UserAgentEntries;
 
 import io.netty.buffer.ByteBuf;
@@ -37,6 +56,12 @@ import io.netty.handler.codec.http.HttpResponseStatus;
 import io.reactivex.netty.RxNetty;
 import io.reactivex.netty.protocol.http.server.HttpServer;
 import io.reactivex.netty.protocol.http.server.RequestHandler;
+import rx.BackpressureOverflow;
+import rx.Observable;
+import rx.Scheduler;
+import rx.plugins.RxJavaHooks;
+import rx.schedulers.Schedulers;
+import rx.subjects.BehaviorSubject;
 
 public final class MesosClientIntegrationTest {
 
@@ -147,6 +172,973 @@ public final class MesosClientIntegrationTest {
         }
     }
 
+    @Test
+    public void testPipelineRecordIOEncoderAndDecoder() throws Throwable {
+        final List<String> events = newArrayList("subscribed", "", "heartbeat", "offer");
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            Observable.from(events),
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals,
+            RecordIOEncoder::new
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .pipelineRecordIODecoding()
+            .processStream(stream ->
+                stream
+                    .doOnNext(received::add)
+                    .map(e -> Optional.empty()))
+            .subscribe("subscribe")
+            .build();
+
+        try {
+            client.openStream().await();
+            assertThat(received).isEqualTo(events);
+        } finally {
+            sim.shutdown();
+        }
+    }
+
+    @Test
+    public void testMesosUris_unreachableMasterIsSkipped() throws Throwable {
+        final HttpServer<ByteBuf, ByteBuf> stopped = RxNetty.createHttpServer(0, (request, response) -> response.close());
+        stopped.start();
+        final URI down = URI.create(String.format("http://localhost:%d/api/v1/scheduler", stopped.getServerPort()));
+        stopped.shutdown();
+
+        final List<String> events = newArrayList("subscribed", "heartbeat", "offer");
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            Observable.from(events),
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI up = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUris(newArrayList(down, up))
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .processStream(stream ->
+                stream
+                    .doOnNext(received::add)
+                    .map(e -> Optional.empty()))
+            .subscribe("subscribe")
+            .build();
+
+        try {
+            client.openStream().await();
+            assertThat(received).isEqualTo(events);
+        } finally {
+            sim.shutdown();
+        }
+    }
+
+    @Test
+    public void testProcessStreamBatched() throws Throwable {
+        final List<String> events = newArrayList("subscribed", "offer-1", "offer-2", "offer-3", "offer-4", "offer-5");
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            Observable.from(events),
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .processStreamBatched(4, 1, TimeUnit.SECONDS, stream ->
+                stream
+                    .doOnNext(batches::add)
+                    .map(batch -> batch.stream()
+                        .filter(e -> e.startsWith("offer"))
+                        .map(e -> SinkOperations.create("decline-" + e))
+                        .collect(Collectors.toList())))
+            .subscribe("subscribe")
+            .build();
+
+        try {
+            client.openStream().await();
+            sim.awaitCall(6);
+            assertThat(batches).isEqualTo(newArrayList(events.subList(0, 4), events.subList(4, 6)));
+            assertThat(sim.getCallsReceived()).containsOnly(
+                "subscribe", "decline-offer-1", "decline-offer-2", "decline-offer-3", "decline-offer-4", "decline-offer-5"
+            );
+        } finally {
+            sim.shutdown();
+        }
+    }
+
+    @Test
+    public void testLowLatencyReceive_eventsDeliveredAsSoonAsTheyAreSent() throws Throwable {
+        final int warmupEvents = 20;
+        final int measuredEvents = 50;
+        final BehaviorSubject<String> events = BehaviorSubject.create("subscribed");
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            events,
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final BlockingQueue<Long> receivedAt = new LinkedBlockingQueue<>();
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .lowLatencyReceive()
+            .processStream(stream ->
+                stream
+                    .doOnNext(e -> receivedAt.add(System.nanoTime()))
+                    .map(e -> Optional.empty()))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            assertThat(receivedAt.poll(5, TimeUnit.SECONDS)).isNotNull();
+            final List<Long> latencies = new ArrayList<>(measuredEvents);
+            for (int i = 0; i < warmupEvents + measuredEvents; i++) {
+                final long sentAt = System.nanoTime();
+                events.onNext("event-" + i);
+                final Long received = receivedAt.poll(5, TimeUnit.SECONDS);
+                assertThat(received).isNotNull();
+                if (i >= warmupEvents) {
+                    latencies.add(received - sentAt);
+                }
+            }
+            Collections.sort(latencies);
+            final long medianMillis = TimeUnit.NANOSECONDS.toMillis(latencies.get(latencies.size() / 2));
+            assertThat(medianMillis).isLessThan(10);
+        } finally {
+            subscription.unsubscribe();
+            sim.shutdown();
+        }
+    }
+
+    @Test
+    public void testSchedulers_eventsAndCallbacksRunOnConfiguredSchedulers() throws Throwable {
+        final BehaviorSubject<String> events = BehaviorSubject.create("subscribed");
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            events,
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final ExecutorService receiveExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-receive"));
+        final ExecutorService callbackExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-callback"));
+        final BlockingQueue<String> receivedOn = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> completedOn = new LinkedBlockingQueue<>();
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .receiveScheduler(Schedulers.from(receiveExecutor))
+            .sendScheduler(Schedulers.immediate())
+            .callbackScheduler(Schedulers.from(callbackExecutor))
+            .processStream(stream ->
+                stream
+                    .doOnNext(e -> receivedOn.add(Thread.currentThread().getName()))
+                    .filter(e -> e.startsWith("offer"))
+                    .map(e -> Optional.of(SinkOperations.create(
+                        "decline-" + e,
+                        () -> completedOn.add(Thread.currentThread().getName())
+                    ))))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            assertThat(receivedOn.poll(5, TimeUnit.SECONDS)).isEqualTo("test-receive");
+            events.onNext("offer-1");
+            assertThat(receivedOn.poll(5, TimeUnit.SECONDS)).isEqualTo("test-receive");
+            assertThat(completedOn.poll(5, TimeUnit.SECONDS)).isEqualTo("test-callback");
+            assertThat(sim.getCallsReceived()).containsExactly("subscribe", "decline-offer-1");
+        } finally {
+            subscription.unsubscribe();
+            sim.shutdown();
+            receiveExecutor.shutdownNow();
+            callbackExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSchedulers_timersRunOnConfiguredSchedulers() throws Throwable {
+        final BehaviorSubject<String> events = BehaviorSubject.create("subscribed");
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            events,
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final ExecutorService receiveExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-receive"));
+        final ExecutorService sendExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-send"));
+        final ExecutorService callbackExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-callback"));
+        final AtomicInteger computationWorkers = new AtomicInteger();
+        RxJavaHooks.setOnComputationScheduler(computation -> new Scheduler() {
+            @Override
+            public Worker createWorker() {
+                // the timers of the simulated Mesos master are not the client's
+                final boolean byServer = Arrays.stream(new Throwable().getStackTrace())
+                    .anyMatch(frame -> frame.getClassName().startsWith("io.reactivex.netty.protocol.http.server"));
+                if (!byServer) {
+                    computationWorkers.incrementAndGet();
+                }
+                return computation.createWorker();
+            }
+        });
+        final BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+        AwaitableSubscription subscription = null;
+        try {
+            final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+                .sendCodec(StringMessageCodec.UTF8_STRING)
+                .receiveCodec(StringMessageCodec.UTF8_STRING)
+                .mesosUri(uri)
+                .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+                .receiveScheduler(Schedulers.from(receiveExecutor))
+                .sendScheduler(Schedulers.from(sendExecutor))
+                .callbackScheduler(Schedulers.from(callbackExecutor))
+                .processStreamBatched(2, 10, TimeUnit.MILLISECONDS, stream ->
+                    stream.map(batch -> batch.stream()
+                        .filter(e -> e.startsWith("offer"))
+                        .map(e -> SinkOperations.create("decline-" + e, () -> completed.add("decline-" + e)))
+                        .collect(Collectors.toList())))
+                .coalesceSends(2, 10, TimeUnit.MILLISECONDS, ops -> ops)
+                .rateLimitSends(call -> "all", 100, 10)
+                .retryPolicy(RetryPolicyBuilder.<String>newBuilder().maxAttempts(2).build())
+                .callDeadline(5, TimeUnit.SECONDS)
+                .hedgeCalls(call -> true, 99)
+                .reconnect(10, 100, TimeUnit.MILLISECONDS)
+                .detectStalls(
+                    e -> e.equals("subscribed") ? OptionalLong.of(60000) : OptionalLong.empty(),
+                    "heartbeat"::equals,
+                    3
+                )
+                .subscribe("subscribe")
+                .build();
+            subscription = client.openStream();
+
+            events.onNext("offer-1");
+            assertThat(completed.poll(5, TimeUnit.SECONDS)).isEqualTo("decline-offer-1");
+            assertThat(sim.getCallsReceived()).containsExactly("subscribe", "decline-offer-1");
+            assertThat(computationWorkers.get()).isEqualTo(0);
+        } finally {
+            RxJavaHooks.setOnComputationScheduler(null);
+            if (subscription != null) {
+                subscription.unsubscribe();
+            }
+            sim.shutdown();
+            receiveExecutor.shutdownNow();
+            sendExecutor.shutdownNow();
+            callbackExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSendConnectionPool_connectionsPrewarmedAfterSubscribe() throws Throwable {
+        final BehaviorSubject<String> events = BehaviorSubject.create("subscribed");
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            events,
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .sendConnectionPool(2, 10, 1, TimeUnit.MINUTES)
+            .processStream(stream ->
+                stream
+                    .filter(e -> e.startsWith("offer"))
+                    .map(e -> Optional.of(SinkOperations.create("decline-" + e))))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            awaitPoolStats(client, stats -> stats.getConnectionsCreated() == 2 && stats.getConnectionsInUse() == 0);
+
+            events.onNext("offer-1");
+            sim.awaitCall(2);
+            // the call may be received before the pool has published the reuse of the connection
+            awaitPoolStats(client, stats -> stats.getConnectionsReused() == 1 && stats.getConnectionsInUse() == 0);
+
+            final ConnectionPoolStats stats = client.getSendConnectionPoolStats();
+            assertThat(stats.getConnectionsCreated()).isEqualTo(2);
+            assertThat(stats.getConnectionsReused()).isEqualTo(1);
+            assertThat(sim.getCallsReceived()).containsExactly("subscribe", "decline-offer-1");
+        } finally {
+            subscription.unsubscribe();
+            sim.shutdown();
+        }
+    }
+
+    @Test
+    public void testSendConnectionPool_burstLargerThanPoolWaitsForConnections() throws Throwable {
+        final int offerCount = 100;
+        final List<String> events = new ArrayList<>();
+        events.add("subscribed");
+        for (int i = 0; i < offerCount; i++) {
+            events.add("offer-" + i);
+        }
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            Observable.from(events).concatWith(Observable.never()),
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+        final List<Throwable> errors = new CopyOnWriteArrayList<>();
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .sendConnectionPool(1, 2, 1, TimeUnit.MINUTES)
+            .onSendEventBackpressureBuffer()
+            .processStream(stream ->
+                stream
+                    .filter(e -> e.startsWith("offer"))
+                    .map(e -> "decline-" + e)
+                    .map(call -> Optional.of(SinkOperations.create(call, () -> completed.add(call), errors::add))))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            sim.awaitCall(offerCount + 1);
+            for (int i = 0; i < offerCount; i++) {
+                assertThat(completed.poll(5, TimeUnit.SECONDS)).isNotNull();
+            }
+            assertThat(errors).isEmpty();
+            assertThat(client.getSendConnectionPoolStats().getConnectionsCreated()).isLessThanOrEqualTo(2);
+            // each call is only requested once the connection of an earlier one has been returned to the pool, so only
+            // the first calls can find the pool exhausted, while its minimum connection is being established
+            assertThat(client.getSendConnectionPoolStats().getAcquireFailures()).isLessThanOrEqualTo(1);
+        } finally {
+            subscription.unsubscribe();
+            sim.shutdown();
+        }
+    }
+
+    @Test
+    public void testSendConnectionPool_singleConnectionIsReusedForEveryCall() throws Throwable {
+        final int offerCount = 20;
+        final List<String> events = new ArrayList<>();
+        events.add("subscribed");
+        for (int i = 0; i < offerCount; i++) {
+            events.add("offer-" + i);
+        }
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            Observable.from(events).concatWith(Observable.never()),
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .sendConnectionPool(1, 1, 1, TimeUnit.MINUTES)
+            .onSendEventBackpressureBuffer()
+            .processStream(stream ->
+                stream
+                    .filter(e -> e.startsWith("offer"))
+                    .map(e -> "decline-" + e)
+                    .map(call -> Optional.of(SinkOperations.create(call, () -> completed.add(call), e -> {}))))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            // the connection of a call is often released before the call is seen to be answered
+            for (int i = 0; i < offerCount; i++) {
+                assertThat(completed.poll(5, TimeUnit.SECONDS)).isNotNull();
+            }
+            assertThat(client.getSendConnectionPoolStats().getConnectionsCreated()).isEqualTo(1);
+        } finally {
+            subscription.unsubscribe();
+            sim.shutdown();
+        }
+    }
+
+    @Test
+    public void testPipelinedSends() throws Throwable {
+        final int offerCount = 50;
+        final List<String> events = new ArrayList<>();
+        events.add("subscribed");
+        for (int i = 0; i < offerCount; i++) {
+            events.add("offer-" + i);
+        }
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            Observable.from(events).concatWith(Observable.never()),
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .pipelinedSends(8)
+            .onSendEventBackpressureBuffer()
+            .processStream(stream ->
+                stream
+                    .filter(e -> e.startsWith("offer"))
+                    .map(e -> "decline-" + e)
+                    .map(call -> Optional.of(SinkOperations.create(call, () -> completed.add(call)))))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            sim.awaitCall(offerCount + 1);
+            final List<String> expected = events.stream()
+                .filter(e -> e.startsWith("offer"))
+                .map(e -> "decline-" + e)
+                .collect(Collectors.toList());
+            final List<String> completedCalls = new ArrayList<>(offerCount);
+            for (int i = 0; i < offerCount; i++) {
+                final String call = completed.poll(5, TimeUnit.SECONDS);
+                assertThat(call).isNotNull();
+                completedCalls.add(call);
+            }
+            assertThat(completedCalls).isEqualTo(expected);
+            assertThat(sim.getCallsReceived().subList(1, offerCount + 1)).isEqualTo(expected);
+        } finally {
+            subscription.unsubscribe();
+            sim.shutdown();
+        }
+    }
+
+    @Test
+    public void testCoalesceSends() throws Throwable {
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            Observable.just("subscribed", "offer-1", "offer-2", "offer-3").concatWith(Observable.never()),
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .coalesceSends(3, 1, TimeUnit.SECONDS, ops -> Collections.singletonList(
+                SinkOperations.create(
+                    ops.stream().map(SinkOperation::getThingToSink).collect(Collectors.joining(",")),
+                    () -> ops.forEach(SinkOperation::onCompleted)
+                )
+            ))
+            .processStream(stream ->
+                stream
+                    .filter(e -> e.startsWith("offer"))
+                    .map(e -> "decline-" + e)
+                    .map(call -> Optional.of(SinkOperations.create(call, () -> completed.add(call)))))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            sim.awaitCall(2);
+            assertThat(sim.getCallsReceived()).containsExactly(
+                "subscribe", "decline-offer-1,decline-offer-2,decline-offer-3"
+            );
+            final List<String> completedCalls = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                completedCalls.add(completed.poll(5, TimeUnit.SECONDS));
+            }
+            assertThat(completedCalls).containsExactly("decline-offer-1", "decline-offer-2", "decline-offer-3");
+        } finally {
+            subscription.unsubscribe();
+            sim.shutdown();
+        }
+    }
+
+    @Test
+    public void testAdaptiveConcurrencyLimit() throws Throwable {
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            Observable.just("subscribed", "offer-1", "offer-2", "offer-3").concatWith(Observable.never()),
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .adaptiveConcurrencyLimit(1, 1, 4, 10, TimeUnit.SECONDS)
+            .processStream(stream ->
+                stream
+                    .filter(e -> e.startsWith("offer"))
+                    .map(e -> "decline-" + e)
+                    .map(call -> Optional.of(SinkOperations.create(call, () -> completed.add(call)))))
+            .subscribe("subscribe")
+            .build();
+        assertThat(client.getConcurrencyLimitStats()).isPresent();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            final List<String> completedCalls = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                completedCalls.add(completed.poll(5, TimeUnit.SECONDS));
+            }
+            // once the limit has grown calls may be accepted in any order
+            assertThat(completedCalls).containsOnly("decline-offer-1", "decline-offer-2", "decline-offer-3");
+            assertThat(sim.getCallsReceived()).containsOnly(
+                "subscribe", "decline-offer-1", "decline-offer-2", "decline-offer-3"
+            );
+            final ConcurrencyLimitStats stats = client.getConcurrencyLimitStats().get();
+            // every call was accepted quickly so the limit has grown from its initial value
+            assertThat(stats.getLimit()).isEqualTo(2);
+            assertThat(stats.getInFlight()).isEqualTo(0);
+            assertThat(stats.getQueued()).isEqualTo(0);
+        } finally {
+            subscription.unsubscribe();
+            sim.shutdown();
+        }
+    }
+
+    @Test
+    public void testPrioritizeSends_urgentCallsOvertakeAStormOfBulkCalls() throws Throwable {
+        final BlockingQueue<String> callsReceived = new LinkedBlockingQueue<>();
+        final RequestHandler<ByteBuf, ByteBuf> handler = (request, response) -> {
+            if (!"/api/v1/scheduler".equals(request.getUri())) {
+                response.setStatus(HttpResponseStatus.NOT_FOUND);
+                response.getHeaders().setHeader("Content-Length", "0");
+                return response.close();
+            }
+            return request.getContent().flatMap(buf -> {
+                final String call = buf.toString(StandardCharsets.UTF_8);
+                callsReceived.add(call);
+                if (!"subscribe".equals(call)) {
+                    // Mesos takes a while to accept each call, so the calls produced pile up
+                    return Observable.timer(5, TimeUnit.MILLISECONDS).flatMap(t -> {
+                        response.setStatus(HttpResponseStatus.ACCEPTED);
+                        return response.close();
+                    });
+                }
+                response.getHeaders().setTransferEncodingChunked();
+                response.getHeaders().set("Content-Type", StringMessageCodec.UTF8_STRING.mediaType());
+                response.getHeaders().set("Mesos-Stream-Id", "stream-1");
+                final List<String> events = new ArrayList<>();
+                for (int i = 1; i <= 500; i++) {
+                    events.add("offer-" + i);
+                }
+                events.addAll(Arrays.asList("update-1", "kill-1", "update-2"));
+                for (final String event : events) {
+                    response.writeBytesAndFlush(RecordIOUtils.createChunk(event.getBytes(StandardCharsets.UTF_8)));
+                }
+                return Observable.never();
+            });
+        };
+        final HttpServer<ByteBuf, ByteBuf> server = RxNetty.createHttpServer(0, handler);
+        server.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", server.getServerPort()));
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .sendConnectionPool(1, 1, 1, TimeUnit.MINUTES)
+            .onSendEventBackpressureBuffer()
+            .prioritizeSends(call -> call.startsWith("decline") ? SendPriority.LOW : SendPriority.HIGH, 8, 4, 1, 32)
+            .processStream(stream ->
+                stream
+                    .filter(e -> !e.equals("subscribed"))
+                    .map(e -> e.startsWith("offer") ? "decline-" + e : e.startsWith("kill") ? e : "ack-" + e)
+                    .map(call -> Optional.of(SinkOperations.create(call))))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            final List<String> calls = new ArrayList<>();
+            while (calls.stream().filter(call -> !call.startsWith("decline")).count() < 4) {
+                final String call = callsReceived.poll(5, TimeUnit.SECONDS);
+                assertThat(call).isNotNull();
+                calls.add(call);
+            }
+
+            // the urgent calls were produced behind 500 declines, but only wait for a few of those already sent
+            assertThat(calls).containsSubsequence("ack-update-1", "kill-1", "ack-update-2");
+            assertThat(calls.size()).isLessThan(20);
+            assertThat(client.getSendBacklog().get().get(SendPriority.LOW)).isGreaterThan(0);
+        } finally {
+            subscription.unsubscribe();
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testSendFlowControl_callsDroppedByTheSendBufferReleaseTheEventStream() throws Throwable {
+        final int offerCount = 60;
+        final RequestHandler<ByteBuf, ByteBuf> handler = (request, response) -> {
+            if (!"/api/v1/scheduler".equals(request.getUri())) {
+                response.setStatus(HttpResponseStatus.NOT_FOUND);
+                response.getHeaders().setHeader("Content-Length", "0");
+                return response.close();
+            }
+            return request.getContent().flatMap(buf -> {
+                if (!"subscribe".equals(buf.toString(StandardCharsets.UTF_8))) {
+                    // Mesos takes a while to accept each call, so the calls produced overflow the send buffer
+                    return Observable.timer(20, TimeUnit.MILLISECONDS).flatMap(t -> {
+                        response.setStatus(HttpResponseStatus.ACCEPTED);
+                        return response.close();
+                    });
+                }
+                response.getHeaders().setTransferEncodingChunked();
+                response.getHeaders().set("Content-Type", StringMessageCodec.UTF8_STRING.mediaType());
+                response.getHeaders().set("Mesos-Stream-Id", "stream-1");
+                for (int i = 1; i <= offerCount; i++) {
+                    final String event = "offer-" + i;
+                    response.writeBytesAndFlush(RecordIOUtils.createChunk(event.getBytes(StandardCharsets.UTF_8)));
+                }
+                return Observable.never();
+            });
+        };
+        final HttpServer<ByteBuf, ByteBuf> server = RxNetty.createHttpServer(0, handler);
+        server.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", server.getServerPort()));
+        final BlockingQueue<String> eventsProcessed = new LinkedBlockingQueue<>();
+        final List<Throwable> failures = new CopyOnWriteArrayList<>();
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .sendConnectionPool(1, 1, 1, TimeUnit.MINUTES)
+            .onSendEventBackpressureBuffer(2, null, BackpressureOverflow.ON_OVERFLOW_DROP_LATEST)
+            .sendFlowControl(8, 2)
+            .processStream(stream ->
+                stream
+                    .doOnNext(eventsProcessed::add)
+                    .map(e -> "decline-" + e)
+                    .map(call -> Optional.of(SinkOperations.create(call, failures::add))))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            // more calls are produced than the backlog allows, most of which the send buffer drops
+            String event;
+            do {
+                event = eventsProcessed.poll(5, TimeUnit.SECONDS);
+                assertThat(event).isNotNull();
+            } while (!event.equals("offer-" + offerCount));
+
+            assertThat(failures).isNotEmpty();
+            assertThat(failures).allMatch(e -> e instanceof CancellationException);
+        } finally {
+            subscription.unsubscribe();
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testCallDeadline_unansweredCallReleasesItsConnection() throws Throwable {
+        final BlockingQueue<String> callsReceived = new LinkedBlockingQueue<>();
+        final RequestHandler<ByteBuf, ByteBuf> handler = (request, response) -> {
+            if (!"/api/v1/scheduler".equals(request.getUri())) {
+                response.setStatus(HttpResponseStatus.NOT_FOUND);
+                response.getHeaders().setHeader("Content-Length", "0");
+                return response.close();
+            }
+            return request.getContent().flatMap(buf -> {
+                final String call = buf.toString(StandardCharsets.UTF_8);
+                callsReceived.add(call);
+                if (!"subscribe".equals(call)) {
+                    // calls are never answered
+                    return Observable.never();
+                }
+                response.getHeaders().setTransferEncodingChunked();
+                response.getHeaders().set("Content-Type", StringMessageCodec.UTF8_STRING.mediaType());
+                response.getHeaders().set("Mesos-Stream-Id", "stream-1");
+                for (final String event : Arrays.asList("subscribed", "offer-1", "offer-2")) {
+                    response.writeBytesAndFlush(RecordIOUtils.createChunk(event.getBytes(StandardCharsets.UTF_8)));
+                }
+                return Observable.never();
+            });
+        };
+        final HttpServer<ByteBuf, ByteBuf> server = RxNetty.createHttpServer(0, handler);
+        server.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", server.getServerPort()));
+        final BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .sendConnectionPool(1, 1, 1, TimeUnit.MINUTES)
+            .callDeadline(200, TimeUnit.MILLISECONDS)
+            .processStream(stream ->
+                stream
+                    .filter(e -> e.startsWith("offer"))
+                    .map(e -> Optional.of(SinkOperations.create("decline-" + e, () -> {}, errors::add))))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            assertThat(callsReceived.poll(5, TimeUnit.SECONDS)).isEqualTo("subscribe");
+            assertThat(callsReceived.poll(5, TimeUnit.SECONDS)).isEqualTo("decline-offer-1");
+            assertThat(errors.poll(5, TimeUnit.SECONDS)).isInstanceOf(TimeoutException.class);
+            // the only connection of the pool is only free for the second call once the first has been cancelled
+            assertThat(callsReceived.poll(5, TimeUnit.SECONDS)).isEqualTo("decline-offer-2");
+            assertThat(errors.poll(5, TimeUnit.SECONDS)).isInstanceOf(TimeoutException.class);
+            assertThat(client.getInFlightCallCount()).isEqualTo(0);
+        } finally {
+            subscription.unsubscribe();
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testReconnect_resubscribesWithoutStreamIdAfterStreamIsClosed() throws Throwable {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        final BlockingQueue<String> callsReceived = new LinkedBlockingQueue<>();
+        final RequestHandler<ByteBuf, ByteBuf> handler = (request, response) -> {
+            if (!"/api/v1/scheduler".equals(request.getUri())) {
+                response.setStatus(HttpResponseStatus.NOT_FOUND);
+                response.getHeaders().setHeader("Content-Length", "0");
+                return response.close();
+            }
+            return request.getContent().flatMap(buf -> {
+                final String call = buf.toString(StandardCharsets.UTF_8);
+                callsReceived.add(call + "@" + request.getHeaders().getHeader("Mesos-Stream-Id"));
+                if (!"subscribe".equals(call)) {
+                    response.setStatus(HttpResponseStatus.ACCEPTED);
+                    return response.close();
+                }
+                final int subscription = subscriptions.incrementAndGet();
+                response.getHeaders().setTransferEncodingChunked();
+                response.getHeaders().set("Content-Type", StringMessageCodec.UTF8_STRING.mediaType());
+                response.getHeaders().set("Mesos-Stream-Id", "stream-" + subscription);
+                final String event = "subscribed-" + subscription;
+                response.writeBytesAndFlush(RecordIOUtils.createChunk(event.getBytes(StandardCharsets.UTF_8)));
+                // the first stream is closed, as it is when the master fails over
+                return subscription == 1 ? response.close() : Observable.never();
+            });
+        };
+        final HttpServer<ByteBuf, ByteBuf> server = RxNetty.createHttpServer(0, handler);
+        server.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", server.getServerPort()));
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .reconnect(10, 100, TimeUnit.MILLISECONDS)
+            .processStream(events -> events.map(e -> Optional.of(SinkOperations.create("ack-" + e))))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            final List<String> calls = new ArrayList<>();
+            String call;
+            do {
+                call = callsReceived.poll(5, TimeUnit.SECONDS);
+                assertThat(call).isNotNull();
+                calls.add(call);
+            } while (!call.startsWith("ack-subscribed-2"));
+
+            // the stream ID of the lost subscription isn't sent when resubscribing, and calls use the new one
+            assertThat(calls).containsSubsequence("subscribe@null", "subscribe@null", "ack-subscribed-2@stream-2");
+            assertThat(subscriptions.get()).isEqualTo(2);
+            assertThat(client.getResubscribeCount()).isEqualTo(1);
+        } finally {
+            subscription.unsubscribe();
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testReconnect_resubscribesWithTheFrameworkIdAssignedBySubscribed() throws Throwable {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        final BlockingQueue<String> callsReceived = new LinkedBlockingQueue<>();
+        final RequestHandler<ByteBuf, ByteBuf> handler = (request, response) -> {
+            if (!"/api/v1/scheduler".equals(request.getUri())) {
+                response.setStatus(HttpResponseStatus.NOT_FOUND);
+                response.getHeaders().setHeader("Content-Length", "0");
+                return response.close();
+            }
+            return request.getContent().flatMap(buf -> {
+                final String call = buf.toString(StandardCharsets.UTF_8);
+                callsReceived.add(call);
+                if (!call.startsWith("subscribe")) {
+                    response.setStatus(HttpResponseStatus.ACCEPTED);
+                    return response.close();
+                }
+                final int subscription = subscriptions.incrementAndGet();
+                response.getHeaders().setTransferEncodingChunked();
+                response.getHeaders().set("Content-Type", StringMessageCodec.UTF8_STRING.mediaType());
+                response.getHeaders().set("Mesos-Stream-Id", "stream-" + subscription);
+                // a framework subscribing without an ID is assigned a new one
+                final String frameworkId = call.startsWith("subscribe:")
+                    ? call.substring("subscribe:".length())
+                    : "framework-" + subscription;
+                final String event = "subscribed:" + frameworkId;
+                response.writeBytesAndFlush(RecordIOUtils.createChunk(event.getBytes(StandardCharsets.UTF_8)));
+                // the first stream is closed, as it is when the master fails over
+                return subscription == 1 ? response.close() : Observable.never();
+            });
+        };
+        final HttpServer<ByteBuf, ByteBuf> server = RxNetty.createHttpServer(0, handler);
+        server.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", server.getServerPort()));
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .reconnect(10, 100, TimeUnit.MILLISECONDS)
+            .resubscribeWith((call, event) ->
+                event.startsWith("subscribed:") ? "subscribe:" + event.substring("subscribed:".length()) : call)
+            .processStream(events -> events.map(e -> Optional.of(SinkOperations.create("ack-" + e))))
+            .subscribe("subscribe")
+            .build();
+
+        final AwaitableSubscription subscription = client.openStream();
+        try {
+            final List<String> calls = new ArrayList<>();
+            while (calls.stream().filter(call -> call.startsWith("ack-")).count() < 2) {
+                final String call = callsReceived.poll(5, TimeUnit.SECONDS);
+                assertThat(call).isNotNull();
+                calls.add(call);
+            }
+
+            // the second subscription is of the framework registered by the first
+            assertThat(calls).containsSubsequence(
+                "subscribe", "subscribe:framework-1", "ack-subscribed:framework-1"
+            );
+            assertThat(calls).doesNotContain("ack-subscribed:framework-2");
+            assertThat(client.getResubscribeCount()).isEqualTo(1);
+        } finally {
+            subscription.unsubscribe();
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testReconnect_streamFailsWhenSubscribeIsRejected() throws Throwable {
+        final RequestHandler<ByteBuf, ByteBuf> handler = (request, response) -> {
+            response.setStatus(HttpResponseStatus.FORBIDDEN);
+            response.getHeaders().setHeader("Content-Length", "0");
+            return response.close();
+        };
+        final HttpServer<ByteBuf, ByteBuf> server = RxNetty.createHttpServer(0, handler);
+        server.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", server.getServerPort()));
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .reconnect(10, 100, TimeUnit.MILLISECONDS)
+            .processStream(events -> events.map(e -> Optional.<SinkOperation<String>>empty()))
+            .subscribe("subscribe")
+            .build();
+
+        try {
+            client.openStream().await();
+            fail("Expect an exception to be propagated up because subscribe will 403");
+        } catch (Mesos4xxException e) {
+            // expected
+            assertThat(e.getContext().getStatusCode()).isEqualTo(403);
+            assertThat(client.getResubscribeCount()).isEqualTo(0);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testDetectStalls_streamFailsOnceHeartbeatsAreMissed() throws Throwable {
+        final MesosServerSimulation<String, String> sim = new MesosServerSimulation<>(
+            Observable.just("subscribed", "heartbeat", "offer-1").concatWith(Observable.never()),
+            StringMessageCodec.UTF8_STRING,
+            StringMessageCodec.UTF8_STRING,
+            "subscribe"::equals
+        );
+        final int serverPort = sim.start();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", serverPort));
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        final MesosClient<String, String> client = MesosClientBuilder.<String, String>newBuilder()
+            .sendCodec(StringMessageCodec.UTF8_STRING)
+            .receiveCodec(StringMessageCodec.UTF8_STRING)
+            .mesosUri(uri)
+            .applicationUserAgentEntry(UserAgentEntries.literal("test", "test"))
+            .detectStalls(e -> "subscribed".equals(e) ? OptionalLong.of(100) : OptionalLong.empty(), "heartbeat"::equals, 2)
+            .processStream(events -> events.doOnNext(received::add).map(e -> Optional.<SinkOperation<String>>empty()))
+            .subscribe("subscribe")
+            .build();
+
+        try {
+            client.openStream().await();
+            fail("Expect an exception to be propagated up because the server stops sending heartbeats");
+        } catch (EventStreamStalledException e) {
+            // expected
+            assertThat(e.getMissedHeartbeats()).isEqualTo(2);
+            assertThat(received).containsExactly("subscribed", "offer-1");
+        } finally {
+            sim.shutdown();
+        }
+    }
+
+    private static void awaitPoolStats(
+        @NotNull final MesosClient<?, ?> client,
+        @NotNull final Predicate<ConnectionPoolStats> condition
+    ) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.test(client.getSendConnectionPoolStats())) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for connection pool stats, last: " + client.getSendConnectionPoolStats());
+            }
+            Thread.sleep(10);
+        }
+    }
+
     @NotNull
     private static MesosClient<String, String> createClient(final URI uri) {
         return MesosClientBuilder.<String, String>newBuilder()
@@ -0,0 +1,188 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static com.hubspot.mesos.rx.java.util.UserAgentEntries.literal;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import com.hubspot.mesos.rx.java.test.StringMessageCodec;
+import com.hubspot.mesos.rx.java.util.UserAgent;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import rx.Observable;
+
+public final class PipelinedSinkSubscriberTest {
+
+    @Rule
+    public Timeout timeoutRule = new Timeout(10_000, TimeUnit.MILLISECONDS);
+
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final BlockingQueue<String> callsReceived = new LinkedBlockingQueue<>();
+    private final AtomicReference<Channel> connection = new AtomicReference<>();
+
+    @Before
+    public void setUp() throws Exception {
+        group = new NioEventLoopGroup(1);
+        // A server that holds on to each response until the test sends it
+        serverChannel = new ServerBootstrap()
+            .group(group)
+            .channel(NioServerSocketChannel.class)
+            .childHandler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(final Channel ch) throws Exception {
+                    connections.incrementAndGet();
+                    connection.set(ch);
+                    ch.pipeline().addLast(
+                        new HttpServerCodec(),
+                        new HttpObjectAggregator(1024),
+                        new SimpleChannelInboundHandler<FullHttpRequest>() {
+                            @Override
+                            protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest msg) {
+                                callsReceived.add(msg.content().toString(StandardCharsets.UTF_8));
+                            }
+                        }
+                    );
+                }
+            })
+            .bind("localhost", 0)
+            .sync()
+            .channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverChannel.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
+    @Test
+    public void callsArePipelinedUpToMaxDepth() throws Exception {
+        final BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+        final BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+        final PipelinedSinkSubscriber<String> subscriber = createSubscriber(4);
+
+        Observable.range(1, 10)
+            .map(i -> "call-" + i)
+            .map(call -> SinkOperations.create(call, () -> completed.add(call), errors::add))
+            .subscribe(new MesosClient.SubscriberDecorator<>(subscriber));
+
+        for (int i = 1; i <= 4; i++) {
+            assertThat(callsReceived.take()).isEqualTo("call-" + i);
+        }
+        assertThat(callsReceived.poll(100, TimeUnit.MILLISECONDS)).isNull();
+
+        respond(HttpResponseStatus.ACCEPTED);
+        respond(HttpResponseStatus.ACCEPTED);
+        assertThat(completed.take()).isEqualTo("call-1");
+        assertThat(completed.take()).isEqualTo("call-2");
+        assertThat(callsReceived.take()).isEqualTo("call-5");
+        assertThat(callsReceived.take()).isEqualTo("call-6");
+        assertThat(callsReceived.poll(100, TimeUnit.MILLISECONDS)).isNull();
+
+        respond(HttpResponseStatus.BAD_REQUEST);
+        final Throwable error = errors.take();
+        assertThat(error).isInstanceOf(Mesos4xxException.class);
+        assertThat(((MesosException) error).getOriginalCall()).isEqualTo("call-3");
+        assertThat(callsReceived.take()).isEqualTo("call-7");
+
+        assertThat(connections.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void callsInFlightFailWhenConnectionCloses() throws Exception {
+        final BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+        final PipelinedSinkSubscriber<String> subscriber = createSubscriber(4);
+
+        Observable.range(1, 5)
+            .map(i -> SinkOperations.create("call-" + i, errors::add))
+            .subscribe(new MesosClient.SubscriberDecorator<>(subscriber));
+
+        for (int i = 1; i <= 4; i++) {
+            callsReceived.take();
+        }
+        connection.get().close();
+
+        for (int i = 1; i <= 4; i++) {
+            assertThat(errors.take()).hasMessageContaining("closed while call was in flight");
+        }
+        // the remaining call is sent on a new connection
+        assertThat(callsReceived.take()).isEqualTo("call-5");
+        assertThat(connections.get()).isEqualTo(2);
+    }
+
+    private void respond(@NotNull final HttpResponseStatus status) {
+        final FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.EMPTY_BUFFER);
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+        connection.get().writeAndFlush(response);
+    }
+
+    @NotNull
+    private PipelinedSinkSubscriber<String> createSubscriber(final int maxPipelineDepth) {
+        final int port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+        final URI uri = URI.create(String.format("http://localhost:%d/api/v1/scheduler", port));
+        return new PipelinedSinkSubscriber<>(
+            uri.getHost(),
+            port,
+            TransportConfig.DEFAULT,
+            MesosClient.curryCreatePipelinedPost(
+                uri,
+                StringMessageCodec.UTF8_STRING,
+                StringMessageCodec.UTF8_STRING,
+                new UserAgent(literal("testing", "latest")),
+                new AtomicReference<>("streamId"),
+                TransportConfig.DEFAULT.getAllocator()
+            ),
+            maxPipelineDepth,
+            Rx.compute()
+        );
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public final class PriorityOperatorTest {
+
+    private final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+    private final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>(0);
+
+    @Test
+    public void higherPriorityOperationsOvertakeLowerPriorityOperations() throws Exception {
+        subscribe(prioritize(null, 100, 10, 1));
+
+        send("decline-1");
+        send("decline-2");
+        send("launch-1");
+        send("ack-1");
+        subscriber.requestMore(4);
+        assertThat(sent()).containsExactly("ack-1", "launch-1", "decline-1", "decline-2");
+    }
+
+    @Test
+    public void lanesAreServedInProportionToTheirWeight() throws Exception {
+        subscribe(prioritize(null, 3, 2, 1));
+
+        for (int i = 0; i < 6; i++) {
+            send("ack-" + i);
+            send("launch-" + i);
+            send("decline-" + i);
+        }
+        subscriber.requestMore(6);
+        assertThat(sent()).filteredOn(call -> call.startsWith("ack")).hasSize(3);
+        assertThat(sent()).filteredOn(call -> call.startsWith("launch")).hasSize(2);
+        assertThat(sent()).filteredOn(call -> call.startsWith("decline")).hasSize(1);
+    }
+
+    @Test
+    public void explicitPriorityOverridesClassifier() throws Exception {
+        subscribe(prioritize(null, 100, 10, 1));
+
+        send("launch-1");
+        subject.onNext(SinkOperations.sink("decline-1", SendPriority.HIGH));
+        subscriber.requestMore(2);
+        assertThat(sent()).containsExactly("decline-1", "launch-1");
+    }
+
+    @Test
+    public void operationsWithSameKeyAreNotReordered() throws Exception {
+        final Function<String, ?> task = call -> call.substring(call.indexOf('-') + 1);
+        final PriorityOperator<String> operator = prioritize(task, 100, 10, 1);
+        subject.map(operator::classify).lift(operator).subscribe(subscriber);
+
+        send("launch-1");
+        send("launch-2");
+        send("ack-2");
+        send("ack-3");
+        subscriber.requestMore(4);
+        assertThat(sent()).containsExactly("ack-3", "launch-1", "launch-2", "ack-2");
+    }
+
+    @Test
+    public void operationsWithSameKeyKeepTheirPriorityUntilFinished() throws Exception {
+        final Function<String, ?> task = call -> call.substring(call.indexOf('-') + 1);
+        final PriorityOperator<String> operator = prioritize(task, 100, 10, 1);
+
+        final SinkOperation<String> launch = operator.classify(SinkOperations.create("launch-1"));
+        final SinkOperation<String> ack = operator.classify(SinkOperations.create("ack-1"));
+        assertThat(ack.getPriority()).isEqualTo(SendPriority.NORMAL);
+        assertThat(operator.classify(SinkOperations.create("ack-2")).getPriority()).isEqualTo(SendPriority.HIGH);
+
+        launch.onCompleted();
+        final SinkOperation<String> retried = operator.classify(SinkOperations.create("ack-1"));
+        assertThat(retried.getPriority()).isEqualTo(SendPriority.NORMAL);
+
+        ack.onError(new IllegalStateException("rejected"));
+        retried.onCompleted();
+        assertThat(operator.classify(SinkOperations.create("ack-1")).getPriority()).isEqualTo(SendPriority.HIGH);
+    }
+
+    @Test
+    public void backlogIsExposedPerLane() throws Exception {
+        final PriorityOperator<String> operator = prioritize(null, 3, 2, 1);
+        subscribe(operator);
+
+        send("ack-1");
+        send("decline-1");
+        send("decline-2");
+        assertThat(operator.snapshot())
+            .containsEntry(SendPriority.HIGH, 1)
+            .containsEntry(SendPriority.NORMAL, 0)
+            .containsEntry(SendPriority.LOW, 2);
+
+        subscriber.requestMore(2);
+        assertThat(operator.snapshot())
+            .containsEntry(SendPriority.HIGH, 0)
+            .containsEntry(SendPriority.LOW, 1);
+    }
+
+    @Test
+    public void completionWaitsForQueuedOperations() throws Exception {
+        subscribe(prioritize(null, 3, 2, 1));
+
+        send("ack-1");
+        subject.onCompleted();
+        subscriber.assertNotCompleted();
+        subscriber.requestMore(1);
+        assertThat(sent()).containsExactly("ack-1");
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void atMostCapacityOperationsAreRequestedFromUpstream() throws Exception {
+        final PriorityOperator<String> operator =
+            new PriorityOperator<>(PriorityOperatorTest::classify, new int[] {3, 2, 1}, null, 2);
+        final AtomicLong requestedUpstream = new AtomicLong();
+        Observable.just("decline-1", "decline-2", "ack-1", "decline-3")
+            .map(SinkOperations::create)
+            .doOnRequest(requestedUpstream::addAndGet)
+            .lift(operator)
+            .subscribe(subscriber);
+
+        assertThat(requestedUpstream.get()).isEqualTo(2);
+        assertThat(operator.snapshot()).containsEntry(SendPriority.LOW, 2);
+
+        subscriber.requestMore(1);
+        assertThat(sent()).containsExactly("decline-1");
+        assertThat(requestedUpstream.get()).isEqualTo(3);
+        assertThat(operator.snapshot())
+            .containsEntry(SendPriority.HIGH, 1)
+            .containsEntry(SendPriority.LOW, 1);
+
+        subscriber.requestMore(3);
+        assertThat(sent()).containsExactly("decline-1", "ack-1", "decline-2", "decline-3");
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void waitingOperationsFailWithTheStreamError() throws Exception {
+        final PriorityOperator<String> operator = prioritize(null, 3, 2, 1);
+        subscribe(operator);
+
+        final List<Throwable> errors = new ArrayList<>();
+        subject.onNext(SinkOperations.create("ack-1", () -> {}, errors::add));
+        subject.onNext(SinkOperations.create("decline-1", () -> {}, errors::add));
+        final IllegalStateException streamError = new IllegalStateException("stream failed");
+        subject.onError(streamError);
+        subscriber.assertError(streamError);
+        assertThat(errors).containsExactly(streamError, streamError);
+        assertThat(operator.snapshot()).containsValues(0, 0, 0);
+    }
+
+    @Test
+    public void waitingOperationsAreCancelledWhenUnsubscribed() throws Exception {
+        subscribe(prioritize(null, 3, 2, 1));
+
+        final List<Throwable> errors = new ArrayList<>();
+        subject.onNext(SinkOperations.create("ack-1", () -> {}, errors::add));
+        subscriber.unsubscribe();
+        assertThat(errors).hasSize(1).allMatch(e -> e instanceof CancellationException);
+    }
+
+    private static SendPriority classify(final String call) {
+        if (call.startsWith("ack")) {
+            return SendPriority.HIGH;
+        } else if (call.startsWith("decline")) {
+            return SendPriority.LOW;
+        } else {
+            return SendPriority.NORMAL;
+        }
+    }
+
+    private static PriorityOperator<String> prioritize(final Function<String, ?> orderingKey, final int... weights) {
+        return new PriorityOperator<>(PriorityOperatorTest::classify, weights, orderingKey, PriorityOperator.DEFAULT_CAPACITY);
+    }
+
+    private void subscribe(final PriorityOperator<String> operator) {
+        subject.lift(operator).subscribe(subscriber);
+    }
+
+    private void send(final String call) {
+        subject.onNext(SinkOperations.create(call));
+    }
+
+    private List<String> sent() {
+        final List<String> sent = new ArrayList<>();
+        subscriber.getOnNextEvents().forEach(op -> sent.add(op.getThingToSink()));
+        return sent;
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+public final class RateLimitOperatorTest {
+
+    /** Calls are keyed by everything before the first '-', e.g. {@code "a-1"} has key {@code "a"} */
+    private static final Function<String, String> KEY = call -> call.substring(0, call.indexOf('-'));
+
+    @Test
+    public void burstSentImmediatelyThenAtRate() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        subject.lift(new RateLimitOperator<>(KEY, 10, 2, scheduler)).subscribe(subscriber);
+
+        subject.onNext(SinkOperations.create("a-1"));
+        subject.onNext(SinkOperations.create("a-2"));
+        subject.onNext(SinkOperations.create("a-3"));
+        subject.onNext(SinkOperations.create("a-4"));
+        assertThat(sent(subscriber)).containsExactly("a-1", "a-2");
+
+        scheduler.advanceTimeBy(99, TimeUnit.MILLISECONDS);
+        assertThat(sent(subscriber)).containsExactly("a-1", "a-2");
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertThat(sent(subscriber)).containsExactly("a-1", "a-2", "a-3");
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        assertThat(sent(subscriber)).containsExactly("a-1", "a-2", "a-3", "a-4");
+    }
+
+    @Test
+    public void bucketsAreIndependent() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        subject.lift(new RateLimitOperator<>(KEY, 10, 1, scheduler)).subscribe(subscriber);
+
+        subject.onNext(SinkOperations.create("a-1"));
+        subject.onNext(SinkOperations.create("a-2"));
+        subject.onNext(SinkOperations.create("b-1"));
+        assertThat(sent(subscriber)).containsExactly("a-1", "b-1");
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        assertThat(sent(subscriber)).containsExactly("a-1", "b-1", "a-2");
+    }
+
+    @Test
+    public void higherPriorityCallsTakeTheNextToken() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        subject.lift(new RateLimitOperator<>(KEY, 10, 1, scheduler)).subscribe(subscriber);
+
+        subject.onNext(SinkOperations.create("a-1"));
+        subject.onNext(SinkOperations.create("a-2"));
+        subject.onNext(SinkOperations.create("a-3"));
+        subject.onNext(SinkOperations.sink("a-4", SendPriority.HIGH));
+        assertThat(sent(subscriber)).containsExactly("a-1");
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        assertThat(sent(subscriber)).containsExactly("a-1", "a-4");
+        scheduler.advanceTimeBy(200, TimeUnit.MILLISECONDS);
+        assertThat(sent(subscriber)).containsExactly("a-1", "a-4", "a-2", "a-3");
+    }
+
+    @Test
+    public void throttledCallRetriedAfterRetryAfter() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final List<String> completed = new ArrayList<>();
+        final List<Throwable> errors = new ArrayList<>();
+        final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        subject.lift(new RateLimitOperator<>(KEY, 10, 10, scheduler)).subscribe(subscriber);
+
+        subject.onNext(SinkOperations.create("a-1", () -> completed.add("a-1"), errors::add));
+        subject.onNext(SinkOperations.create("a-2", () -> completed.add("a-2"), errors::add));
+        subscriber.getOnNextEvents().get(0).onError(tooManyRequests("Retry-After", "2"));
+        assertThat(errors).isEmpty();
+
+        // nothing is sent while throttled
+        subject.onNext(SinkOperations.create("a-3", () -> completed.add("a-3"), errors::add));
+        scheduler.advanceTimeBy(1999, TimeUnit.MILLISECONDS);
+        assertThat(sent(subscriber)).containsExactly("a-1", "a-2");
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertThat(sent(subscriber)).containsExactly("a-1", "a-2", "a-1", "a-3");
+        subscriber.getOnNextEvents().forEach(SinkOperation::onCompleted);
+        assertThat(completed).containsExactly("a-1", "a-2", "a-1", "a-3");
+        assertThat(errors).isEmpty();
+    }
+
+    @Test
+    public void concurrentlyThrottledCallsRetriedInOrder() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        subject.lift(new RateLimitOperator<>(KEY, 10, 10, scheduler)).subscribe(subscriber);
+
+        subject.onNext(SinkOperations.create("a-1"));
+        subject.onNext(SinkOperations.create("a-2"));
+        subject.onNext(SinkOperations.create("a-3"));
+        subscriber.getOnNextEvents().get(0).onError(tooManyRequests());
+        subscriber.getOnNextEvents().get(1).onError(tooManyRequests());
+        subject.onNext(SinkOperations.create("a-4"));
+        subscriber.getOnNextEvents().get(2).onError(tooManyRequests());
+
+        scheduler.advanceTimeBy(RateLimitOperator.DEFAULT_RETRY_AFTER_MILLIS, TimeUnit.MILLISECONDS);
+        assertThat(sent(subscriber)).containsExactly("a-1", "a-2", "a-3", "a-1", "a-2", "a-3", "a-4");
+    }
+
+    @Test
+    public void otherErrorsAreDelivered() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final List<Throwable> errors = new ArrayList<>();
+        final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        subject.lift(new RateLimitOperator<>(KEY, 10, 10, scheduler)).subscribe(subscriber);
+
+        subject.onNext(SinkOperations.create("a-1", errors::add));
+        final Mesos4xxException badRequest = new Mesos4xxException("a-1", new MesosClientErrorContext(400, Collections.emptyList()));
+        subscriber.getOnNextEvents().get(0).onError(badRequest);
+        assertThat(errors).containsExactly(badRequest);
+    }
+
+    @Test
+    public void completionWaitsForCallsInFlight() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        subject.lift(new RateLimitOperator<>(KEY, 10, 10, scheduler)).subscribe(subscriber);
+
+        subject.onNext(SinkOperations.create("a-1"));
+        subject.onCompleted();
+        subscriber.assertNotCompleted();
+
+        // a throttled call may still need to be sent again
+        subscriber.getOnNextEvents().get(0).onError(tooManyRequests());
+        subscriber.assertNotCompleted();
+        scheduler.advanceTimeBy(RateLimitOperator.DEFAULT_RETRY_AFTER_MILLIS, TimeUnit.MILLISECONDS);
+        assertThat(sent(subscriber)).containsExactly("a-1", "a-1");
+
+        subscriber.getOnNextEvents().get(1).onCompleted();
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void callThrottledTooOftenIsFailed() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final List<Throwable> errors = new ArrayList<>();
+        final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        subject.lift(new RateLimitOperator<>(KEY, 10, 10, scheduler)).subscribe(subscriber);
+
+        subject.onNext(SinkOperations.create("a-1", errors::add));
+        for (int attempt = 1; attempt < RateLimitOperator.MAX_THROTTLED_ATTEMPTS; attempt++) {
+            subscriber.getOnNextEvents().get(attempt - 1).onError(tooManyRequests());
+            scheduler.advanceTimeBy(RateLimitOperator.DEFAULT_RETRY_AFTER_MILLIS, TimeUnit.MILLISECONDS);
+            assertThat(errors).isEmpty();
+        }
+        assertThat(subscriber.getOnNextEvents()).hasSize(RateLimitOperator.MAX_THROTTLED_ATTEMPTS);
+
+        final Mesos4xxException lastAttempt = tooManyRequests();
+        subscriber.getOnNextEvents().get(RateLimitOperator.MAX_THROTTLED_ATTEMPTS - 1).onError(lastAttempt);
+        assertThat(errors).containsExactly(lastAttempt);
+        scheduler.advanceTimeBy(RateLimitOperator.DEFAULT_RETRY_AFTER_MILLIS, TimeUnit.MILLISECONDS);
+        assertThat(subscriber.getOnNextEvents()).hasSize(RateLimitOperator.MAX_THROTTLED_ATTEMPTS);
+    }
+
+    @Test
+    public void queuedCallsFailWithTheStreamError() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final List<Throwable> errors = new ArrayList<>();
+        final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        subject.lift(new RateLimitOperator<>(KEY, 10, 1, scheduler)).subscribe(subscriber);
+
+        subject.onNext(SinkOperations.create("a-1", errors::add));
+        subject.onNext(SinkOperations.create("a-2", errors::add));
+        final IllegalStateException streamError = new IllegalStateException("stream failed");
+        subject.onError(streamError);
+
+        subscriber.assertError(streamError);
+        assertThat(sent(subscriber)).containsExactly("a-1");
+        assertThat(errors).containsExactly(streamError);
+    }
+
+    @Test
+    public void queuedCallsAreCancelledWhenUnsubscribed() throws Exception {
+        final TestScheduler scheduler = new TestScheduler();
+        final List<Throwable> errors = new ArrayList<>();
+        final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+        final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+        subject.lift(new RateLimitOperator<>(KEY, 10, 1, scheduler)).subscribe(subscriber);
+
+        subject.onNext(SinkOperations.create("a-1", errors::add));
+        subject.onNext(SinkOperations.create("a-2", errors::add));
+        subscriber.unsubscribe();
+
+        assertThat(errors).hasSize(1);
+        assertThat(errors.get(0)).isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    public void throttledForMillis() throws Exception {
+        final long now = 1_000_000L;
+        assertThat(RateLimitOperator.throttledForMillis(tooManyRequests("retry-after", "3"), now)).isEqualTo(3000);
+        assertThat(RateLimitOperator.throttledForMillis(tooManyRequests("Retry-After", "Thu, 01 Jan 1970 00:17:00 GMT"), now))
+            .isEqualTo(20_000);
+        assertThat(RateLimitOperator.throttledForMillis(tooManyRequests(), now))
+            .isEqualTo(RateLimitOperator.DEFAULT_RETRY_AFTER_MILLIS);
+        assertThat(RateLimitOperator.throttledForMillis(tooManyRequests("Retry-After", "soon"), now))
+            .isEqualTo(RateLimitOperator.DEFAULT_RETRY_AFTER_MILLIS);
+        assertThat(RateLimitOperator.throttledForMillis(
+            new Mesos5xxException("call", new MesosClientErrorContext(503, Collections.emptyList())), now
+        )).isNegative();
+        assertThat(RateLimitOperator.throttledForMillis(new IllegalStateException(), now)).isNegative();
+    }
+
+    private static Mesos4xxException tooManyRequests(final String... headerNameValues) {
+        final List<Map.Entry<String, String>> headers = new ArrayList<>();
+        for (int i = 0; i < headerNameValues.length; i += 2) {
+            headers.add(new AbstractMap.SimpleEntry<>(headerNameValues[i], headerNameValues[i + 1]));
+        }
+        return new Mesos4xxException("call", new MesosClientErrorContext(429, headers));
+    }
+
+    private static List<String> sent(final TestSubscriber<SinkOperation<String>> subscriber) {
+        final List<String> sent = new ArrayList<>();
+        subscriber.getOnNextEvents().forEach(op -> sent.add(op.getThingToSink()));
+        return sent;
+    }
+
+}
@@ -0,0 +1,256 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+public final class RetryOperatorTest {
+
+    private static final Mesos5xxException SERVICE_UNAVAILABLE =
+        new Mesos5xxException("call", new MesosClientErrorContext(503, Collections.emptyList()));
+    private static final Mesos4xxException BAD_REQUEST =
+        new Mesos4xxException("call", new MesosClientErrorContext(400, Collections.emptyList()));
+
+    /** Calls are keyed by everything before the first '-', e.g. {@code "a-1"} has key {@code "a"} */
+    private static final Function<String, String> KEY = call -> call.substring(0, call.indexOf('-'));
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+    private final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>();
+    private final List<String> completed = new ArrayList<>();
+    private final List<Throwable> errors = new ArrayList<>();
+
+    @Test
+    public void transientErrorsAreRetried() throws Exception {
+        subscribe(RetryPolicyBuilder.<String>newBuilder().backoff(100, 100, TimeUnit.MILLISECONDS).build());
+
+        send("a-1");
+        fail(0, SERVICE_UNAVAILABLE);
+        scheduler.advanceTimeBy(49, TimeUnit.MILLISECONDS);
+        assertThat(sent()).containsExactly("a-1");
+        scheduler.advanceTimeBy(51, TimeUnit.MILLISECONDS);
+        assertThat(sent()).containsExactly("a-1", "a-1");
+
+        subscriber.getOnNextEvents().get(1).onCompleted();
+        assertThat(completed).containsExactly("a-1");
+        assertThat(errors).isEmpty();
+    }
+
+    @Test
+    public void errorDeliveredOnceMaxAttemptsReached() throws Exception {
+        subscribe(RetryPolicyBuilder.<String>newBuilder().maxAttempts(2).backoff(0, 0, TimeUnit.MILLISECONDS).build());
+
+        send("a-1");
+        fail(0, SERVICE_UNAVAILABLE);
+        scheduler.triggerActions();
+        assertThat(errors).isEmpty();
+        fail(1, SERVICE_UNAVAILABLE);
+        scheduler.triggerActions();
+        assertThat(sent()).containsExactly("a-1", "a-1");
+        assertThat(errors).containsExactly(SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void errorsNotRetriedAreDeliveredImmediately() throws Exception {
+        subscribe(RetryPolicyBuilder.<String>newBuilder().build());
+
+        send("a-1");
+        fail(0, BAD_REQUEST);
+        assertThat(errors).containsExactly(BAD_REQUEST);
+        scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+        assertThat(sent()).containsExactly("a-1");
+    }
+
+    @Test
+    public void operationsWithSameKeyWaitForRetry() throws Exception {
+        subscribe(RetryPolicyBuilder.<String>newBuilder().backoff(100, 100, TimeUnit.MILLISECONDS).build(), KEY);
+
+        send("a-1");
+        fail(0, SERVICE_UNAVAILABLE);
+        send("a-2");
+        send("b-1");
+        assertThat(sent()).containsExactly("a-1", "b-1");
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        assertThat(sent()).containsExactly("a-1", "b-1", "a-1");
+        subscriber.getOnNextEvents().get(2).onCompleted();
+        assertThat(sent()).containsExactly("a-1", "b-1", "a-1", "a-2");
+    }
+
+    @Test
+    public void operationsWithSameKeyWaitForOutcomeOfOperationInFlight() throws Exception {
+        subscribe(RetryPolicyBuilder.<String>newBuilder().backoff(100, 100, TimeUnit.MILLISECONDS).build(), KEY);
+
+        send("a-1");
+        send("a-2");
+        send("a-3");
+        send("b-1");
+        assertThat(sent()).containsExactly("a-1", "b-1");
+
+        // a-2 is held until a-1 has been retried, rather than overtaking it
+        fail(0, SERVICE_UNAVAILABLE);
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        assertThat(sent()).containsExactly("a-1", "b-1", "a-1");
+        subscriber.getOnNextEvents().get(2).onCompleted();
+        assertThat(sent()).containsExactly("a-1", "b-1", "a-1", "a-2");
+
+        fail(3, SERVICE_UNAVAILABLE);
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        subscriber.getOnNextEvents().get(4).onCompleted();
+        assertThat(sent()).containsExactly("a-1", "b-1", "a-1", "a-2", "a-2", "a-3");
+        assertThat(completed).containsExactly("a-1", "a-2");
+    }
+
+    @Test
+    public void operationsWithoutKeyAreNotHeldUp() throws Exception {
+        subscribe(RetryPolicyBuilder.<String>newBuilder().backoff(100, 100, TimeUnit.MILLISECONDS).build());
+
+        send("a-1");
+        send("a-2");
+        fail(0, SERVICE_UNAVAILABLE);
+        send("a-3");
+        assertThat(sent()).containsExactly("a-1", "a-2", "a-3");
+    }
+
+    @Test
+    public void retryBudgetLimitsRetries() throws Exception {
+        subscribe(
+            RetryPolicyBuilder.<String>newBuilder()
+                .backoff(0, 0, TimeUnit.MILLISECONDS)
+                .retryBudget(0, 1)
+                .build()
+        );
+
+        send("a-1");
+        send("a-2");
+        fail(0, SERVICE_UNAVAILABLE);
+        fail(1, SERVICE_UNAVAILABLE);
+        scheduler.triggerActions();
+        assertThat(sent()).containsExactly("a-1", "a-2", "a-1");
+        assertThat(errors).containsExactly(SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void completionWaitsForRetries() throws Exception {
+        subscribe(RetryPolicyBuilder.<String>newBuilder().backoff(0, 0, TimeUnit.MILLISECONDS).build());
+
+        send("a-1");
+        subject.onCompleted();
+        fail(0, SERVICE_UNAVAILABLE);
+        subscriber.assertNotCompleted();
+        scheduler.triggerActions();
+        subscriber.getOnNextEvents().get(1).onCompleted();
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void operationsWaitingForRetryFailWithTheStreamError() throws Exception {
+        subscribe(RetryPolicyBuilder.<String>newBuilder().backoff(100, 100, TimeUnit.MILLISECONDS).build(), KEY);
+
+        send("a-1");
+        send("a-2");
+        fail(0, SERVICE_UNAVAILABLE);
+        final IllegalStateException streamError = new IllegalStateException("stream failed");
+        subject.onError(streamError);
+
+        subscriber.assertError(streamError);
+        assertThat(errors).containsExactly(streamError, streamError);
+        scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+        assertThat(sent()).containsExactly("a-1");
+    }
+
+    @Test
+    public void operationsWaitingForRetryAreCancelledWhenUnsubscribed() throws Exception {
+        subscribe(RetryPolicyBuilder.<String>newBuilder().backoff(100, 100, TimeUnit.MILLISECONDS).build(), KEY);
+
+        send("a-1");
+        send("a-2");
+        send("b-1");
+        subscriber.unsubscribe();
+
+        assertThat(errors).hasSize(1);
+        assertThat(errors.get(0)).isInstanceOf(CancellationException.class);
+
+        // an operation in flight when the stream was unsubscribed is not retried
+        fail(0, SERVICE_UNAVAILABLE);
+        assertThat(errors).hasSize(2);
+        assertThat(errors.get(1)).isSameAs(SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void isTransient() throws Exception {
+        assertThat(RetryPolicy.isTransient(SERVICE_UNAVAILABLE)).isTrue();
+        assertThat(RetryPolicy.isTransient(new ConnectException("Connection refused"))).isTrue();
+        assertThat(RetryPolicy.isTransient(new RuntimeException(new IOException("Connection reset by peer")))).isTrue();
+        assertThat(RetryPolicy.isTransient(new TimeoutException())).isTrue();
+        assertThat(RetryPolicy.isTransient(BAD_REQUEST)).isFalse();
+        assertThat(RetryPolicy.isTransient(
+            new Mesos5xxException("call", new MesosClientErrorContext(500, Collections.emptyList()))
+        )).isFalse();
+    }
+
+    @Test
+    public void backoffGrowsExponentially() throws Exception {
+        final RetryPolicy<String> policy = RetryPolicyBuilder.<String>newBuilder()
+            .backoff(100, 1000, TimeUnit.MILLISECONDS)
+            .build();
+        for (int i = 0; i < 100; i++) {
+            assertThat(policy.backoffMillis(1)).isBetween(50L, 100L);
+            assertThat(policy.backoffMillis(3)).isBetween(200L, 400L);
+            assertThat(policy.backoffMillis(100)).isBetween(500L, 1000L);
+        }
+    }
+
+    private void subscribe(final RetryPolicy<String> policy) {
+        subscribe(policy, null);
+    }
+
+    private void subscribe(final RetryPolicy<String> policy, final Function<String, ?> orderingKey) {
+        subject.lift(new RetryOperator<>(policy, orderingKey, scheduler)).subscribe(subscriber);
+    }
+
+    private void send(final String call) {
+        subject.onNext(SinkOperations.create(call, () -> completed.add(call), errors::add));
+    }
+
+    private void fail(final int index, final Throwable e) {
+        subscriber.getOnNextEvents().get(index).onError(e);
+    }
+
+    private List<String> sent() {
+        final List<String> sent = new ArrayList<>();
+        subscriber.getOnNextEvents().forEach(op -> sent.add(op.getThingToSink()));
+        return sent;
+    }
+
+}
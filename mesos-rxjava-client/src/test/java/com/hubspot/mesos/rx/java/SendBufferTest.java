@@ -0,0 +1,110 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import rx.BackpressureOverflow;
+import rx.exceptions.MissingBackpressureException;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public final class SendBufferTest {
+
+    private final PublishSubject<SinkOperation<String>> subject = PublishSubject.create();
+    private final TestSubscriber<SinkOperation<String>> subscriber = new TestSubscriber<>(1);
+    private final List<String> failed = new ArrayList<>();
+    private final List<Throwable> errors = new ArrayList<>();
+
+    @Test
+    public void latestCallIsFailedWhenDropped() throws Exception {
+        subscribe(BackpressureOverflow.ON_OVERFLOW_DROP_LATEST);
+
+        send("call-1");
+        send("call-2");
+        send("call-3");
+        send("call-4");
+        assertThat(failed).containsExactly("call-4");
+        assertThat(errors).hasOnlyElementsOfType(CancellationException.class);
+
+        subscriber.requestMore(2);
+        assertThat(sent()).containsExactly("call-1", "call-2", "call-3");
+    }
+
+    @Test
+    public void oldestCallIsFailedOnceACallBufferedAfterItIsSent() throws Exception {
+        subscribe(BackpressureOverflow.ON_OVERFLOW_DROP_OLDEST);
+
+        send("call-1");
+        send("call-2");
+        send("call-3");
+        send("call-4");
+        assertThat(failed).isEmpty();
+
+        subscriber.requestMore(1);
+        assertThat(sent()).containsExactly("call-1", "call-3");
+        assertThat(failed).containsExactly("call-2");
+        assertThat(errors).hasOnlyElementsOfType(CancellationException.class);
+    }
+
+    @Test
+    public void bufferedCallsAreFailedWithTheOverflowError() throws Exception {
+        subscribe(BackpressureOverflow.ON_OVERFLOW_ERROR);
+
+        send("call-1");
+        send("call-2");
+        send("call-3");
+        send("call-4");
+        subscriber.assertError(MissingBackpressureException.class);
+        assertThat(failed).containsExactly("call-2", "call-3", "call-4");
+        assertThat(errors).hasOnlyElementsOfType(MissingBackpressureException.class);
+    }
+
+    @Test
+    public void bufferedCallsAreFailedWhenUnsubscribed() throws Exception {
+        subscribe(BackpressureOverflow.ON_OVERFLOW_DROP_LATEST);
+
+        send("call-1");
+        send("call-2");
+        subscriber.unsubscribe();
+        assertThat(failed).containsExactly("call-2");
+        assertThat(errors).hasOnlyElementsOfType(CancellationException.class);
+    }
+
+    private void subscribe(final BackpressureOverflow.Strategy strategy) {
+        subject.compose(SendBuffer.<String>create(2, null, strategy)).subscribe(subscriber);
+    }
+
+    private void send(final String call) {
+        subject.onNext(SinkOperations.create(call, e -> {
+            failed.add(call);
+            errors.add(e);
+        }));
+    }
+
+    private List<String> sent() {
+        return subscriber.getOnNextEvents().stream().map(SinkOperation::getThingToSink).collect(Collectors.toList());
+    }
+
+}
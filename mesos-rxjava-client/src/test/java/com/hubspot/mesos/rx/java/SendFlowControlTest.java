@@ -0,0 +1,114 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+
+public final class SendFlowControlTest {
+
+    private static final int HIGH_WATERMARK = 4;
+    private static final int LOW_WATERMARK = 1;
+
+    private final SendFlowControl flowControl = new SendFlowControl(HIGH_WATERMARK, LOW_WATERMARK);
+    private final List<SinkOperation<Integer>> backlog = new ArrayList<>();
+    private final List<Integer> completed = new ArrayList<>();
+
+    @Test
+    public void eventsStopBeingRequestedOnceBacklogReachesHighWatermark() throws Exception {
+        final TestSubscriber<Integer> subscriber = subscribe(Observable.range(1, 100));
+
+        // the events already requested when the high watermark is reached are still delivered
+        final int delivered = HIGH_WATERMARK - 1 + SendFlowControl.PREFETCH;
+        assertThat(subscriber.getOnNextEvents()).hasSize(delivered);
+        assertThat(flowControl.isPaused()).isTrue();
+        assertThat(flowControl.getBacklog()).isEqualTo(delivered);
+    }
+
+    @Test
+    public void eventsAreRequestedAgainOnceBacklogDrainsToLowWatermark() throws Exception {
+        final TestSubscriber<Integer> subscriber = subscribe(Observable.range(1, 100));
+
+        final int delivered = HIGH_WATERMARK - 1 + SendFlowControl.PREFETCH;
+        complete(delivered - LOW_WATERMARK - 1);
+        assertThat(flowControl.isPaused()).isTrue();
+        assertThat(subscriber.getOnNextEvents()).hasSize(delivered);
+
+        complete(1);
+        assertThat(completed).hasSize(delivered - LOW_WATERMARK);
+        assertThat(flowControl.getBacklog()).isGreaterThanOrEqualTo(HIGH_WATERMARK);
+        assertThat(subscriber.getOnNextEvents()).hasSize(delivered + HIGH_WATERMARK - LOW_WATERMARK - 1 + SendFlowControl.PREFETCH);
+    }
+
+    @Test
+    public void failedOperationsLeaveTheBacklog() throws Exception {
+        subscribe(Observable.range(1, 2));
+        backlog.remove(0).onError(new RuntimeException("failed"));
+        assertThat(flowControl.getBacklog()).isEqualTo(1);
+        assertThat(flowControl.isPaused()).isFalse();
+    }
+
+    @Test
+    public void trackedOperationsAreReleasedOnceTheStreamTerminates() throws Exception {
+        final TestSubscriber<Integer> subscriber = subscribe(Observable.range(1, 100));
+        assertThat(flowControl.isPaused()).isTrue();
+
+        final SinkOperation<Integer> inFlight = backlog.get(0);
+        subscriber.unsubscribe();
+        flowControl.releaseAll();
+        assertThat(flowControl.getBacklog()).isZero();
+        assertThat(flowControl.isPaused()).isFalse();
+
+        // an operation completed after being released doesn't leave the backlog a second time
+        inFlight.onCompleted();
+        assertThat(flowControl.getBacklog()).isZero();
+        assertThat(completed).containsExactly(1);
+    }
+
+    @Test
+    public void downstreamRequestsAreHonoured() throws Exception {
+        final TestSubscriber<Integer> subscriber = new TestSubscriber<>(2);
+        Observable.range(1, 100).lift(flowControl.<Integer>valve()).subscribe(subscriber);
+
+        assertThat(subscriber.getOnNextEvents()).containsExactly(1, 2);
+        subscriber.requestMore(1);
+        assertThat(subscriber.getOnNextEvents()).containsExactly(1, 2, 3);
+    }
+
+    private TestSubscriber<Integer> subscribe(final Observable<Integer> events) {
+        final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        events
+            .lift(flowControl.<Integer>valve())
+            .doOnNext(e -> backlog.add(flowControl.track(SinkOperations.create(e, () -> completed.add(e)))))
+            .subscribe(subscriber);
+        return subscriber;
+    }
+
+    private void complete(final int count) {
+        for (int i = 0; i < count; i++) {
+            backlog.remove(0).onCompleted();
+        }
+    }
+
+}
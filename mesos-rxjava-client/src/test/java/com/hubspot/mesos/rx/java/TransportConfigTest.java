@@ -0,0 +1,81 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+public final class TransportConfigTest {
+
+    @Test
+    public void defaultOnlySetsAllocator() throws Exception {
+        final Map<ChannelOption<?>, Object> options = options(TransportConfig.DEFAULT);
+        assertThat(options).containsOnlyKeys(ChannelOption.ALLOCATOR);
+        assertThat(options.get(ChannelOption.ALLOCATOR)).isSameAs(PooledByteBufAllocator.DEFAULT);
+        assertThat(TransportConfig.DEFAULT.channelClass()).isEqualTo(NioSocketChannel.class);
+    }
+
+    @Test
+    public void configuredOptionsAreApplied() throws Exception {
+        final UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(false);
+        final TransportConfig config = TransportConfig.DEFAULT
+            .withAllocator(allocator)
+            .withReceiveBufferSize(512, 8192, 65536)
+            .withSocketOptions(true, false);
+
+        final Map<ChannelOption<?>, Object> options = options(config);
+        assertThat(options.get(ChannelOption.ALLOCATOR)).isSameAs(allocator);
+        assertThat(options.get(ChannelOption.RCVBUF_ALLOCATOR)).isInstanceOf(AdaptiveRecvByteBufAllocator.class);
+        assertThat(options.get(ChannelOption.TCP_NODELAY)).isEqualTo(true);
+        assertThat(options.get(ChannelOption.SO_KEEPALIVE)).isEqualTo(false);
+    }
+
+    @Test
+    public void nativeTransportIsOnlyUsedWhenAvailable() throws Exception {
+        final TransportConfig config = TransportConfig.DEFAULT.withNativeTransport();
+        assertThat(config.isNativeTransport()).isEqualTo(Epoll.isAvailable());
+        assertThat(config.channelClass())
+            .isEqualTo(Epoll.isAvailable() ? EpollSocketChannel.class : NioSocketChannel.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void receiveBufferSizeMustBePositive() throws Exception {
+        TransportConfig.DEFAULT.withReceiveBufferSize(0, 1024, 2048);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void receiveBufferSizesMustBeOrdered() throws Exception {
+        TransportConfig.DEFAULT.withReceiveBufferSize(1024, 512, 2048);
+    }
+
+    private static Map<ChannelOption<?>, Object> options(final TransportConfig config) {
+        return config.applyTo(new Bootstrap()).config().options();
+    }
+
+}
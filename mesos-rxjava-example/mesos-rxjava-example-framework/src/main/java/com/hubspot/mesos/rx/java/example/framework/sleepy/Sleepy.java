@@ -19,6 +19,8 @@ package com.hubspot.mesos.rx.java.example.framework.sleepy;
 import com.hubspot.mesos.rx.java.MesosClientBuilder;
 import com.hubspot.mesos.rx.java.SinkOperation;
 import com.hubspot.mesos.rx.java.SinkOperations;
+import com.hubspot.mesos.rx.java.protobuf.EventRouter;
+import com.hubspot.mesos.rx.java.protobuf.LazyEvent;
 import com.hubspot.mesos.rx.java.protobuf.ProtoUtils;
 import com.hubspot.mesos.rx.java.protobuf.ProtobufMesosClientBuilder;
 import com.hubspot.mesos.rx.java.protobuf.SchedulerCalls;
@@ -87,7 +89,7 @@ public final class Sleepy {
         final FrameworkID frameworkID = FrameworkID.newBuilder().setValue(fwId).build();
         final State<FrameworkID, TaskID, TaskState> stateObject = new State<>(frameworkID, role.trim(), cpusPerTask, 16);
 
-        final MesosClientBuilder<Call, Event> clientBuilder = ProtobufMesosClientBuilder.schedulerUsingProtos()
+        final MesosClientBuilder<Call, LazyEvent> clientBuilder = ProtobufMesosClientBuilder.schedulerUsingLazyProtos()
             .mesosUri(mesosUri)
             .applicationUserAgentEntry(userAgentEntryForMavenArtifact("com.hubspot.mesos.rx.java.example", "mesos-rxjava-example-framework"));
 
@@ -106,39 +108,46 @@ public final class Sleepy {
 
         clientBuilder
             .subscribe(subscribeCall)
-            .processStream(unicastEvents -> {
-                final Observable<Event> events = unicastEvents.share();
-
-                final Observable<Optional<SinkOperation<Call>>> offerEvaluations = events
-                    .filter(event -> event.getType() == Event.Type.OFFERS)
-                    .flatMap(event -> from(event.getOffers().getOffersList()))
-                    .zipWith(stateObservable, Tuple2::create)
-                    .map(Sleepy::handleOffer)
-                    .map(Optional::of);
-
-                final Observable<Optional<SinkOperation<Call>>> updateStatusAck = events
-                    .filter(event -> event.getType() == Event.Type.UPDATE && event.getUpdate().getStatus().hasUuid())
-                    .zipWith(stateObservable, Tuple2::create)
-                    .doOnNext((Tuple2<Event, State<FrameworkID, TaskID, TaskState>> t) -> {
-                        final Event event = t._1;
-                        final State<FrameworkID, TaskID, TaskState> state = t._2;
-                        final TaskStatus status = event.getUpdate().getStatus();
-                        state.put(status.getTaskId(), status.getState());
-                    })
-                    .map((Tuple2<Event, State<FrameworkID, TaskID, TaskState>> t) -> {
-                        final TaskStatus status = t._1.getUpdate().getStatus();
-                        return SchedulerCalls.ackUpdate(t._2.getFwId(), status.getUuid(), status.getAgentId(), status.getTaskId());
-                    })
-                    .map(SinkOperations::create)
-                    .map(Optional::of);
-
-                final Observable<Optional<SinkOperation<Call>>> errorLogger = events
-                    .filter(event -> event.getType() == Event.Type.ERROR || (event.getType() == Event.Type.UPDATE && event.getUpdate().getStatus().getState() == TaskState.TASK_ERROR))
-                    .doOnNext(e -> LOGGER.warn("Task Error: {}", ProtoUtils.protoToString(e)))
-                    .map(e -> Optional.empty());
-
-                return offerEvaluations.mergeWith(updateStatusAck).mergeWith(errorLogger);
-            });
+            .processStream(
+                // Each event is routed to the branch for its type once, and events are only fully parsed once they
+                // have been routed to a branch
+                EventRouter.<Optional<SinkOperation<Call>>>lazySchedulerEvents()
+                    .route(Event.Type.OFFERS, offers -> offers
+                        .map(LazyEvent::getEvent)
+                        .flatMap(event -> from(event.getOffers().getOffersList()))
+                        .zipWith(stateObservable, Tuple2::create)
+                        .map(Sleepy::handleOffer)
+                        .map(Optional::of)
+                    )
+                    .route(Event.Type.UPDATE, updates -> updates
+                        .map(LazyEvent::getEvent)
+                        .doOnNext(event -> {
+                            if (event.getUpdate().getStatus().getState() == TaskState.TASK_ERROR) {
+                                LOGGER.warn("Task Error: {}", ProtoUtils.protoToString(event));
+                            }
+                        })
+                        .filter(event -> event.getUpdate().getStatus().hasUuid())
+                        .zipWith(stateObservable, Tuple2::create)
+                        .doOnNext((Tuple2<Event, State<FrameworkID, TaskID, TaskState>> t) -> {
+                            final Event event = t._1;
+                            final State<FrameworkID, TaskID, TaskState> state = t._2;
+                            final TaskStatus status = event.getUpdate().getStatus();
+                            state.put(status.getTaskId(), status.getState());
+                        })
+                        .map((Tuple2<Event, State<FrameworkID, TaskID, TaskState>> t) -> {
+                            final TaskStatus status = t._1.getUpdate().getStatus();
+                            return SchedulerCalls.ackUpdate(t._2.getFwId(), status.getUuid(), status.getAgentId(), status.getTaskId());
+                        })
+                        .map(SinkOperations::create)
+                        .map(Optional::of)
+                    )
+                    .route(Event.Type.ERROR, errors -> errors
+                        .map(LazyEvent::getEvent)
+                        .doOnNext(e -> LOGGER.warn("Task Error: {}", ProtoUtils.protoToString(e)))
+                        .map(e -> Optional.empty())
+                    )
+                    .build()
+            );
 
         clientBuilder.build().openStream().await();
     }
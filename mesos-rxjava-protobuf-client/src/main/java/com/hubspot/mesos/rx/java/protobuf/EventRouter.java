@@ -0,0 +1,477 @@
+/*
+ *    Copyright (C) 2016 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.protobuf;
+
+import org.apache.mesos.v1.scheduler.Protos;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.functions.Func1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static com.hubspot.mesos.rx.java.util.Validations.checkNotNull;
+
+/**
+ * Routes each event of a stream to one of a number of per-type sub-streams with a single subscription to the stream
+ * and a single table lookup per event, as an alternative to applying one {@code filter} per type to a
+ * {@code share()}d stream.
+ * <p>
+ * A router is created with a {@link Builder}, which is given a handler for each branch of the stream. A handler
+ * receives an {@link Observable} of the events of the types routed to its branch, and the outputs of all handlers are
+ * merged into the output of the router:
+ * <pre>{@code
+ * MesosClientBuilder.processStream(
+ *     EventRouter.<Optional<SinkOperation<Call>>>lazySchedulerEvents()
+ *         .route(Event.Type.OFFERS, offers -> offers.map(LazyEvent::getEvent).map(this::handleOffer))
+ *         .route(Event.Type.UPDATE, updates -> updates.map(LazyEvent::getEvent).map(this::handleUpdate))
+ *         .build()
+ * )
+ * }</pre>
+ * Routing {@link LazyEvent}s (using {@link #lazySchedulerEvents()}) means events are routed on the type peeked from
+ * their serialized form, and events of types that are not routed are never fully parsed.
+ * <p>
+ * Each branch has its own bounded buffer. Events are requested from the stream only while every branch has room to
+ * buffer another event, so a slow branch only holds up the stream once its buffer is full rather than as soon as it
+ * stops requesting events. Events of types that are not routed to any branch are dropped.
+ * <p>
+ * The {@code Observable} given to each handler may only be subscribed to once, and each handler must subscribe to
+ * it (directly or otherwise) if the stream is to make progress once the branch's buffer is full.
+ *
+ * @param <E> The type of event in the stream
+ * @param <K> The type of the key events are routed on
+ * @param <R> The type of item output by each handler
+ */
+public final class EventRouter<E, K extends Enum<K>, R> implements Function<Observable<E>, Observable<R>> {
+
+    /** The default size of each branch's buffer. */
+    public static final int DEFAULT_BUFFER_SIZE = 128;
+
+    @NotNull
+    private final Func1<? super E, K> classifier;
+    /** Indexed by {@link Enum#ordinal()} of the key, holds the index of the branch or {@code -1} */
+    @NotNull
+    private final int[] routes;
+    @NotNull
+    private final List<Func1<Observable<E>, Observable<R>>> handlers;
+    private final int bufferSize;
+
+    private EventRouter(
+        @NotNull final Func1<? super E, K> classifier,
+        @NotNull final int[] routes,
+        @NotNull final List<Func1<Observable<E>, Observable<R>>> handlers,
+        final int bufferSize
+    ) {
+        this.classifier = classifier;
+        this.routes = routes;
+        this.handlers = handlers;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param <R> The type of item output by each handler
+     * @return A builder for a router of {@link LazyEvent}s, routed on their {@link LazyEvent#getType() type}
+     */
+    @NotNull
+    public static <R> Builder<LazyEvent, Protos.Event.Type, R> lazySchedulerEvents() {
+        return newBuilder(Protos.Event.Type.class, LazyEvent::getType);
+    }
+
+    /**
+     * @param <R> The type of item output by each handler
+     * @return A builder for a router of {@link Protos.Event Event}s, routed on their type
+     */
+    @NotNull
+    public static <R> Builder<Protos.Event, Protos.Event.Type, R> schedulerEvents() {
+        return newBuilder(Protos.Event.Type.class, Protos.Event::getType);
+    }
+
+    /**
+     * @param keyType       The type of the key events are routed on
+     * @param classifier    The function used to determine the key of each event
+     * @param <E>           The type of event in the stream
+     * @param <K>           The type of the key events are routed on
+     * @param <R>           The type of item output by each handler
+     * @return A new builder
+     */
+    @NotNull
+    public static <E, K extends Enum<K>, R> Builder<E, K, R> newBuilder(
+        @NotNull final Class<K> keyType,
+        @NotNull final Func1<? super E, K> classifier
+    ) {
+        return new Builder<>(keyType, classifier);
+    }
+
+    @Override
+    public Observable<R> apply(final Observable<E> events) {
+        return Observable.unsafeCreate(child -> {
+            final RouterSubscriber<E, K> router = new RouterSubscriber<>(classifier, routes, handlers.size(), bufferSize);
+            final List<Observable<R>> outputs = new ArrayList<>(handlers.size());
+            for (int i = 0; i < handlers.size(); i++) {
+                outputs.add(handlers.get(i).call(Observable.unsafeCreate(router.branches.get(i))));
+            }
+            child.add(router);
+            Observable.merge(outputs).unsafeSubscribe(child);
+            events.unsafeSubscribe(router);
+        });
+    }
+
+    /**
+     * Builder for an {@link EventRouter}.
+     *
+     * @param <E> The type of event in the stream
+     * @param <K> The type of the key events are routed on
+     * @param <R> The type of item output by each handler
+     */
+    public static final class Builder<E, K extends Enum<K>, R> {
+
+        @NotNull
+        private final Func1<? super E, K> classifier;
+        @NotNull
+        private final int[] routes;
+        @NotNull
+        private final List<Func1<Observable<E>, Observable<R>>> handlers = new ArrayList<>();
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+        private Builder(@NotNull final Class<K> keyType, @NotNull final Func1<? super E, K> classifier) {
+            this.classifier = checkNotNull(classifier);
+            this.routes = new int[checkNotNull(keyType).getEnumConstants().length];
+            Arrays.fill(routes, -1);
+        }
+
+        /**
+         * Adds a branch for the events of the given type.
+         * @param key        The type of events to route to the branch
+         * @param handler    The function applied to the events of the given type
+         * @return this builder (allowing for further chained calls)
+         * @throws IllegalArgumentException If events of the given type are already routed to another branch
+         */
+        @NotNull
+        public Builder<E, K, R> route(
+            @NotNull final K key,
+            @NotNull final Func1<Observable<E>, Observable<R>> handler
+        ) {
+            return route(Collections.singleton(checkNotNull(key)), handler);
+        }
+
+        /**
+         * Adds a branch for the events of the given types.
+         * @param keys       The types of events to route to the branch
+         * @param handler    The function applied to the events of the given types
+         * @return this builder (allowing for further chained calls)
+         * @throws IllegalArgumentException If events of any of the given types are already routed to another branch
+         */
+        @NotNull
+        public Builder<E, K, R> route(
+            @NotNull final Set<K> keys,
+            @NotNull final Func1<Observable<E>, Observable<R>> handler
+        ) {
+            for (K key : keys) {
+                if (routes[key.ordinal()] != -1) {
+                    throw new IllegalArgumentException("Events of type " + key + " are already routed");
+                }
+            }
+            final int branch = handlers.size();
+            handlers.add(checkNotNull(handler));
+            keys.forEach(key -> routes[key.ordinal()] = branch);
+            return this;
+        }
+
+        /**
+         * Sets the number of events each branch will buffer while its handler is not requesting them.
+         * <p>
+         * Defaults to {@link #DEFAULT_BUFFER_SIZE}.
+         * @param bufferSize    The size of each branch's buffer
+         * @return this builder (allowing for further chained calls)
+         */
+        @NotNull
+        public Builder<E, K, R> bufferSize(final int bufferSize) {
+            if (bufferSize <= 0) {
+                throw new IllegalArgumentException("bufferSize must be positive");
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * @return A new router with the branches added to this builder
+         */
+        @NotNull
+        public EventRouter<E, K, R> build() {
+            return new EventRouter<>(
+                classifier,
+                routes.clone(),
+                Collections.unmodifiableList(new ArrayList<>(handlers)),
+                bufferSize
+            );
+        }
+    }
+
+    /**
+     * Subscribes to the stream, routing each event to its branch and requesting more events as the branches make
+     * room for them.
+     */
+    // @VisibleForTesting
+    static final class RouterSubscriber<E, K extends Enum<K>> extends Subscriber<E> {
+
+        @NotNull
+        private final Func1<? super E, K> classifier;
+        @NotNull
+        private final int[] routes;
+        @NotNull
+        final List<Branch<E>> branches;
+        private final int bufferSize;
+
+        /** The number of events requested from the stream that have not yet been received. */
+        private long outstanding;
+
+        RouterSubscriber(
+            @NotNull final Func1<? super E, K> classifier,
+            @NotNull final int[] routes,
+            final int branchCount,
+            final int bufferSize
+        ) {
+            this.classifier = classifier;
+            this.routes = routes;
+            this.bufferSize = bufferSize;
+            final List<Branch<E>> list = new ArrayList<>(branchCount);
+            for (int i = 0; i < branchCount; i++) {
+                list.add(new Branch<>(this));
+            }
+            this.branches = Collections.unmodifiableList(list);
+        }
+
+        @Override
+        public void onStart() {
+            request(0);
+            requestMore();
+        }
+
+        @Override
+        public void onNext(final E event) {
+            synchronized (this) {
+                outstanding--;
+            }
+            final int branch;
+            try {
+                branch = routes[classifier.call(event).ordinal()];
+            } catch (Throwable e) {
+                unsubscribe();
+                Exceptions.throwOrReport(e, this, event);
+                return;
+            }
+            if (branch >= 0) {
+                branches.get(branch).offer(event);
+            }
+            requestMore();
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            branches.forEach(b -> b.error(e));
+        }
+
+        @Override
+        public void onCompleted() {
+            branches.forEach(Branch::complete);
+        }
+
+        /**
+         * Requests enough events from the stream that, should they all be routed to the same branch, every branch
+         * will be able to buffer them.
+         */
+        void requestMore() {
+            final long n;
+            synchronized (this) {
+                int free = bufferSize;
+                for (Branch<E> branch : branches) {
+                    free = Math.min(free, bufferSize - branch.queued.get());
+                }
+                n = free - outstanding;
+                if (n <= 0) {
+                    return;
+                }
+                outstanding += n;
+            }
+            request(n);
+        }
+    }
+
+    /**
+     * Buffers the events routed to a single branch and emits them to the branch's subscriber as they are requested.
+     */
+    // @VisibleForTesting
+    static final class Branch<E> implements Producer, Observable.OnSubscribe<E> {
+
+        @NotNull
+        private final RouterSubscriber<E, ?> router;
+        @NotNull
+        private final Queue<E> queue = new ConcurrentLinkedQueue<>();
+        @NotNull
+        final AtomicInteger queued = new AtomicInteger();
+        @NotNull
+        private final AtomicLong requested = new AtomicLong();
+
+        @Nullable
+        private volatile Subscriber<? super E> child;
+        private volatile boolean done;
+        @Nullable
+        private volatile Throwable error;
+        private boolean terminated;
+
+        private boolean emitting;
+        private boolean missed;
+
+        Branch(@NotNull final RouterSubscriber<E, ?> router) {
+            this.router = router;
+        }
+
+        @Override
+        public void call(final Subscriber<? super E> subscriber) {
+            synchronized (this) {
+                if (child != null) {
+                    subscriber.onError(new IllegalStateException("A branch of an EventRouter may only be subscribed to once"));
+                    return;
+                }
+                child = subscriber;
+            }
+            subscriber.setProducer(this);
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            if (n > 0) {
+                long r;
+                long u;
+                do {
+                    r = requested.get();
+                    u = r + n;
+                    if (u < 0) {
+                        u = Long.MAX_VALUE;
+                    }
+                } while (!requested.compareAndSet(r, u));
+            }
+            drain();
+        }
+
+        void offer(@NotNull final E event) {
+            final Subscriber<? super E> c = child;
+            if (c != null && c.isUnsubscribed()) {
+                return;
+            }
+            queued.incrementAndGet();
+            queue.offer(event);
+            drain();
+        }
+
+        void complete() {
+            done = true;
+            drain();
+        }
+
+        void error(@NotNull final Throwable e) {
+            error = e;
+            done = true;
+            drain();
+        }
+
+        private void drain() {
+            synchronized (this) {
+                if (emitting) {
+                    missed = true;
+                    return;
+                }
+                emitting = true;
+            }
+            for (;;) {
+                final Subscriber<? super E> c = child;
+                int delivered = 0;
+                if (c != null && !terminated) {
+                    if (c.isUnsubscribed()) {
+                        delivered = discard();
+                    } else {
+                        final Throwable e = error;
+                        if (e != null) {
+                            terminated = true;
+                            delivered = discard();
+                            c.onError(e);
+                        } else {
+                            final long r = requested.get();
+                            long emitted = 0;
+                            E event;
+                            while (emitted != r && (event = queue.poll()) != null) {
+                                queued.decrementAndGet();
+                                emitted++;
+                                try {
+                                    c.onNext(event);
+                                } catch (Throwable t) {
+                                    terminated = true;
+                                    discard();
+                                    Exceptions.throwOrReport(t, c, event);
+                                    break;
+                                }
+                            }
+                            delivered = (int) emitted;
+                            if (emitted > 0 && r != Long.MAX_VALUE) {
+                                requested.addAndGet(-emitted);
+                            }
+                            if (!terminated && done && queue.isEmpty()) {
+                                terminated = true;
+                                c.onCompleted();
+                            }
+                        }
+                    }
+                }
+                if (delivered > 0) {
+                    router.requestMore();
+                }
+                synchronized (this) {
+                    if (!missed) {
+                        emitting = false;
+                        return;
+                    }
+                    missed = false;
+                }
+            }
+        }
+
+        private int discard() {
+            int discarded = 0;
+            while (queue.poll() != null) {
+                queued.decrementAndGet();
+                discarded++;
+            }
+            return discarded;
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ *    Copyright (C) 2016 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.protobuf;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import org.apache.mesos.v1.scheduler.Protos;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * A scheduler {@link Protos.Event Event} of which only the {@link Protos.Event.Type type} has been parsed.
+ * <p>
+ * The serialized event is retained, and the rest of the event (the offers, update, rescind etc.) is only parsed the
+ * first time {@link #getEvent()} is called. Events that are filtered out by their type, such as heartbeats or types
+ * that a framework is not interested in, are therefore never fully parsed.
+ * <p>
+ * Instances are safe to share between threads. If {@link #getEvent()} is called concurrently the event may be
+ * parsed more than once, but every caller will see an equal event.
+ *
+ * @see ProtobufMessageCodecs#SCHEDULER_LAZY_EVENT
+ */
+public final class LazyEvent {
+
+    @NotNull
+    private final byte[] bytes;
+    @NotNull
+    private final Protos.Event.Type type;
+    @Nullable
+    private volatile Protos.Event event;
+
+    /**
+     * Parses the type of the serialized event in {@code bytes}.
+     * @param bytes    The serialized event. The array is retained, and must not be modified afterwards.
+     * @throws RuntimeException If the type of the event can not be parsed
+     */
+    LazyEvent(@NotNull final byte[] bytes) {
+        this.bytes = bytes;
+        this.type = parseType(bytes);
+    }
+
+    /**
+     * @return The type of the event. If the event does not specify a type, or specifies a type that is not known to
+     *         this version of the protos, {@link Protos.Event.Type#UNKNOWN UNKNOWN} is returned.
+     */
+    @NotNull
+    public Protos.Event.Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the fully parsed event, parsing it if this is the first time it has been accessed.
+     * @return The event
+     * @throws RuntimeException If the event can not be parsed
+     */
+    @NotNull
+    public Protos.Event getEvent() {
+        Protos.Event e = event;
+        if (e == null) {
+            try {
+                e = Protos.Event.parseFrom(bytes);
+            } catch (InvalidProtocolBufferException ex) {
+                throw new RuntimeException(ex);
+            }
+            event = e;
+        }
+        return e;
+    }
+
+    /**
+     * @return The serialized event. The array is shared with this object, and must not be modified.
+     */
+    @NotNull
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "LazyEvent{" +
+            "type=" + type +
+            ", size=" + bytes.length +
+            '}';
+    }
+
+    /**
+     * Reads the fields of the serialized event until its {@code type} is found, skipping over (without parsing) any
+     * other field that precedes it. Since fields are serialized in order of their field numbers, {@code type} is
+     * normally the very first field.
+     */
+    @NotNull
+    // @VisibleForTesting
+    static Protos.Event.Type parseType(@NotNull final byte[] bytes) {
+        try {
+            final CodedInputStream in = CodedInputStream.newInstance(bytes);
+            int tag;
+            while ((tag = in.readTag()) != 0) {
+                if (WireFormat.getTagFieldNumber(tag) == Protos.Event.TYPE_FIELD_NUMBER
+                    && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_VARINT) {
+                    final Protos.Event.Type type = Protos.Event.Type.forNumber(in.readEnum());
+                    return type != null ? type : Protos.Event.Type.UNKNOWN;
+                }
+                in.skipField(tag);
+            }
+            return Protos.Event.Type.UNKNOWN;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ *    Copyright (C) 2016 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.protobuf;
+
+import com.hubspot.mesos.rx.java.util.ByteBufMessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Implements {@link ByteBufMessageCodec} for {@link LazyEvent}, parsing only the type of each event as it is
+ * decoded.
+ * <p>
+ * Decoding from a {@code byte[]} retains the array without copying it. Decoding from a {@link ByteBuf} or an
+ * {@link InputStream} copies the serialized event into a new array, so that the buffer can be released as soon as
+ * the event is decoded.
+ */
+final class LazyEventCodec implements ByteBufMessageCodec<LazyEvent> {
+
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    @NotNull
+    @Override
+    public byte[] encode(@NotNull final LazyEvent message) {
+        return message.getBytes().clone();
+    }
+
+    @NotNull
+    @Override
+    public ByteBuf encode(@NotNull final LazyEvent message, @NotNull final ByteBufAllocator alloc) {
+        final byte[] bytes = message.getBytes();
+        return alloc.buffer(bytes.length, bytes.length).writeBytes(bytes);
+    }
+
+    @NotNull
+    @Override
+    public LazyEvent decode(@NotNull final byte[] bytes) {
+        return new LazyEvent(bytes);
+    }
+
+    @NotNull
+    @Override
+    public LazyEvent decode(@NotNull final InputStream in) {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 32));
+            final byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new LazyEvent(out.toByteArray());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @NotNull
+    @Override
+    public LazyEvent decode(@NotNull final ByteBuf buf) {
+        return new LazyEvent(ByteBufUtil.getBytes(buf));
+    }
+
+    @NotNull
+    @Override
+    public String mediaType() {
+        return "application/x-protobuf";
+    }
+
+    @NotNull
+    @Override
+    public String show(@NotNull final LazyEvent message) {
+        return ProtoUtils.protoToString(message.getEvent());
+    }
+
+}
@@ -16,25 +16,54 @@
 
 package com.hubspot.mesos.rx.java.protobuf;
 
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import com.hubspot.mesos.rx.java.util.ByteBufMessageCodec;
 import com.hubspot.mesos.rx.java.util.MessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
 
 /**
  * Implements {@link MessageCodec} for Protocol Buffers.
+ * <p>
+ * Messages are also encoded to and decoded from {@link ByteBuf}s directly, as described by
+ * {@link ByteBufMessageCodec}. Decoding from a {@link ByteBuf} without copying its contents into an intermediate
+ * array requires the codec to have been created with the message's {@link Parser}.
  *
  * @param <T> the protobuf message type
  */
-public final class ProtoCodec<T extends Message> implements MessageCodec<T> {
+public final class ProtoCodec<T extends Message> implements ByteBufMessageCodec<T> {
 
     @NotNull
     private final ByteArrayParser<T> byteArrayParser;
     @NotNull
     private final InputStreamParser<T> inputStreamParser;
+    @Nullable
+    private final Parser<T> parser;
+
+    /**
+     * Instantiates a ProtoCodec instance that deserializes messages with the given {@link Parser}.
+     * <p>
+     * The specific parser that is provided defines which protobuf message class this codec is for. For example,
+     * {@code new ProtoCodec<>(Protos.Event.parser())} instantiates a codec for
+     * {@link org.apache.mesos.v1.scheduler.Protos.Event Event} messages.
+     *
+     * @param parser    The parser to use to parse messages
+     */
+    public ProtoCodec(@NotNull final Parser<T> parser) {
+        this.byteArrayParser = parser::parseFrom;
+        this.inputStreamParser = parser::parseFrom;
+        this.parser = parser;
+    }
 
     /**
      * Instantiates a ProtoCodec instance that deserializes messages with the given
@@ -53,6 +82,7 @@ public final class ProtoCodec<T extends Message> implements MessageCodec<T> {
     ) {
         this.byteArrayParser = byteArrayParser;
         this.inputStreamParser = inputStreamParser;
+        this.parser = null;
     }
 
     @NotNull
@@ -81,6 +111,59 @@ public final class ProtoCodec<T extends Message> implements MessageCodec<T> {
         }
     }
 
+    /**
+     * Serializes {@code message} into a buffer of exactly {@link Message#getSerializedSize()} bytes obtained from
+     * {@code alloc}.
+     * <p>
+     * If the buffer is backed by an array the message is written directly into that array, otherwise it is written
+     * through a {@link ByteBufOutputStream}.
+     */
+    @NotNull
+    @Override
+    public ByteBuf encode(@NotNull final T message, @NotNull final ByteBufAllocator alloc) {
+        final int size = message.getSerializedSize();
+        final ByteBuf buf = alloc.buffer(size, size);
+        try {
+            if (buf.hasArray()) {
+                final CodedOutputStream out =
+                    CodedOutputStream.newInstance(buf.array(), buf.arrayOffset() + buf.writerIndex(), size);
+                message.writeTo(out);
+                out.checkNoSpaceLeft();
+                buf.writerIndex(buf.writerIndex() + size);
+            } else {
+                message.writeTo(new ByteBufOutputStream(buf));
+            }
+            return buf;
+        } catch (IOException e) {
+            buf.release();
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Parses the readable bytes of {@code buf} in place when the codec was created with a {@link Parser} and
+     * {@code buf} is backed by an array, otherwise reads them through a {@link ByteBufInputStream}.
+     * <p>
+     * Aliasing is not enabled when parsing, so {@code bytes} fields of the message are copied out of {@code buf}
+     * and the message remains valid once {@code buf} has been released.
+     */
+    @NotNull
+    @Override
+    public T decode(@NotNull final ByteBuf buf) {
+        try {
+            if (parser != null && buf.hasArray()) {
+                return parser.parseFrom(buf.array(), buf.arrayOffset() + buf.readerIndex(), buf.readableBytes());
+            } else {
+                return inputStreamParser.parseFrom(new ByteBufInputStream(buf.duplicate()));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @NotNull
     @Override
     public String mediaType() {
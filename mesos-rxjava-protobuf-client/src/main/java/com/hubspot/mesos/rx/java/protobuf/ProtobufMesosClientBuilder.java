@@ -29,13 +29,36 @@ public final class ProtobufMesosClientBuilder {
     /**
      * @return  An initial {@link MesosClientBuilder} that will use protobuf
      *          for the {@link org.apache.mesos.v1.scheduler.Protos.Call Call} and
-     *          {@link org.apache.mesos.v1.scheduler.Protos.Event Event} messages.
+     *          {@link org.apache.mesos.v1.scheduler.Protos.Event Event} messages, where calls are ordered by
+     *          {@link SchedulerCalls#orderingKey(Protos.Call)} and a framework resubscribes with the framework ID
+     *          it was assigned (see {@link SchedulerCalls#resubscribe(Protos.Call, Protos.Event)}).
      */
     @NotNull
     public static MesosClientBuilder<Protos.Call, Protos.Event> schedulerUsingProtos() {
         return MesosClientBuilder.<Protos.Call, Protos.Event>newBuilder()
             .sendCodec(ProtobufMessageCodecs.SCHEDULER_CALL)
             .receiveCodec(ProtobufMessageCodecs.SCHEDULER_EVENT)
+            .orderSendsBy(SchedulerCalls::orderingKey)
+            .resubscribeWith(SchedulerCalls::resubscribe)
+            ;
+    }
+
+    /**
+     * @return  An initial {@link MesosClientBuilder} that will use protobuf
+     *          for the {@link org.apache.mesos.v1.scheduler.Protos.Call Call} and
+     *          {@link org.apache.mesos.v1.scheduler.Protos.Event Event} messages, where each event is only fully
+     *          parsed once it is accessed, where calls are ordered by {@link SchedulerCalls#orderingKey(Protos.Call)}
+     *          and a framework resubscribes with the framework ID it was assigned (see
+     *          {@link SchedulerCalls#resubscribe(Protos.Call, LazyEvent)}).
+     * @see LazyEvent
+     */
+    @NotNull
+    public static MesosClientBuilder<Protos.Call, LazyEvent> schedulerUsingLazyProtos() {
+        return MesosClientBuilder.<Protos.Call, LazyEvent>newBuilder()
+            .sendCodec(ProtobufMessageCodecs.SCHEDULER_CALL)
+            .receiveCodec(ProtobufMessageCodecs.SCHEDULER_LAZY_EVENT)
+            .orderSendsBy(SchedulerCalls::orderingKey)
+            .resubscribeWith(SchedulerCalls::resubscribe)
             ;
     }
 
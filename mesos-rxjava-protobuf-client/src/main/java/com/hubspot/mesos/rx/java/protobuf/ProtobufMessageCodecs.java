@@ -29,22 +29,29 @@ public final class ProtobufMessageCodecs {
 
     /** A {@link MessageCodec} for {@link org.apache.mesos.v1.scheduler.Protos.Call Call}. */
     public static final MessageCodec<Protos.Call> SCHEDULER_CALL = new ProtoCodec<>(
-        Protos.Call::parseFrom, Protos.Call::parseFrom
+        Protos.Call.parser()
     );
 
     /** A {@link MessageCodec} for {@link org.apache.mesos.v1.scheduler.Protos.Event Event}. */
     public static final MessageCodec<Protos.Event> SCHEDULER_EVENT = new ProtoCodec<>(
-        Protos.Event::parseFrom, Protos.Event::parseFrom
+        Protos.Event.parser()
     );
 
+    /**
+     * A {@link MessageCodec} for {@link org.apache.mesos.v1.scheduler.Protos.Event Event} that only parses the type
+     * of each event as it is decoded.
+     * @see LazyEvent
+     */
+    public static final MessageCodec<LazyEvent> SCHEDULER_LAZY_EVENT = new LazyEventCodec();
+
     /** A {@link MessageCodec} for {@link org.apache.mesos.v1.executor.Protos.Call Call}. */
     public static final MessageCodec<org.apache.mesos.v1.executor.Protos.Call> EXECUTOR_CALL = new ProtoCodec<>(
-        org.apache.mesos.v1.executor.Protos.Call::parseFrom, org.apache.mesos.v1.executor.Protos.Call::parseFrom
+        org.apache.mesos.v1.executor.Protos.Call.parser()
     );
 
     /** A {@link MessageCodec} for {@link org.apache.mesos.v1.executor.Protos.Event Event}. */
     public static final MessageCodec<org.apache.mesos.v1.executor.Protos.Event> EXECUTOR_EVENT = new ProtoCodec<>(
-        org.apache.mesos.v1.executor.Protos.Event::parseFrom, org.apache.mesos.v1.executor.Protos.Event::parseFrom
+        org.apache.mesos.v1.executor.Protos.Event.parser()
     );
 
 }
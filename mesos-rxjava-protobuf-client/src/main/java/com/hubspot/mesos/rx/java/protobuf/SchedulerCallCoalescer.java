@@ -0,0 +1,186 @@
+/*
+ *    Copyright (C) 2016 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.protobuf;
+
+import com.hubspot.mesos.rx.java.MesosClientBuilder;
+import com.hubspot.mesos.rx.java.SinkOperation;
+import com.hubspot.mesos.rx.java.SinkOperations;
+import org.apache.mesos.v1.Protos;
+import org.apache.mesos.v1.scheduler.Protos.Call;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges compatible scheduler {@link Call Call}s into a single {@code Call}, so that a burst of calls (such as one
+ * {@link Call.Type#DECLINE DECLINE} per offer during an offer storm) can be sent to Mesos as a handful of requests:
+ * <pre>{@code
+ * ProtobufMesosClientBuilder.schedulerUsingProtos()
+ *     .coalesceSends(100, 10, TimeUnit.MILLISECONDS, SchedulerCallCoalescer::coalesce)
+ * }</pre>
+ * The following calls are coalesced:
+ * <ul>
+ *     <li>{@link Call.Type#DECLINE DECLINE} calls that are identical other than their offer IDs (that is for the
+ *     same framework, with the same {@link Protos.Filters Filters}) are merged into a single call declining all of
+ *     their offers.</li>
+ *     <li>{@link Call.Type#RECONCILE RECONCILE} calls that are identical other than the (non-empty) list of tasks
+ *     to reconcile are merged into a single call reconciling all of their tasks.</li>
+ *     <li>Identical {@link Call.Type#KILL KILL} calls and identical implicit {@code RECONCILE} calls (with no tasks)
+ *     are sent once. A {@code KILL} call only names a single task, so kills of different tasks are sent as they
+ *     are.</li>
+ * </ul>
+ * Only a run of consecutive calls of the same type is coalesced: a call of any other type in between ends the run, so
+ * that calls are never reordered across it. For instance in {@code [KILL t1, ACCEPT (relaunching t1), KILL t1]} both
+ * {@code KILL} calls are sent, since the second one kills the relaunched task.
+ * <p>
+ * All other calls are passed through unchanged. The {@link SinkOperation} of a merged call invokes the callbacks of
+ * every operation it replaces, so each caller is still told whether its call was accepted.
+ *
+ * @see MesosClientBuilder#coalesceSends
+ */
+public final class SchedulerCallCoalescer {
+
+    private SchedulerCallCoalescer() {}
+
+    /**
+     * Coalesces a batch of operations, returning the operations to send in place of {@code operations}. Each
+     * returned operation is in the position of the first operation it replaces.
+     * @param operations    The batch of operations to coalesce
+     * @return The coalesced operations
+     */
+    @NotNull
+    public static List<SinkOperation<Call>> coalesce(@NotNull final List<SinkOperation<Call>> operations) {
+        if (operations.size() < 2) {
+            return operations;
+        }
+        final List<Group> groups = new ArrayList<>(operations.size());
+        // Calls are keyed on the call with the list being merged cleared, or the call itself if only identical
+        // calls may be coalesced, so each kind of coalescing needs its own table
+        final Map<Call, Group> mergeable = new HashMap<>();
+        final Map<Call, Group> identical = new HashMap<>();
+        Call.Type runType = null;
+        for (SinkOperation<Call> operation : operations) {
+            final Call call = operation.getThingToSink();
+            if (call.getType() != runType) {
+                // a call of another type ends the run, calls before it are never merged with calls after it
+                mergeable.clear();
+                identical.clear();
+                runType = call.getType();
+            }
+            final Map<Call, Group> table;
+            final Call key;
+            switch (call.getType()) {
+                case DECLINE:
+                    table = mergeable;
+                    key = call.toBuilder().setDecline(call.getDecline().toBuilder().clearOfferIds()).build();
+                    break;
+                case RECONCILE:
+                    if (call.getReconcile().getTasksCount() > 0) {
+                        table = mergeable;
+                        key = call.toBuilder().setReconcile(call.getReconcile().toBuilder().clearTasks()).build();
+                    } else {
+                        table = identical;
+                        key = call;
+                    }
+                    break;
+                case KILL:
+                    table = identical;
+                    key = call;
+                    break;
+                default:
+                    table = null;
+                    key = null;
+                    break;
+            }
+            if (table == null) {
+                groups.add(new Group(operation));
+            } else {
+                final Group group = table.get(key);
+                if (group == null) {
+                    final Group newGroup = new Group(operation);
+                    table.put(key, newGroup);
+                    groups.add(newGroup);
+                } else {
+                    group.operations.add(operation);
+                }
+            }
+        }
+        if (groups.size() == operations.size()) {
+            return operations;
+        }
+        final List<SinkOperation<Call>> coalesced = new ArrayList<>(groups.size());
+        for (Group group : groups) {
+            coalesced.add(group.toOperation());
+        }
+        return coalesced;
+    }
+
+    @NotNull
+    private static Call merge(@NotNull final List<SinkOperation<Call>> operations) {
+        final Call first = operations.get(0).getThingToSink();
+        switch (first.getType()) {
+            case DECLINE: {
+                final Set<Protos.OfferID> offerIds = new LinkedHashSet<>();
+                operations.forEach(op -> offerIds.addAll(op.getThingToSink().getDecline().getOfferIdsList()));
+                return first.toBuilder()
+                    .setDecline(first.getDecline().toBuilder().clearOfferIds().addAllOfferIds(offerIds))
+                    .build();
+            }
+            case RECONCILE: {
+                final Set<Call.Reconcile.Task> tasks = new LinkedHashSet<>();
+                operations.forEach(op -> tasks.addAll(op.getThingToSink().getReconcile().getTasksList()));
+                return first.toBuilder()
+                    .setReconcile(first.getReconcile().toBuilder().clearTasks().addAllTasks(tasks))
+                    .build();
+            }
+            default:
+                // the calls are identical
+                return first;
+        }
+    }
+
+    /**
+     * The operations that will be sent as a single call.
+     */
+    private static final class Group {
+        @NotNull
+        private final List<SinkOperation<Call>> operations;
+
+        Group(@NotNull final SinkOperation<Call> operation) {
+            this.operations = new ArrayList<>(Collections.singletonList(operation));
+        }
+
+        @NotNull
+        SinkOperation<Call> toOperation() {
+            if (operations.size() == 1) {
+                return operations.get(0);
+            }
+            return SinkOperations.create(
+                merge(operations),
+                () -> operations.forEach(SinkOperation::onCompleted),
+                e -> operations.forEach(op -> op.onError(e))
+            );
+        }
+    }
+
+}
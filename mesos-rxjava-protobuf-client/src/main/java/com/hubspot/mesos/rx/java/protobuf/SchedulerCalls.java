@@ -17,10 +17,13 @@
 package com.hubspot.mesos.rx.java.protobuf;
 
 import com.google.protobuf.ByteString;
+import com.hubspot.mesos.rx.java.SendPriority;
 import org.apache.mesos.v1.Protos;
 import org.apache.mesos.v1.scheduler.Protos.Call;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.apache.mesos.v1.scheduler.Protos.Call.*;
@@ -32,6 +35,152 @@ public final class SchedulerCalls {
 
     private SchedulerCalls() {}
 
+    /**
+     * Determines whether {@code call} can safely be sent to Mesos more than once, for instance as a hedged attempt
+     * (see {@link com.hubspot.mesos.rx.java.MesosClientBuilder#hedgeCalls(java.util.function.Predicate, double)}).
+     * Acknowledging the same status update, reconciling the same tasks or declining the same offers a second time has
+     * no further effect.
+     *
+     * @param call    The {@link Call} to be sent
+     * @return {@code true} if {@code call} is of type {@link Type#ACKNOWLEDGE ACKNOWLEDGE},
+     *         {@link Type#RECONCILE RECONCILE} or {@link Type#DECLINE DECLINE}
+     */
+    public static boolean isIdempotent(@NotNull final Call call) {
+        switch (call.getType()) {
+            case ACKNOWLEDGE:
+            case RECONCILE:
+            case DECLINE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Determines the key under which {@code call} should be ordered with respect to other calls, for use with
+     * {@link com.hubspot.mesos.rx.java.MesosClientBuilder#orderSendsBy(java.util.function.Function)}.
+     * <ul>
+     *     <li>{@link Type#KILL KILL} and {@link Type#ACKNOWLEDGE ACKNOWLEDGE} calls, as well as
+     *     {@link Type#ACCEPT ACCEPT} calls launching a single task, are keyed by the {@link Protos.TaskID TaskID} of
+     *     the task, so that the calls for a task are received by Mesos in the order they were sent.</li>
+     *     <li>{@link Type#ACCEPT ACCEPT} calls launching several tasks, {@link Type#SHUTDOWN SHUTDOWN} and
+     *     {@link Type#MESSAGE MESSAGE} calls are keyed by the {@link Protos.AgentID AgentID} of the agent they
+     *     concern.</li>
+     *     <li>All other calls are not ordered.</li>
+     * </ul>
+     *
+     * @param call    The {@link Call} to be sent
+     * @return The {@link Protos.TaskID TaskID} or {@link Protos.AgentID AgentID} {@code call} concerns, or
+     *         {@code null} if {@code call} does not need to be ordered
+     */
+    @Nullable
+    public static Object orderingKey(@NotNull final Call call) {
+        switch (call.getType()) {
+            case KILL:
+                return call.getKill().getTaskId();
+            case ACKNOWLEDGE:
+                return call.getAcknowledge().getTaskId();
+            case ACCEPT:
+                final List<Protos.TaskInfo> tasks = new ArrayList<>();
+                for (final Protos.Offer.Operation operation : call.getAccept().getOperationsList()) {
+                    if (operation.hasLaunch()) {
+                        tasks.addAll(operation.getLaunch().getTaskInfosList());
+                    }
+                    if (operation.hasLaunchGroup()) {
+                        tasks.addAll(operation.getLaunchGroup().getTaskGroup().getTasksList());
+                    }
+                }
+                if (tasks.isEmpty()) {
+                    return null;
+                } else if (tasks.size() == 1) {
+                    return tasks.get(0).getTaskId();
+                } else {
+                    return tasks.get(0).getAgentId();
+                }
+            case SHUTDOWN:
+                return call.getShutdown().getAgentId();
+            case MESSAGE:
+                return call.getMessage().getAgentId();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Determines the {@link SendPriority} of {@code call}, for use with
+     * {@link com.hubspot.mesos.rx.java.MesosClientBuilder#prioritizeSends(java.util.function.Function, int, int, int)}.
+     * Acknowledgements and kills are sent ahead of other calls, since Mesos keeps retransmitting a status update until
+     * it is acknowledged, while declining offers can wait.
+     *
+     * @param call    The {@link Call} to be sent
+     * @return {@link SendPriority#HIGH HIGH} for calls of type {@link Type#ACKNOWLEDGE ACKNOWLEDGE},
+     *         {@link Type#ACKNOWLEDGE_OPERATION_STATUS ACKNOWLEDGE_OPERATION_STATUS} or {@link Type#KILL KILL},
+     *         {@link SendPriority#LOW LOW} for calls of type {@link Type#DECLINE DECLINE} or
+     *         {@link Type#DECLINE_INVERSE_OFFERS DECLINE_INVERSE_OFFERS} and {@link SendPriority#NORMAL NORMAL} for
+     *         any other call
+     */
+    @NotNull
+    public static SendPriority priority(@NotNull final Call call) {
+        switch (call.getType()) {
+            case ACKNOWLEDGE:
+            case ACKNOWLEDGE_OPERATION_STATUS:
+            case KILL:
+                return SendPriority.HIGH;
+            case DECLINE:
+            case DECLINE_INVERSE_OFFERS:
+                return SendPriority.LOW;
+            default:
+                return SendPriority.NORMAL;
+        }
+    }
+
+    /**
+     * Updates {@code subscribe} with the framework ID Mesos assigned to the framework, for use with
+     * {@link com.hubspot.mesos.rx.java.MesosClientBuilder#resubscribeWith(java.util.function.BiFunction)}, so that a
+     * framework that subscribed without an ID resubscribes as the same framework rather than registering as a new one.
+     *
+     * @param subscribe    The {@link Call Call} of type {@link Type#SUBSCRIBE SUBSCRIBE} that would be sent
+     * @param event        The {@link org.apache.mesos.v1.scheduler.Protos.Event Event} received from Mesos
+     * @return {@code subscribe} with the {@link org.apache.mesos.v1.scheduler.Protos.Event.Subscribed#getFrameworkId()
+     *         framework ID} set on the {@link Call Call} and its {@link Protos.FrameworkInfo FrameworkInfo} if
+     *         {@code event} is of type {@link org.apache.mesos.v1.scheduler.Protos.Event.Type#SUBSCRIBED SUBSCRIBED},
+     *         otherwise {@code subscribe}
+     */
+    @NotNull
+    public static Call resubscribe(
+        @NotNull final Call subscribe,
+        @NotNull final org.apache.mesos.v1.scheduler.Protos.Event event
+    ) {
+        if (event.getType() != org.apache.mesos.v1.scheduler.Protos.Event.Type.SUBSCRIBED) {
+            return subscribe;
+        }
+        final Protos.FrameworkID frameworkId = event.getSubscribed().getFrameworkId();
+        if (subscribe.getFrameworkId().equals(frameworkId)
+            && subscribe.getSubscribe().getFrameworkInfo().getId().equals(frameworkId)) {
+            return subscribe;
+        }
+        final Call.Builder builder = subscribe.toBuilder().setFrameworkId(frameworkId);
+        builder.getSubscribeBuilder().getFrameworkInfoBuilder().setId(frameworkId);
+        return builder.build();
+    }
+
+    /**
+     * Updates {@code subscribe} with the framework ID Mesos assigned to the framework, only parsing events of type
+     * {@link org.apache.mesos.v1.scheduler.Protos.Event.Type#SUBSCRIBED SUBSCRIBED} in full.
+     *
+     * @param subscribe    The {@link Call Call} of type {@link Type#SUBSCRIBE SUBSCRIBE} that would be sent
+     * @param event        The {@link LazyEvent} received from Mesos
+     * @return The subscribe call, as returned by
+     *         {@link #resubscribe(Call, org.apache.mesos.v1.scheduler.Protos.Event)}
+     */
+    @NotNull
+    public static Call resubscribe(@NotNull final Call subscribe, @NotNull final LazyEvent event) {
+        if (event.getType() != org.apache.mesos.v1.scheduler.Protos.Event.Type.SUBSCRIBED) {
+            return subscribe;
+        }
+        return resubscribe(subscribe, event.getEvent());
+    }
+
     /**
      * Utility method to more succinctly construct a {@link Call Call} of type {@link Type#ACKNOWLEDGE ACKNOWLEDGE}.
      * <p>
@@ -22,14 +22,64 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collections;
+import java.util.OptionalLong;
 
 /**
- * A set of factory methods that make {@link Protos.Event Event}s easier to create.
+ * A set of factory methods that make {@link Protos.Event Event}s easier to create, along with methods that classify
+ * events for {@link com.hubspot.mesos.rx.java.MesosClientBuilder}.
  */
 public final class SchedulerEvents {
 
     private SchedulerEvents() {}
 
+    /**
+     * Returns the heartbeat interval announced by {@code event}, for use with
+     * {@link com.hubspot.mesos.rx.java.MesosClientBuilder#detectStalls(java.util.function.Function, java.util.function.Predicate, int)}.
+     *
+     * @param event    The {@link Protos.Event Event} received from Mesos
+     * @return The {@link Protos.Event.Subscribed#getHeartbeatIntervalSeconds() heartbeat interval} in milliseconds if
+     *         {@code event} is of type {@link Protos.Event.Type#SUBSCRIBED SUBSCRIBED} and specifies one, otherwise
+     *         {@link OptionalLong#empty()}
+     */
+    @NotNull
+    public static OptionalLong heartbeatIntervalMillis(@NotNull final Protos.Event event) {
+        if (event.getType() == Protos.Event.Type.SUBSCRIBED && event.getSubscribed().hasHeartbeatIntervalSeconds()) {
+            return OptionalLong.of((long) (event.getSubscribed().getHeartbeatIntervalSeconds() * 1000));
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Returns the heartbeat interval announced by {@code event}, only parsing events of type
+     * {@link Protos.Event.Type#SUBSCRIBED SUBSCRIBED} in full.
+     *
+     * @param event    The {@link LazyEvent} received from Mesos
+     * @return The heartbeat interval in milliseconds, as returned by {@link #heartbeatIntervalMillis(Protos.Event)}
+     */
+    @NotNull
+    public static OptionalLong heartbeatIntervalMillis(@NotNull final LazyEvent event) {
+        if (event.getType() == Protos.Event.Type.SUBSCRIBED) {
+            return heartbeatIntervalMillis(event.getEvent());
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * @param event    The {@link Protos.Event Event} received from Mesos
+     * @return {@code true} if {@code event} is of type {@link Protos.Event.Type#HEARTBEAT HEARTBEAT}
+     */
+    public static boolean isHeartbeat(@NotNull final Protos.Event event) {
+        return event.getType() == Protos.Event.Type.HEARTBEAT;
+    }
+
+    /**
+     * @param event    The {@link LazyEvent} received from Mesos
+     * @return {@code true} if {@code event} is of type {@link Protos.Event.Type#HEARTBEAT HEARTBEAT}
+     */
+    public static boolean isHeartbeat(@NotNull final LazyEvent event) {
+        return event.getType() == Protos.Event.Type.HEARTBEAT;
+    }
+
     /**
      * Utility method to more succinctly construct an {@link Protos.Event Event} of type
      * {@link Protos.Event.Type#SUBSCRIBED SUBSCRIBED}.
@@ -0,0 +1,178 @@
+/*
+ *    Copyright (C) 2016 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.protobuf;
+
+import org.apache.mesos.v1.scheduler.Protos.Event;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class EventRouterTest {
+
+    private static final Event HEARTBEAT = event(Event.Type.HEARTBEAT);
+    private static final Event OFFERS = event(Event.Type.OFFERS);
+    private static final Event UPDATE = event(Event.Type.UPDATE);
+    private static final Event ERROR = event(Event.Type.ERROR);
+
+    @Test
+    public void eventsRoutedToBranchForTheirType() throws Exception {
+        final EventRouter<Event, Event.Type, String> router = EventRouter.<String>schedulerEvents()
+            .route(Event.Type.OFFERS, offers -> offers.map(e -> "offers"))
+            .route(EnumSet.of(Event.Type.UPDATE, Event.Type.ERROR), events -> events.map(e -> e.getType().name()))
+            .build();
+
+        final TestSubscriber<String> subscriber = new TestSubscriber<>();
+        router.apply(Observable.just(HEARTBEAT, OFFERS, UPDATE, HEARTBEAT, ERROR, OFFERS)).subscribe(subscriber);
+
+        subscriber.assertValues("offers", "UPDATE", "ERROR", "offers");
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void lazyEventsRoutedWithoutBeingParsed() throws Exception {
+        final List<LazyEvent> routed = new ArrayList<>();
+        final EventRouter<LazyEvent, Event.Type, LazyEvent> router = EventRouter.<LazyEvent>lazySchedulerEvents()
+            .route(Event.Type.UPDATE, updates -> updates.doOnNext(routed::add))
+            .build();
+
+        final LazyEvent update = ProtobufMessageCodecs.SCHEDULER_LAZY_EVENT.decode(UPDATE.toByteArray());
+        // bytes that can only be parsed as far as the type of the event
+        final LazyEvent malformed = ProtobufMessageCodecs.SCHEDULER_LAZY_EVENT.decode(new byte[]{0x08, 0x08, 0x1a, 0x10});
+        final TestSubscriber<LazyEvent> subscriber = new TestSubscriber<>();
+        router.apply(Observable.just(malformed, update)).subscribe(subscriber);
+
+        subscriber.assertNoErrors();
+        assertThat(routed).containsExactly(update);
+        assertThat(update.getEvent()).isEqualTo(UPDATE);
+    }
+
+    @Test
+    public void streamHeldUpOnlyWhileABranchBufferIsFull() throws Exception {
+        final List<Observable<Event>> branches = new ArrayList<>();
+        final EventRouter<Event, Event.Type, Event> router = EventRouter.<Event>schedulerEvents()
+            .route(Event.Type.OFFERS, offers -> capture(branches, offers))
+            .route(Event.Type.UPDATE, updates -> capture(branches, updates))
+            .bufferSize(2)
+            .build();
+
+        final AtomicInteger emitted = new AtomicInteger();
+        final Observable<Event> events = Observable.just(OFFERS, UPDATE, OFFERS, UPDATE, OFFERS, UPDATE, UPDATE)
+            .doOnNext(e -> emitted.incrementAndGet());
+        router.apply(events).subscribe(new TestSubscriber<>());
+
+        final TestSubscriber<Event> slow = new TestSubscriber<>(0);
+        final TestSubscriber<Event> fast = new TestSubscriber<>();
+        branches.get(0).subscribe(slow);
+        branches.get(1).subscribe(fast);
+
+        // the offers branch is holding two events, and so has no room for another should the next event be an offer
+        assertThat(emitted.get()).isEqualTo(3);
+        fast.assertValues(UPDATE);
+        slow.assertNoValues();
+
+        slow.requestMore(1);
+        assertThat(emitted.get()).isEqualTo(5);
+        fast.assertValueCount(2);
+        slow.assertValueCount(1);
+
+        slow.requestMore(2);
+        assertThat(emitted.get()).isEqualTo(7);
+        fast.assertValueCount(4);
+        fast.assertCompleted();
+        slow.assertValueCount(3);
+        slow.assertCompleted();
+    }
+
+    @Test
+    public void eventsForUnsubscribedBranchAreDropped() throws Exception {
+        final List<Observable<Event>> branches = new ArrayList<>();
+        final EventRouter<Event, Event.Type, Event> router = EventRouter.<Event>schedulerEvents()
+            .route(Event.Type.OFFERS, offers -> capture(branches, offers))
+            .route(Event.Type.UPDATE, updates -> capture(branches, updates))
+            .bufferSize(1)
+            .build();
+
+        final PublishSubject<Event> events = PublishSubject.create();
+        router.apply(events).subscribe(new TestSubscriber<>());
+        final TestSubscriber<Event> offers = new TestSubscriber<>(0);
+        final TestSubscriber<Event> updates = new TestSubscriber<>();
+        branches.get(0).subscribe(offers);
+        branches.get(1).subscribe(updates);
+
+        offers.unsubscribe();
+        events.onNext(OFFERS);
+        events.onNext(UPDATE);
+        events.onNext(OFFERS);
+        events.onNext(UPDATE);
+
+        updates.assertValues(UPDATE, UPDATE);
+    }
+
+    @Test
+    public void errorDeliveredToEveryBranch() throws Exception {
+        final EventRouter<Event, Event.Type, Event> router = EventRouter.<Event>schedulerEvents()
+            .route(Event.Type.OFFERS, offers -> offers.onErrorResumeNext(e -> Observable.just(ERROR)))
+            .route(Event.Type.UPDATE, updates -> updates.onErrorResumeNext(e -> Observable.just(ERROR)))
+            .build();
+
+        final TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        router.apply(Observable.<Event>error(new IllegalStateException())).subscribe(subscriber);
+
+        subscriber.assertValues(ERROR, ERROR);
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void branchMayOnlyBeSubscribedToOnce() throws Exception {
+        final EventRouter<Event, Event.Type, Event> router = EventRouter.<Event>schedulerEvents()
+            .route(Event.Type.OFFERS, offers -> offers.mergeWith(offers))
+            .build();
+
+        final TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        router.apply(Observable.just(OFFERS)).subscribe(subscriber);
+
+        subscriber.assertError(IllegalStateException.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void typeMayOnlyBeRoutedToOneBranch() throws Exception {
+        EventRouter.<Event>schedulerEvents()
+            .route(Event.Type.OFFERS, offers -> offers)
+            .route(EnumSet.of(Event.Type.UPDATE, Event.Type.OFFERS), events -> events);
+    }
+
+    @NotNull
+    private static Observable<Event> capture(@NotNull final List<Observable<Event>> branches, @NotNull final Observable<Event> branch) {
+        branches.add(branch);
+        return Observable.never();
+    }
+
+    @NotNull
+    private static Event event(@NotNull final Event.Type type) {
+        return Event.newBuilder().setType(type).build();
+    }
+
+}
@@ -16,6 +16,15 @@
 
 package com.hubspot.mesos.rx.java.protobuf;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.hubspot.mesos.rx.java.util.ByteBufMessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import org.apache.mesos.v1.scheduler.Protos;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
@@ -23,6 +32,7 @@ import org.junit.Test;
 import java.util.Base64;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public final class ProtobufMessageCodecsTest {
 
@@ -64,4 +74,90 @@ public final class ProtobufMessageCodecsTest {
         assertThat(SUBSCRIBED).isEqualTo(ProtobufMessageCodecs.SCHEDULER_EVENT.decode(SERIALIZED_SUBSCRIBED));
     }
 
+    @Test
+    public void testEncodeToByteBuf() {
+        final ByteBufMessageCodec<Protos.Event> codec = (ByteBufMessageCodec<Protos.Event>) ProtobufMessageCodecs.SCHEDULER_EVENT;
+        for (ByteBufAllocator alloc : new ByteBufAllocator[]{UnpooledByteBufAllocator.DEFAULT, new PooledByteBufAllocator(true)}) {
+            assertEncodedTo(codec.encode(HEARTBEAT, alloc), SERIALIZED_HEARTBEAT);
+            assertEncodedTo(codec.encode(OFFER, alloc), SERIALIZED_OFFER);
+            assertEncodedTo(codec.encode(SUBSCRIBED, alloc), SERIALIZED_SUBSCRIBED);
+        }
+    }
+
+    @Test
+    public void testDecodeFromByteBuf() {
+        final ByteBufMessageCodec<Protos.Event> codec = (ByteBufMessageCodec<Protos.Event>) ProtobufMessageCodecs.SCHEDULER_EVENT;
+
+        final ByteBuf heap = Unpooled.wrappedBuffer(SERIALIZED_OFFER);
+        assertThat(codec.decode(heap)).isEqualTo(OFFER);
+        assertThat(heap.readerIndex()).isEqualTo(0);
+
+        final ByteBuf direct = Unpooled.directBuffer().writeBytes(SERIALIZED_SUBSCRIBED);
+        assertThat(codec.decode(direct)).isEqualTo(SUBSCRIBED);
+        direct.release();
+
+        final ByteBuf framed = Unpooled.copiedBuffer(new byte[]{'2', '\n'}, SERIALIZED_HEARTBEAT);
+        assertThat(codec.decode(framed.slice(2, SERIALIZED_HEARTBEAT.length))).isEqualTo(HEARTBEAT);
+
+        final int split = SERIALIZED_OFFER.length / 2;
+        final CompositeByteBuf composite = Unpooled.compositeBuffer().addComponents(
+            true,
+            Unpooled.wrappedBuffer(SERIALIZED_OFFER, 0, split),
+            Unpooled.directBuffer().writeBytes(SERIALIZED_OFFER, split, SERIALIZED_OFFER.length - split)
+        );
+        assertThat(codec.decode(composite)).isEqualTo(OFFER);
+        composite.release();
+    }
+
+    @Test
+    public void testLazyDecodeParsesType() {
+        final LazyEvent heartbeat = ProtobufMessageCodecs.SCHEDULER_LAZY_EVENT.decode(SERIALIZED_HEARTBEAT);
+        assertThat(heartbeat.getType()).isEqualTo(Protos.Event.Type.HEARTBEAT);
+        assertThat(heartbeat.getEvent()).isEqualTo(HEARTBEAT);
+
+        final LazyEvent offer = ProtobufMessageCodecs.SCHEDULER_LAZY_EVENT.decode(SERIALIZED_OFFER);
+        assertThat(offer.getType()).isEqualTo(Protos.Event.Type.OFFERS);
+        assertThat(offer.getEvent()).isEqualTo(OFFER);
+        assertThat(offer.getEvent()).isSameAs(offer.getEvent());
+
+        final ByteBufMessageCodec<LazyEvent> codec = (ByteBufMessageCodec<LazyEvent>) ProtobufMessageCodecs.SCHEDULER_LAZY_EVENT;
+        final ByteBuf buf = Unpooled.directBuffer().writeBytes(SERIALIZED_SUBSCRIBED);
+        final LazyEvent subscribed = codec.decode(buf);
+        buf.release();
+        assertThat(subscribed.getType()).isEqualTo(Protos.Event.Type.SUBSCRIBED);
+        assertThat(subscribed.getEvent()).isEqualTo(SUBSCRIBED);
+        assertThat(ProtobufMessageCodecs.SCHEDULER_LAZY_EVENT.encode(subscribed)).isEqualTo(SERIALIZED_SUBSCRIBED);
+    }
+
+    @Test
+    public void testLazyDecodeDefersParsingOfRestOfEvent() {
+        // a HEARTBEAT followed by a truncated length-delimited field
+        final byte[] malformed = {0x08, 0x08, 0x1a, 0x10, 0x01};
+        final LazyEvent event = ProtobufMessageCodecs.SCHEDULER_LAZY_EVENT.decode(malformed);
+        assertThat(event.getType()).isEqualTo(Protos.Event.Type.HEARTBEAT);
+        try {
+            event.getEvent();
+            fail("Expected RuntimeException");
+        } catch (RuntimeException e) {
+            assertThat(e.getCause()).isInstanceOf(InvalidProtocolBufferException.class);
+        }
+    }
+
+    @Test
+    public void testLazyDecodeTypeNotFirstOrMissing() {
+        // the offers field (3) serialized ahead of the type field
+        final byte[] typeLast = {0x1a, 0x00, 0x08, 0x02};
+        assertThat(LazyEvent.parseType(typeLast)).isEqualTo(Protos.Event.Type.OFFERS);
+        assertThat(LazyEvent.parseType(new byte[0])).isEqualTo(Protos.Event.Type.UNKNOWN);
+        assertThat(LazyEvent.parseType(new byte[]{0x08, 0x7f})).isEqualTo(Protos.Event.Type.UNKNOWN);
+    }
+
+    private static void assertEncodedTo(@NotNull final ByteBuf buf, @NotNull final byte[] expected) {
+        try {
+            assertThat(ByteBufUtil.getBytes(buf)).isEqualTo(expected);
+        } finally {
+            buf.release();
+        }
+    }
+
 }
@@ -0,0 +1,186 @@
+/*
+ *    Copyright (C) 2016 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.protobuf;
+
+import com.hubspot.mesos.rx.java.SinkOperation;
+import com.hubspot.mesos.rx.java.SinkOperations;
+import org.apache.mesos.v1.Protos;
+import org.apache.mesos.v1.scheduler.Protos.Call;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class SchedulerCallCoalescerTest {
+
+    private static final Protos.FrameworkID FRAMEWORK_ID = Protos.FrameworkID.newBuilder().setValue("fw").build();
+
+    @Test
+    public void declinesWithSameFiltersAreMerged() throws Exception {
+        final List<String> completed = new ArrayList<>();
+        final List<SinkOperation<Call>> coalesced = SchedulerCallCoalescer.coalesce(newArrayList(
+            operation(decline("offer-1"), completed),
+            operation(decline("offer-2"), completed),
+            operation(decline("offer-2", "offer-3"), completed)
+        ));
+
+        assertThat(coalesced).hasSize(1);
+        assertThat(coalesced.get(0).getThingToSink()).isEqualTo(decline("offer-1", "offer-2", "offer-3"));
+
+        coalesced.get(0).onCompleted();
+        assertThat(completed).containsExactly("offer-1", "offer-2", "offer-2,offer-3");
+    }
+
+    @Test
+    public void declinesWithDifferentFiltersAreNotMerged() throws Exception {
+        final Call refuseLonger = decline("offer-2").toBuilder()
+            .setDecline(
+                decline("offer-2").getDecline().toBuilder()
+                    .setFilters(Protos.Filters.newBuilder().setRefuseSeconds(60))
+            )
+            .build();
+        final List<SinkOperation<Call>> coalesced = SchedulerCallCoalescer.coalesce(newArrayList(
+            SinkOperations.create(decline("offer-1")),
+            SinkOperations.create(refuseLonger),
+            SinkOperations.create(decline("offer-3"))
+        ));
+
+        assertThat(calls(coalesced)).containsExactly(decline("offer-1", "offer-3"), refuseLonger);
+    }
+
+    @Test
+    public void errorDeliveredToEveryMergedOperation() throws Exception {
+        final List<Throwable> errors = new ArrayList<>();
+        final List<SinkOperation<Call>> coalesced = SchedulerCallCoalescer.coalesce(newArrayList(
+            SinkOperations.create(decline("offer-1"), errors::add),
+            SinkOperations.create(decline("offer-2"), errors::add)
+        ));
+
+        final IllegalStateException error = new IllegalStateException();
+        coalesced.get(0).onError(error);
+        assertThat(errors).containsExactly(error, error);
+    }
+
+    @Test
+    public void explicitReconcilesAreMerged() throws Exception {
+        final List<SinkOperation<Call>> coalesced = SchedulerCallCoalescer.coalesce(newArrayList(
+            SinkOperations.create(reconcile("task-1")),
+            SinkOperations.create(reconcile()),
+            SinkOperations.create(reconcile("task-2")),
+            SinkOperations.create(reconcile())
+        ));
+
+        assertThat(calls(coalesced)).containsExactly(reconcile("task-1", "task-2"), reconcile());
+    }
+
+    @Test
+    public void onlyIdenticalKillsAreCoalesced() throws Exception {
+        final List<SinkOperation<Call>> coalesced = SchedulerCallCoalescer.coalesce(newArrayList(
+            SinkOperations.create(kill("task-1")),
+            SinkOperations.create(kill("task-2")),
+            SinkOperations.create(kill("task-1"))
+        ));
+
+        assertThat(calls(coalesced)).containsExactly(kill("task-1"), kill("task-2"));
+    }
+
+    @Test
+    public void callsAreNotCoalescedAcrossACallOfAnotherType() throws Exception {
+        final Call relaunch = Call.newBuilder()
+            .setFrameworkId(FRAMEWORK_ID)
+            .setType(Call.Type.ACCEPT)
+            .setAccept(Call.Accept.newBuilder().addOfferIds(Protos.OfferID.newBuilder().setValue("offer-1")))
+            .build();
+        final Call revive = Call.newBuilder().setFrameworkId(FRAMEWORK_ID).setType(Call.Type.REVIVE).build();
+        final List<SinkOperation<Call>> coalesced = SchedulerCallCoalescer.coalesce(newArrayList(
+            SinkOperations.create(kill("task-1")),
+            SinkOperations.create(relaunch),
+            SinkOperations.create(kill("task-1")),
+            SinkOperations.create(kill("task-1")),
+            SinkOperations.create(decline("offer-2")),
+            SinkOperations.create(revive),
+            SinkOperations.create(decline("offer-3"))
+        ));
+
+        assertThat(calls(coalesced)).containsExactly(
+            kill("task-1"), relaunch, kill("task-1"), decline("offer-2"), revive, decline("offer-3")
+        );
+    }
+
+    @Test
+    public void otherCallsArePassedThroughInOrder() throws Exception {
+        final Call revive = Call.newBuilder().setFrameworkId(FRAMEWORK_ID).setType(Call.Type.REVIVE).build();
+        final List<SinkOperation<Call>> operations = newArrayList(
+            SinkOperations.create(revive),
+            SinkOperations.create(decline("offer-1")),
+            SinkOperations.create(revive)
+        );
+
+        assertThat(SchedulerCallCoalescer.coalesce(operations)).isSameAs(operations);
+    }
+
+    @NotNull
+    private static SinkOperation<Call> operation(@NotNull final Call decline, @NotNull final List<String> completed) {
+        final String offers = decline.getDecline().getOfferIdsList().stream()
+            .map(Protos.OfferID::getValue)
+            .collect(Collectors.joining(","));
+        return SinkOperations.create(decline, () -> completed.add(offers));
+    }
+
+    @NotNull
+    private static List<Call> calls(@NotNull final List<SinkOperation<Call>> operations) {
+        return operations.stream().map(SinkOperation::getThingToSink).collect(Collectors.toList());
+    }
+
+    @NotNull
+    private static Call decline(@NotNull final String... offerIds) {
+        return SchedulerCalls.decline(
+            FRAMEWORK_ID,
+            newArrayList(offerIds).stream()
+                .map(id -> Protos.OfferID.newBuilder().setValue(id).build())
+                .collect(Collectors.toList())
+        );
+    }
+
+    @NotNull
+    private static Call reconcile(@NotNull final String... taskIds) {
+        final Call.Reconcile.Builder reconcile = Call.Reconcile.newBuilder();
+        for (String taskId : taskIds) {
+            reconcile.addTasks(Call.Reconcile.Task.newBuilder().setTaskId(Protos.TaskID.newBuilder().setValue(taskId)));
+        }
+        return Call.newBuilder()
+            .setFrameworkId(FRAMEWORK_ID)
+            .setType(Call.Type.RECONCILE)
+            .setReconcile(reconcile)
+            .build();
+    }
+
+    @NotNull
+    private static Call kill(@NotNull final String taskId) {
+        return Call.newBuilder()
+            .setFrameworkId(FRAMEWORK_ID)
+            .setType(Call.Type.KILL)
+            .setKill(Call.Kill.newBuilder().setTaskId(Protos.TaskID.newBuilder().setValue(taskId)))
+            .build();
+    }
+
+}
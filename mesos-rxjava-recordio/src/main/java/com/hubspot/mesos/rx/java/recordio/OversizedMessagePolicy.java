@@ -0,0 +1,40 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.recordio;
+
+/**
+ * Defines how a RecordIO operator handles a message whose size is larger than the maximum message size it has
+ * been configured with.
+ *
+ * @see RecordIOOperator#RecordIOOperator(long, OversizedMessagePolicy)
+ * @see RecordIOByteBufOperator#RecordIOByteBufOperator(long, OversizedMessagePolicy)
+ */
+public enum OversizedMessagePolicy {
+
+    /**
+     * Terminate the stream with a {@link RecordIOMessageTooLargeException} as soon as the size of the message
+     * has been read, before any of the message is buffered.
+     */
+    FAIL,
+
+    /**
+     * Discard the bytes of the message as they arrive, without buffering any of them, and continue with the
+     * next message in the stream.
+     */
+    SKIP
+
+}
@@ -0,0 +1,38 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.recordio;
+
+/**
+ * Allows a RecordIO operator to stop and restart the reading of data from the source of its stream (for example
+ * by toggling {@code autoRead} on a Netty {@code Channel}) when there is no demand for the messages it produces.
+ * <p>
+ * Implementations must be safe to invoke from any thread.
+ */
+@FunctionalInterface
+public interface ReadControl {
+
+    /**
+     * A {@link ReadControl} that ignores all requests, for sources that can not be paused.
+     */
+    ReadControl NONE = autoRead -> {};
+
+    /**
+     * @param autoRead    {@code false} if the source should stop reading data, {@code true} if it should resume
+     */
+    void setAutoRead(final boolean autoRead);
+
+}
@@ -0,0 +1,277 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.recordio;
+
+import static com.hubspot.mesos.rx.java.recordio.RecordIOMessageSizeParser.checkMaxMessageSize;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import rx.Observable.Operator;
+import rx.Subscriber;
+
+/**
+ * An {@link Operator} that can be applied to a stream of {@link ByteBuf} and produce a stream of {@link ByteBuf}
+ * messages following the RecordIO format, without copying the bytes of any message.
+ * <p>
+ * Each emitted {@link ByteBuf} is either a retained slice of the chunk the message was contained in, or, if the
+ * message spans multiple chunks, a {@link CompositeByteBuf} made up of retained slices of each of those chunks.
+ * <p>
+ * <b>Ownership:</b>
+ * <ul>
+ *     <li>The operator never releases the chunks it is given; they remain owned by the upstream
+ *     (RxNetty releases content after {@code onNext} returns).</li>
+ *     <li>Every message emitted to the child has a reference count of 1 and is owned by the child, which
+ *     <b>must</b> {@link ByteBuf#release() release} it once it has been consumed.</li>
+ *     <li>Any partially read message held by the operator is released when the stream terminates.</li>
+ * </ul>
+ * Messages larger than the configured maximum message size are handled according to the
+ * {@link OversizedMessagePolicy}; a skipped message is never retained.
+ * <p>
+ * Messages are only emitted as they are requested by the child. Messages framed ahead of demand are held
+ * by the operator (and released if the child unsubscribes before requesting them), and while any are held the
+ * source of the stream is paused using the provided {@link ReadControl}.
+ *
+ * @see <a href="https://github.com/apache/mesos/blob/master/docs/scheduler-http-api.md#recordio-response-format" target="_blank">RecordIO</a>
+ * @see RecordIOOperator
+ * @see rx.Observable#lift(Operator)
+ */
+public final class RecordIOByteBufOperator implements Operator<ByteBuf, ByteBuf> {
+
+    /**
+     * The largest message that can be represented by a single {@link ByteBuf}.
+     */
+    public static final long DEFAULT_MAX_MESSAGE_SIZE = Integer.MAX_VALUE;
+
+    private final long maxMessageSize;
+    @NotNull
+    private final OversizedMessagePolicy oversizedMessagePolicy;
+    @NotNull
+    private final ReadControl readControl;
+
+    /**
+     * Creates an operator that fails the stream if it encounters a message larger than
+     * {@link #DEFAULT_MAX_MESSAGE_SIZE}.
+     */
+    public RecordIOByteBufOperator() {
+        this(DEFAULT_MAX_MESSAGE_SIZE, OversizedMessagePolicy.FAIL);
+    }
+
+    /**
+     * Creates an operator that fails the stream if it encounters a message larger than
+     * {@link #DEFAULT_MAX_MESSAGE_SIZE}, and uses {@code readControl} to pause its source while there is no
+     * demand for messages.
+     *
+     * @param readControl    Used to pause and resume the source of the stream.
+     */
+    public RecordIOByteBufOperator(@NotNull final ReadControl readControl) {
+        this(DEFAULT_MAX_MESSAGE_SIZE, OversizedMessagePolicy.FAIL, readControl);
+    }
+
+    /**
+     * @param maxMessageSize            The size of the largest message that will be emitted.
+     *                                  Must be in the range {@code [0, DEFAULT_MAX_MESSAGE_SIZE]}.
+     * @param oversizedMessagePolicy    How messages larger than {@code maxMessageSize} are handled.
+     */
+    public RecordIOByteBufOperator(final long maxMessageSize, @NotNull final OversizedMessagePolicy oversizedMessagePolicy) {
+        this(maxMessageSize, oversizedMessagePolicy, ReadControl.NONE);
+    }
+
+    /**
+     * @param maxMessageSize            The size of the largest message that will be emitted.
+     *                                  Must be in the range {@code [0, DEFAULT_MAX_MESSAGE_SIZE]}.
+     * @param oversizedMessagePolicy    How messages larger than {@code maxMessageSize} are handled.
+     * @param readControl               Used to pause and resume the source of the stream.
+     */
+    public RecordIOByteBufOperator(
+        final long maxMessageSize,
+        @NotNull final OversizedMessagePolicy oversizedMessagePolicy,
+        @NotNull final ReadControl readControl
+    ) {
+        this.maxMessageSize = checkMaxMessageSize(maxMessageSize, DEFAULT_MAX_MESSAGE_SIZE);
+        this.oversizedMessagePolicy = oversizedMessagePolicy;
+        this.readControl = readControl;
+    }
+
+    @Override
+    public Subscriber<ByteBuf> call(final Subscriber<? super ByteBuf> subscriber) {
+        final RecordIOByteBufSubscriber parent = new RecordIOByteBufSubscriber(subscriber, maxMessageSize, oversizedMessagePolicy, readControl);
+        subscriber.setProducer(parent.producer);
+        return parent;
+    }
+
+    /**
+     * A {@link Subscriber} that can process the contents of a {@link ByteBuf} and emit 0-to-many
+     * {@link ByteBuf} messages. If a single {@link ByteBuf} does not represent a full message, retained
+     * slices of each chunk will be accumulated until a full message can be emitted.
+     */
+    static final class RecordIOByteBufSubscriber extends Subscriber<ByteBuf> {
+        private static final Logger LOGGER = LoggerFactory.getLogger(RecordIOByteBufSubscriber.class);
+
+        @NotNull
+        final Subscriber<? super ByteBuf> child;
+
+        /**
+         * Holds the messages that have been framed until they are requested by {@link #child}.
+         */
+        @NotNull
+        final RecordIOProducer<ByteBuf> producer;
+
+        private final long maxMessageSize;
+        @NotNull
+        private final OversizedMessagePolicy oversizedMessagePolicy;
+
+        /**
+         * Parses the message size that precedes each message. The size may be split across chunks, in which case
+         * the parser retains the digits read so far until the terminating {@code '\n'} is found.
+         */
+        @NotNull
+        final RecordIOMessageSizeParser messageSizeParser = new RecordIOMessageSizeParser();
+
+        /**
+         * Flag used to signify that the size of the current message has been read, and its bytes are being read.
+         */
+        boolean readingMessage = false;
+
+        /**
+         * The number of bytes still to be read before the current message is complete.
+         */
+        int remainingBytesForMessage = 0;
+
+        /**
+         * The number of bytes of an oversized message that still need to be discarded before the next message
+         * size can be read.
+         */
+        long remainingBytesToSkip = 0;
+
+        /**
+         * The retained slices of the current message when it spans more than one chunk, {@code null} otherwise.
+         */
+        @Nullable
+        CompositeByteBuf messageComponents = null;
+
+        RecordIOByteBufSubscriber(
+            @NotNull final Subscriber<? super ByteBuf> child,
+            final long maxMessageSize,
+            @NotNull final OversizedMessagePolicy oversizedMessagePolicy,
+            @NotNull final ReadControl readControl
+        ) {
+            super(child);
+            this.child = child;
+            this.producer = new RecordIOProducer<>(child, readControl, ByteBuf::release);
+            this.maxMessageSize = maxMessageSize;
+            this.oversizedMessagePolicy = oversizedMessagePolicy;
+        }
+
+        @Override
+        public void onStart() {
+            request(Long.MAX_VALUE);
+        }
+
+        /**
+         * When a {@link ByteBuf} is passed into this method all of its readable bytes are consumed, but its
+         * reference count is left untouched. Any message(s) contained in it will be sent to the child via
+         * {@link Subscriber#onNext(Object)} as soon as it has requested them. If any error is encountered {@link #onError(Throwable)} will be called
+         * and the method will terminate without attempting to do any sort of recovery.
+         *
+         * @param t    The {@link ByteBuf} to process
+         */
+        @Override
+        public void onNext(final ByteBuf t) {
+            try {
+                while (t.isReadable()) {
+                    if (remainingBytesToSkip > 0) {
+                        final int numBytesToSkip = (int) Math.min(t.readableBytes(), remainingBytesToSkip);
+                        t.skipBytes(numBytesToSkip);
+                        remainingBytesToSkip -= numBytesToSkip;
+                        continue;
+                    }
+
+                    if (!readingMessage) {
+                        if (!messageSizeParser.parse(t)) {
+                            return;
+                        }
+                        final long messageSize = messageSizeParser.messageSize();
+                        messageSizeParser.reset();
+                        if (messageSize > maxMessageSize) {
+                            if (oversizedMessagePolicy == OversizedMessagePolicy.FAIL) {
+                                throw new RecordIOMessageTooLargeException(messageSize, maxMessageSize);
+                            }
+                            LOGGER.warn("Skipping RecordIO message of size {} larger than maximum message size {}", messageSize, maxMessageSize);
+                            remainingBytesToSkip = messageSize;
+                            continue;
+                        }
+                        if (messageSize == 0) {
+                            producer.offer(Unpooled.EMPTY_BUFFER);
+                            continue;
+                        }
+                        remainingBytesForMessage = (int) messageSize;
+                        readingMessage = true;
+                    }
+
+                    final int numBytes = Math.min(t.readableBytes(), remainingBytesForMessage);
+                    final ByteBuf slice = t.retainedSlice(t.readerIndex(), numBytes);
+                    t.skipBytes(numBytes);
+                    remainingBytesForMessage -= numBytes;
+                    readingMessage = remainingBytesForMessage > 0;
+
+                    if (messageComponents == null && !readingMessage) {
+                        producer.offer(slice);
+                    } else {
+                        if (messageComponents == null) {
+                            // allow an unbounded number of components so the composite is never consolidated (copied)
+                            messageComponents = t.alloc().compositeBuffer(Integer.MAX_VALUE);
+                        }
+                        messageComponents.addComponent(true, slice);
+                        if (!readingMessage) {
+                            final CompositeByteBuf message = messageComponents;
+                            messageComponents = null;
+                            producer.offer(message);
+                        }
+                    }
+                }
+            } catch (Throwable e) {
+                onError(e);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            releaseMessageComponents();
+            producer.error(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            releaseMessageComponents();
+            producer.complete();
+        }
+
+        private void releaseMessageComponents() {
+            if (messageComponents != null) {
+                messageComponents.release();
+                messageComponents = null;
+            }
+        }
+    }
+
+}
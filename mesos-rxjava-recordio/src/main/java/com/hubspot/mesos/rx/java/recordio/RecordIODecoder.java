@@ -0,0 +1,134 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.recordio;
+
+import static com.hubspot.mesos.rx.java.recordio.RecordIOMessageSizeParser.checkMaxMessageSize;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+/**
+ * A Netty {@link ByteToMessageDecoder} that frames a RecordIO byte stream into one {@link ByteBuf} per message.
+ * <p>
+ * Framing runs on the channel's event loop, and bytes are accumulated in the decoder's cumulation buffer (allocated
+ * from the channel's allocator) until a full message is available. Each message is emitted as a retained slice of
+ * the cumulation, so is not copied again; the next handler in the pipeline owns each message and must release it.
+ * <p>
+ * Any message that is not a {@link ByteBuf} is passed along the pipeline untouched. Messages larger than the
+ * configured maximum message size are handled according to the {@link OversizedMessagePolicy}; with
+ * {@link OversizedMessagePolicy#FAIL} a {@link io.netty.handler.codec.DecoderException} caused by a
+ * {@link RecordIOMessageTooLargeException} is fired through the pipeline.
+ * <p>
+ * Instances are stateful and must not be shared between channels.
+ *
+ * @see <a href="https://github.com/apache/mesos/blob/master/docs/scheduler-http-api.md#recordio-response-format" target="_blank">RecordIO</a>
+ * @see RecordIOEncoder
+ * @see RecordIOMessageOperator
+ */
+public final class RecordIODecoder extends ByteToMessageDecoder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordIODecoder.class);
+
+    /**
+     * The largest message that can be represented by a single {@link ByteBuf}.
+     */
+    public static final long DEFAULT_MAX_MESSAGE_SIZE = Integer.MAX_VALUE;
+
+    private final long maxMessageSize;
+    @NotNull
+    private final OversizedMessagePolicy oversizedMessagePolicy;
+
+    @NotNull
+    // @VisibleForTesting
+    final RecordIOMessageSizeParser messageSizeParser = new RecordIOMessageSizeParser();
+
+    /**
+     * The size of the message currently being read, or {@code -1} if the size of the next message has not been read.
+     */
+    // @VisibleForTesting
+    long messageSize = -1;
+
+    /**
+     * The number of bytes of an oversized message that still need to be discarded before the next message
+     * size can be read.
+     */
+    // @VisibleForTesting
+    long remainingBytesToSkip = 0;
+
+    /**
+     * Creates a decoder that fails if it encounters a message larger than {@link #DEFAULT_MAX_MESSAGE_SIZE}.
+     */
+    public RecordIODecoder() {
+        this(DEFAULT_MAX_MESSAGE_SIZE, OversizedMessagePolicy.FAIL);
+    }
+
+    /**
+     * @param maxMessageSize            The size of the largest message that will be emitted.
+     *                                  Must be in the range {@code [0, DEFAULT_MAX_MESSAGE_SIZE]}.
+     * @param oversizedMessagePolicy    How messages larger than {@code maxMessageSize} are handled.
+     */
+    public RecordIODecoder(final long maxMessageSize, @NotNull final OversizedMessagePolicy oversizedMessagePolicy) {
+        this.maxMessageSize = checkMaxMessageSize(maxMessageSize, DEFAULT_MAX_MESSAGE_SIZE);
+        this.oversizedMessagePolicy = oversizedMessagePolicy;
+    }
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out) {
+        while (in.isReadable()) {
+            if (remainingBytesToSkip > 0) {
+                final int numBytesToSkip = (int) Math.min(in.readableBytes(), remainingBytesToSkip);
+                in.skipBytes(numBytesToSkip);
+                remainingBytesToSkip -= numBytesToSkip;
+                continue;
+            }
+
+            if (messageSize < 0) {
+                if (!messageSizeParser.parse(in)) {
+                    return;
+                }
+                final long size = messageSizeParser.messageSize();
+                messageSizeParser.reset();
+                if (size > maxMessageSize) {
+                    if (oversizedMessagePolicy == OversizedMessagePolicy.FAIL) {
+                        throw new RecordIOMessageTooLargeException(size, maxMessageSize);
+                    }
+                    LOGGER.warn("Skipping RecordIO message of size {} larger than maximum message size {}", size, maxMessageSize);
+                    remainingBytesToSkip = size;
+                    continue;
+                }
+                messageSize = size;
+            }
+
+            if (messageSize == 0) {
+                out.add(Unpooled.EMPTY_BUFFER);
+            } else if (in.readableBytes() >= messageSize) {
+                out.add(in.readRetainedSlice((int) messageSize));
+            } else {
+                return;
+            }
+            messageSize = -1;
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.recordio;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+/**
+ * A Netty encoder that frames each {@link ByteBuf} written to the pipeline as a RecordIO message.
+ * <p>
+ * The message size is written into a small buffer obtained from the channel's allocator, and is combined with the
+ * message into a {@link io.netty.buffer.CompositeByteBuf} rather than copying both into a new buffer. The
+ * transport is then able to write the two components with a single gathering write.
+ * <p>
+ * Any message that is not a {@link ByteBuf} is passed along the pipeline untouched. The encoder is stateless, so a
+ * single instance may be shared between channels.
+ *
+ * @see <a href="https://github.com/apache/mesos/blob/master/docs/scheduler-http-api.md#recordio-response-format" target="_blank">RecordIO</a>
+ * @see RecordIODecoder
+ */
+@ChannelHandler.Sharable
+public final class RecordIOEncoder extends MessageToMessageEncoder<ByteBuf> {
+
+    /**
+     * The number of digits in {@link Integer#MAX_VALUE} plus the terminating {@code '\n'}.
+     */
+    private static final int MAX_MESSAGE_SIZE_BYTES = 11;
+
+    @Override
+    protected void encode(final ChannelHandlerContext ctx, final ByteBuf msg, final List<Object> out) {
+        out.add(encode(ctx.alloc(), msg));
+    }
+
+    /**
+     * Frames {@code msg} as a RecordIO message.
+     * @param alloc    The allocator used to allocate the buffers holding the message size and the framed message
+     * @param msg      The message to frame. Its reference count is not modified.
+     * @return A buffer containing the message size followed by a retained slice of {@code msg}
+     */
+    @NotNull
+    // @VisibleForTesting
+    static ByteBuf encode(@NotNull final ByteBufAllocator alloc, @NotNull final ByteBuf msg) {
+        final ByteBuf messageSize = alloc.buffer(MAX_MESSAGE_SIZE_BYTES);
+        writeMessageSize(messageSize, msg.readableBytes());
+        return alloc.compositeBuffer(2)
+            .addComponents(true, messageSize, msg.retainedSlice());
+    }
+
+    /**
+     * Writes the decimal digits of {@code size} followed by a {@code '\n'} without allocating an intermediate
+     * {@link String}.
+     */
+    // @VisibleForTesting
+    static void writeMessageSize(@NotNull final ByteBuf buf, final int size) {
+        int divisor = 1;
+        while (size / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buf.writeByte('0' + (size / divisor) % 10);
+        }
+        buf.writeByte('\n');
+    }
+
+}
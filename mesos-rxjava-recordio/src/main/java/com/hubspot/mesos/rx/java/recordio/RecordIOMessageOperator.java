@@ -0,0 +1,84 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.recordio;
+
+import org.jetbrains.annotations.NotNull;
+
+import io.netty.buffer.ByteBuf;
+import rx.Observable.Operator;
+import rx.Subscriber;
+
+/**
+ * An {@link Operator} that can be applied to a stream of {@link ByteBuf} messages that have already been framed by a
+ * {@link RecordIODecoder} in the channel pipeline.
+ * <p>
+ * The operator provides the same guarantees as {@link RecordIOByteBufOperator} without doing any framing itself:
+ * <ul>
+ *     <li>Each message is retained when it is received, since the upstream may release it once {@code onNext}
+ *     returns. Every message emitted to the child is owned by the child, which <b>must</b>
+ *     {@link ByteBuf#release() release} it once it has been consumed.</li>
+ *     <li>Messages are only emitted as they are requested by the child. Messages received ahead of demand are held
+ *     by the operator (and released if the child unsubscribes before requesting them), and while any are held the
+ *     source of the stream is paused using the provided {@link ReadControl}.</li>
+ * </ul>
+ *
+ * @see rx.Observable#lift(Operator)
+ */
+public final class RecordIOMessageOperator implements Operator<ByteBuf, ByteBuf> {
+
+    @NotNull
+    private final ReadControl readControl;
+
+    public RecordIOMessageOperator() {
+        this(ReadControl.NONE);
+    }
+
+    /**
+     * @param readControl    Used to pause and resume the source of the stream.
+     */
+    public RecordIOMessageOperator(@NotNull final ReadControl readControl) {
+        this.readControl = readControl;
+    }
+
+    @Override
+    public Subscriber<? super ByteBuf> call(final Subscriber<? super ByteBuf> subscriber) {
+        final RecordIOProducer<ByteBuf> producer = new RecordIOProducer<>(subscriber, readControl, ByteBuf::release);
+        subscriber.setProducer(producer);
+        return new Subscriber<ByteBuf>(subscriber) {
+            @Override
+            public void onStart() {
+                request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(final ByteBuf message) {
+                producer.offer(message.retain());
+            }
+
+            @Override
+            public void onError(final Throwable e) {
+                producer.error(e);
+            }
+
+            @Override
+            public void onCompleted() {
+                producer.complete();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.recordio;
+
+import org.jetbrains.annotations.NotNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ByteProcessor;
+
+/**
+ * Incrementally parses the message size that prefixes every message in a RecordIO stream.
+ * <p>
+ * The message size is a base-10 representation of an unsigned 64 bit integer terminated by a {@code '\n'}. Since the
+ * HTTP chunked Transfer-Encoding applied to the stream allows chunks to be any size, the digits may be split across
+ * any number of {@link ByteBuf}s. Each digit is accumulated into a primitive {@code long} as it is visited by
+ * {@link ByteBuf#forEachByte(ByteProcessor)}, so parsing a message size does not allocate.
+ * <p>
+ * Sizes larger than {@link Long#MAX_VALUE} are saturated to {@link Long#MAX_VALUE}; they can never be satisfied
+ * and will always be treated as exceeding the maximum message size.
+ * <p>
+ * Instances are stateful and not thread safe; they are intended to be owned by a single subscriber.
+ */
+final class RecordIOMessageSizeParser implements ByteProcessor {
+
+    private long messageSize = 0;
+    private boolean hasDigits = false;
+
+    /**
+     * Consumes bytes from {@code buf} up to and including the {@code '\n'} that terminates the message size.
+     * @param buf    The buffer to read from. Its reader index will be advanced past all bytes consumed.
+     * @return {@code true} if the message size is complete and can be read with {@link #messageSize()},
+     *         {@code false} if all readable bytes of {@code buf} were consumed without finding the end of the size.
+     * @throws IllegalStateException if a byte other than an ASCII digit is encountered, or no digits precede
+     *                               the {@code '\n'}
+     */
+    boolean parse(@NotNull final ByteBuf buf) {
+        final int newLineIndex = buf.forEachByte(this);
+        if (newLineIndex == -1) {
+            buf.skipBytes(buf.readableBytes());
+            return false;
+        }
+        buf.readerIndex(newLineIndex + 1);
+        if (!hasDigits) {
+            throw new IllegalStateException("RecordIO message size is empty");
+        }
+        return true;
+    }
+
+    /**
+     * @return The fully parsed message size. Only valid after {@link #parse(ByteBuf)} has returned {@code true}.
+     */
+    long messageSize() {
+        return messageSize;
+    }
+
+    /**
+     * Resets the parser so that it is ready to parse the next message size.
+     */
+    void reset() {
+        messageSize = 0;
+        hasDigits = false;
+    }
+
+    /**
+     * @return {@code true} if no digits of a message size have been consumed since the last {@link #reset()}.
+     */
+    boolean isEmpty() {
+        return !hasDigits;
+    }
+
+    /**
+     * Validates a maximum message size provided to one of the RecordIO operators.
+     * @return {@code maxMessageSize} if it is in the range {@code [0, upperBound]}
+     * @throws IllegalArgumentException if {@code maxMessageSize} is out of range
+     */
+    static long checkMaxMessageSize(final long maxMessageSize, final long upperBound) {
+        if (maxMessageSize < 0 || maxMessageSize > upperBound) {
+            throw new IllegalArgumentException(
+                String.format("maxMessageSize must be in the range [0, %d], was %d", upperBound, maxMessageSize)
+            );
+        }
+        return maxMessageSize;
+    }
+
+    @Override
+    public boolean process(final byte value) {
+        if (value == (byte) '\n') {
+            return false;
+        }
+        final int digit = value - '0';
+        if (digit < 0 || digit > 9) {
+            throw new IllegalStateException(String.format("Invalid byte in RecordIO message size: 0x%02x", value));
+        }
+        hasDigits = true;
+        if (messageSize > (Long.MAX_VALUE - digit) / 10) {
+            messageSize = Long.MAX_VALUE;
+        } else {
+            messageSize = messageSize * 10 + digit;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.recordio;
+
+/**
+ * Signals that a RecordIO stream contained a message larger than the configured maximum message size.
+ *
+ * @see OversizedMessagePolicy#FAIL
+ */
+public final class RecordIOMessageTooLargeException extends RuntimeException {
+
+    private final long messageSize;
+    private final long maxMessageSize;
+
+    public RecordIOMessageTooLargeException(final long messageSize, final long maxMessageSize) {
+        super(String.format("RecordIO message size (%d) is larger than the maximum message size (%d)", messageSize, maxMessageSize));
+        this.messageSize = messageSize;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * @return The size of the message as specified in the stream.
+     */
+    public long getMessageSize() {
+        return messageSize;
+    }
+
+    /**
+     * @return The maximum message size that was configured.
+     */
+    public long getMaxMessageSize() {
+        return maxMessageSize;
+    }
+}
@@ -16,31 +16,88 @@
 
 package com.hubspot.mesos.rx.java.recordio;
 
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import static com.hubspot.mesos.rx.java.recordio.RecordIOMessageSizeParser.checkMaxMessageSize;
 
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufInputStream;
 import rx.Observable.Operator;
 import rx.Subscriber;
 
 /**
  * An {@link Operator} that can be applied to a stream of {@link ByteBuf} and produce
  * a stream of {@code byte[]} messages following the RecordIO format.
+ * <p>
+ * Messages are only emitted as they are requested by the child. Messages framed ahead of demand are held
+ * by the operator, and while any are held the source of the stream is paused using the provided {@link ReadControl}.
  *
  * @see <a href="https://github.com/apache/mesos/blob/master/docs/scheduler-http-api.md#recordio-response-format" target="_blank">RecordIO</a>
  * @see rx.Observable#lift(Operator)
  */
 public final class RecordIOOperator implements Operator<byte[], ByteBuf> {
 
+    /**
+     * The largest {@code byte[]} that can be allocated on most JVMs.
+     */
+    public static final long DEFAULT_MAX_MESSAGE_SIZE = Integer.MAX_VALUE - 8;
+
+    private final long maxMessageSize;
+    @NotNull
+    private final OversizedMessagePolicy oversizedMessagePolicy;
+    @NotNull
+    private final ReadControl readControl;
+
+    /**
+     * Creates an operator that fails the stream if it encounters a message larger than
+     * {@link #DEFAULT_MAX_MESSAGE_SIZE}.
+     */
+    public RecordIOOperator() {
+        this(DEFAULT_MAX_MESSAGE_SIZE, OversizedMessagePolicy.FAIL);
+    }
+
+    /**
+     * Creates an operator that fails the stream if it encounters a message larger than
+     * {@link #DEFAULT_MAX_MESSAGE_SIZE}, and uses {@code readControl} to pause its source while there is no
+     * demand for messages.
+     *
+     * @param readControl    Used to pause and resume the source of the stream.
+     */
+    public RecordIOOperator(@NotNull final ReadControl readControl) {
+        this(DEFAULT_MAX_MESSAGE_SIZE, OversizedMessagePolicy.FAIL, readControl);
+    }
+
+    /**
+     * @param maxMessageSize            The size of the largest message that will be emitted.
+     *                                  Must be in the range {@code [0, DEFAULT_MAX_MESSAGE_SIZE]}.
+     * @param oversizedMessagePolicy    How messages larger than {@code maxMessageSize} are handled.
+     */
+    public RecordIOOperator(final long maxMessageSize, @NotNull final OversizedMessagePolicy oversizedMessagePolicy) {
+        this(maxMessageSize, oversizedMessagePolicy, ReadControl.NONE);
+    }
+
+    /**
+     * @param maxMessageSize            The size of the largest message that will be emitted.
+     *                                  Must be in the range {@code [0, DEFAULT_MAX_MESSAGE_SIZE]}.
+     * @param oversizedMessagePolicy    How messages larger than {@code maxMessageSize} are handled.
+     * @param readControl               Used to pause and resume the source of the stream.
+     */
+    public RecordIOOperator(
+        final long maxMessageSize,
+        @NotNull final OversizedMessagePolicy oversizedMessagePolicy,
+        @NotNull final ReadControl readControl
+    ) {
+        this.maxMessageSize = checkMaxMessageSize(maxMessageSize, DEFAULT_MAX_MESSAGE_SIZE);
+        this.oversizedMessagePolicy = oversizedMessagePolicy;
+        this.readControl = readControl;
+    }
+
     @Override
     public Subscriber<ByteBuf> call(final Subscriber<? super byte[]> subscriber) {
-        return new RecordIOSubscriber(subscriber);
+        final RecordIOSubscriber parent = new RecordIOSubscriber(subscriber, maxMessageSize, oversizedMessagePolicy, readControl);
+        subscriber.setProducer(parent.producer);
+        return parent;
     }
 
     /**
@@ -53,7 +110,8 @@ public final class RecordIOOperator implements Operator<byte[], ByteBuf> {
      *
      * <i>
      *     Due to the way arrays in Java work, there is an effective limitation to message size of
-     *     2gb. This is because arrays are indexed with signed 32-bit integers.
+     *     2gb. This is because arrays are indexed with signed 32-bit integers. Messages larger than the
+     *     configured maximum message size are handled according to the {@link OversizedMessagePolicy}.
      * </i>
      */
     static final class RecordIOSubscriber extends Subscriber<ByteBuf> {
@@ -63,23 +121,21 @@ public final class RecordIOOperator implements Operator<byte[], ByteBuf> {
         final Subscriber<? super byte[]> child;
 
         /**
-         * The message size from the stream is provided as a base-10 String representation of an
-         * unsigned 64 bit integer (uint64). Since there is a possibility (since the spec isn't
-         * formal on this, and the HTTP chunked Transfer-Encoding applied to the data stream can
-         * allow chunks to be any size) this field functions as the bytes that have been read
-         * since the end of the last message. When the next '\n' is encountered in the byte
-         * stream, these bytes are turned into a {@code byte[]} and converted to a UTF-8 String.
-         * This string representation is then read as a {@code long} using
-         * {@link Long#valueOf(String, int)}.
+         * Holds the messages that have been framed until they are requested by {@link #child}.
          */
         @NotNull
-        final List<Byte> messageSizeBytesBuffer = new ArrayList<>();
+        final RecordIOProducer<byte[]> producer;
+
+        private final long maxMessageSize;
+        @NotNull
+        private final OversizedMessagePolicy oversizedMessagePolicy;
 
         /**
-         * Flag used to signify that we've reached the point in the stream that we should have
-         * the full set of bytes needed in order to decode the message length.
+         * Parses the message size that precedes each message. The size may be split across chunks, in which case
+         * the parser retains the digits read so far until the terminating {@code '\n'} is found.
          */
-        boolean allSizeBytesBuffered = false;
+        @NotNull
+        final RecordIOMessageSizeParser messageSizeParser = new RecordIOMessageSizeParser();
 
         /**
          * The allocated {@code byte[]} for the current message being read from the stream.
@@ -87,18 +143,29 @@ public final class RecordIOOperator implements Operator<byte[], ByteBuf> {
          * nulled out until the next message size has been resolved.
          */
         byte[] messageBytes = null;
+
         /**
-         * The number of bytes in the encoding is specified as an unsigned (uint64)
-         * However, since arrays in java are addressed and indexed by int we drop the
-         * precision early so that working with the arrays is easier.
-         * Also, a byte[Integer.MAX_VALUE] is 2gb so I seriously doubt we'll be receiving
-         * a message that large.
+         * The number of bytes still to be copied into {@link #messageBytes}.
          */
         int remainingBytesForMessage = 0;
 
-        RecordIOSubscriber(@NotNull final Subscriber<? super byte[]> child) {
+        /**
+         * The number of bytes of an oversized message that still need to be discarded before the next message
+         * size can be read.
+         */
+        long remainingBytesToSkip = 0;
+
+        RecordIOSubscriber(
+            @NotNull final Subscriber<? super byte[]> child,
+            final long maxMessageSize,
+            @NotNull final OversizedMessagePolicy oversizedMessagePolicy,
+            @NotNull final ReadControl readControl
+        ) {
             super(child);
             this.child = child;
+            this.producer = new RecordIOProducer<>(child, readControl, message -> {});
+            this.maxMessageSize = maxMessageSize;
+            this.oversizedMessagePolicy = oversizedMessagePolicy;
         }
 
         @Override
@@ -109,7 +176,8 @@ public final class RecordIOOperator implements Operator<byte[], ByteBuf> {
         /**
          * When a {@link ByteBuf} is passed into this method it is completely "drained".
          * Meaning all bytes are read from it and any message(s) contained in it will be
-         * extracted and then sent to the child via {@link Subscriber#onNext(Object)}.
+         * extracted and then sent to the child via {@link Subscriber#onNext(Object)} as soon as
+         * it has requested them.
          * If any error is encountered (exception) {@link RecordIOSubscriber#onError(Throwable)}
          * will be called and the method will terminate without attempting to do any
          * sort of recovery.
@@ -118,54 +186,44 @@ public final class RecordIOOperator implements Operator<byte[], ByteBuf> {
          */
         @Override
         public void onNext(final ByteBuf t) {
-            try (ByteBufInputStream in = new ByteBufInputStream(t)) {
-                while (t.readableBytes() > 0) {
-                    // New message
-                    if (remainingBytesForMessage == 0) {
+            try {
+                while (t.isReadable()) {
+                    if (remainingBytesToSkip > 0) {
+                        final int numBytesToSkip = (int) Math.min(t.readableBytes(), remainingBytesToSkip);
+                        t.skipBytes(numBytesToSkip);
+                        remainingBytesToSkip -= numBytesToSkip;
+                        continue;
+                    }
 
-                        // Figure out the size of the message
-                        byte b;
-                        while ((b = (byte) in.read()) != -1) {
-                            if (b == (byte) '\n') {
-                                allSizeBytesBuffered = true;
-                                break;
-                            } else {
-                                messageSizeBytesBuffer.add(b);
-                            }
+                    // New message
+                    if (messageBytes == null) {
+                        if (!messageSizeParser.parse(t)) {
+                            return;
                         }
-
-                        // Allocate the byte[] for the message and get ready to read it
-                        if (allSizeBytesBuffered) {
-                            final byte[] bytes = getByteArray(messageSizeBytesBuffer);
-                            allSizeBytesBuffered = false;
-                            final String sizeString = new String(bytes, StandardCharsets.UTF_8);
-                            messageSizeBytesBuffer.clear();
-                            final long l = Long.valueOf(sizeString, 10);
-                            if (l > Integer.MAX_VALUE) {
-                                LOGGER.warn("specified message size ({}) is larger than Integer.MAX_VALUE. Value will be truncated to int");
-                                remainingBytesForMessage = Integer.MAX_VALUE;
-                                // TODO: Possibly make this more robust to account for things larger than 2g
-                            } else {
-                                remainingBytesForMessage = (int) l;
+                        final long messageSize = messageSizeParser.messageSize();
+                        messageSizeParser.reset();
+                        if (messageSize > maxMessageSize) {
+                            if (oversizedMessagePolicy == OversizedMessagePolicy.FAIL) {
+                                throw new RecordIOMessageTooLargeException(messageSize, maxMessageSize);
                             }
-
-                            messageBytes = new byte[remainingBytesForMessage];
+                            LOGGER.warn("Skipping RecordIO message of size {} larger than maximum message size {}", messageSize, maxMessageSize);
+                            remainingBytesToSkip = messageSize;
+                            continue;
                         }
+                        remainingBytesForMessage = (int) messageSize;
+                        messageBytes = new byte[remainingBytesForMessage];
                     }
 
                     // read bytes until we either reach the end of the ByteBuf or the message is fully read.
-                    final int readableBytes = t.readableBytes();
-                    if (readableBytes > 0) {
-                        final int writeStart = messageBytes.length - remainingBytesForMessage;
-                        final int numBytesToCopy = Math.min(readableBytes, remainingBytesForMessage);
-                        final int read = in.read(messageBytes, writeStart, numBytesToCopy);
-                        remainingBytesForMessage -= read;
-                    }
+                    final int numBytesToCopy = Math.min(t.readableBytes(), remainingBytesForMessage);
+                    t.readBytes(messageBytes, messageBytes.length - remainingBytesForMessage, numBytesToCopy);
+                    remainingBytesForMessage -= numBytesToCopy;
 
                     // Once we've got a full message send it on downstream.
-                    if (remainingBytesForMessage == 0 && messageBytes != null) {
-                        child.onNext(messageBytes);
+                    if (remainingBytesForMessage == 0) {
+                        final byte[] message = messageBytes;
                         messageBytes = null;
+                        producer.offer(message);
                     }
                 }
             } catch (Throwable e) {
@@ -175,20 +233,12 @@ public final class RecordIOOperator implements Operator<byte[], ByteBuf> {
 
         @Override
         public void onError(final Throwable e) {
-            child.onError(e);
+            producer.error(e);
         }
 
         @Override
         public void onCompleted() {
-            child.onCompleted();
-        }
-
-        private static byte[] getByteArray(@NotNull final List<Byte> list) {
-            final byte[] bytes = new byte[list.size()];
-            for (int i = 0; i < list.size(); i++) {
-                bytes[i] = list.get(i);
-            }
-            return bytes;
+            producer.complete();
         }
 
     }
@@ -0,0 +1,223 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.recordio;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import rx.Producer;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+import rx.functions.Action1;
+
+/**
+ * The {@link Producer} used by the RecordIO operators to deliver messages to their child only as they are requested.
+ * <p>
+ * Messages that have been framed but not yet requested are held in a queue. Whenever the queue is non-empty after
+ * delivering all requested messages the source is asked to stop reading via {@link ReadControl#setAutoRead(boolean)},
+ * and once the queue has been drained the source is asked to resume reading. The number of messages held is
+ * therefore bounded by what is already in flight from the source rather than by the rate at which it produces.
+ * <p>
+ * {@link #offer(Object)}, {@link #complete()} and {@link #error(Throwable)} must be invoked serially (as guaranteed
+ * by the Rx contract for {@code onNext}, {@code onCompleted} and {@code onError}); {@link #request(long)} may be
+ * invoked concurrently from any thread.
+ *
+ * @param <T> The type of message delivered
+ */
+final class RecordIOProducer<T> implements Producer {
+
+    @NotNull
+    private final Subscriber<? super T> child;
+    @NotNull
+    private final ReadControl readControl;
+    @NotNull
+    private final Action1<? super T> discard;
+
+    @NotNull
+    private final AtomicLong requested = new AtomicLong();
+
+    /** Guarded by {@code this} */
+    @NotNull
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+    /** Guarded by {@code this} */
+    private boolean done = false;
+    /** Guarded by {@code this} */
+    @Nullable
+    private Throwable error = null;
+    /** Guarded by {@code this} */
+    private boolean emitting = false;
+    /** Guarded by {@code this} */
+    private boolean missed = false;
+
+    /** Only accessed from within the emitter loop */
+    private boolean readsPaused = false;
+    /** Only accessed from within the emitter loop */
+    private boolean terminated = false;
+
+    /**
+     * @param child          The subscriber messages will be delivered to
+     * @param readControl    Used to pause and resume the source while there is no demand for messages
+     * @param discard        Invoked for each message that is dropped without having been delivered, because
+     *                       {@code child} unsubscribed or the stream terminated with an error
+     */
+    RecordIOProducer(
+        @NotNull final Subscriber<? super T> child,
+        @NotNull final ReadControl readControl,
+        @NotNull final Action1<? super T> discard
+    ) {
+        this.child = child;
+        this.readControl = readControl;
+        this.discard = discard;
+    }
+
+    @Override
+    public void request(final long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n >= 0 required but it was " + n);
+        }
+        if (n > 0) {
+            for (;;) {
+                final long current = requested.get();
+                if (current == Long.MAX_VALUE) {
+                    break;
+                }
+                final long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                if (requested.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+            drain();
+        }
+    }
+
+    void offer(@NotNull final T message) {
+        synchronized (this) {
+            queue.offer(message);
+        }
+        drain();
+    }
+
+    void complete() {
+        synchronized (this) {
+            done = true;
+        }
+        drain();
+    }
+
+    void error(@NotNull final Throwable e) {
+        synchronized (this) {
+            error = e;
+            done = true;
+        }
+        drain();
+    }
+
+    /**
+     * Delivers as many queued messages as have been requested. Only a single thread will ever be delivering
+     * messages at a time; if another thread is already in this loop it will perform any work signalled while
+     * it was delivering.
+     */
+    void drain() {
+        synchronized (this) {
+            if (emitting) {
+                missed = true;
+                return;
+            }
+            emitting = true;
+        }
+
+        for (;;) {
+            if (terminated) {
+                discardQueued();
+            } else if (child.isUnsubscribed()) {
+                terminated = true;
+                discardQueued();
+            } else {
+                final long r = requested.get();
+                long e = 0;
+                while (e != r) {
+                    final T message;
+                    synchronized (this) {
+                        message = queue.poll();
+                    }
+                    if (message == null) {
+                        break;
+                    }
+                    try {
+                        child.onNext(message);
+                    } catch (Throwable t) {
+                        terminated = true;
+                        discardQueued();
+                        Exceptions.throwOrReport(t, child, message);
+                        break;
+                    }
+                    e++;
+                }
+                if (e != 0 && r != Long.MAX_VALUE) {
+                    requested.addAndGet(-e);
+                }
+                if (terminated) {
+                    continue;
+                }
+
+                final boolean empty;
+                final boolean isDone;
+                final Throwable err;
+                synchronized (this) {
+                    empty = queue.isEmpty();
+                    isDone = done;
+                    err = error;
+                }
+                if (err != null) {
+                    terminated = true;
+                    discardQueued();
+                    child.onError(err);
+                } else if (isDone && empty) {
+                    terminated = true;
+                    child.onCompleted();
+                } else if (readsPaused == empty) {
+                    readsPaused = !empty;
+                    readControl.setAutoRead(empty);
+                }
+            }
+
+            synchronized (this) {
+                if (!missed) {
+                    emitting = false;
+                    return;
+                }
+                missed = false;
+            }
+        }
+    }
+
+    private void discardQueued() {
+        for (;;) {
+            final T message;
+            synchronized (this) {
+                message = queue.poll();
+            }
+            if (message == null) {
+                return;
+            }
+            discard.call(message);
+        }
+    }
+}
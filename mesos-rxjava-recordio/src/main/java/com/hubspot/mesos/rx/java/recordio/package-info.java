@@ -15,6 +15,13 @@
  */
 
 /**
- * This package provides an {@link rx.Observable.Operator} to process a RecordIO encoded stream of data.
+ * This package provides {@link rx.Observable.Operator}s to process a RecordIO encoded stream of data, either by
+ * copying each message into a {@code byte[]} ({@link com.hubspot.mesos.rx.java.recordio.RecordIOOperator}) or by
+ * emitting reference counted slices of the received buffers
+ * ({@link com.hubspot.mesos.rx.java.recordio.RecordIOByteBufOperator}).
+ * <p>
+ * It also provides Netty handlers that frame ({@link com.hubspot.mesos.rx.java.recordio.RecordIODecoder}) and
+ * produce ({@link com.hubspot.mesos.rx.java.recordio.RecordIOEncoder}) a RecordIO stream directly in a channel
+ * pipeline.
  */
 package com.hubspot.mesos.rx.java.recordio;
@@ -0,0 +1,273 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.recordio;
+
+import com.google.protobuf.AbstractMessageLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.hubspot.mesos.rx.java.test.RecordIOUtils;
+import com.hubspot.mesos.rx.java.util.CollectionUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.mesos.v1.scheduler.Protos.Event;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import rx.Subscriber;
+import rx.observers.TestSubscriber;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class RecordIOByteBufOperatorTest {
+
+    private static final List<Event> EVENT_PROTOS = newArrayList(
+        TestingProtos.SUBSCRIBED,
+        TestingProtos.HEARTBEAT,
+        TestingProtos.OFFER,
+        TestingProtos.HEARTBEAT
+    );
+
+    private static final List<byte[]> EVENT_CHUNKS = EVENT_PROTOS.stream()
+        .map(AbstractMessageLite::toByteArray)
+        .map(RecordIOUtils::createChunk)
+        .collect(Collectors.toList());
+
+    @Test
+    public void correctlyAbleToReadEventsFromEventsBinFile() throws Exception {
+        final InputStream inputStream = this.getClass().getResourceAsStream("/events.bin");
+
+        final List<ByteBuf> chunks = new ArrayList<>();
+        final byte[] bytes = new byte[100];
+
+        int read;
+        while ((read = inputStream.read(bytes)) != -1) {
+            chunks.add(Unpooled.copiedBuffer(bytes, 0, read));
+        }
+
+        final List<Event> events = runTestOnChunks(chunks);
+        assertThat(events).hasSize(42);
+        assertThat(events.get(0).getType()).isEqualTo(Event.Type.SUBSCRIBED);
+    }
+
+    @Test
+    public void readEvents_eventsNotSpanningMultipleChunks() throws Exception {
+        final List<ByteBuf> eventBufs = CollectionUtils.listMap(EVENT_CHUNKS, Unpooled::copiedBuffer);
+
+        final List<Event> events = runTestOnChunks(eventBufs);
+        assertThat(events).isEqualTo(EVENT_PROTOS);
+    }
+
+    @Test
+    public void readEvents_eventsSpanningMultipleChunks() throws Exception {
+        final byte[] allBytes = RecordIOOperatorTest.concatAllChunks(EVENT_CHUNKS);
+        for (int chunkSize : newArrayList(1, 2, 3, 5, 10, 60)) {
+            final List<byte[]> arrayChunks = RecordIOOperatorTest.partitionIntoArraysOfSize(allBytes, chunkSize);
+            final List<ByteBuf> bufChunks = CollectionUtils.listMap(arrayChunks, Unpooled::copiedBuffer);
+
+            final List<Event> events = runTestOnChunks(bufChunks);
+            assertThat(events).isEqualTo(EVENT_PROTOS);
+        }
+    }
+
+    @Test
+    public void readEvents_multipleEventsInOneChunk() throws Exception {
+        final List<ByteBuf> singleChunk = newArrayList(
+            Unpooled.copiedBuffer(RecordIOOperatorTest.concatAllChunks(EVENT_CHUNKS))
+        );
+
+        final List<Event> events = runTestOnChunks(singleChunk);
+        assertThat(events).isEqualTo(EVENT_PROTOS);
+    }
+
+    @Test
+    public void messageWithinOneChunkIsASliceOfThatChunk() throws Exception {
+        final ByteBuf chunk = Unpooled.copiedBuffer("5\nhello", StandardCharsets.UTF_8);
+        final TestSubscriber<ByteBuf> child = new TestSubscriber<>();
+        new RecordIOByteBufOperator().call(child).onNext(chunk);
+
+        final ByteBuf message = child.getOnNextEvents().get(0);
+        assertThat(message.toString(StandardCharsets.UTF_8)).isEqualTo("hello");
+        assertThat(message.unwrap()).isSameAs(chunk);
+        assertThat(chunk.refCnt()).isEqualTo(2);
+
+        assertThat(message.release()).isFalse();
+        assertThat(chunk.refCnt()).isEqualTo(1);
+    }
+
+    @Test
+    public void messageSpanningChunksIsACompositeOfSlices() throws Exception {
+        final ByteBuf chunk1 = Unpooled.copiedBuffer("5\nhe", StandardCharsets.UTF_8);
+        final ByteBuf chunk2 = Unpooled.copiedBuffer("llo", StandardCharsets.UTF_8);
+        final TestSubscriber<ByteBuf> child = new TestSubscriber<>();
+        final Subscriber<ByteBuf> subscriber = new RecordIOByteBufOperator().call(child);
+        subscriber.onNext(chunk1);
+        subscriber.onNext(chunk2);
+
+        final ByteBuf message = child.getOnNextEvents().get(0);
+        assertThat(message).isInstanceOf(CompositeByteBuf.class);
+        assertThat(((CompositeByteBuf) message).numComponents()).isEqualTo(2);
+        assertThat(message.toString(StandardCharsets.UTF_8)).isEqualTo("hello");
+
+        message.release();
+        assertThat(chunk1.refCnt()).isEqualTo(1);
+        assertThat(chunk2.refCnt()).isEqualTo(1);
+    }
+
+    @Test
+    public void partialMessageReleasedOnCompleted() throws Exception {
+        final ByteBuf chunk = Unpooled.copiedBuffer("5\nhe", StandardCharsets.UTF_8);
+        final TestSubscriber<ByteBuf> child = new TestSubscriber<>();
+        final Subscriber<ByteBuf> subscriber = new RecordIOByteBufOperator().call(child);
+        subscriber.onNext(chunk);
+        assertThat(chunk.refCnt()).isEqualTo(2);
+
+        subscriber.onCompleted();
+        child.assertCompleted();
+        child.assertNoValues();
+        assertThat(chunk.refCnt()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidMessageSizeResultsInError() throws Exception {
+        final ByteBuf chunk = Unpooled.copiedBuffer("5x\nhello", StandardCharsets.UTF_8);
+        final TestSubscriber<ByteBuf> child = new TestSubscriber<>();
+        new RecordIOByteBufOperator().call(child).onNext(chunk);
+
+        child.assertError(IllegalStateException.class);
+        child.assertNoValues();
+    }
+
+    @Test
+    public void oversizedMessage_failPolicy() throws Exception {
+        final ByteBuf chunk = Unpooled.copiedBuffer("5\nhe", StandardCharsets.UTF_8);
+        final TestSubscriber<ByteBuf> child = new TestSubscriber<>();
+        new RecordIOByteBufOperator(4, OversizedMessagePolicy.FAIL).call(child).onNext(chunk);
+
+        child.assertError(RecordIOMessageTooLargeException.class);
+        child.assertNoValues();
+        assertThat(chunk.refCnt()).isEqualTo(1);
+    }
+
+    @Test
+    public void oversizedMessage_skipPolicyRetainsFramingWithoutRetainingChunks() throws Exception {
+        final List<ByteBuf> chunks = newArrayList(
+            Unpooled.copiedBuffer("3\nabc10\n01234", StandardCharsets.UTF_8),
+            Unpooled.copiedBuffer("56789", StandardCharsets.UTF_8),
+            Unpooled.copiedBuffer("2\nde", StandardCharsets.UTF_8)
+        );
+        final TestSubscriber<ByteBuf> child = new TestSubscriber<>();
+        final Subscriber<ByteBuf> subscriber = new RecordIOByteBufOperator(3, OversizedMessagePolicy.SKIP).call(child);
+        chunks.forEach(subscriber::onNext);
+
+        child.assertNoErrors();
+        final List<String> messages = CollectionUtils.listMap(child.getOnNextEvents(), (buf) -> {
+            try {
+                return buf.toString(StandardCharsets.UTF_8);
+            } finally {
+                buf.release();
+            }
+        });
+        assertThat(messages).isEqualTo(newArrayList("abc", "de"));
+        chunks.forEach(chunk -> assertThat(chunk.refCnt()).isEqualTo(1));
+    }
+
+    @Test
+    public void messagesOnlyEmittedAsRequested() throws Exception {
+        final List<Boolean> autoReads = new ArrayList<>();
+        final ByteBuf chunk = Unpooled.copiedBuffer("1\na1\nb", StandardCharsets.UTF_8);
+        final TestSubscriber<ByteBuf> child = new TestSubscriber<>(1);
+        new RecordIOByteBufOperator(autoReads::add).call(child).onNext(chunk);
+
+        assertThat(child.getOnNextEvents()).hasSize(1);
+        assertThat(autoReads).isEqualTo(newArrayList(false));
+
+        child.requestMore(1);
+        assertThat(child.getOnNextEvents()).hasSize(2);
+        assertThat(autoReads).isEqualTo(newArrayList(false, true));
+
+        child.getOnNextEvents().forEach(ByteBuf::release);
+        assertThat(chunk.refCnt()).isEqualTo(1);
+    }
+
+    @Test
+    public void heldMessagesReleasedOnUnsubscribe() throws Exception {
+        final ByteBuf chunk = Unpooled.copiedBuffer("1\na1\nb", StandardCharsets.UTF_8);
+        final TestSubscriber<ByteBuf> child = new TestSubscriber<>(0);
+        final Subscriber<ByteBuf> subscriber = new RecordIOByteBufOperator().call(child);
+        subscriber.onNext(chunk);
+        assertThat(chunk.refCnt()).isEqualTo(3);
+
+        child.unsubscribe();
+        child.requestMore(1);
+        child.assertNoValues();
+        assertThat(chunk.refCnt()).isEqualTo(1);
+    }
+
+    @Test
+    public void heldMessagesReleasedOnError() throws Exception {
+        final ByteBuf chunk = Unpooled.copiedBuffer("1\na1\nb1x", StandardCharsets.UTF_8);
+        final TestSubscriber<ByteBuf> child = new TestSubscriber<>(0);
+        new RecordIOByteBufOperator().call(child).onNext(chunk);
+
+        child.assertError(IllegalStateException.class);
+        child.assertNoValues();
+        assertThat(chunk.refCnt()).isEqualTo(1);
+    }
+
+    @NotNull
+    private static List<Event> runTestOnChunks(@NotNull final List<ByteBuf> chunks) {
+        final TestSubscriber<ByteBuf> child = new TestSubscriber<>();
+        final Subscriber<ByteBuf> call = new RecordIOByteBufOperator().call(child);
+
+        assertThat(call).isInstanceOf(RecordIOByteBufOperator.RecordIOByteBufSubscriber.class);
+
+        final RecordIOByteBufOperator.RecordIOByteBufSubscriber subscriber =
+            (RecordIOByteBufOperator.RecordIOByteBufSubscriber) call;
+        chunks.forEach(subscriber::onNext);
+        child.assertNoErrors();
+        child.assertNotCompleted();
+        child.assertNoTerminalEvent();
+        assertThat(subscriber.messageSizeParser.isEmpty()).isTrue();
+        assertThat(subscriber.readingMessage).isFalse();
+        assertThat(subscriber.remainingBytesToSkip).isEqualTo(0);
+        assertThat((Object) subscriber.messageComponents).isNull();
+        assertThat(subscriber.remainingBytesForMessage).isEqualTo(0);
+
+        final List<Event> events = CollectionUtils.listMap(child.getOnNextEvents(), (buf) -> {
+            try {
+                return Event.parseFrom(ByteBufUtil.getBytes(buf));
+            } catch (InvalidProtocolBufferException e) {
+                throw new RuntimeException(e);
+            } finally {
+                buf.release();
+            }
+        });
+
+        // every message has been released, so only the references held by the test remain
+        chunks.forEach(chunk -> assertThat(chunk.refCnt()).isEqualTo(1));
+
+        return events;
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.recordio;
+
+import com.google.protobuf.AbstractMessageLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.hubspot.mesos.rx.java.test.RecordIOUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.apache.mesos.v1.scheduler.Protos.Event;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import rx.Subscriber;
+import rx.observers.TestSubscriber;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class RecordIODecoderTest {
+
+    private static final List<Event> EVENT_PROTOS = newArrayList(
+        TestingProtos.SUBSCRIBED,
+        TestingProtos.HEARTBEAT,
+        TestingProtos.OFFER,
+        TestingProtos.HEARTBEAT
+    );
+
+    private static final List<byte[]> EVENT_CHUNKS = EVENT_PROTOS.stream()
+        .map(AbstractMessageLite::toByteArray)
+        .map(RecordIOUtils::createChunk)
+        .collect(Collectors.toList());
+
+    @Test
+    public void readEvents_eventsSpanningMultipleChunks() throws Exception {
+        final byte[] allBytes = RecordIOOperatorTest.concatAllChunks(EVENT_CHUNKS);
+        for (int chunkSize : newArrayList(1, 2, 3, 5, 10, 60, allBytes.length)) {
+            final RecordIODecoder decoder = new RecordIODecoder();
+            final EmbeddedChannel channel = new EmbeddedChannel(decoder);
+            for (byte[] chunk : RecordIOOperatorTest.partitionIntoArraysOfSize(allBytes, chunkSize)) {
+                channel.writeInbound(Unpooled.copiedBuffer(chunk));
+            }
+
+            assertThat(readEvents(channel)).isEqualTo(EVENT_PROTOS);
+            assertThat(decoder.messageSizeParser.isEmpty()).isTrue();
+            assertThat(decoder.messageSize).isEqualTo(-1);
+            assertThat(channel.finish()).isFalse();
+        }
+    }
+
+    @Test
+    public void emptyMessage() throws Exception {
+        final EmbeddedChannel channel = new EmbeddedChannel(new RecordIODecoder());
+        channel.writeInbound(Unpooled.copiedBuffer("0\n1\na", StandardCharsets.UTF_8));
+
+        assertThat(readStrings(channel)).isEqualTo(newArrayList("", "a"));
+    }
+
+    @Test
+    public void nonByteBufMessagesArePassedThrough() throws Exception {
+        final EmbeddedChannel channel = new EmbeddedChannel(new RecordIODecoder());
+        channel.writeInbound(Unpooled.copiedBuffer("1\na1", StandardCharsets.UTF_8));
+        channel.writeInbound("not a ByteBuf");
+
+        final ByteBuf message = channel.readInbound();
+        assertThat(message.toString(StandardCharsets.UTF_8)).isEqualTo("a");
+        message.release();
+        assertThat((Object) channel.readInbound()).isEqualTo("not a ByteBuf");
+    }
+
+    @Test
+    public void oversizedMessage_failPolicy() throws Exception {
+        final EmbeddedChannel channel = new EmbeddedChannel(new RecordIODecoder(4, OversizedMessagePolicy.FAIL));
+        try {
+            channel.writeInbound(Unpooled.copiedBuffer("5\nhello", StandardCharsets.UTF_8));
+            fail("Expected DecoderException");
+        } catch (DecoderException e) {
+            assertThat(e.getCause()).isInstanceOf(RecordIOMessageTooLargeException.class);
+        }
+    }
+
+    @Test
+    public void oversizedMessage_skipPolicy() throws Exception {
+        final RecordIODecoder decoder = new RecordIODecoder(3, OversizedMessagePolicy.SKIP);
+        final EmbeddedChannel channel = new EmbeddedChannel(decoder);
+        channel.writeInbound(Unpooled.copiedBuffer("3\nabc10\n01234", StandardCharsets.UTF_8));
+        channel.writeInbound(Unpooled.copiedBuffer("56789", StandardCharsets.UTF_8));
+        channel.writeInbound(Unpooled.copiedBuffer("2\nde", StandardCharsets.UTF_8));
+
+        assertThat(readStrings(channel)).isEqualTo(newArrayList("abc", "de"));
+        assertThat(decoder.remainingBytesToSkip).isEqualTo(0);
+    }
+
+    @Test
+    public void invalidMessageSize() throws Exception {
+        final EmbeddedChannel channel = new EmbeddedChannel(new RecordIODecoder());
+        try {
+            channel.writeInbound(Unpooled.copiedBuffer("5x\nhello", StandardCharsets.UTF_8));
+            fail("Expected DecoderException");
+        } catch (DecoderException e) {
+            assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    public void encoderOutputCanBeDecoded() throws Exception {
+        final EmbeddedChannel encoder = new EmbeddedChannel(new RecordIOEncoder());
+        final EmbeddedChannel decoder = new EmbeddedChannel(new RecordIODecoder());
+        for (Event event : EVENT_PROTOS) {
+            encoder.writeOutbound(Unpooled.wrappedBuffer(event.toByteArray()));
+        }
+
+        ByteBuf encoded;
+        while ((encoded = encoder.readOutbound()) != null) {
+            decoder.writeInbound(encoded);
+        }
+        assertThat(readEvents(decoder)).isEqualTo(EVENT_PROTOS);
+    }
+
+    @Test
+    public void encoderFramesWithoutCopying() throws Exception {
+        final ByteBuf message = Unpooled.copiedBuffer("hello", StandardCharsets.UTF_8);
+        final EmbeddedChannel channel = new EmbeddedChannel(new RecordIOEncoder());
+        channel.writeOutbound(message);
+
+        final ByteBuf encoded = channel.readOutbound();
+        assertThat(encoded.toString(StandardCharsets.UTF_8)).isEqualTo("5\nhello");
+        assertThat(message.refCnt()).isEqualTo(1);
+        encoded.release();
+        assertThat(message.refCnt()).isEqualTo(0);
+    }
+
+    @Test
+    public void writeMessageSize() throws Exception {
+        for (int size : newArrayList(0, 1, 9, 10, 99, 100, 12345, Integer.MAX_VALUE)) {
+            final ByteBuf buf = Unpooled.buffer();
+            RecordIOEncoder.writeMessageSize(buf, size);
+            assertThat(buf.toString(StandardCharsets.US_ASCII)).isEqualTo(size + "\n");
+        }
+    }
+
+    @Test
+    public void messageOperatorRetainsMessagesUntilRequested() throws Exception {
+        final List<Boolean> autoReads = new ArrayList<>();
+        final ByteBuf first = Unpooled.copiedBuffer("a", StandardCharsets.UTF_8);
+        final ByteBuf second = Unpooled.copiedBuffer("b", StandardCharsets.UTF_8);
+        final TestSubscriber<ByteBuf> child = new TestSubscriber<>(1);
+        final Subscriber<? super ByteBuf> subscriber = new RecordIOMessageOperator(autoReads::add).call(child);
+        subscriber.onStart();
+        subscriber.onNext(first);
+        subscriber.onNext(second);
+        // the upstream releases each message once onNext returns
+        first.release();
+        second.release();
+
+        assertThat(child.getOnNextEvents()).containsExactly(first);
+        assertThat(second.refCnt()).isEqualTo(1);
+        assertThat(autoReads).isEqualTo(newArrayList(false));
+
+        child.unsubscribe();
+        child.requestMore(1);
+        assertThat(second.refCnt()).isEqualTo(0);
+        first.release();
+    }
+
+    @NotNull
+    private static List<Event> readEvents(@NotNull final EmbeddedChannel channel) {
+        final List<Event> events = new ArrayList<>();
+        ByteBuf message;
+        while ((message = channel.readInbound()) != null) {
+            try {
+                events.add(Event.parseFrom(ByteBufUtil.getBytes(message)));
+            } catch (InvalidProtocolBufferException e) {
+                throw new RuntimeException(e);
+            } finally {
+                message.release();
+            }
+        }
+        return events;
+    }
+
+    @NotNull
+    private static List<String> readStrings(@NotNull final EmbeddedChannel channel) {
+        final List<String> strings = new ArrayList<>();
+        ByteBuf message;
+        while ((message = channel.readInbound()) != null) {
+            strings.add(message.toString(StandardCharsets.UTF_8));
+            message.release();
+        }
+        return strings;
+    }
+
+}
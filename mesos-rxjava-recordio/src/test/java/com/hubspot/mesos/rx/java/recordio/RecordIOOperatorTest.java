@@ -30,6 +30,7 @@ import rx.Subscriber;
 import rx.observers.TestSubscriber;
 
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -155,6 +156,120 @@ public class RecordIOOperatorTest {
         assertThat(events).isEqualTo(subHbOffer);
     }
 
+    @Test
+    public void oversizedMessage_failPolicy() throws Exception {
+        final TestSubscriber<byte[]> child = new TestSubscriber<>();
+        final Subscriber<ByteBuf> subscriber = new RecordIOOperator(4, OversizedMessagePolicy.FAIL).call(child);
+        subscriber.onNext(Unpooled.copiedBuffer("5\nhello", StandardCharsets.UTF_8));
+
+        child.assertError(RecordIOMessageTooLargeException.class);
+        child.assertNoValues();
+        final RecordIOMessageTooLargeException e = (RecordIOMessageTooLargeException) child.getOnErrorEvents().get(0);
+        assertThat(e.getMessageSize()).isEqualTo(5);
+        assertThat(e.getMaxMessageSize()).isEqualTo(4);
+    }
+
+    @Test
+    public void oversizedMessage_failPolicyDefaultsToLargestArray() throws Exception {
+        final TestSubscriber<byte[]> child = new TestSubscriber<>();
+        final Subscriber<ByteBuf> subscriber = new RecordIOOperator().call(child);
+        subscriber.onNext(Unpooled.copiedBuffer("99999999999999999999999\nhello", StandardCharsets.UTF_8));
+
+        child.assertError(RecordIOMessageTooLargeException.class);
+        final RecordIOMessageTooLargeException e = (RecordIOMessageTooLargeException) child.getOnErrorEvents().get(0);
+        assertThat(e.getMessageSize()).isEqualTo(Long.MAX_VALUE);
+        assertThat(e.getMaxMessageSize()).isEqualTo(RecordIOOperator.DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+    @Test
+    public void oversizedMessage_skipPolicyRetainsFraming() throws Exception {
+        final byte[] allBytes = concatAllChunks(newArrayList(
+            RecordIOUtils.createChunk(TestingProtos.HEARTBEAT.toByteArray()),
+            RecordIOUtils.createChunk(TestingProtos.OFFER.toByteArray()),
+            RecordIOUtils.createChunk(TestingProtos.HEARTBEAT.toByteArray())
+        ));
+        final int maxMessageSize = TestingProtos.HEARTBEAT.toByteArray().length;
+
+        for (int chunkSize : newArrayList(1, 3, 10, allBytes.length)) {
+            final TestSubscriber<byte[]> child = new TestSubscriber<>();
+            final Subscriber<ByteBuf> subscriber = new RecordIOOperator(maxMessageSize, OversizedMessagePolicy.SKIP).call(child);
+            partitionIntoArraysOfSize(allBytes, chunkSize).forEach(bytes -> subscriber.onNext(Unpooled.copiedBuffer(bytes)));
+
+            child.assertNoErrors();
+            final List<Event> events = CollectionUtils.listMap(child.getOnNextEvents(), (bs) -> {
+                try {
+                    return Event.parseFrom(bs);
+                } catch (InvalidProtocolBufferException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            assertThat(events).isEqualTo(newArrayList(TestingProtos.HEARTBEAT, TestingProtos.HEARTBEAT));
+        }
+    }
+
+    @Test
+    public void invalidMessageSizeResultsInError() throws Exception {
+        final TestSubscriber<byte[]> child = new TestSubscriber<>();
+        new RecordIOOperator().call(child).onNext(Unpooled.copiedBuffer("-5\nhello", StandardCharsets.UTF_8));
+
+        child.assertError(IllegalStateException.class);
+        child.assertNoValues();
+    }
+
+    @Test
+    public void messagesOnlyEmittedAsRequested_readsPausedWhileMessagesHeld() throws Exception {
+        final List<Boolean> autoReads = new ArrayList<>();
+        final TestSubscriber<byte[]> child = new TestSubscriber<>(0);
+        final Subscriber<ByteBuf> subscriber = new RecordIOOperator(autoReads::add).call(child);
+        subscriber.onNext(Unpooled.copiedBuffer("1\na1\nb1\nc", StandardCharsets.UTF_8));
+
+        child.assertNoValues();
+        assertThat(autoReads).isEqualTo(newArrayList(false));
+
+        child.requestMore(2);
+        assertThat(CollectionUtils.listMap(child.getOnNextEvents(), String::new)).isEqualTo(newArrayList("a", "b"));
+        assertThat(autoReads).isEqualTo(newArrayList(false));
+
+        subscriber.onCompleted();
+        child.assertNotCompleted();
+
+        child.requestMore(1);
+        assertThat(CollectionUtils.listMap(child.getOnNextEvents(), String::new)).isEqualTo(newArrayList("a", "b", "c"));
+        child.assertCompleted();
+        child.assertNoErrors();
+    }
+
+    @Test
+    public void readsResumedOnceHeldMessagesAreDelivered() throws Exception {
+        final List<Boolean> autoReads = new ArrayList<>();
+        final TestSubscriber<byte[]> child = new TestSubscriber<>(1);
+        final Subscriber<ByteBuf> subscriber = new RecordIOOperator(autoReads::add).call(child);
+        subscriber.onNext(Unpooled.copiedBuffer("1\na", StandardCharsets.UTF_8));
+        subscriber.onNext(Unpooled.copiedBuffer("1\nb", StandardCharsets.UTF_8));
+
+        assertThat(child.getOnNextEvents()).hasSize(1);
+        assertThat(autoReads).isEqualTo(newArrayList(false));
+
+        child.requestMore(1);
+        assertThat(child.getOnNextEvents()).hasSize(2);
+        assertThat(autoReads).isEqualTo(newArrayList(false, true));
+    }
+
+    @Test
+    public void errorDeliveredWithoutWaitingForDemand() throws Exception {
+        final TestSubscriber<byte[]> child = new TestSubscriber<>(0);
+        final Subscriber<ByteBuf> subscriber = new RecordIOOperator().call(child);
+        subscriber.onNext(Unpooled.copiedBuffer("1\na1x\n", StandardCharsets.UTF_8));
+
+        child.assertError(IllegalStateException.class);
+        child.assertNoValues();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxMessageSizeLargerThanArrayIsRejected() throws Exception {
+        new RecordIOOperator(Integer.MAX_VALUE, OversizedMessagePolicy.FAIL);
+    }
+
     @NotNull
     static List<Event> runTestOnChunks(@NotNull final List<ByteBuf> chunks) {
         final TestSubscriber<byte[]> child = new TestSubscriber<>();
@@ -167,9 +282,10 @@ public class RecordIOOperatorTest {
         child.assertNoErrors();
         child.assertNotCompleted();
         child.assertNoTerminalEvent();
-        assertThat(subscriber.messageSizeBytesBuffer).isEmpty();
+        assertThat(subscriber.messageSizeParser.isEmpty()).isTrue();
         assertThat(subscriber.messageBytes).isNull();
         assertThat(subscriber.remainingBytesForMessage).isEqualTo(0);
+        assertThat(subscriber.remainingBytesToSkip).isEqualTo(0);
 
         return CollectionUtils.listMap(child.getOnNextEvents(), (bs) -> {
             try {
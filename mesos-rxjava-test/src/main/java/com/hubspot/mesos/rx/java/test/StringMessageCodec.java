@@ -16,7 +16,11 @@
 
 package com.hubspot.mesos.rx.java.test;
 
+import com.hubspot.mesos.rx.java.util.ByteBufMessageCodec;
 import com.hubspot.mesos.rx.java.util.MessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
@@ -27,10 +31,10 @@ import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 
 /**
- * {@link MessageCodec} for a {@link StandardCharsets#UTF_8 UTF-8} String
+ * {@link ByteBufMessageCodec} for a {@link StandardCharsets#UTF_8 UTF-8} String
  * @see StandardCharsets#UTF_8
  */
-public final class StringMessageCodec implements MessageCodec<String> {
+public final class StringMessageCodec implements ByteBufMessageCodec<String> {
 
     @NotNull
     public static final MessageCodec<String> UTF8_STRING = new StringMessageCodec();
@@ -67,6 +71,18 @@ public final class StringMessageCodec implements MessageCodec<String> {
         }
     }
 
+    @NotNull
+    @Override
+    public ByteBuf encode(@NotNull final String message, @NotNull final ByteBufAllocator alloc) {
+        return ByteBufUtil.writeUtf8(alloc, message);
+    }
+
+    @NotNull
+    @Override
+    public String decode(@NotNull final ByteBuf buf) {
+        return buf.toString(StandardCharsets.UTF_8);
+    }
+
     @NotNull
     @Override
     public String mediaType() {
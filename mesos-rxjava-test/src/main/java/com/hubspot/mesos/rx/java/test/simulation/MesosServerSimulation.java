@@ -20,17 +20,20 @@ import com.hubspot.mesos.rx.java.test.RecordIOUtils;
 import com.hubspot.mesos.rx.java.util.MessageCodec;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.ChannelHandler;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.reactivex.netty.RxNetty;
 import io.reactivex.netty.protocol.http.server.HttpServer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 import rx.Observable;
 import rx.Subscription;
+import rx.functions.Func1;
 import rx.subjects.PublishSubject;
 import rx.subjects.Subject;
 import rx.subscriptions.MultipleAssignmentSubscription;
@@ -44,6 +47,7 @@ import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * {@code MesosServerSimulation} provides a server implementing the same protocol defined by Apache Mesos for its
@@ -65,6 +69,7 @@ public final class MesosServerSimulation<Event, Call> {
     private static final Logger LOGGER = LoggerFactory.getLogger(MesosServerSimulation.class);
     private static final Marker RECEIVE_MARKER = MarkerFactory.getMarker("<<<");
     private static final Marker SEND_MARKER = MarkerFactory.getMarker(">>>");
+    private static final String REQUEST_RESPONSE_CONVERTER_HANDLER_NAME = "request-response-converter";
 
     @NotNull
     private final List<Call> callsReceived;
@@ -102,6 +107,33 @@ public final class MesosServerSimulation<Event, Call> {
         @NotNull final MessageCodec<Event> sendCodec,
         @NotNull final MessageCodec<Call> receiveCodec,
         @NotNull final Predicate<Call> isSubscribePredicate
+    ) {
+        this(events, sendCodec, receiveCodec, isSubscribePredicate, null);
+    }
+
+    /**
+     * Create a {@code MesosServerSimulation} that will use {@code events} as the event stream to return to a
+     * a client when {@code isSubscribePredicate} evaluates to {@code true}
+     * <p>
+     * The simulation server must be started using {@link #start()} before requests can be serviced by the server.
+     *
+     * @param events                 The event stream to be returned by the server upon {@code isSubscribePredicate}
+     *                               evaluating to {@code true} For each {@link Event} sent to {@code events}, the event
+     *                               will be sent by the server.
+     * @param sendCodec              The {@link MessageCodec} to use to encode {@link Event}s sent by the server
+     * @param receiveCodec           The {@link MessageCodec} to use to decode {@link Call}s received by the server
+     * @param isSubscribePredicate   The predicate used to determine if a {@link Call} is a "Subscribe" call
+     * @param recordIOEncoderFactory If non-null, creates the handler that will be added to the end of the pipeline of
+     *                               the event stream's connection to frame each encoded {@link Event} (for example
+     *                               {@code RecordIOEncoder::new}). If null, events are framed using
+     *                               {@link RecordIOUtils#createChunk(byte[])}.
+     */
+    public MesosServerSimulation(
+        @NotNull final Observable<Event> events,
+        @NotNull final MessageCodec<Event> sendCodec,
+        @NotNull final MessageCodec<Call> receiveCodec,
+        @NotNull final Predicate<Call> isSubscribePredicate,
+        @Nullable final Supplier<? extends ChannelHandler> recordIOEncoderFactory
     ) {
         this.callsReceived = Collections.synchronizedList(new ArrayList<>());
         this.started = new AtomicBoolean(false);
@@ -146,6 +178,20 @@ public final class MesosServerSimulation<Event, Call> {
                     response.getHeaders().add("Cache-Control", "no-cache, no-store, max-age=0, must-revalidate");
                     response.getHeaders().add("Pragma", "no-cache");
 
+                    final Func1<byte[], byte[]> frame;
+                    if (recordIOEncoderFactory != null) {
+                        // writes enter the pipeline at its tail, so the encoder is placed after the converter
+                        // in order to frame each message before it is turned into an HTTP chunk
+                        response.getChannel().pipeline().addAfter(
+                            REQUEST_RESPONSE_CONVERTER_HANDLER_NAME,
+                            "recordio-encoder",
+                            recordIOEncoderFactory.get()
+                        );
+                        frame = bytes -> bytes;
+                    } else {
+                        frame = RecordIOUtils::createChunk;
+                    }
+
                     final Subject<Void, Void> subject = PublishSubject.create();
                     final MultipleAssignmentSubscription subscription = new MultipleAssignmentSubscription();
                     final Subscription actionSubscription = events
@@ -160,7 +206,7 @@ public final class MesosServerSimulation<Event, Call> {
                             }
                         })
                         .map(sendCodec::encode)
-                        .map(RecordIOUtils::createChunk)
+                        .map(frame)
                         .subscribe(bytes -> {
                             if (!response.getChannel().isOpen()) {
                                 subscription.unsubscribe();
@@ -0,0 +1,60 @@
+/*
+ *    Copyright (C) 2015 Mesosphere, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hubspot.mesos.rx.java.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link MessageCodec} that is also able to serialize messages directly into, and deserialize messages directly
+ * from, a {@link ByteBuf}.
+ * <p>
+ * Implementing this interface allows messages to be sent to and received from Mesos without first being copied into
+ * an intermediate {@code byte[]}. When a codec implements this interface it will be preferred over the methods of
+ * {@link MessageCodec} that deal in {@code byte[]} and {@link java.io.InputStream}.
+ *
+ * @param <T> the message type that this codec is defined for
+ */
+public interface ByteBufMessageCodec<T> extends MessageCodec<T> {
+
+    /**
+     * Serialize the given {@code message} into a buffer obtained from {@code alloc}.
+     *
+     * @param message the message to serialize
+     * @param alloc   the allocator to obtain the buffer from
+     * @return a buffer containing the serialized message. The caller is responsible for
+     *         {@link ByteBuf#release() releasing} it.
+     */
+    @NotNull
+    ByteBuf encode(@NotNull final T message, @NotNull final ByteBufAllocator alloc);
+
+    /**
+     * Deserialize the readable bytes of the given buffer into a message.
+     * <p>
+     * The reference count of {@code buf} is not modified, and the message returned must not retain a reference to
+     * the contents of {@code buf}, which may be released as soon as this method returns.
+     *
+     * @param buf the buffer to deserialize the message from
+     * @return the deserialized message
+     * @throws RuntimeException If an error occurs when decoding {@code buf}. If a checked exception is possible
+     *                          it should be wrapped in a RuntimeException.
+     */
+    @NotNull
+    T decode(@NotNull final ByteBuf buf);
+
+}